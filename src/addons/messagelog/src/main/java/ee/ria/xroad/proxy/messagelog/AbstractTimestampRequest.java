@@ -40,7 +40,16 @@ import org.bouncycastle.tsp.TimeStampToken;
 
 import java.io.InputStream;
 import java.security.cert.X509Certificate;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static ee.ria.xroad.common.ErrorCodes.X_INTERNAL_ERROR;
 import static ee.ria.xroad.common.util.CryptoUtils.calculateDigest;
@@ -52,6 +61,19 @@ import static ee.ria.xroad.proxy.messagelog.TimestamperUtil.getTimestampResponse
 @RequiredArgsConstructor
 abstract class AbstractTimestampRequest {
 
+    private static final AtomicInteger THREAD_NUMBER = new AtomicInteger();
+
+    private static final int REQUEST_THREAD_IDLE_SECONDS = 60;
+
+    // Sends hedged time-stamp requests concurrently, sized by getRequestExecutor
+    private static final ThreadPoolExecutor REQUEST_EXECUTOR = new ThreadPoolExecutor(1, 1,
+            REQUEST_THREAD_IDLE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+            AbstractTimestampRequest::newRequestThread);
+
+    static {
+        REQUEST_EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
     protected final Long[] logRecords;
 
     abstract byte[] getRequestData() throws Exception;
@@ -64,6 +86,13 @@ abstract class AbstractTimestampRequest {
         return makeTsRequest(tsRequest, tspUrls);
     }
 
+    @Getter
+    @RequiredArgsConstructor
+    private static class TsResponse {
+        private final TimeStampResponse response;
+        private final String url;
+    }
+
     @Getter
     public static class TsRequest {
         private final InputStream inputStream;
@@ -77,16 +106,15 @@ abstract class AbstractTimestampRequest {
 
     protected Timestamper.TimestampResult makeTsRequest(TimeStampRequest tsRequest,
                                       List<String> tspUrls) throws Exception {
-        for (String url: tspUrls) {
-            try {
-                log.debug("Sending time-stamp request to {}", url);
+        int hedgingPercentile = MessageLogProperties.getTimestamperHedgingPercentile();
 
-                TsRequest req = new TsRequest(TimestamperUtil.makeTsRequest(tsRequest, url), url);
-
-                TimeStampResponse tsResponse = getTimestampResponse(req.getInputStream());
-                log.info("tsresponse {}", tsResponse);
+        if (hedgingPercentile > 0 && tspUrls.size() > 1) {
+            return makeHedgedTsRequest(tsRequest, tspUrls, hedgingPercentile);
+        }
 
-                verify(tsRequest, tsResponse);
+        for (String url: tspUrls) {
+            try {
+                TimeStampResponse tsResponse = getVerifiedTsResponse(tsRequest, url);
 
                 return result(tsResponse, url);
 
@@ -96,8 +124,130 @@ abstract class AbstractTimestampRequest {
         }
 
         // All the URLs failed. Throw exception.
-        throw new RuntimeException(
-                "Failed to get time stamp from any time-stamping providers");
+        throw allFailed();
+    }
+
+    /**
+     * Sends the time-stamp request to the timestamping services in the given order. The request is sent to the
+     * next timestamping service when the previous one fails or has not responded within the given percentile of
+     * its recent response times. The first valid time-stamp is used.
+     */
+    private Timestamper.TimestampResult makeHedgedTsRequest(TimeStampRequest tsRequest, List<String> tspUrls,
+            int hedgingPercentile) throws Exception {
+        CompletionService<TsResponse> completionService =
+                new ExecutorCompletionService<>(getRequestExecutor(tspUrls.size()));
+        List<Future<TsResponse>> requests = new ArrayList<>();
+
+        try {
+            requests.add(submit(completionService, tsRequest, tspUrls.get(0)));
+
+            int completed = 0;
+
+            while (completed < requests.size()) {
+                Future<TsResponse> done;
+
+                if (requests.size() < tspUrls.size()) {
+                    String lastUrl = tspUrls.get(requests.size() - 1);
+
+                    done = completionService.poll(TspResponseTimes.getPercentile(lastUrl, hedgingPercentile,
+                            MessageLogProperties.getTimestamperClientReadTimeout()), TimeUnit.MILLISECONDS);
+
+                    if (done == null) {
+                        String nextUrl = tspUrls.get(requests.size());
+
+                        log.info("No time-stamp from {} yet, sending the request also to {}", lastUrl, nextUrl);
+
+                        requests.add(submit(completionService, tsRequest, nextUrl));
+
+                        continue;
+                    }
+                } else {
+                    done = completionService.take();
+                }
+
+                completed++;
+
+                try {
+                    TsResponse response = done.get();
+
+                    // The first valid time-stamp is used, the requests still waiting for the other services
+                    // are not needed anymore
+                    requests.forEach(request -> request.cancel(true));
+
+                    return result(response.getResponse(), response.getUrl());
+                } catch (ExecutionException e) {
+                    log.error("Failed to get time stamp", e.getCause());
+
+                    if (completed == requests.size() && requests.size() < tspUrls.size()) {
+                        requests.add(submit(completionService, tsRequest, tspUrls.get(requests.size())));
+                    }
+                }
+            }
+        } finally {
+            requests.forEach(request -> request.cancel(true));
+        }
+
+        throw allFailed();
+    }
+
+    private Future<TsResponse> submit(CompletionService<TsResponse> completionService,
+            TimeStampRequest tsRequest, String url) {
+        return completionService.submit(() -> {
+            try {
+                return new TsResponse(getVerifiedTsResponse(tsRequest, url), url);
+            } catch (Exception e) {
+                throw new Exception("Failed to get time stamp from " + url, e);
+            }
+        });
+    }
+
+    private TimeStampResponse getVerifiedTsResponse(TimeStampRequest tsRequest, String url) throws Exception {
+        log.debug("Sending time-stamp request to {}", url);
+
+        long start = System.currentTimeMillis();
+
+        TsRequest req = new TsRequest(TimestamperUtil.makeTsRequest(tsRequest, url), url);
+
+        TimeStampResponse tsResponse = getTimestampResponse(req.getInputStream());
+        log.info("tsresponse {}", tsResponse);
+
+        verify(tsRequest, tsResponse);
+
+        TspResponseTimes.record(url, System.currentTimeMillis() - start);
+
+        return tsResponse;
+    }
+
+    private static RuntimeException allFailed() {
+        return new RuntimeException("Failed to get time stamp from any time-stamping providers");
+    }
+
+    /**
+     * Returns the executor of the hedged requests, sized for the given number of time-stamping services. Each
+     * time-stamping task may send its request to all the services and a task may be running with each of the
+     * services as its preferred one, so at most the square of the service count requests are sent concurrently.
+     * The requests over the limit wait in the queue of the executor.
+     */
+    private static synchronized ThreadPoolExecutor getRequestExecutor(int tspCount) {
+        int poolSize = Math.max(1, tspCount * tspCount);
+
+        if (poolSize > REQUEST_EXECUTOR.getMaximumPoolSize()) {
+            REQUEST_EXECUTOR.setMaximumPoolSize(poolSize);
+            REQUEST_EXECUTOR.setCorePoolSize(poolSize);
+        } else if (poolSize < REQUEST_EXECUTOR.getMaximumPoolSize()) {
+            REQUEST_EXECUTOR.setCorePoolSize(poolSize);
+            REQUEST_EXECUTOR.setMaximumPoolSize(poolSize);
+        }
+
+        return REQUEST_EXECUTOR;
+    }
+
+    private static Thread newRequestThread(Runnable r) {
+        Thread requestThread = new Thread(r);
+        requestThread.setName("timestamper-request-" + THREAD_NUMBER.incrementAndGet());
+        requestThread.setDaemon(true);
+
+        return requestThread;
     }
 
     private TimeStampRequest createTimestampRequest(byte[] data)
@@ -0,0 +1,156 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.messagelog;
+
+import ee.ria.xroad.common.messagelog.MessageRecord;
+
+import akka.actor.ActorRef;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gathers message records that are logged concurrently, so that they can be saved to the database
+ * in one shared transaction. Each sender is acknowledged only after the shared commit has completed.
+ * Not thread safe, meant to be used from within the log manager or a log writer actor only.
+ */
+@Slf4j
+class GroupCommitBuffer {
+
+    private final int maxBatchSize;
+    private final List<MessageRecord> records = new ArrayList<>();
+    private final List<ActorRef> senders = new ArrayList<>();
+
+    private long batchCount;
+    private long recordCount;
+    private int largestBatchSize;
+    private long totalCommitNanos;
+    private long longestCommitNanos;
+    private long lastCommitNanos;
+
+    GroupCommitBuffer(int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * Saves a batch of message records.
+     */
+    @FunctionalInterface
+    interface BatchSaver {
+        void save(List<MessageRecord> messageRecords) throws Exception;
+    }
+
+    /**
+     * Adds the message record to the pending batch.
+     * @param messageRecord the message record.
+     * @param sender the actor waiting for the record to be committed.
+     * @return true, if the batch is full and should be committed.
+     */
+    boolean add(MessageRecord messageRecord, ActorRef sender) {
+        records.add(messageRecord);
+        senders.add(sender);
+
+        return records.size() >= maxBatchSize;
+    }
+
+    boolean isEmpty() {
+        return records.isEmpty();
+    }
+
+    /**
+     * Saves the pending batch using the given saver and acknowledges every waiting sender. If saving
+     * fails, the exception is sent to every waiting sender instead.
+     * @param saver the saver.
+     * @param self the log manager actor.
+     */
+    void commit(BatchSaver saver, ActorRef self) {
+        if (records.isEmpty()) {
+            return;
+        }
+
+        List<MessageRecord> batch = new ArrayList<>(records);
+        List<ActorRef> waiting = new ArrayList<>(senders);
+
+        records.clear();
+        senders.clear();
+
+        Object reply;
+        long start = System.nanoTime();
+
+        try {
+            saver.save(batch);
+            reply = new Object();
+        } catch (Exception e) {
+            log.error("Saving a batch of {} message records failed", batch.size(), e);
+            reply = e;
+        }
+
+        updateStatistics(batch.size(), System.nanoTime() - start);
+
+        for (ActorRef sender : waiting) {
+            sender.tell(reply, self);
+        }
+    }
+
+    /**
+     * @return the statistics of the commits made so far.
+     */
+    Statistics getStatistics() {
+        return new Statistics(batchCount, recordCount, largestBatchSize,
+                batchCount > 0 ? (double) recordCount / batchCount : 0,
+                TimeUnit.NANOSECONDS.toMicros(lastCommitNanos),
+                TimeUnit.NANOSECONDS.toMicros(longestCommitNanos),
+                batchCount > 0 ? TimeUnit.NANOSECONDS.toMicros(totalCommitNanos / batchCount) : 0);
+    }
+
+    private void updateStatistics(int batchSize, long commitNanos) {
+        batchCount++;
+        recordCount += batchSize;
+        largestBatchSize = Math.max(largestBatchSize, batchSize);
+        totalCommitNanos += commitNanos;
+        longestCommitNanos = Math.max(longestCommitNanos, commitNanos);
+        lastCommitNanos = commitNanos;
+
+        log.debug("Group commit of {} message records took {} ms", batchSize,
+                TimeUnit.NANOSECONDS.toMillis(commitNanos));
+    }
+
+    /**
+     * Group commit statistics.
+     */
+    @Value
+    static class Statistics {
+        private final long batchCount;
+        private final long recordCount;
+        private final int largestBatchSize;
+        private final double averageBatchSize;
+        private final long lastCommitLatencyMicros;
+        private final long longestCommitLatencyMicros;
+        private final long averageCommitLatencyMicros;
+    }
+}
@@ -34,6 +34,7 @@ import ee.ria.xroad.common.messagelog.archive.LogArchiveBase;
 import ee.ria.xroad.common.messagelog.archive.LogArchiveWriter;
 
 import akka.actor.UntypedAbstractActor;
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
@@ -42,6 +43,8 @@ import org.hibernate.Session;
 
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
 
 import java.io.IOException;
@@ -50,11 +53,18 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Stream;
 
 import static ee.ria.xroad.common.messagelog.MessageLogProperties.getArchiveTransactionBatchSize;
 import static ee.ria.xroad.common.messagelog.MessageLogProperties.getArchiveTransferCommand;
+import static ee.ria.xroad.common.messagelog.MessageLogProperties.getArchiveWorkers;
 import static ee.ria.xroad.proxy.messagelog.MessageLogDatabaseCtx.doInTransaction;
 import static org.apache.commons.lang3.StringUtils.isBlank;
 
@@ -62,6 +72,12 @@ import static org.apache.commons.lang3.StringUtils.isBlank;
 /**
  * Reads all non-archived time-stamped records from the database, writes them
  * to archive file and marks the records as archived.
+ *
+ * If more than one archive worker is configured, the non-archived records are split
+ * into partitions that are archived in parallel. A timestamp record, together with its
+ * message records, belongs to the partition given by the timestamp record id modulo the
+ * number of workers. Each worker writes its own archive files and keeps the linking
+ * information chain numbered by its partition (see changelog 8-archive-chains).
  */
 @Slf4j
 @RequiredArgsConstructor
@@ -84,7 +100,12 @@ public class LogArchiver extends UntypedAbstractActor {
             try {
                 Long maxTimestampId = doInTransaction(session -> getMaxTimestampId(session));
                 if (maxTimestampId != null) {
-                    while (handleArchive(maxTimestampId)) {
+                    int workers = getArchiveWorkers();
+
+                    if (workers > 1) {
+                        archiveInParallel(maxTimestampId, workers);
+                    } else {
+                        archive(new ArchivePartition(0, 1, maxTimestampId));
                     }
                 }
             } catch (Exception ex) {
@@ -95,10 +116,79 @@ public class LogArchiver extends UntypedAbstractActor {
         }
     }
 
-    private boolean handleArchive(long maxTimestampId) throws Exception {
+    private void archive(ArchivePartition partition) throws Exception {
+        while (handleArchive(partition)) {
+        }
+    }
+
+    private void archiveInParallel(long maxTimestampId, int workers) throws Exception {
+        List<ArchivePartition> partitions = createPartitions(maxTimestampId, workers);
+
+        log.info("Archiving log records with {} workers", partitions.size());
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(partitions.size(), r -> {
+            Thread worker = new Thread(r);
+            worker.setName("LogArchiver-worker-" + threadNumber.incrementAndGet());
+
+            return worker;
+        });
+
+        long start = System.currentTimeMillis();
+
+        try {
+            List<Future<?>> results = new ArrayList<>();
+
+            for (ArchivePartition partition : partitions) {
+                results.add(executor.submit(() -> {
+                    archive(partition);
+
+                    return null;
+                }));
+            }
+
+            Exception failure = null;
+
+            // Let the other workers finish even if one of them fails
+            for (Future<?> result : results) {
+                try {
+                    result.get();
+                } catch (ExecutionException e) {
+                    failure = (Exception) e.getCause();
+                }
+            }
+
+            if (failure != null) {
+                throw failure;
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        long elapsed = System.currentTimeMillis() - start;
+        long recordsArchived = partitions.stream().mapToLong(ArchivePartition::getRecordsArchived).sum();
+
+        log.info("Archived {} log records with {} workers in {} ms", recordsArchived, partitions.size(), elapsed);
+    }
+
+    /**
+     * Creates the given number of partitions of the timestamp ids up to the given maximum. The chain
+     * of a partition is the remainder of its timestamp ids divided by the number of partitions.
+     */
+    static List<ArchivePartition> createPartitions(long maxTimestampId, int count) {
+        List<ArchivePartition> partitions = new ArrayList<>();
+
+        for (int chain = 0; chain < count; chain++) {
+            partitions.add(new ArchivePartition(chain, count, maxTimestampId));
+        }
+
+        return partitions;
+    }
+
+    private boolean handleArchive(ArchivePartition partition) throws Exception {
         return doInTransaction(session -> {
-            final List<TimestampRecord> batch =
-                    getNonArchivedTimestampRecords(session, MAX_RECORDS_IN_BATCH, maxTimestampId);
+            final List<TimestampRecord> batch = getNonArchivedTimestampRecords(session, MAX_RECORDS_IN_BATCH,
+                    partition);
 
             if (batch.isEmpty()) {
                 log.info("No records to be archived at this time");
@@ -110,7 +200,7 @@ public class LogArchiver extends UntypedAbstractActor {
             final int limit = getArchiveTransactionBatchSize();
             log.info("Archiving log records...");
 
-            try (LogArchiveWriter archiveWriter = createLogArchiveWriter(session)) {
+            try (LogArchiveWriter archiveWriter = createLogArchiveWriter(session, partition.getChain())) {
                 for (TimestampRecord ts : batch) {
 
                     try (Stream<MessageRecord> records = getNonArchivedMessageRecords(session, ts.getId())) {
@@ -135,6 +225,7 @@ public class LogArchiver extends UntypedAbstractActor {
                     if (recordsArchived >= limit) {
                         log.info("Archived {} log records in {} ms", recordsArchived,
                                 System.currentTimeMillis() - start);
+                        partition.addRecordsArchived(recordsArchived);
                         return true;
                     }
                 }
@@ -145,16 +236,17 @@ public class LogArchiver extends UntypedAbstractActor {
             }
 
             log.info("Archived {} log records in {} ms", recordsArchived, System.currentTimeMillis() - start);
+            partition.addRecordsArchived(recordsArchived);
 
             //try to continue if the batch was full (there might be more)
             return batch.size() == MAX_RECORDS_IN_BATCH;
         });
     }
 
-    private LogArchiveWriter createLogArchiveWriter(Session session) {
+    private LogArchiveWriter createLogArchiveWriter(Session session, int chain) {
         return new LogArchiveWriter(
                 getArchivePath(),
-                this.new HibernateLogArchiveBase(session)
+                this.new HibernateLogArchiveBase(session, chain)
         );
     }
 
@@ -172,14 +264,29 @@ public class LogArchiver extends UntypedAbstractActor {
 
     protected List<TimestampRecord> getNonArchivedTimestampRecords(Session session, int maxRecordsToGet,
             long maxTimestampId) {
+        return getNonArchivedTimestampRecords(session, maxRecordsToGet, new ArchivePartition(0, 1, maxTimestampId));
+    }
+
+    protected List<TimestampRecord> getNonArchivedTimestampRecords(Session session, int maxRecordsToGet,
+            ArchivePartition partition) {
 
         final CriteriaBuilder cb = session.getCriteriaBuilder();
         final CriteriaQuery<TimestampRecord> query = cb.createQuery(TimestampRecord.class);
         final Root<TimestampRecord> t = query.from(TimestampRecord.class);
 
-        query.select(t).where(cb.and(
-                cb.isFalse(t.get(PROPERTY_NAME_ARCHIVED))),
-                cb.le(t.get("id"), maxTimestampId)).orderBy(cb.asc(t.get("id")));
+        Predicate predicate = cb.and(
+                cb.isFalse(t.get(PROPERTY_NAME_ARCHIVED)),
+                cb.le(t.get("id"), partition.getMaxTimestampId()));
+
+        if (partition.getPartitions() > 1) {
+            // CriteriaBuilder.mod only takes integer expressions, the id is a bigint
+            Expression<Long> chain = cb.function("mod", Long.class, t.<Long>get("id"),
+                    cb.literal((long) partition.getPartitions()));
+
+            predicate = cb.and(predicate, cb.equal(chain, (long) partition.getChain()));
+        }
+
+        query.select(t).where(predicate).orderBy(cb.asc(t.get("id")));
 
         return session.createQuery(query).setMaxResults(maxRecordsToGet).getResultList();
     }
@@ -214,12 +321,15 @@ public class LogArchiver extends UntypedAbstractActor {
             final Session session) throws Exception {
         if (lastArchive != null) {
             log.debug("Digest entry will be saved here...");
-            session.createQuery("delete from " + DigestEntry.class.getName()).executeUpdate();
+            session.createQuery("delete from " + DigestEntry.class.getName() + " d where d.chain = :chain")
+                    .setParameter("chain", lastArchive.getChain())
+                    .executeUpdate();
             session.save(lastArchive);
         }
     }
 
-    private static void runTransferCommand(String transferCommand) {
+    // Synchronized so that parallel archive workers do not run the transfer command concurrently
+    private static synchronized void runTransferCommand(String transferCommand) {
         if (isBlank(transferCommand)) {
             return;
         }
@@ -262,10 +372,12 @@ public class LogArchiver extends UntypedAbstractActor {
     private class HibernateLogArchiveBase implements LogArchiveBase {
 
         private Session session;
+        private int chain;
 
         @Override
         public void markArchiveCreated(DigestEntry lastArchive) throws Exception {
-            LogArchiver.this.markArchiveCreated(lastArchive, session);
+            LogArchiver.this.markArchiveCreated(lastArchive == null ? null
+                    : new DigestEntry(lastArchive.getDigest(), lastArchive.getFileName(), chain), session);
         }
 
         @Override
@@ -285,8 +397,10 @@ public class LogArchiver extends UntypedAbstractActor {
                     session
                             .createQuery(
                                     "select new " + DigestEntry.class.getName()
-                                            + "(d.digest, d.fileName) from DigestEntry d", DigestEntry.class
+                                            + "(d.digest, d.fileName) from DigestEntry d where d.chain = :chain",
+                                    DigestEntry.class
                             )
+                            .setParameter("chain", chain)
                             .setMaxResults(1)
                             .list();
 
@@ -294,4 +408,23 @@ public class LogArchiver extends UntypedAbstractActor {
                     ? DigestEntry.empty() : lastArchiveEntries.get(0);
         }
     }
+
+    /**
+     * Partition of the timestamp ids archived by one worker into its own linking information chain.
+     * The timestamp ids of the partition give the chain number as the remainder when divided by the
+     * number of partitions, so a record is archived to the same chain on every run as long as the
+     * number of archive workers is not changed.
+     */
+    @Getter
+    @RequiredArgsConstructor
+    static final class ArchivePartition {
+        private final int chain;
+        private final int partitions;
+        private final long maxTimestampId;
+        private long recordsArchived;
+
+        void addRecordsArchived(long count) {
+            recordsArchived += count;
+        }
+    }
 }
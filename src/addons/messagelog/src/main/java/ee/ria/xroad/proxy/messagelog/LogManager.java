@@ -33,12 +33,14 @@ import ee.ria.xroad.common.SystemProperties;
 import ee.ria.xroad.common.conf.globalconf.GlobalConf;
 import ee.ria.xroad.common.conf.serverconf.ServerConf;
 import ee.ria.xroad.common.messagelog.AbstractLogManager;
+import ee.ria.xroad.common.messagelog.FindByQueryId;
 import ee.ria.xroad.common.messagelog.LogMessage;
 import ee.ria.xroad.common.messagelog.LogRecord;
 import ee.ria.xroad.common.messagelog.MessageLogProperties;
 import ee.ria.xroad.common.messagelog.MessageRecord;
 import ee.ria.xroad.common.messagelog.RestLogMessage;
 import ee.ria.xroad.common.messagelog.SoapLogMessage;
+import ee.ria.xroad.common.messagelog.TimestampMessage;
 import ee.ria.xroad.common.messagelog.TimestampRecord;
 import ee.ria.xroad.common.util.JobManager;
 import ee.ria.xroad.common.util.MessageSendingJob;
@@ -48,29 +50,42 @@ import akka.actor.ActorSelection;
 import akka.actor.Cancellable;
 import akka.actor.Props;
 import akka.actor.UntypedAbstractActor;
+import akka.dispatch.OnComplete;
 import akka.pattern.Patterns;
+import akka.routing.BalancingPool;
 import akka.util.Timeout;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.input.BoundedInputStream;
 import org.joda.time.DateTime;
 import org.quartz.JobDataMap;
 import org.quartz.SchedulerException;
-import scala.concurrent.Await;
 import scala.concurrent.duration.Duration;
 import scala.concurrent.duration.FiniteDuration;
 
 import java.nio.file.Paths;
 import java.time.LocalTime;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import static ee.ria.xroad.common.ErrorCodes.X_LOGGING_FAILED_X;
 import static ee.ria.xroad.common.ErrorCodes.X_MLOG_TIMESTAMPER_FAILED;
+import static ee.ria.xroad.common.ErrorCodes.X_OUTDATED_GLOBALCONF;
 import static ee.ria.xroad.common.messagelog.MessageLogProperties.getAcceptableTimestampFailurePeriodSeconds;
 import static ee.ria.xroad.common.messagelog.MessageLogProperties.getArchiveInterval;
 import static ee.ria.xroad.common.messagelog.MessageLogProperties.getCleanInterval;
+import static ee.ria.xroad.common.messagelog.MessageLogProperties.getGroupCommitMaxBatchSize;
+import static ee.ria.xroad.common.messagelog.MessageLogProperties.getGroupCommitMaxDelay;
 import static ee.ria.xroad.common.messagelog.MessageLogProperties.getHashAlg;
+import static ee.ria.xroad.common.messagelog.MessageLogProperties.getLogReaders;
+import static ee.ria.xroad.common.messagelog.MessageLogProperties.getLogWriterShards;
 import static ee.ria.xroad.common.messagelog.MessageLogProperties.getTimestampRetryDelay;
+import static ee.ria.xroad.common.messagelog.MessageLogProperties.isGroupCommitEnabled;
 import static ee.ria.xroad.common.messagelog.MessageLogProperties.shouldTimestampImmediately;
 import static ee.ria.xroad.common.util.CryptoUtils.calculateDigest;
 import static ee.ria.xroad.common.util.CryptoUtils.encodeBase64;
@@ -90,12 +105,17 @@ public class LogManager extends AbstractLogManager {
     private static final Timeout TIMESTAMP_TIMEOUT = new Timeout(Duration.create(30, TimeUnit.SECONDS));
     public static final String FAILED = "Failed";
     public static final String SUCCESS = "Success";
+    public static final String GROUP_COMMIT_STATISTICS = "GroupCommitStatistics";
+
+    static final String GROUP_COMMIT = "GroupCommit";
 
     // Actor names of message log components
     static final String TASK_QUEUE_NAME = "RequestLogTaskQueue";
     static final String TIMESTAMPER_NAME = "RequestLogTimestamper";
     static final String ARCHIVER_NAME = "RequestLogArchiver";
     static final String CLEANER_NAME = "RequestLogCleaner";
+    static final String LOG_WRITER_NAME = "RequestLogWriter";
+    static final String LOG_READER_NAME = "RequestLogReader";
 
     static final long MAX_LOGGABLE_BODY_SIZE = MessageLogProperties.getMaxLoggableBodySize();
     static final boolean TRUNCATED_BODY_ALLOWED = MessageLogProperties.isTruncatedBodyAllowed();
@@ -106,6 +126,17 @@ public class LogManager extends AbstractLogManager {
     private final ActorRef timestamper;
     private final ActorRef timestamperJob;
 
+    // Gathers concurrently logged message records, null if group commit is disabled or log writer shards are used
+    private final GroupCommitBuffer groupCommitBuffer;
+    private Cancellable groupCommitTick;
+
+    // Save the message records in parallel, null if log writer shards are not used
+    private final ActorRef[] logWriters;
+    private final LogWriter.ShardStatistics[] logWriterStatistics;
+
+    // Finds message records by query id, null if log readers are not used
+    private final ActorRef logReaders;
+
     // package private for testing
     final ActorRef taskQueueRef;
     final ActorRef logArchiver;
@@ -119,6 +150,10 @@ public class LogManager extends AbstractLogManager {
         timestamperJob = createTimestamperJob();
         logArchiver = createArchiver(jobManager);
         logCleaner = createCleaner(jobManager);
+        groupCommitBuffer = createGroupCommitBuffer();
+        logWriterStatistics = createLogWriterStatistics();
+        logWriters = createLogWriters();
+        logReaders = createLogReaders();
     }
 
     private ActorRef createTaskQueue() {
@@ -156,44 +191,73 @@ public class LogManager extends AbstractLogManager {
         return ref;
     }
 
-    // ------------------------------------------------------------------------
+    private static GroupCommitBuffer createGroupCommitBuffer() {
+        // The log writers have their own group commit buffers
+        if (!isGroupCommitEnabled() || getLogWriterShards() > 0) {
+            return null;
+        }
 
-    @Override
-    protected void log(LogMessage message) throws Exception {
-        boolean shouldTimestampImmediately = shouldTimestampImmediately();
+        log.info("Message log group commit enabled, max batch size: {}, max delay: {} ms",
+                getGroupCommitMaxBatchSize(), getGroupCommitMaxDelay());
 
-        verifyCanLogMessage(shouldTimestampImmediately);
+        return new GroupCommitBuffer(getGroupCommitMaxBatchSize());
+    }
 
-        MessageRecord logRecord;
-        if (message instanceof SoapLogMessage) {
-            logRecord = createMessageRecord((SoapLogMessage) message);
-        } else {
-            logRecord = createMessageRecord((RestLogMessage) message);
+    private static LogWriter.ShardStatistics[] createLogWriterStatistics() {
+        int shards = getLogWriterShards();
+
+        if (shards == 0) {
+            return null;
         }
-        logRecord = saveMessageRecord(logRecord);
 
-        if (shouldTimestampImmediately) {
-            timestampImmediately(logRecord);
+        LogWriter.ShardStatistics[] statistics = new LogWriter.ShardStatistics[shards];
+
+        for (int i = 0; i < shards; i++) {
+            statistics[i] = new LogWriter.ShardStatistics();
         }
+
+        return statistics;
     }
 
-    @Override
-    protected TimestampRecord timestamp(Long messageRecordId) throws Exception {
-        log.trace("timestamp({})", messageRecordId);
+    private ActorRef[] createLogWriters() {
+        if (logWriterStatistics == null) {
+            return null;
+        }
 
-        MessageRecord record = (MessageRecord) LogRecordManager.get(messageRecordId);
+        log.info("Message log writer shards: {}", logWriterStatistics.length);
 
-        if (record.getTimestampRecord() != null) {
-            return record.getTimestampRecord();
-        } else {
-            TimestampRecord timestampRecord = timestampImmediately(record);
-            // Avoid blocking the message logging (in non-timestamp-immediately mode) in case the last periodical
-            // timestamping task failed and currently the task queue got empty, but no more messages are logged until
-            // the acceptable timestamp failure period is reached.
-            setTimestampSucceeded();
+        ActorRef[] writers = new ActorRef[logWriterStatistics.length];
+
+        for (int i = 0; i < writers.length; i++) {
+            writers[i] = getContext().actorOf(Props.create(LogWriter.class, logWriterStatistics[i]),
+                    LOG_WRITER_NAME + i);
+        }
+
+        return writers;
+    }
 
-            return timestampRecord;
+    private ActorRef createLogReaders() {
+        int readers = getLogReaders();
+
+        if (readers == 0) {
+            return null;
         }
+
+        log.info("Message log readers: {}", readers);
+
+        // Readers share a mailbox, so that a slow lookup does not hold up the lookups queued after it
+        return getContext().actorOf(new BalancingPool(readers).props(Props.create(LogReader.class)),
+                LOG_READER_NAME);
+    }
+
+    // ------------------------------------------------------------------------
+
+    @Override
+    protected void log(LogMessage message) throws Exception {
+        // Messages that are time-stamped immediately are handled by logAndTimestamp
+        verifyCanLogMessage(false);
+
+        saveMessageRecord(createMessageRecord(message));
     }
 
     @Override
@@ -212,6 +276,22 @@ public class LogManager extends AbstractLogManager {
                 getSender().tell(statusMap, getSelf());
             } else if (message instanceof SetTimestampingStatusMessage) {
                 setTimestampingStatus((SetTimestampingStatusMessage) message);
+            } else if (message instanceof LogMessage && logWriters != null) {
+                routeToLogWriter((LogMessage) message);
+            } else if (message instanceof FindByQueryId && logReaders != null) {
+                logReaders.forward(message, getContext());
+            } else if (message instanceof TimestampImmediately) {
+                timestampAsync(((TimestampImmediately) message).getMessageRecord(), getSender(), false);
+            } else if (message instanceof LogMessage && isGroupCommitActive()) {
+                addToGroupCommit((LogMessage) message);
+            } else if (message instanceof LogMessage && shouldTimestampImmediately()) {
+                logAndTimestamp((LogMessage) message);
+            } else if (message instanceof TimestampCompleted) {
+                handleTimestampCompleted((TimestampCompleted) message);
+            } else if (GROUP_COMMIT.equals(message) && groupCommitBuffer != null) {
+                groupCommit();
+            } else if (GROUP_COMMIT_STATISTICS.equals(message) && groupCommitBuffer != null) {
+                getSender().tell(groupCommitBuffer.getStatistics(), getSelf());
             } else {
                 super.onReceive(message);
             }
@@ -220,6 +300,38 @@ public class LogManager extends AbstractLogManager {
         }
     }
 
+    @Override
+    protected Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = super.getStatistics();
+
+        if (groupCommitBuffer != null) {
+            statistics.put("groupCommit", groupCommitBuffer.getStatistics());
+        }
+
+        if (logWriterStatistics != null) {
+            statistics.put("logWriterQueueDepths", Arrays.stream(logWriterStatistics)
+                    .map(LogWriter.ShardStatistics::getQueueDepth)
+                    .collect(Collectors.toList()));
+
+            if (isGroupCommitEnabled()) {
+                statistics.put("logWriterGroupCommits", Arrays.stream(logWriterStatistics)
+                        .map(LogWriter.ShardStatistics::getGroupCommit)
+                        .collect(Collectors.toList()));
+            }
+        }
+
+        return statistics;
+    }
+
+    @Override
+    public void postStop() throws Exception {
+        if (groupCommitBuffer != null) {
+            groupCommit();
+        }
+
+        super.postStop();
+    }
+
     // ------------------------------------------------------------------------
 
     protected Props getTaskQueueImpl() {
@@ -239,12 +351,77 @@ public class LogManager extends AbstractLogManager {
         return Props.create(LogCleaner.class);
     }
 
-    private TimestampRecord timestampImmediately(MessageRecord logRecord) throws Exception {
-        log.trace("timestampImmediately({})", logRecord);
+    /**
+     * Logs the message and time-stamps it without blocking the actor while waiting for the time-stamp,
+     * so that messages logged concurrently are time-stamped concurrently. The sender is acknowledged
+     * once the time-stamp is saved.
+     */
+    private void logAndTimestamp(LogMessage message) throws Exception {
+        verifyCanLogMessage(true);
+
+        MessageRecord logRecord = saveMessageRecord(createMessageRecord(message));
+
+        timestampAsync(logRecord, getSender(), false);
+    }
+
+    /**
+     * Replies with the existing time-stamp of the message record or time-stamps it without blocking
+     * the actor while waiting for the time-stamp.
+     */
+    @Override
+    protected void timestamp(TimestampMessage message) {
+        log.trace("timestamp({})", message.getMessageRecordId());
+
+        try {
+            MessageRecord record = (MessageRecord) LogRecordManager.get(message.getMessageRecordId());
+
+            if (record.getTimestampRecord() != null) {
+                getSender().tell(record.getTimestampRecord(), getSelf());
+            } else {
+                timestampAsync(record, getSender(), true);
+            }
+        } catch (Exception e) {
+            log.info("Timestamp failed: {}", e);
+
+            getSender().tell(e, getSelf());
+        }
+    }
+
+    private void timestampAsync(MessageRecord logRecord, ActorRef replyTo, boolean replyWithTimestamp) {
+        log.trace("timestampAsync({})", logRecord);
+
+        ActorRef self = getSelf();
+
+        Patterns.ask(timestamper, new Timestamper.TimestampTask(logRecord), TIMESTAMP_TIMEOUT).onComplete(
+                new OnComplete<Object>() {
+                    @Override
+                    public void onComplete(Throwable failure, Object result) {
+                        self.tell(new TimestampCompleted(replyTo, replyWithTimestamp,
+                                failure != null ? failure : result), ActorRef.noSender());
+                    }
+                }, getContext().dispatcher());
+    }
+
+    private void handleTimestampCompleted(TimestampCompleted message) {
+        try {
+            TimestampRecord timestampRecord = handleTimestampResult(message.getResult());
 
-        Object result = Await.result(Patterns.ask(timestamper, new Timestamper.TimestampTask(logRecord),
-                TIMESTAMP_TIMEOUT), TIMESTAMP_TIMEOUT.duration());
+            if (message.isReplyWithTimestamp()) {
+                // Avoid blocking the message logging (in non-timestamp-immediately mode) in case the last
+                // periodical timestamping task failed and currently the task queue got empty, but no more messages
+                // are logged until the acceptable timestamp failure period is reached.
+                setTimestampSucceeded();
 
+                message.getReplyTo().tell(timestampRecord, getSelf());
+            } else {
+                message.getReplyTo().tell(new Object(), getSelf());
+            }
+        } catch (Exception e) {
+            message.getReplyTo().tell(e, getSelf());
+        }
+    }
+
+    private TimestampRecord handleTimestampResult(Object result) throws Exception {
         if (result instanceof Timestamper.TimestampSucceeded) {
             return saveTimestampRecord((Timestamper.TimestampSucceeded) result);
         } else if (result instanceof Timestamper.TimestampFailed) {
@@ -257,11 +434,89 @@ public class LogManager extends AbstractLogManager {
             }
 
             throw e;
+        } else if (result instanceof Timestamper.TimestampSkipped) {
+            throw new CodedException(X_OUTDATED_GLOBALCONF, "Global configuration is expired");
+        } else if (result instanceof Throwable) {
+            log.error("Timestamping failed", (Throwable) result);
+
+            throw new RuntimeException("Failed to get time-stamp from Timestamper", (Throwable) result);
         } else {
             throw new RuntimeException("Unexpected result from Timestamper: " + result.getClass());
         }
     }
 
+    @Getter
+    @RequiredArgsConstructor
+    private static final class TimestampCompleted {
+        private final ActorRef replyTo;
+        private final boolean replyWithTimestamp;
+        private final Object result;
+    }
+
+    /**
+     * Message sent by a log writer for time-stamping the saved message record immediately.
+     */
+    @Getter
+    @RequiredArgsConstructor
+    static final class TimestampImmediately {
+        private final MessageRecord messageRecord;
+    }
+
+    private void routeToLogWriter(LogMessage message) {
+        verifyCanLogMessage(shouldTimestampImmediately());
+
+        int shard = getLogWriterShard(message, logWriters.length);
+
+        logWriterStatistics[shard].routed();
+        logWriters[shard].forward(message, getContext());
+    }
+
+    /**
+     * The messages of one query are routed to the same shard, so that they are saved in order.
+     */
+    static int getLogWriterShard(LogMessage message, int shards) {
+        String key = message.getQueryId() != null ? message.getQueryId() : String.valueOf(message.getClient());
+
+        return Math.floorMod(key.hashCode(), shards);
+    }
+
+    /**
+     * Group commit is not used when messages are time-stamped immediately, since the time-stamp
+     * needs the saved message record before the sender can be acknowledged.
+     */
+    private boolean isGroupCommitActive() {
+        return groupCommitBuffer != null && !shouldTimestampImmediately();
+    }
+
+    private void addToGroupCommit(LogMessage message) throws Exception {
+        verifyCanLogMessage(false);
+
+        if (groupCommitBuffer.add(createMessageRecord(message), getSender())) {
+            groupCommit();
+        } else if (groupCommitTick == null) {
+            groupCommitTick = getContext().system().scheduler().scheduleOnce(
+                    Duration.create(getGroupCommitMaxDelay(), TimeUnit.MILLISECONDS), getSelf(), GROUP_COMMIT,
+                    getContext().dispatcher(), ActorRef.noSender());
+        }
+    }
+
+    private void groupCommit() {
+        if (groupCommitTick != null) {
+            groupCommitTick.cancel();
+            groupCommitTick = null;
+        }
+
+        groupCommitBuffer.commit(this::saveMessageRecords, getSelf());
+    }
+
+    static MessageRecord createMessageRecord(LogMessage message) throws Exception {
+        if (message instanceof SoapLogMessage) {
+            return createMessageRecord((SoapLogMessage) message);
+        } else {
+            return createMessageRecord((RestLogMessage) message);
+        }
+    }
+
     private static MessageRecord createMessageRecord(SoapLogMessage message) throws Exception {
         log.trace("createMessageRecord()");
 
@@ -326,6 +581,10 @@ public class LogManager extends AbstractLogManager {
         return messageRecord;
     }
 
+    protected void saveMessageRecords(List<MessageRecord> messageRecords) throws Exception {
+        LogRecordManager.saveMessageRecords(messageRecords);
+    }
+
     static TimestampRecord saveTimestampRecord(Timestamper.TimestampSucceeded message) throws Exception {
         log.trace("saveTimestampRecord()");
 
@@ -0,0 +1,55 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.messagelog;
+
+import ee.ria.xroad.common.messagelog.FindByQueryId;
+
+import akka.actor.UntypedAbstractActor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Finds message records by query id, so that slow lookups do not hold up the logging of messages.
+ */
+@Slf4j
+class LogReader extends UntypedAbstractActor {
+
+    @Override
+    public void onReceive(Object message) throws Exception {
+        log.trace("onReceive({})", message);
+
+        if (message instanceof FindByQueryId) {
+            FindByQueryId find = (FindByQueryId) message;
+
+            try {
+                getSender().tell(LogRecordManager.getByQueryId(find.getQueryId(), find.getStartTime(),
+                        find.getEndTime()), getSelf());
+            } catch (Exception e) {
+                getSender().tell(e, getSelf());
+            }
+        } else {
+            unhandled(message);
+        }
+    }
+}
@@ -148,6 +148,31 @@ public final class LogRecordManager {
         });
     }
 
+    /**
+     * Saves the message records to database in a single transaction. The inserts are sent to
+     * database using JDBC batching.
+     * @param messageRecords the message records to be saved.
+     * @throws Exception if an error occurs while communicating with database.
+     */
+    static void saveMessageRecords(List<MessageRecord> messageRecords) throws Exception {
+        doInTransaction(session -> {
+            session.setJdbcBatchSize(Math.max(messageRecords.size(), 1));
+
+            for (MessageRecord messageRecord : messageRecords) {
+                //the blob must be created within hibernate session
+                final InputStream is = messageRecord.getAttachmentStream();
+                if (is != null) {
+                    messageRecord.setAttachment(session.getLobHelper().createBlob(is,
+                            messageRecord.getAttachmentStreamSize()));
+                }
+                save(session, messageRecord);
+            }
+
+            session.flush();
+            return null;
+        });
+    }
+
     /**
      * Saves the message record in the database.
      * @param messageRecord the message record to be updated.
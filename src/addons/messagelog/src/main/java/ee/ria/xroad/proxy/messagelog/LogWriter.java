@@ -0,0 +1,157 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.messagelog;
+
+import ee.ria.xroad.common.messagelog.LogMessage;
+import ee.ria.xroad.common.messagelog.MessageRecord;
+
+import akka.actor.ActorRef;
+import akka.actor.Cancellable;
+import akka.actor.UntypedAbstractActor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import scala.concurrent.duration.Duration;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static ee.ria.xroad.common.messagelog.MessageLogProperties.getGroupCommitMaxBatchSize;
+import static ee.ria.xroad.common.messagelog.MessageLogProperties.getGroupCommitMaxDelay;
+import static ee.ria.xroad.common.messagelog.MessageLogProperties.isGroupCommitEnabled;
+import static ee.ria.xroad.common.messagelog.MessageLogProperties.shouldTimestampImmediately;
+import static ee.ria.xroad.proxy.messagelog.LogManager.GROUP_COMMIT;
+
+/**
+ * Saves the message records of one shard of the logged messages. The log manager routes the messages
+ * by query id, so the shards are saved in parallel while the messages of one query are saved in order.
+ * Messages that need to be time-stamped immediately are handed back to the log manager after saving.
+ */
+@Slf4j
+class LogWriter extends UntypedAbstractActor {
+
+    private final ShardStatistics statistics;
+
+    // Gathers concurrently logged message records, null if group commit is disabled
+    private final GroupCommitBuffer groupCommitBuffer;
+    private Cancellable groupCommitTick;
+
+    LogWriter(ShardStatistics statistics) {
+        this.statistics = statistics;
+        this.groupCommitBuffer = isGroupCommitEnabled() ? new GroupCommitBuffer(getGroupCommitMaxBatchSize()) : null;
+
+        if (groupCommitBuffer != null) {
+            statistics.groupCommit = groupCommitBuffer.getStatistics();
+        }
+    }
+
+    @Override
+    public void onReceive(Object message) throws Exception {
+        log.trace("onReceive({})", message);
+
+        if (message instanceof LogMessage) {
+            statistics.received();
+
+            try {
+                handleLog((LogMessage) message);
+            } catch (Exception e) {
+                getSender().tell(e, getSelf());
+            }
+        } else if (GROUP_COMMIT.equals(message) && groupCommitBuffer != null) {
+            groupCommit();
+        } else {
+            unhandled(message);
+        }
+    }
+
+    @Override
+    public void postStop() throws Exception {
+        if (groupCommitBuffer != null) {
+            groupCommit();
+        }
+
+        super.postStop();
+    }
+
+    private void handleLog(LogMessage message) throws Exception {
+        MessageRecord messageRecord = LogManager.createMessageRecord(message);
+
+        if (shouldTimestampImmediately()) {
+            LogRecordManager.saveMessageRecord(messageRecord);
+
+            getContext().parent().forward(new LogManager.TimestampImmediately(messageRecord), getContext());
+        } else if (groupCommitBuffer != null) {
+            addToGroupCommit(messageRecord);
+        } else {
+            LogRecordManager.saveMessageRecord(messageRecord);
+
+            getSender().tell(new Object(), getSelf());
+        }
+    }
+
+    private void addToGroupCommit(MessageRecord messageRecord) {
+        if (groupCommitBuffer.add(messageRecord, getSender())) {
+            groupCommit();
+        } else if (groupCommitTick == null) {
+            groupCommitTick = getContext().system().scheduler().scheduleOnce(
+                    Duration.create(getGroupCommitMaxDelay(), TimeUnit.MILLISECONDS), getSelf(), GROUP_COMMIT,
+                    getContext().dispatcher(), ActorRef.noSender());
+        }
+    }
+
+    private void groupCommit() {
+        if (groupCommitTick != null) {
+            groupCommitTick.cancel();
+            groupCommitTick = null;
+        }
+
+        groupCommitBuffer.commit(LogRecordManager::saveMessageRecords, getSelf());
+        statistics.groupCommit = groupCommitBuffer.getStatistics();
+    }
+
+    /**
+     * Statistics of one log writer, updated by the writer and read by the log manager.
+     */
+    static final class ShardStatistics {
+
+        // The number of messages routed to the writer and not yet received
+        private final AtomicInteger queueDepth = new AtomicInteger();
+
+        // The group commit statistics of the writer after its latest commit
+        @Getter
+        private volatile GroupCommitBuffer.Statistics groupCommit;
+
+        int getQueueDepth() {
+            return queueDepth.get();
+        }
+
+        void routed() {
+            queueDepth.incrementAndGet();
+        }
+
+        void received() {
+            queueDepth.decrementAndGet();
+        }
+    }
+}
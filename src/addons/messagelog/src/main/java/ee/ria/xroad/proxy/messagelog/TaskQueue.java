@@ -26,6 +26,7 @@ package ee.ria.xroad.proxy.messagelog;
 
 import ee.ria.xroad.common.messagelog.MessageLogProperties;
 import ee.ria.xroad.proxy.messagelog.Timestamper.TimestampFailed;
+import ee.ria.xroad.proxy.messagelog.Timestamper.TimestampSkipped;
 import ee.ria.xroad.proxy.messagelog.Timestamper.TimestampSucceeded;
 import ee.ria.xroad.proxy.messagelog.Timestamper.TimestampTask;
 
@@ -37,14 +38,28 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.hibernate.Session;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 import static ee.ria.xroad.proxy.messagelog.LogManager.TIMESTAMPER_NAME;
 import static ee.ria.xroad.proxy.messagelog.MessageLogDatabaseCtx.doInTransaction;
 
 /**
  * Handles the TaskQueues -- adds tasks to the queue and sends the active queue for time-stamping.
+ *
+ * The pending message records are read in message record order using keyset pagination. While
+ * time-stamping tasks are in progress, the next rounds continue after the last message record sent for
+ * time-stamping instead of sending the same records again. The message record range of a task that fails
+ * is sent again in the next round, while the other tasks are still in progress. Once no tasks are in
+ * progress or waiting to be retried, the queue is read from the start again.
+ *
+ * If timestamper-split-batch-size is set, a large round is split into parts that are sent to different
+ * time-stamping services concurrently. The round is completed when the results of all its parts are received.
  */
 @Slf4j
 @RequiredArgsConstructor(access = AccessLevel.PACKAGE)
@@ -55,6 +70,18 @@ public class TaskQueue extends UntypedAbstractActor {
     static final double TIMESTAMPED_RECORDS_RATIO_THRESHOLD = 0.7;
     static final int TIMESTAMP_RECORDS_LIMIT_RETRY_MODE = 1;
 
+    // The last message record read for time-stamping while tasks are in progress or waiting to be retried
+    private long lastSentTaskId;
+
+    // The first and the last message record of the time-stamping tasks sent without a result received
+    private final Map<Long, Long> tasksInProgress = new HashMap<>();
+
+    // The first and the last message record of the failed time-stamping tasks, sent again in the next round
+    private final Map<Long, Long> failedTasks = new TreeMap<>();
+
+    // Whether the last round was limited by timestamp-records-limit
+    private boolean lastRoundFull;
+
     @Override
     public void onReceive(Object message) throws Exception {
         log.trace("onReceive({})", message);
@@ -67,6 +94,8 @@ public class TaskQueue extends UntypedAbstractActor {
             handleTimestampSucceeded((Timestamper.TimestampSucceeded) message);
         } else if (message instanceof Timestamper.TimestampFailed) {
             handleTimestampFailed((Timestamper.TimestampFailed) message);
+        } else if (message instanceof Timestamper.TimestampSkipped) {
+            handleTimestampSkipped((Timestamper.TimestampSkipped) message);
         } else {
             unhandled(message);
         }
@@ -75,6 +104,8 @@ public class TaskQueue extends UntypedAbstractActor {
     protected void handleTimestampSucceeded(TimestampSucceeded message) {
         log.trace("handleTimestampSucceeded");
 
+        tasksInProgress.remove(message.getMessageRecords()[0]);
+
         if (log.isTraceEnabled()) {
             log.trace("Time-stamped message records {}", Arrays.toString(message.getMessageRecords()));
         }
@@ -89,15 +120,17 @@ public class TaskQueue extends UntypedAbstractActor {
             succeeded = false;
         } finally {
             if (succeeded) {
+                taskCompleted();
                 indicateSuccess();
                 // If time-stamped records count equals to time-stamp records limit, there are probably
                 // still records to be time-stamped. Init another another time-stamping round to prevent
                 // messagelog records to begin to bloat.
-                if (message.getMessageRecords().length == MessageLogProperties.getTimestampRecordsLimit()) {
+                if (tasksInProgress.isEmpty() && lastRoundFull) {
                     log.info("Time-stamped records count equaled to time-stamp records limit");
                     handleStartTimestamping();
                 }
             } else {
+                taskFailed(message.getMessageRecords());
                 indicateFailure();
             }
         }
@@ -134,31 +167,56 @@ public class TaskQueue extends UntypedAbstractActor {
     protected void handleTimestampFailed(TimestampFailed message) {
         log.trace("handleTimestampFailed");
 
+        tasksInProgress.remove(message.getMessageRecords()[0]);
+        taskFailed(message.getMessageRecords());
+
         indicateFailure();
     }
 
+    protected void handleTimestampSkipped(TimestampSkipped message) {
+        log.trace("handleTimestampSkipped");
+
+        // The time-stamping services were not contacted, so the records are retried without indicating failure
+        tasksInProgress.remove(message.getMessageRecords()[0]);
+        taskFailed(message.getMessageRecords());
+    }
+
+    private void taskFailed(Long[] messageRecords) {
+        // Only the records of the failed task are sent again, the other tasks may still be in progress
+        failedTasks.put(messageRecords[0], messageRecords[messageRecords.length - 1]);
+    }
+
+    private void taskCompleted() {
+        if (tasksInProgress.isEmpty() && failedTasks.isEmpty()) {
+            lastSentTaskId = 0;
+        }
+    }
+
     protected void handleStartTimestamping() {
         handleStartTimestamping(MessageLogProperties.getTimestampRecordsLimit());
     }
 
     protected void handleStartTimestamping(int timestampRecordsLimit) {
+        List<Task> retriedTasks;
         List<Task> timestampTasks;
 
         try {
-            timestampTasks = doInTransaction(session -> getTimestampTasks(session, timestampRecordsLimit));
+            retriedTasks = doInTransaction(session -> getFailedTasks(session, timestampRecordsLimit));
+            timestampTasks = doInTransaction(session -> getTimestampTasks(session, lastSentTaskId,
+                    timestampRecordsLimit - retriedTasks.size()));
         } catch (Exception e) {
             log.error("Error getting time-stamp tasks", e);
 
             return;
         }
 
-        if (timestampTasks.isEmpty()) {
+        if (retriedTasks.isEmpty() && timestampTasks.isEmpty()) {
             log.trace("Nothing to time-stamp, task queue is empty");
 
             return;
         }
 
-        int timestampTasksSize = timestampTasks.size();
+        int timestampTasksSize = retriedTasks.size() + timestampTasks.size();
 
         log.info("Start time-stamping {} message records", timestampTasksSize);
 
@@ -168,10 +226,75 @@ public class TaskQueue extends UntypedAbstractActor {
                     TIMESTAMPED_RECORDS_RATIO_THRESHOLD * 100);
         }
 
-        sendToTimestamper(createTimestampTask(timestampTasks));
+        if (!timestampTasks.isEmpty()) {
+            lastSentTaskId = timestampTasks.get(timestampTasks.size() - 1).getMessageRecordNo();
+        }
+
+        lastRoundFull = timestampTasksSize == MessageLogProperties.getTimestampRecordsLimit();
+
+        int part = sendToTimestamper(retriedTasks, 0);
+        part = sendToTimestamper(timestampTasks, part);
+
+        if (part > 1) {
+            log.debug("Split time-stamping of {} message records into {} parts", timestampTasksSize, part);
+        }
+    }
+
+    /**
+     * Reads the message records of the failed tasks that are still waiting to be time-stamped. A failed task
+     * whose records do not fit within the limit is left waiting for the next round with its remaining records.
+     */
+    private List<Task> getFailedTasks(Session session, int timestampRecordsLimit) {
+        List<Task> tasks = new ArrayList<>();
+        Map<Long, Long> remainingTasks = new HashMap<>();
+        Iterator<Map.Entry<Long, Long>> failed = failedTasks.entrySet().iterator();
+
+        while (failed.hasNext() && tasks.size() < timestampRecordsLimit) {
+            Map.Entry<Long, Long> task = failed.next();
+            int limit = timestampRecordsLimit - tasks.size();
+            List<Task> records = getTimestampTasks(session, task.getKey() - 1, task.getValue(), limit);
+
+            failed.remove();
+            tasks.addAll(records);
+
+            if (records.size() == limit) {
+                long lastRecord = records.get(records.size() - 1).getMessageRecordNo();
+
+                if (lastRecord < task.getValue()) {
+                    remainingTasks.put(lastRecord + 1, task.getValue());
+                }
+            }
+        }
+
+        failedTasks.putAll(remainingTasks);
+
+        return tasks;
+    }
+
+    /**
+     * Sends the message records for time-stamping, split into parts if timestamper-split-batch-size is set.
+     * @return the number of parts sent in the round so far
+     */
+    private int sendToTimestamper(List<Task> timestampTasks, int firstPart) {
+        int splitBatchSize = MessageLogProperties.getTimestamperSplitBatchSize();
+        int batchSize = splitBatchSize > 0 ? splitBatchSize : Math.max(1, timestampTasks.size());
+        int part = firstPart;
+
+        for (int from = 0; from < timestampTasks.size(); from += batchSize) {
+            TimestampTask timestampTask = createTimestampTask(
+                    timestampTasks.subList(from, Math.min(from + batchSize, timestampTasks.size())));
+            timestampTask.setPreferredTsp(part++);
+
+            sendToTimestamper(timestampTask);
+        }
+
+        return part;
     }
 
     private void sendToTimestamper(TimestampTask timestampTask) {
+        Long[] messageRecords = timestampTask.getMessageRecords();
+        tasksInProgress.put(messageRecords[0], messageRecords[messageRecords.length - 1]);
+
         ActorSelection timestamper = getContext().actorSelection("../" + TIMESTAMPER_NAME);
         timestamper.tell(timestampTask, getSelf());
     }
@@ -190,7 +313,7 @@ public class TaskQueue extends UntypedAbstractActor {
 
     private static boolean isTaskQueueEmpty() {
         try {
-            return doInTransaction(TaskQueue::getTasksQueueSize) == 0L;
+            return !doInTransaction(TaskQueue::hasTimestampTasks);
         } catch (Exception e) {
             log.error("Could not read timestamp task queue status", e);
 
@@ -198,22 +321,56 @@ public class TaskQueue extends UntypedAbstractActor {
         }
     }
 
-    @SuppressWarnings("unchecked")
-    private List<Task> getTimestampTasks(Session session, int timestampRecordsLimit) {
-        return session.createQuery(getTaskQueueQuery()).setMaxResults(timestampRecordsLimit).list();
+    /**
+     * Returns the next page of time-stamping tasks in message record order. The pending message records
+     * are covered by a partial index, so the page is read without scanning the log records.
+     * @param session the Hibernate session
+     * @param afterTaskId the last message record of the previous page, 0 for the first page
+     * @param timestampRecordsLimit the maximum number of tasks returned
+     * @return the time-stamping tasks
+     */
+    static List<Task> getTimestampTasks(Session session, long afterTaskId, int timestampRecordsLimit) {
+        return getTimestampTasks(session, afterTaskId, Long.MAX_VALUE, timestampRecordsLimit);
     }
 
+    /**
+     * Returns the next page of time-stamping tasks in message record order, up to the given message record.
+     * @param session the Hibernate session
+     * @param afterTaskId the last message record of the previous page, 0 for the first page
+     * @param lastTaskId the last message record that may be returned
+     * @param timestampRecordsLimit the maximum number of tasks returned
+     * @return the time-stamping tasks
+     */
     @SuppressWarnings("unchecked")
-    private static Long getTasksQueueSize(Session session) {
-        return (Long) session.createQuery(getTaskQueueSizeQuery()).uniqueResult();
+    static List<Task> getTimestampTasks(Session session, long afterTaskId, long lastTaskId,
+            int timestampRecordsLimit) {
+        if (timestampRecordsLimit <= 0) {
+            return new ArrayList<>();
+        }
+
+        return session.createQuery(getTaskQueueQuery())
+                .setParameter("afterTaskId", afterTaskId)
+                .setParameter("lastTaskId", lastTaskId)
+                .setMaxResults(timestampRecordsLimit)
+                .list();
+    }
+
+    /**
+     * Checks the existence of time-stamping tasks without counting them.
+     * @param session the Hibernate session
+     * @return true if there are message records waiting to be time-stamped
+     */
+    static boolean hasTimestampTasks(Session session) {
+        return !session.createQuery(getTaskQueueExistsQuery()).setMaxResults(1).list().isEmpty();
     }
 
     static String getTaskQueueQuery() {
         return "select new " + Task.class.getName() + "(m.id, m.signatureHash) "
-                + "from MessageRecord m where m.signatureHash is not null";
+                + "from MessageRecord m where m.signatureHash is not null "
+                + "and m.id > :afterTaskId and m.id <= :lastTaskId order by m.id";
     }
 
-    private static String getTaskQueueSizeQuery() {
-        return "select COUNT(*) from MessageRecord m where m.signatureHash is not null";
+    private static String getTaskQueueExistsQuery() {
+        return "select m.id from MessageRecord m where m.signatureHash is not null";
     }
 }
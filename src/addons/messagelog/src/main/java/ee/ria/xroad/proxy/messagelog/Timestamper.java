@@ -51,6 +51,9 @@ public class Timestamper extends UntypedAbstractActor {
         private final Long[] messageRecords;
         private final String[] signatureHashes;
 
+        // Index of the time-stamping service the task is sent to first
+        private int preferredTsp;
+
         TimestampTask(MessageRecord messageRecord) {
             this.messageRecords = new Long[] {messageRecord.getId()};
             this.signatureHashes = new String[] {messageRecord.getSignatureHash()};
@@ -75,6 +78,15 @@ public class Timestamper extends UntypedAbstractActor {
         private final Exception cause;
     }
 
+    /**
+     * Result of a task that was not sent to the time-stamping services, because the global configuration
+     * is not valid. The task is not a failure of the time-stamping services and is retried later.
+     */
+    @Data
+    static final class TimestampSkipped implements TimestampResult, Serializable {
+        private final Long[] messageRecords;
+    }
+
     @Override
     public void onReceive(Object message) throws Exception {
         log.trace("onReceive({})", message.getClass());
@@ -92,6 +104,11 @@ public class Timestamper extends UntypedAbstractActor {
 
     private void handleTimestampTask(TimestampTask message) {
         if (!GlobalConf.isValid()) {
+            log.warn("Global configuration is expired, skipping time-stamping");
+
+            // Reply so that the task queue does not wait for the result of the task
+            getSender().tell(new TimestampSkipped(message.getMessageRecords()), getSelf());
+
             return;
         }
 
@@ -31,7 +31,9 @@ import akka.actor.UntypedAbstractActor;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -92,7 +94,7 @@ public class TimestamperWorker extends UntypedAbstractActor {
         AbstractTimestampRequest tsRequest =
                 createTimestampRequest(logRecords, signatureHashes);
 
-        Timestamper.TimestampResult result = tsRequest.execute(tspUrls);
+        Timestamper.TimestampResult result = tsRequest.execute(getTspUrls(message.getPreferredTsp()));
 
         log.info("Timestamped {} message records in {} ms",
                 message.getMessageRecords().length,
@@ -101,6 +103,17 @@ public class TimestamperWorker extends UntypedAbstractActor {
         getSender().tell(result, ActorRef.noSender());
     }
 
+    private List<String> getTspUrls(int preferredTsp) {
+        if (preferredTsp % tspUrls.size() == 0) {
+            return tspUrls;
+        }
+
+        List<String> rotated = new ArrayList<>(tspUrls);
+        Collections.rotate(rotated, -(preferredTsp % tspUrls.size()));
+
+        return rotated;
+    }
+
     private AbstractTimestampRequest createTimestampRequest(Long[] logRecords,
             String[] signatureHashes) throws Exception {
         if (logRecords.length == 1) {
@@ -0,0 +1,92 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.messagelog;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps track of the recent response times of the timestamping services. The response time percentiles
+ * are used for deciding when a slow time-stamp request is hedged by sending it to the next timestamping
+ * service as well.
+ */
+final class TspResponseTimes {
+
+    static final int WINDOW_SIZE = 100;
+    static final int MIN_SAMPLES = 10;
+
+    private static final int PERCENT = 100;
+
+    private static final Map<String, TspResponseTimes> RESPONSE_TIMES = new ConcurrentHashMap<>();
+
+    private final long[] samples = new long[WINDOW_SIZE];
+    private int count;
+    private int next;
+
+    TspResponseTimes() {
+    }
+
+    /**
+     * Records a response time of the given timestamping service.
+     * @param tspUrl the URL of the timestamping service
+     * @param millis the response time in milliseconds
+     */
+    static void record(String tspUrl, long millis) {
+        RESPONSE_TIMES.computeIfAbsent(tspUrl, url -> new TspResponseTimes()).add(millis);
+    }
+
+    /**
+     * @param tspUrl the URL of the timestamping service
+     * @param percentile the percentile (1-99)
+     * @param defaultMillis the value returned if there are not enough response times recorded
+     * @return the given percentile of the recent response times of the timestamping service in milliseconds
+     */
+    static long getPercentile(String tspUrl, int percentile, long defaultMillis) {
+        TspResponseTimes responseTimes = RESPONSE_TIMES.get(tspUrl);
+
+        return responseTimes != null ? responseTimes.percentile(percentile, defaultMillis) : defaultMillis;
+    }
+
+    synchronized void add(long millis) {
+        samples[next] = millis;
+        next = (next + 1) % WINDOW_SIZE;
+
+        if (count < WINDOW_SIZE) {
+            count++;
+        }
+    }
+
+    synchronized long percentile(int percentile, long defaultMillis) {
+        if (count < MIN_SAMPLES) {
+            return defaultMillis;
+        }
+
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+
+        return sorted[Math.min(count - 1, count * percentile / PERCENT)];
+    }
+}
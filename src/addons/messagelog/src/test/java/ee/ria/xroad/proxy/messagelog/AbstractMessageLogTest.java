@@ -29,6 +29,7 @@ import ee.ria.xroad.common.messagelog.AbstractLogManager;
 import ee.ria.xroad.common.messagelog.MessageLogProperties;
 import ee.ria.xroad.common.messagelog.MessageRecord;
 import ee.ria.xroad.common.messagelog.SoapLogMessage;
+import ee.ria.xroad.common.messagelog.TimestampMessage;
 import ee.ria.xroad.common.messagelog.TimestampRecord;
 import ee.ria.xroad.common.signature.SignatureData;
 import ee.ria.xroad.common.util.JobManager;
@@ -38,7 +39,9 @@ import akka.actor.ActorSystem;
 import akka.actor.DeadLetter;
 import akka.actor.Props;
 import akka.actor.UntypedAbstractActor;
+import akka.pattern.Patterns;
 import akka.testkit.TestActorRef;
+import akka.util.Timeout;
 import com.typesafe.config.ConfigFactory;
 import com.typesafe.config.ConfigRenderOptions;
 import com.typesafe.config.ConfigValueFactory;
@@ -49,6 +52,7 @@ import scala.concurrent.duration.Duration;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
@@ -57,6 +61,9 @@ import static org.junit.Assert.assertTrue;
 @Slf4j
 abstract class AbstractMessageLogTest {
 
+    // Longer than the time-stamping timeout of the log manager
+    private static final Timeout ASK_TIMEOUT = new Timeout(Duration.create(40, TimeUnit.SECONDS));
+
     JobManager jobManager;
     ActorSystem actorSystem;
     LogManager logManager;
@@ -154,16 +161,26 @@ abstract class AbstractMessageLogTest {
     }
 
     protected void log(SoapMessageImpl message, SignatureData signature) throws Exception {
-        logManager.log(new SoapLogMessage(message, signature, true));
+        ask(new SoapLogMessage(message, signature, true));
     }
 
     protected void log(SoapMessageImpl message, SignatureData signature, String xRequestId)
             throws Exception {
-        logManager.log(new SoapLogMessage(message, signature, true, xRequestId));
+        ask(new SoapLogMessage(message, signature, true, xRequestId));
     }
 
     TimestampRecord timestamp(MessageRecord record) throws Exception {
-        return logManager.timestamp(record.getId());
+        return (TimestampRecord) ask(new TimestampMessage(record.getId()));
+    }
+
+    private Object ask(Object message) throws Exception {
+        Object result = Await.result(Patterns.ask(logManagerRef, message, ASK_TIMEOUT), ASK_TIMEOUT.duration());
+
+        if (result instanceof Exception) {
+            throw (Exception) result;
+        }
+
+        return result;
     }
 
     void startTimestamping() {
@@ -0,0 +1,162 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.messagelog;
+
+import ee.ria.xroad.common.messagelog.AbstractLogManager;
+import ee.ria.xroad.common.messagelog.MessageLogProperties;
+import ee.ria.xroad.common.messagelog.SoapLogMessage;
+import ee.ria.xroad.common.util.JobManager;
+
+import akka.pattern.Patterns;
+import akka.util.Timeout;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import scala.concurrent.Await;
+import scala.concurrent.Future;
+import scala.concurrent.duration.Duration;
+import scala.concurrent.duration.FiniteDuration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static ee.ria.xroad.proxy.messagelog.TestUtil.assertTaskQueueSize;
+import static ee.ria.xroad.proxy.messagelog.TestUtil.cleanUpDatabase;
+import static ee.ria.xroad.proxy.messagelog.TestUtil.createMessage;
+import static ee.ria.xroad.proxy.messagelog.TestUtil.createSignature;
+import static ee.ria.xroad.proxy.messagelog.TestUtil.initForTest;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Tests group commit of message records.
+ */
+public class GroupCommitTest extends AbstractMessageLogTest {
+
+    private static final Timeout TIMEOUT = new Timeout(Duration.create(10, TimeUnit.SECONDS));
+
+    /**
+     * Set up configuration.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Before
+    public void setUp() throws Exception {
+        System.setProperty(MessageLogProperties.GROUP_COMMIT_ENABLED, "true");
+        System.setProperty(MessageLogProperties.GROUP_COMMIT_MAX_BATCH_SIZE, "3");
+        System.setProperty(MessageLogProperties.GROUP_COMMIT_MAX_DELAY, "50");
+        System.setProperty(MessageLogProperties.ACCEPTABLE_TIMESTAMP_FAILURE_PERIOD, "1800");
+        System.setProperty(MessageLogProperties.ARCHIVE_INTERVAL, "0 0 0 1 1 ? 2099");
+        System.setProperty(MessageLogProperties.CLEAN_INTERVAL, "0 0 0 1 1 ? 2099");
+
+        initForTest();
+        testSetUp();
+        initLogManager();
+    }
+
+    /**
+     * Cleanup test environment for other tests.
+     * @throws Exception in case of any unexpected errors
+     */
+    @After
+    public void tearDown() throws Exception {
+        testTearDown();
+        cleanUpDatabase();
+
+        System.clearProperty(MessageLogProperties.GROUP_COMMIT_ENABLED);
+        System.clearProperty(MessageLogProperties.GROUP_COMMIT_MAX_BATCH_SIZE);
+        System.clearProperty(MessageLogProperties.GROUP_COMMIT_MAX_DELAY);
+    }
+
+    @Override
+    protected Class<? extends AbstractLogManager> getLogManagerImpl() throws Exception {
+        return GroupCommitLogManager.class;
+    }
+
+    /**
+     * Logs a full batch of messages, expects them to be saved in one commit.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test
+    public void fullBatchIsCommittedAtOnce() throws Exception {
+        List<Future<Object>> replies = new ArrayList<>();
+
+        for (int i = 0; i < 3; i++) {
+            replies.add(askLog());
+        }
+
+        for (Future<Object> reply : replies) {
+            assertFalse(Await.result(reply, TIMEOUT.duration()) instanceof Exception);
+        }
+
+        assertTaskQueueSize(3);
+
+        GroupCommitBuffer.Statistics statistics = getStatistics();
+        assertEquals(1, statistics.getBatchCount());
+        assertEquals(3, statistics.getRecordCount());
+        assertEquals(3, statistics.getLargestBatchSize());
+    }
+
+    /**
+     * Logs less messages than fits in a batch, expects them to be saved after the maximum delay.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test
+    public void partialBatchIsCommittedAfterDelay() throws Exception {
+        Future<Object> first = askLog();
+        Future<Object> second = askLog();
+
+        assertFalse(Await.result(first, TIMEOUT.duration()) instanceof Exception);
+        assertFalse(Await.result(second, TIMEOUT.duration()) instanceof Exception);
+
+        assertTaskQueueSize(2);
+
+        GroupCommitBuffer.Statistics statistics = getStatistics();
+        assertEquals(1, statistics.getBatchCount());
+        assertEquals(2, statistics.getLargestBatchSize());
+    }
+
+    private Future<Object> askLog() throws Exception {
+        return Patterns.ask(getLogManagerRef(), new SoapLogMessage(createMessage(), createSignature(), true),
+                TIMEOUT);
+    }
+
+    private GroupCommitBuffer.Statistics getStatistics() throws Exception {
+        return (GroupCommitBuffer.Statistics) Await.result(
+                Patterns.ask(getLogManagerRef(), LogManager.GROUP_COMMIT_STATISTICS, TIMEOUT), TIMEOUT.duration());
+    }
+
+    private static class GroupCommitLogManager extends LogManager {
+
+        GroupCommitLogManager(JobManager jobManager) throws Exception {
+            super(jobManager);
+        }
+
+        @Override
+        protected FiniteDuration getTimestamperJobInitialDelay() {
+            return Duration.create(1, TimeUnit.MINUTES);
+        }
+    }
+}
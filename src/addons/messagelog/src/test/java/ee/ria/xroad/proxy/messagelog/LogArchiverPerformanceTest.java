@@ -0,0 +1,153 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.messagelog;
+
+import ee.ria.xroad.common.message.SoapMessageImpl;
+import ee.ria.xroad.common.messagelog.MessageLogProperties;
+import ee.ria.xroad.common.messagelog.MessageRecord;
+import ee.ria.xroad.common.messagelog.TimestampRecord;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import akka.testkit.TestActorRef;
+import com.typesafe.config.ConfigFactory;
+import com.typesafe.config.ConfigValueFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FileUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import static ee.ria.xroad.common.util.CryptoUtils.encodeBase64;
+import static ee.ria.xroad.proxy.messagelog.TestUtil.cleanUpDatabase;
+import static ee.ria.xroad.proxy.messagelog.TestUtil.createMessage;
+import static ee.ria.xroad.proxy.messagelog.TestUtil.createSignature;
+import static ee.ria.xroad.proxy.messagelog.TestUtil.initForTest;
+
+/**
+ * Log archiver performance test program. Archives the same backlog of time-stamped records
+ * with different numbers of archive workers and reports the records archived per second.
+ */
+@Slf4j
+public final class LogArchiverPerformanceTest {
+
+    // numbers of archive workers to compare
+    private static final int[] WORKERS = {1, 2, 4, 8};
+
+    // number of time-stamp records in the backlog
+    private static final int NUM_TIMESTAMPS = 200;
+
+    // number of message records per time-stamp record
+    private static final int NUM_MESSAGES_PER_TIMESTAMP = 50;
+
+    private static final Path ARCHIVE_PATH = Paths.get("build/archive-perf");
+
+    private LogArchiverPerformanceTest() {
+    }
+
+    /**
+     * Main program access point.
+     * @param args command-line arguments
+     * @throws Exception in case of any errors
+     */
+    public static void main(String[] args) throws Exception {
+        log.info("Starting LogArchiver performance test...");
+
+        initForTest();
+        System.setProperty(MessageLogProperties.ARCHIVE_TRANSFER_COMMAND, "");
+
+        ActorSystem actorSystem = ActorSystem.create("Proxy", ConfigFactory.load()
+                .getConfig("proxy")
+                .withValue("akka.actor.provider", ConfigValueFactory.fromAnyRef("local")));
+
+        List<String> results = new ArrayList<>();
+
+        try {
+            for (int workers : WORKERS) {
+                results.add(run(actorSystem, workers));
+            }
+        } finally {
+            actorSystem.terminate();
+        }
+
+        results.forEach(result -> log.info("{}", result));
+    }
+
+    private static String run(ActorSystem actorSystem, int workers) throws Exception {
+        cleanUpDatabase();
+        FileUtils.deleteDirectory(ARCHIVE_PATH.toFile());
+        Files.createDirectories(ARCHIVE_PATH);
+
+        int records = createBacklog();
+
+        System.setProperty(MessageLogProperties.ARCHIVE_WORKERS, String.valueOf(workers));
+
+        // The calling thread dispatcher of the test actor makes the archiving synchronous
+        TestActorRef<LogArchiver> archiver = TestActorRef.create(actorSystem,
+                Props.create(LogArchiver.class, ARCHIVE_PATH, ARCHIVE_PATH));
+
+        long start = System.nanoTime();
+        archiver.tell(LogArchiver.START_ARCHIVING, ActorRef.noSender());
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        actorSystem.stop(archiver);
+
+        return String.format("workers: %d, records: %d, time: %.2f s, records/s: %.0f", workers, records, seconds,
+                records / seconds);
+    }
+
+    private static int createBacklog() throws Exception {
+        SoapMessageImpl message = createMessage();
+        String signature = createSignature().getSignatureXml();
+        String timestamp = encodeBase64(new byte[1024]);
+
+        for (int i = 0; i < NUM_TIMESTAMPS; i++) {
+            List<MessageRecord> messageRecords = new ArrayList<>();
+
+            for (int j = 0; j < NUM_MESSAGES_PER_TIMESTAMP; j++) {
+                MessageRecord record = new MessageRecord(message, signature, message.getClient(), null);
+                record.setTime(System.currentTimeMillis());
+                messageRecords.add(record);
+            }
+
+            LogRecordManager.saveMessageRecords(messageRecords);
+
+            TimestampRecord timestampRecord = new TimestampRecord();
+            timestampRecord.setTime(System.currentTimeMillis());
+            timestampRecord.setTimestamp(timestamp);
+            timestampRecord.setHashChainResult("");
+
+            LogRecordManager.saveTimestampRecord(timestampRecord,
+                    messageRecords.stream().map(MessageRecord::getId).toArray(Long[]::new),
+                    new String[messageRecords.size()]);
+        }
+
+        return NUM_TIMESTAMPS * (NUM_MESSAGES_PER_TIMESTAMP + 1);
+    }
+}
@@ -0,0 +1,70 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.messagelog;
+
+import ee.ria.xroad.proxy.messagelog.LogArchiver.ArchivePartition;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests splitting the records to be archived between parallel workers.
+ */
+public class LogArchiverTest {
+
+    /**
+     * Creates a partition per worker, expects the chain of each partition to be its index.
+     */
+    @Test
+    public void createPartitionPerWorker() {
+        List<ArchivePartition> partitions = LogArchiver.createPartitions(109, 4);
+
+        assertEquals(4, partitions.size());
+
+        for (int i = 0; i < partitions.size(); i++) {
+            assertEquals(i, partitions.get(i).getChain());
+            assertEquals(4, partitions.get(i).getPartitions());
+            assertEquals(109, partitions.get(i).getMaxTimestampId());
+        }
+    }
+
+    /**
+     * Creates partitions with different maximum timestamp ids, expects the partitions to stay the same
+     * so that the records are archived to the same chains on every run.
+     */
+    @Test
+    public void partitionsDoNotDependOnMaxTimestampId() {
+        List<ArchivePartition> first = LogArchiver.createPartitions(10, 3);
+        List<ArchivePartition> second = LogArchiver.createPartitions(1000, 3);
+
+        for (int i = 0; i < first.size(); i++) {
+            assertEquals(first.get(i).getChain(), second.get(i).getChain());
+            assertEquals(first.get(i).getPartitions(), second.get(i).getPartitions());
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.messagelog;
+
+import ee.ria.xroad.common.CommonMessages;
+import ee.ria.xroad.common.messagelog.AbstractLogManager;
+import ee.ria.xroad.common.messagelog.FindByQueryId;
+import ee.ria.xroad.common.messagelog.MessageLogProperties;
+import ee.ria.xroad.common.messagelog.MessageRecord;
+import ee.ria.xroad.common.messagelog.SoapLogMessage;
+import ee.ria.xroad.common.util.JobManager;
+
+import akka.pattern.Patterns;
+import akka.util.Timeout;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import scala.concurrent.Await;
+import scala.concurrent.Future;
+import scala.concurrent.duration.Duration;
+import scala.concurrent.duration.FiniteDuration;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static ee.ria.xroad.proxy.messagelog.TestUtil.assertTaskQueueSize;
+import static ee.ria.xroad.proxy.messagelog.TestUtil.cleanUpDatabase;
+import static ee.ria.xroad.proxy.messagelog.TestUtil.createMessage;
+import static ee.ria.xroad.proxy.messagelog.TestUtil.createSignature;
+import static ee.ria.xroad.proxy.messagelog.TestUtil.initForTest;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests saving message records with log writer shards and finding them with log readers. The log writers
+ * save the message records with group commit.
+ */
+public class LogWriterShardTest extends AbstractMessageLogTest {
+
+    private static final Timeout TIMEOUT = new Timeout(Duration.create(10, TimeUnit.SECONDS));
+
+    /**
+     * Set up configuration.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Before
+    public void setUp() throws Exception {
+        System.setProperty(MessageLogProperties.LOG_WRITER_SHARDS, "2");
+        System.setProperty(MessageLogProperties.LOG_READERS, "2");
+        System.setProperty(MessageLogProperties.GROUP_COMMIT_ENABLED, "true");
+        System.setProperty(MessageLogProperties.GROUP_COMMIT_MAX_DELAY, "50");
+        System.setProperty(MessageLogProperties.ACCEPTABLE_TIMESTAMP_FAILURE_PERIOD, "1800");
+        System.setProperty(MessageLogProperties.ARCHIVE_INTERVAL, "0 0 0 1 1 ? 2099");
+        System.setProperty(MessageLogProperties.CLEAN_INTERVAL, "0 0 0 1 1 ? 2099");
+
+        initForTest();
+        testSetUp();
+        initLogManager();
+    }
+
+    /**
+     * Cleanup test environment for other tests.
+     * @throws Exception in case of any unexpected errors
+     */
+    @After
+    public void tearDown() throws Exception {
+        testTearDown();
+        cleanUpDatabase();
+
+        System.clearProperty(MessageLogProperties.LOG_WRITER_SHARDS);
+        System.clearProperty(MessageLogProperties.LOG_READERS);
+        System.clearProperty(MessageLogProperties.GROUP_COMMIT_ENABLED);
+        System.clearProperty(MessageLogProperties.GROUP_COMMIT_MAX_DELAY);
+    }
+
+    @Override
+    protected Class<? extends AbstractLogManager> getLogManagerImpl() throws Exception {
+        return ShardedLogManager.class;
+    }
+
+    /**
+     * Logs messages of several queries through the shards, expects all of them to be saved and found.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test
+    public void messagesAreSavedByShards() throws Exception {
+        List<Future<Object>> replies = new ArrayList<>();
+
+        for (int i = 0; i < 6; i++) {
+            replies.add(Patterns.ask(getLogManagerRef(),
+                    new SoapLogMessage(createMessage("query-" + i), createSignature(), true), TIMEOUT));
+        }
+
+        for (Future<Object> reply : replies) {
+            assertFalse(Await.result(reply, TIMEOUT.duration()) instanceof Exception);
+        }
+
+        assertTaskQueueSize(6);
+
+        Object found = Await.result(Patterns.ask(getLogManagerRef(),
+                new FindByQueryId("query-3", new Date(0), new Date()), TIMEOUT), TIMEOUT.duration());
+
+        assertTrue(found instanceof MessageRecord);
+        assertEquals("query-3", ((MessageRecord) found).getQueryId());
+
+        Map<?, ?> statistics = (Map<?, ?>) Await.result(Patterns.ask(getLogManagerRef(),
+                CommonMessages.MESSAGE_LOG_STATISTICS, TIMEOUT), TIMEOUT.duration());
+
+        assertEquals(Arrays.asList(0, 0), statistics.get("logWriterQueueDepths"));
+        assertEquals(2, ((List<?>) statistics.get("logWriterGroupCommits")).size());
+        assertFalse(statistics.containsKey("groupCommit"));
+    }
+
+    private static class ShardedLogManager extends LogManager {
+
+        ShardedLogManager(JobManager jobManager) throws Exception {
+            super(jobManager);
+        }
+
+        @Override
+        protected FiniteDuration getTimestamperJobInitialDelay() {
+            return Duration.create(1, TimeUnit.MINUTES);
+        }
+    }
+}
@@ -26,6 +26,8 @@ package ee.ria.xroad.proxy.messagelog;
 
 import ee.ria.xroad.common.CodedException;
 import ee.ria.xroad.common.ExpectedCodedException;
+import ee.ria.xroad.common.conf.globalconf.EmptyGlobalConf;
+import ee.ria.xroad.common.conf.globalconf.GlobalConf;
 import ee.ria.xroad.common.conf.serverconf.ServerConf;
 import ee.ria.xroad.common.message.SoapMessageImpl;
 import ee.ria.xroad.common.messagelog.AbstractLogManager;
@@ -38,6 +40,7 @@ import ee.ria.xroad.common.messagelog.archive.DigestEntry;
 import ee.ria.xroad.common.signature.SignatureData;
 import ee.ria.xroad.common.util.JobManager;
 import ee.ria.xroad.proxy.messagelog.Timestamper.TimestampFailed;
+import ee.ria.xroad.proxy.messagelog.Timestamper.TimestampSkipped;
 import ee.ria.xroad.proxy.messagelog.Timestamper.TimestampSucceeded;
 
 import akka.actor.Props;
@@ -62,6 +65,7 @@ import java.io.FileFilter;
 import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
@@ -72,8 +76,10 @@ import static ee.ria.xroad.proxy.messagelog.TestUtil.assertTaskQueueSize;
 import static ee.ria.xroad.proxy.messagelog.TestUtil.cleanUpDatabase;
 import static ee.ria.xroad.proxy.messagelog.TestUtil.createMessage;
 import static ee.ria.xroad.proxy.messagelog.TestUtil.createSignature;
+import static ee.ria.xroad.proxy.messagelog.TestUtil.getGlobalConf;
 import static ee.ria.xroad.proxy.messagelog.TestUtil.initForTest;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
@@ -172,6 +178,40 @@ public class MessageLogTest extends AbstractMessageLogTest {
         log.info("dead letters: " + getDeadLetters());
     }
 
+    /**
+     * Logs 3 messages and reads the time-stamping task queue page by page.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test
+    public void readTaskQueueInPages() throws Exception {
+        log.trace("readTaskQueueInPages()");
+
+        assertFalse(doInTransaction(TaskQueue::hasTimestampTasks));
+
+        log(createMessage(), createSignature());
+        log(createMessage(), createSignature());
+        log(createMessage(), createSignature());
+
+        assertTrue(doInTransaction(TaskQueue::hasTimestampTasks));
+
+        List<Task> firstPage = doInTransaction(session -> TaskQueue.getTimestampTasks(session, 0, 2));
+        assertEquals(2, firstPage.size());
+        assertTrue(firstPage.get(0).getMessageRecordNo() < firstPage.get(1).getMessageRecordNo());
+
+        long lastTaskId = firstPage.get(1).getMessageRecordNo();
+        List<Task> secondPage = doInTransaction(session -> TaskQueue.getTimestampTasks(session, lastTaskId, 2));
+        assertEquals(1, secondPage.size());
+        assertTrue(secondPage.get(0).getMessageRecordNo() > lastTaskId);
+
+        long lastTaskIdOfAll = secondPage.get(0).getMessageRecordNo();
+        assertTrue(doInTransaction(session -> TaskQueue.getTimestampTasks(session, lastTaskIdOfAll, 2)).isEmpty());
+
+        List<Task> failedRange = doInTransaction(session -> TaskQueue.getTimestampTasks(session,
+                firstPage.get(0).getMessageRecordNo(), lastTaskId, Integer.MAX_VALUE));
+        assertEquals(1, failedRange.size());
+        assertEquals(lastTaskId, failedRange.get(0).getMessageRecordNo().longValue());
+    }
+
     /**
      * Log message with xRequestId
      * @throws Exception in case of any unexpected errors
@@ -284,6 +324,47 @@ public class MessageLogTest extends AbstractMessageLogTest {
         assertArchiveHashChain();
     }
 
+    /**
+     * Logs and time-stamps 2 messages separately, then archives them with 2 workers. Expects all records to be
+     * archived and each time-stamp record to be archived to the linking information chain of its partition.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test
+    public void logTimestampAndArchiveInParallel() throws Exception {
+        log.trace("logTimestampAndArchiveInParallel()");
+
+        System.setProperty(MessageLogProperties.ARCHIVE_WORKERS, "2");
+
+        try {
+            for (int i = 0; i < 2; i++) {
+                log(createMessage(), createSignature());
+
+                startTimestamping();
+                waitForTimestampSuccessful();
+                assertTrue(TestTaskQueue.waitForTimestampSaved());
+                TestTaskQueue.initTimestampSavedLatch();
+            }
+
+            assertEquals(0, getNumberOfRecords(true));
+
+            startArchiving();
+
+            for (int i = 0; i < 50 && getNumberOfRecords(false) > 0; i++) {
+                Thread.sleep(100);
+            }
+
+            assertEquals(4, getNumberOfRecords(true));
+
+            // Each time-stamp record is archived to the chain given by its id modulo the number of workers
+            assertEquals(doInTransaction(session -> session.createQuery(
+                    "select count(distinct mod(t.id, 2)) from TimestampRecord t", Long.class).getSingleResult()),
+                    doInTransaction(session -> session.createQuery(
+                    "select count(distinct d.chain) from DigestEntry d", Long.class).getSingleResult()));
+        } finally {
+            System.clearProperty(MessageLogProperties.ARCHIVE_WORKERS);
+        }
+    }
+
     /**
      * Logs 3 messages, time-stamping fails. Task queue must have 3 tasks. Logs 1 more message, task queue must
      * have 4 tasks.
@@ -309,6 +390,36 @@ public class MessageLogTest extends AbstractMessageLogTest {
         assertTaskQueueSize(4);
     }
 
+    /**
+     * Logs 3 messages while the global configuration is expired. Time-stamping is skipped without reporting a
+     * time-stamping failure and the records are time-stamped once the global configuration is valid again.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test
+    public void timestampingSkippedWithExpiredGlobalConf() throws Exception {
+        log.trace("timestampingSkippedWithExpiredGlobalConf()");
+
+        GlobalConf.reload(new ExpiredGlobalConf());
+
+        log(createMessage(), createSignature());
+        log(createMessage(), createSignature());
+        log(createMessage(), createSignature());
+        assertTaskQueueSize(3);
+
+        startTimestamping();
+
+        Object result = waitForMessageInTaskQueue();
+        assertTrue("Got " + result, result instanceof TimestampSkipped);
+        assertFalse(logManager.isTimestampFailed());
+        assertTaskQueueSize(3);
+
+        GlobalConf.reload(getGlobalConf());
+
+        startTimestamping();
+        waitForTimestampSuccessful();
+        assertTaskQueueSize(0);
+    }
+
     /**
      * Logs messages, time-stamping failed. After acceptable period no more messages are accepted.
      * @throws Exception in case of any unexpected errors
@@ -596,6 +707,13 @@ public class MessageLogTest extends AbstractMessageLogTest {
         });
     }
 
+    private static class ExpiredGlobalConf extends EmptyGlobalConf {
+        @Override
+        public boolean isValid() {
+            return false;
+        }
+    }
+
     private static class TestLogManager extends LogManager {
         // Countdownlatch for waiting for next timestamp record save.
         private static CountDownLatch setTimestampingStatusLatch = new CountDownLatch(1);
@@ -25,6 +25,7 @@
 package ee.ria.xroad.proxy.messagelog;
 
 import ee.ria.xroad.proxy.messagelog.Timestamper.TimestampFailed;
+import ee.ria.xroad.proxy.messagelog.Timestamper.TimestampSkipped;
 import ee.ria.xroad.proxy.messagelog.Timestamper.TimestampSucceeded;
 
 import lombok.extern.slf4j.Slf4j;
@@ -125,6 +126,18 @@ class TestTaskQueue extends TaskQueue {
         }
     }
 
+    @Override
+    protected void handleTimestampSkipped(TimestampSkipped message) {
+        log.info("handleTimestampSkipped");
+
+        try {
+            lastMessage = message;
+            super.handleTimestampSkipped(message);
+        } finally {
+            gate.countDown();
+        }
+    }
+
     @Override
     protected void handleStartTimestamping() {
         super.handleStartTimestamping();
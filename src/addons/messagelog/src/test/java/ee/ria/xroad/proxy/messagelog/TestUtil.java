@@ -154,10 +154,8 @@ final class TestUtil {
         return new SignatureData(signature, null, null);
     }
 
-    @SuppressWarnings("unchecked")
     static List<Task> getTaskQueue() throws Exception {
-        return doInTransaction(session -> session.createQuery(
-                TaskQueue.getTaskQueueQuery()).list());
+        return doInTransaction(session -> TaskQueue.getTimestampTasks(session, 0, Integer.MAX_VALUE));
     }
 
     static void assertTaskQueueSize(int expectedSize) throws Exception {
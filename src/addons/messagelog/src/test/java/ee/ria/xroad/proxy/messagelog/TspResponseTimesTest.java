@@ -0,0 +1,66 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.messagelog;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests the response time percentiles of the timestamping services.
+ */
+public class TspResponseTimesTest {
+
+    @Test
+    public void returnsDefaultUntilEnoughSamples() {
+        TspResponseTimes responseTimes = new TspResponseTimes();
+
+        for (int i = 1; i < TspResponseTimes.MIN_SAMPLES; i++) {
+            responseTimes.add(i);
+        }
+
+        assertEquals(1000, responseTimes.percentile(90, 1000));
+
+        responseTimes.add(TspResponseTimes.MIN_SAMPLES);
+
+        assertEquals(10, responseTimes.percentile(90, 1000));
+        assertEquals(6, responseTimes.percentile(50, 1000));
+    }
+
+    @Test
+    public void keepsOnlyRecentSamples() {
+        TspResponseTimes responseTimes = new TspResponseTimes();
+
+        for (int i = 0; i < TspResponseTimes.WINDOW_SIZE; i++) {
+            responseTimes.add(1000);
+        }
+
+        for (int i = 0; i < TspResponseTimes.WINDOW_SIZE; i++) {
+            responseTimes.add(i);
+        }
+
+        assertEquals(90, responseTimes.percentile(90, 0));
+    }
+}
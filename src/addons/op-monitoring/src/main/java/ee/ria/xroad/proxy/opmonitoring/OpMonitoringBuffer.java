@@ -30,13 +30,12 @@ import ee.ria.xroad.common.opmonitoring.OpMonitoringDaemonHttpClient;
 import ee.ria.xroad.common.opmonitoring.OpMonitoringData;
 import ee.ria.xroad.common.opmonitoring.OpMonitoringSystemProperties;
 import ee.ria.xroad.common.opmonitoring.StoreOpMonitoringDataRequest;
-import ee.ria.xroad.common.util.JsonUtils;
+import ee.ria.xroad.common.util.BoundedRingBuffer;
 import ee.ria.xroad.common.util.TimeUtils;
 
 import akka.actor.ActorRef;
 import akka.actor.Cancellable;
 import akka.actor.Props;
-import com.google.gson.Gson;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.IOUtils;
@@ -44,10 +43,10 @@ import org.apache.http.impl.client.CloseableHttpClient;
 import scala.concurrent.duration.FiniteDuration;
 
 import java.net.NetworkInterface;
-import java.util.HashSet;
-import java.util.LinkedHashMap;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.Map;
-import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 import static java.net.NetworkInterface.getNetworkInterfaces;
@@ -57,6 +56,12 @@ import static java.util.Collections.list;
  * Operational monitoring buffer. This buffer is used for gathering
  * operational data and for periodically sending the data to the operational
  * monitoring daemon (using OpMonitoringDaemonSender).
+ *
+ * The data is gathered in a ring buffer that the proxy threads store the records into
+ * directly (see {@link OpMonitoring#setRingBuffer}). The records are drained from the ring
+ * buffer in batches. Up to {@link OpMonitoringSystemProperties#getOpMonitorBufferMaxConcurrentBatches()}
+ * batches are in flight at a time, each one handled by its own sender actor and acknowledged
+ * separately. A batch that could not be sent is queued for sending again before any new records.
  */
 @Slf4j
 public class OpMonitoringBuffer extends AbstractOpMonitoringBuffer {
@@ -65,45 +70,39 @@ public class OpMonitoringBuffer extends AbstractOpMonitoringBuffer {
     private static final String NO_ADDRESS_FOUND = "No suitable IP address is bound to the network interface ";
     private static final String NO_INTERFACE_FOUND = "No non-loopback network interface found";
 
-    private static final long MAX_BUFFER_SIZE = OpMonitoringSystemProperties.getOpMonitorBufferSize();
+    private static final int MAX_BUFFER_SIZE = OpMonitoringSystemProperties.getOpMonitorBufferSize();
 
     private static final int MAX_RECORDS_IN_MESSAGE =
             OpMonitoringSystemProperties.getOpMonitorBufferMaxRecordsInMessage();
     private static final long SENDING_INTERVAL_SECONDS =
             OpMonitoringSystemProperties.getOpMonitorBufferSendingIntervalSeconds();
 
+    private static final int MAX_CONCURRENT_BATCHES = Math.max(1,
+            OpMonitoringSystemProperties.getOpMonitorBufferMaxConcurrentBatches());
+
     private static final int CLIENT_CONNECTION_TIMEOUT_MILLISECONDS = TimeUtils.secondsToMillis(
             OpMonitoringSystemProperties.getOpMonitorBufferConnectionTimeoutSeconds());
 
     private static final int CLIENT_SOCKET_TIMEOUT_MILLISECONDS = TimeUtils.secondsToMillis(
             OpMonitoringSystemProperties.getOpMonitorBufferSocketTimeoutSeconds());
 
-    private static final Gson GSON = JsonUtils.getSerializer();
-
     private Cancellable tick;
 
-    final Map<Long, OpMonitoringData> buffer =
-            new LinkedHashMap<Long, OpMonitoringData>() {
-                @Override
-                protected boolean removeEldestEntry(Map.Entry eldest) {
-                    boolean overflow = size() > MAX_BUFFER_SIZE;
+    final BoundedRingBuffer<OpMonitoringData> buffer;
 
-                    if (overflow) {
-                        log.warn("Operational monitoring buffer overflow, removing eldest record: {}", eldest.getKey());
-                    }
+    /** The senders that are not sending a batch at the moment. */
+    final Deque<ActorRef> idleSenders = new ArrayDeque<>();
 
-                    return overflow;
-                }
-            };
+    /** The batches being sent, by the sender actor sending them. */
+    final Map<ActorRef, StoreOpMonitoringDataRequest> inFlight = new HashMap<>();
 
-    private long bufferIndex = 0;
+    /** The batches that failed to be sent, waiting to be sent again. */
+    final Deque<StoreOpMonitoringDataRequest> retryQueue = new ArrayDeque<>();
 
-    private final Set<Long> processedBufferIndices = new HashSet<>();
+    private long reportedOverflowCount;
 
     private final CloseableHttpClient httpClient;
 
-    private final ActorRef sender;
-
     private static String ipAddress;
 
     /**
@@ -114,90 +113,126 @@ public class OpMonitoringBuffer extends AbstractOpMonitoringBuffer {
         if (ignoreOpMonitoringData()) {
             log.info("Operational monitoring buffer is switched off, no operational monitoring data is stored");
 
+            buffer = null;
             httpClient = null;
-            sender = null;
         } else {
+            buffer = new BoundedRingBuffer<>(MAX_BUFFER_SIZE);
             httpClient = createHttpClient();
-            sender = createSender();
+
+            for (int i = 0; i < MAX_CONCURRENT_BATCHES; i++) {
+                idleSenders.add(createSender(i));
+            }
         }
     }
 
     CloseableHttpClient createHttpClient() throws Exception {
-        return OpMonitoringDaemonHttpClient.createHttpClient(ServerConf.getSSLKey(), 1, 1,
-                CLIENT_CONNECTION_TIMEOUT_MILLISECONDS, CLIENT_SOCKET_TIMEOUT_MILLISECONDS);
+        return OpMonitoringDaemonHttpClient.createHttpClient(ServerConf.getSSLKey(), MAX_CONCURRENT_BATCHES,
+                MAX_CONCURRENT_BATCHES, CLIENT_CONNECTION_TIMEOUT_MILLISECONDS, CLIENT_SOCKET_TIMEOUT_MILLISECONDS);
     }
 
-    ActorRef createSender() {
+    ActorRef createSender(int number) {
         return getContext().system().actorOf(Props.create(OpMonitoringDaemonSender.class, httpClient),
-                OP_MONITORING_DAEMON_SENDER);
+                number == 0 ? OP_MONITORING_DAEMON_SENDER : OP_MONITORING_DAEMON_SENDER + "-" + number);
     }
 
+    /**
+     * Stores data received as a message, before the ring buffer has been taken into use.
+     */
     @Override
     protected void store(OpMonitoringData data) throws Exception {
         if (ignoreOpMonitoringData()) {
             return;
         }
 
-        data.setSecurityServerInternalIp(getIpAddress());
-
-        buffer.put(getNextBufferIndex(), data);
+        buffer.offer(data);
 
         send();
     }
 
     @Override
     protected void send() throws Exception {
-        if (!canSend()) {
+        if (ignoreOpMonitoringData()) {
             return;
         }
 
-        String json = prepareMonitoringMessage();
+        while (!idleSenders.isEmpty()) {
+            StoreOpMonitoringDataRequest request = retryQueue.isEmpty() ? drainBuffer() : retryQueue.poll();
 
-        sender.tell(json, getSelf());
-    }
+            if (request == null) {
+                return;
+            }
 
-    private boolean canSend() {
-        return !buffer.isEmpty() && processedBufferIndices.isEmpty();
+            ActorRef sender = idleSenders.poll();
+
+            inFlight.put(sender, request);
+            sender.tell(request, getSelf());
+        }
     }
 
-    private String prepareMonitoringMessage() {
+    StoreOpMonitoringDataRequest drainBuffer() {
+        reportOverflow();
+
         StoreOpMonitoringDataRequest request = new StoreOpMonitoringDataRequest();
+        String internalIp = getIpAddress();
 
-        for (Map.Entry<Long, OpMonitoringData> entry : buffer.entrySet()) {
-            processedBufferIndices.add(entry.getKey());
-            request.addRecord(entry.getValue().getData());
+        OpMonitoring.ringBufferDraining();
 
-            if (request.getRecords().size() == MAX_RECORDS_IN_MESSAGE) {
-                break;
-            }
-        }
+        buffer.drain(data -> {
+            data.setSecurityServerInternalIp(internalIp);
+            request.addRecord(data.getData());
+        }, MAX_RECORDS_IN_MESSAGE);
 
         log.debug("Op monitoring buffer records count: {}", buffer.size());
 
-        return GSON.toJson(request);
+        return request.getRecords().isEmpty() ? null : request;
+    }
+
+    private void reportOverflow() {
+        long overflowCount = buffer.getOverflowCount();
+
+        if (overflowCount > reportedOverflowCount) {
+            log.warn("Operational monitoring buffer overflow, {} records discarded",
+                    overflowCount - reportedOverflowCount);
+
+            reportedOverflowCount = overflowCount;
+        }
     }
 
     @Override
     protected void sendingSuccess() throws Exception {
-        processedBufferIndices.forEach(buffer::remove);
-        processedBufferIndices.clear();
+        if (completeBatch() == null) {
+            return;
+        }
 
-        if (canSend()) {
+        if (!retryQueue.isEmpty() || !buffer.isEmpty()) {
             send();
         }
     }
 
     @Override
     protected void sendingFailure() throws Exception {
-        processedBufferIndices.clear();
+        StoreOpMonitoringDataRequest request = completeBatch();
 
-        // Do not worry, scheduled sending retries..
+        if (request != null) {
+            retryQueue.addFirst(request);
+        }
+
+        // Do not worry, scheduled sending retries the failed batches..
     }
 
-    long getNextBufferIndex() {
-        bufferIndex = bufferIndex == Long.MAX_VALUE ? 0 : bufferIndex + 1;
+    private StoreOpMonitoringDataRequest completeBatch() {
+        ActorRef sender = getSender();
+        StoreOpMonitoringDataRequest request = inFlight.remove(sender);
+
+        if (request == null) {
+            log.warn("Received acknowledgement from {} with no batch in flight", sender);
+
+            return null;
+        }
+
+        idleSenders.add(sender);
 
-        return bufferIndex;
+        return request;
     }
 
     private void scheduleSendMonitoringData() {
@@ -214,10 +249,16 @@ public class OpMonitoringBuffer extends AbstractOpMonitoringBuffer {
         }
 
         scheduleSendMonitoringData();
+
+        OpMonitoring.setRingBuffer(buffer, MAX_RECORDS_IN_MESSAGE);
     }
 
     @Override
     public void postStop() throws Exception {
+        if (buffer != null) {
+            OpMonitoring.removeRingBuffer(buffer);
+        }
+
         if (tick != null) {
             tick.cancel();
         }
@@ -27,6 +27,7 @@ package ee.ria.xroad.proxy.opmonitoring;
 import ee.ria.xroad.common.opmonitoring.AbstractOpMonitoringBuffer;
 import ee.ria.xroad.common.opmonitoring.OpMonitoringDaemonEndpoints;
 import ee.ria.xroad.common.opmonitoring.OpMonitoringSystemProperties;
+import ee.ria.xroad.common.opmonitoring.StoreOpMonitoringDataRequest;
 import ee.ria.xroad.common.opmonitoring.StoreOpMonitoringDataResponse;
 import ee.ria.xroad.common.util.HttpSender;
 import ee.ria.xroad.common.util.JsonUtils;
@@ -34,16 +35,23 @@ import ee.ria.xroad.common.util.MimeTypes;
 import ee.ria.xroad.common.util.MimeUtils;
 import ee.ria.xroad.common.util.TimeUtils;
 
-import akka.actor.ActorRef;
 import akka.actor.UntypedAbstractActor;
 import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.EntityTemplate;
 import org.apache.http.impl.client.CloseableHttpClient;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
 
 import static ee.ria.xroad.common.opmonitoring.StoreOpMonitoringDataResponse.STATUS_ERROR;
 import static ee.ria.xroad.common.opmonitoring.StoreOpMonitoringDataResponse.STATUS_OK;
@@ -51,6 +59,9 @@ import static ee.ria.xroad.common.opmonitoring.StoreOpMonitoringDataResponse.STA
 /**
  * Actor for sending operational data to the operational monitoring daemon. This actor is used by the
  * OpMonitoringBuffer class for periodically forwarding operational data gathered in the buffer.
+ *
+ * The request body is compressed with gzip if enabled with the op-monitor-buffer.compress-requests
+ * system parameter. Only daemons of versions that accept compressed requests should be used then.
  */
 @Slf4j
 public class OpMonitoringDaemonSender extends UntypedAbstractActor {
@@ -63,6 +74,10 @@ public class OpMonitoringDaemonSender extends UntypedAbstractActor {
     private static final int SOCKET_TIMEOUT_MILLISECONDS = TimeUtils.secondsToMillis(
             OpMonitoringSystemProperties.getOpMonitorBufferSocketTimeoutSeconds());
 
+    static final String GZIP = "gzip";
+
+    private static final boolean COMPRESS_REQUESTS = OpMonitoringSystemProperties.isOpMonitorBufferCompressRequests();
+
     private CloseableHttpClient httpClient;
 
     OpMonitoringDaemonSender(CloseableHttpClient httpClient) {
@@ -71,13 +86,13 @@ public class OpMonitoringDaemonSender extends UntypedAbstractActor {
 
     @Override
     public void onReceive(Object message) throws Exception {
-        if (message instanceof String) {
-            String json = (String) message;
+        if (message instanceof StoreOpMonitoringDataRequest) {
+            StoreOpMonitoringDataRequest request = (StoreOpMonitoringDataRequest) message;
 
-            log.trace("onReceive: {}", json);
+            log.trace("onReceive: {} records", request.getRecords().size());
 
             try {
-                send(json);
+                send(request);
                 success();
             } catch (Exception e) {
                 log.error("Sending operational monitoring data failed", e);
@@ -90,19 +105,19 @@ public class OpMonitoringDaemonSender extends UntypedAbstractActor {
     }
 
     private void success() {
-        getSender().tell(AbstractOpMonitoringBuffer.SENDING_SUCCESS, ActorRef.noSender());
+        getSender().tell(AbstractOpMonitoringBuffer.SENDING_SUCCESS, getSelf());
     }
 
     private void failure() {
-        getSender().tell(AbstractOpMonitoringBuffer.SENDING_FAILURE, ActorRef.noSender());
+        getSender().tell(AbstractOpMonitoringBuffer.SENDING_FAILURE, getSelf());
     }
 
-    private void send(String json) throws Exception {
+    private void send(StoreOpMonitoringDataRequest request) throws Exception {
         try (HttpSender sender = new HttpSender(httpClient)) {
             sender.setConnectionTimeout(CONNECTION_TIMEOUT_MILLISECONDS);
             sender.setSocketTimeout(SOCKET_TIMEOUT_MILLISECONDS);
 
-            sender.doPost(getAddress(), json, MimeTypes.JSON);
+            sender.doPost(getAddress(), createRequestEntity(request, COMPRESS_REQUESTS));
 
             String responseJson = IOUtils.toString(sender.getResponseContent(), MimeUtils.UTF8);
             StoreOpMonitoringDataResponse response;
@@ -128,6 +143,39 @@ public class OpMonitoringDaemonSender extends UntypedAbstractActor {
         }
     }
 
+    /**
+     * Creates the HTTP request body, into which the request is serialized straight, optionally compressing
+     * it with gzip.
+     */
+    static EntityTemplate createRequestEntity(StoreOpMonitoringDataRequest request, boolean compress) {
+        EntityTemplate entity = new EntityTemplate(out -> {
+            if (compress) {
+                GZIPOutputStream gzipOut = new GZIPOutputStream(out);
+
+                writeJson(request, gzipOut);
+                gzipOut.finish();
+            } else {
+                writeJson(request, out);
+            }
+        });
+
+        entity.setContentType(ContentType.create(MimeTypes.JSON, MimeUtils.UTF8).toString());
+        entity.setChunked(true);
+
+        if (compress) {
+            entity.setContentEncoding(GZIP);
+        }
+
+        return entity;
+    }
+
+    private static void writeJson(StoreOpMonitoringDataRequest request, OutputStream out) throws IOException {
+        JsonWriter writer = new JsonWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+
+        GSON.toJson(request, StoreOpMonitoringDataRequest.class, writer);
+        writer.flush();
+    }
+
     private URI getAddress() throws URISyntaxException {
         return new URI(OpMonitoringSystemProperties.getOpMonitorDaemonScheme(), null,
                 OpMonitoringSystemProperties.getOpMonitorHost(), OpMonitoringSystemProperties.getOpMonitorPort(),
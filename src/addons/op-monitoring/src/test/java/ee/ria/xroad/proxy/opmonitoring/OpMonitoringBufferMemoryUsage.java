@@ -28,6 +28,7 @@ import ee.ria.xroad.common.identifier.ClientId;
 import ee.ria.xroad.common.identifier.ServiceId;
 import ee.ria.xroad.common.message.RepresentedParty;
 import ee.ria.xroad.common.opmonitoring.OpMonitoringData;
+import ee.ria.xroad.common.util.BoundedRingBuffer;
 
 import com.google.common.base.Strings;
 import lombok.extern.slf4j.Slf4j;
@@ -38,9 +39,6 @@ import org.apache.commons.cli.Option;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
 
-import java.util.LinkedHashMap;
-import java.util.Map;
-
 /**
  * Operational monitoring buffer simulation class to measure heap size usage.
  */
@@ -151,8 +149,8 @@ public final class OpMonitoringBufferMemoryUsage {
         return runtime.totalMemory() - runtime.freeMemory();
     }
 
-    private static Map<Long, OpMonitoringData> createBuffer(int count, int shortStrLen, int longStrLen) {
-        Map<Long, OpMonitoringData> buffer = new LinkedHashMap<>();
+    private static BoundedRingBuffer<OpMonitoringData> createBuffer(int count, int shortStrLen, int longStrLen) {
+        BoundedRingBuffer<OpMonitoringData> buffer = new BoundedRingBuffer<>(count);
         OpMonitoringData record;
 
         for (long i = 0; i < count; ++i) {
@@ -185,7 +183,7 @@ public final class OpMonitoringBufferMemoryUsage {
 
             //record.setSoapFault(exception);
 
-            buffer.put(i, record);
+            buffer.offer(record);
         }
 
         return buffer;
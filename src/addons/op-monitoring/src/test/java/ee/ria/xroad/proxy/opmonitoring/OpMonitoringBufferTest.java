@@ -24,16 +24,30 @@
  */
 package ee.ria.xroad.proxy.opmonitoring;
 
+import ee.ria.xroad.common.opmonitoring.AbstractOpMonitoringBuffer;
 import ee.ria.xroad.common.opmonitoring.OpMonitoringData;
+import ee.ria.xroad.common.opmonitoring.StoreOpMonitoringDataRequest;
+import ee.ria.xroad.common.util.JsonUtils;
 
 import akka.actor.ActorRef;
 import akka.actor.ActorSystem;
 import akka.actor.Props;
 import akka.testkit.TestActorRef;
+import akka.testkit.TestProbe;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.HttpEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Tests operational monitoring buffer.
@@ -41,7 +55,16 @@ import static org.junit.Assert.assertEquals;
 public class OpMonitoringBufferTest {
     private static final ActorSystem ACTOR_SYSTEM = ActorSystem.create();
 
+    static {
+        // Read once when the buffer class is loaded
+        System.setProperty("xroad.op-monitor-buffer.size", "3");
+        System.setProperty("xroad.op-monitor-buffer.max-records-in-message", "2");
+        System.setProperty("xroad.op-monitor-buffer.max-concurrent-batches", "2");
+    }
+
     private static class TestOpMonitoringBuffer extends OpMonitoringBuffer {
+        boolean sendingEnabled;
+
         TestOpMonitoringBuffer() throws Exception {
             super();
         }
@@ -52,20 +75,21 @@ public class OpMonitoringBufferTest {
         }
 
         @Override
-        ActorRef createSender() {
-            return null;
+        ActorRef createSender(int number) {
+            return new TestProbe(ACTOR_SYSTEM).ref();
         }
 
         @Override
-        protected void store(OpMonitoringData data) throws Exception {
-            buffer.put(getNextBufferIndex(), data);
+        protected void send() throws Exception {
+            // Unless enabled, sending is tested by draining the buffer explicitly
+            if (sendingEnabled) {
+                super.send();
+            }
         }
     }
 
     @Test
     public void bufferOverflow() throws Exception {
-        System.setProperty("xroad.op-monitor-buffer.size", "2");
-
         final Props props = Props.create(TestOpMonitoringBuffer.class);
         final TestActorRef<TestOpMonitoringBuffer> testActorRef =
                 TestActorRef.create(ACTOR_SYSTEM, props, "testActorRef");
@@ -76,12 +100,112 @@ public class OpMonitoringBufferTest {
         OpMonitoringData opMonitoringData = new OpMonitoringData(
                 OpMonitoringData.SecurityServerType.CLIENT, 100);
 
-        opMonitoringBuffer.store(opMonitoringData);
-        opMonitoringBuffer.store(opMonitoringData);
-        opMonitoringBuffer.store(opMonitoringData);
+        for (int i = 0; i < 4; i++) {
+            OpMonitoring.store(opMonitoringData);
+        }
+
+        assertEquals(3, opMonitoringBuffer.buffer.size());
+        assertEquals(1, opMonitoringBuffer.buffer.getOverflowCount());
+        assertEquals(1, OpMonitoring.getBufferStatistics().getOverflowCount());
+
+        assertEquals(2, opMonitoringBuffer.drainBuffer().getRecords().size());
+        assertEquals(1, opMonitoringBuffer.drainBuffer().getRecords().size());
+        assertNull(opMonitoringBuffer.drainBuffer());
+
+        ACTOR_SYSTEM.stop(testActorRef);
+    }
+
+    @Test
+    public void drainedBatchIsSerializedAsStoreRequest() throws Exception {
+        final Props props = Props.create(TestOpMonitoringBuffer.class);
+        final TestActorRef<TestOpMonitoringBuffer> testActorRef =
+                TestActorRef.create(ACTOR_SYSTEM, props, "serializingTestActorRef");
+
+        TestOpMonitoringBuffer opMonitoringBuffer =
+                testActorRef.underlyingActor();
+
+        for (int i = 0; i < 2; i++) {
+            OpMonitoringData opMonitoringData = new OpMonitoringData(
+                    OpMonitoringData.SecurityServerType.PRODUCER, 100 + i);
+            opMonitoringData.setMessageId("message-" + i);
+
+            OpMonitoring.store(opMonitoringData);
+        }
+
+        StoreOpMonitoringDataRequest request = opMonitoringBuffer.drainBuffer();
+        assertEquals(2, request.getRecords().size());
+
+        HttpEntity entity = OpMonitoringDaemonSender.createRequestEntity(request, false);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        entity.writeTo(out);
+
+        assertEquals(JsonUtils.getSerializer().toJson(request), new String(out.toByteArray(), StandardCharsets.UTF_8));
+        assertEquals(JsonUtils.getSerializer().toJson(request),
+                IOUtils.toString(entity.getContent(), StandardCharsets.UTF_8));
+        assertNull(entity.getContentEncoding());
+
+        HttpEntity compressedEntity = OpMonitoringDaemonSender.createRequestEntity(request, true);
+
+        assertEquals(JsonUtils.getSerializer().toJson(request), IOUtils.toString(
+                new GZIPInputStream(compressedEntity.getContent()), StandardCharsets.UTF_8));
+        assertEquals(OpMonitoringDaemonSender.GZIP, compressedEntity.getContentEncoding().getValue());
+
+        ACTOR_SYSTEM.stop(testActorRef);
+    }
+
+    @Test
+    public void batchesInFlightAreAcknowledgedSeparately() throws Exception {
+        final Props props = Props.create(TestOpMonitoringBuffer.class);
+        final TestActorRef<TestOpMonitoringBuffer> testActorRef =
+                TestActorRef.create(ACTOR_SYSTEM, props, "pipeliningTestActorRef");
+
+        TestOpMonitoringBuffer opMonitoringBuffer =
+                testActorRef.underlyingActor();
+
+        for (int i = 0; i < 3; i++) {
+            OpMonitoring.store(new OpMonitoringData(
+                    OpMonitoringData.SecurityServerType.CLIENT, 100 + i));
+        }
+
+        opMonitoringBuffer.sendingEnabled = true;
+        testActorRef.tell(AbstractOpMonitoringBuffer.SEND_MONITORING_DATA, ActorRef.noSender());
+
+        // Both senders have a batch in flight
+        assertEquals(2, opMonitoringBuffer.inFlight.size());
+        assertTrue(opMonitoringBuffer.idleSenders.isEmpty());
+        assertTrue(opMonitoringBuffer.buffer.isEmpty());
+
+        ActorRef failing = null;
+        ActorRef succeeding = null;
+
+        for (Map.Entry<ActorRef, StoreOpMonitoringDataRequest> e : opMonitoringBuffer.inFlight.entrySet()) {
+            if (e.getValue().getRecords().size() == 2) {
+                failing = e.getKey();
+            } else {
+                succeeding = e.getKey();
+            }
+        }
+
+        StoreOpMonitoringDataRequest failedBatch = opMonitoringBuffer.inFlight.get(failing);
+
+        testActorRef.tell(AbstractOpMonitoringBuffer.SENDING_FAILURE, failing);
+
+        // The failed batch waits for the next sending attempt
+        assertEquals(1, opMonitoringBuffer.inFlight.size());
+        assertSame(failedBatch, opMonitoringBuffer.retryQueue.peek());
+
+        testActorRef.tell(AbstractOpMonitoringBuffer.SENDING_SUCCESS, succeeding);
+
+        // The freed sender takes the failed batch before any new records
+        assertEquals(1, opMonitoringBuffer.inFlight.size());
+        assertSame(failedBatch, opMonitoringBuffer.inFlight.values().iterator().next());
+        assertTrue(opMonitoringBuffer.retryQueue.isEmpty());
+        assertEquals(1, opMonitoringBuffer.idleSenders.size());
+
+        // Unknown acknowledgements are ignored
+        testActorRef.tell(AbstractOpMonitoringBuffer.SENDING_SUCCESS, ActorRef.noSender());
+        assertEquals(1, opMonitoringBuffer.inFlight.size());
 
-        assertEquals(2, opMonitoringBuffer.buffer.size());
-        assertEquals(true, opMonitoringBuffer.buffer.containsKey(2L));
-        assertEquals(true, opMonitoringBuffer.buffer.containsKey(3L));
+        ACTOR_SYSTEM.stop(testActorRef);
     }
 }
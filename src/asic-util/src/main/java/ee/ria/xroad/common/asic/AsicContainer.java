@@ -35,6 +35,7 @@ import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.zip.Deflater;
 import java.util.zip.ZipOutputStream;
 
 import static ee.ria.xroad.common.ErrorCodes.translateException;
@@ -226,7 +227,20 @@ public class AsicContainer {
      * @throws Exception if errors occurred when writing ZIP entries
      */
     public void write(OutputStream out) throws Exception {
+        write(out, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * Write this container to the given output stream in ZIP format, compressing the entries
+     * with the given compression level.
+     * @param out the stream for writing container
+     * @param compressionLevel the compression level (0-9) or -1 for the default level
+     * @throws Exception if errors occurred when writing ZIP entries
+     */
+    public void write(OutputStream out, int compressionLevel) throws Exception {
         try (ZipOutputStream zip = new ZipOutputStream(out)) {
+            zip.setLevel(compressionLevel);
+
             AsicHelper.write(this, zip);
         }
     }
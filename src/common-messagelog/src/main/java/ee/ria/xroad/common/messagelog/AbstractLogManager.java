@@ -24,6 +24,7 @@
  */
 package ee.ria.xroad.common.messagelog;
 
+import ee.ria.xroad.common.CommonMessages;
 import ee.ria.xroad.common.DiagnosticsStatus;
 import ee.ria.xroad.common.util.JobManager;
 
@@ -57,25 +58,15 @@ public abstract class AbstractLogManager extends UntypedAbstractActor {
                 LogMessage m = (LogMessage) message;
                 log(m);
                 getSender().tell(new Object(), getSelf());
+            } else if (CommonMessages.MESSAGE_LOG_STATISTICS.equals(message)) {
+                getSender().tell(getStatistics(), getSelf());
             } else if (message instanceof FindByQueryId) {
                 FindByQueryId f = (FindByQueryId) message;
                 LogRecord result = findByQueryId(f.getQueryId(), f.getStartTime(), f.getEndTime());
 
                 getSender().tell(result, getSelf());
             } else if (message instanceof TimestampMessage) {
-                try {
-                    TimestampMessage m = (TimestampMessage) message;
-                    TimestampRecord result = timestamp(m.getMessageRecordId());
-
-                    log.info("message: {}, result: {}", message, result);
-
-                    getSender().tell(result, getSelf());
-                } catch (Exception e) {
-                    log.info("Timestamp failed: {}", e);
-
-                    getSender().tell(e, getSelf());
-                }
-
+                timestamp((TimestampMessage) message);
             } else {
                 unhandled(message);
             }
@@ -88,5 +79,18 @@ public abstract class AbstractLogManager extends UntypedAbstractActor {
 
     protected abstract LogRecord findByQueryId(String queryId, Date startTime, Date endTime) throws Exception;
 
-    protected abstract TimestampRecord timestamp(Long messageRecordId) throws Exception;
+    /**
+     * Time-stamps the message record of the given message. The implementation replies to the sender
+     * with the time-stamp record or with the exception, possibly after this method has returned.
+     * @param message the time-stamp message
+     * @throws Exception if time-stamping could not be started, replied to the sender
+     */
+    protected abstract void timestamp(TimestampMessage message) throws Exception;
+
+    /**
+     * @return the runtime statistics of the message log, for tuning the message log parameters.
+     */
+    protected Map<String, Object> getStatistics() {
+        return new HashMap<>();
+    }
 }
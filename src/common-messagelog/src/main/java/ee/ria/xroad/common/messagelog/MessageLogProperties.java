@@ -33,6 +33,7 @@ import com.google.common.collect.Lists;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.zip.Deflater;
 
 /**
  * Contains constants for messagelog properties.
@@ -53,8 +54,19 @@ public final class MessageLogProperties {
 
     private static final int DEFAULT_TIMESTAMP_RETRY_DELAY = 60;
 
+    private static final int MAX_PERCENTILE = 100;
+
     private static final int DEFAULT_ARCHIVE_TRANSACTION_BATCH_SIZE = 10000;
     private static final int DEFAULT_CLEAN_TRANSACTION_BATCH_SIZE = 10000;
+    private static final int DEFAULT_ARCHIVE_WORKERS = 1;
+    private static final int DEFAULT_ARCHIVE_COMPRESSION_LEVEL = Deflater.NO_COMPRESSION;
+    private static final int DEFAULT_ARCHIVE_CONTAINER_COMPRESSION_LEVEL = Deflater.DEFAULT_COMPRESSION;
+
+    private static final int DEFAULT_GROUP_COMMIT_MAX_BATCH_SIZE = 100;
+    private static final int DEFAULT_GROUP_COMMIT_MAX_DELAY = 10;
+
+    private static final int DEFAULT_LOG_WRITER_SHARDS = 0;
+    private static final int DEFAULT_LOG_READERS = 0;
 
     private static final long DEFAULT_MAX_LOGGABLE_MESSAGE_BODY_SIZE = 10 * 1024 * 1024;
     private static final long MAX_LOGGABLE_MESSAGE_BODY_SIZE_LIMIT = 1024 * 1024 * 1024;
@@ -67,6 +79,12 @@ public final class MessageLogProperties {
     /** Property name of the timestamper client read timeout (milliseconds). */
     public static final String TIMESTAMPER_CLIENT_READ_TIMEOUT = PREFIX + "timestamper-client-read-timeout";
 
+    /** Property name of the response time percentile after which the next timestamping service is also asked **/
+    public static final String TIMESTAMPER_HEDGING_PERCENTILE = PREFIX + "timestamper-hedging-percentile";
+
+    /** Property name of the batch size over which batches are split across timestamping services **/
+    public static final String TIMESTAMPER_SPLIT_BATCH_SIZE = PREFIX + "timestamper-split-batch-size";
+
     public static final String TIMESTAMP_IMMEDIATELY = PREFIX + "timestamp-immediately";
 
     public static final String TIMESTAMP_RECORDS_LIMIT = PREFIX + "timestamp-records-limit";
@@ -86,12 +104,36 @@ public final class MessageLogProperties {
 
     public static final String ARCHIVE_TRANSACTION_BATCH = PREFIX + "archive-transaction-batch";
 
+    /** Property name of the number of workers archiving log records in parallel **/
+    public static final String ARCHIVE_WORKERS = PREFIX + "archive-workers";
+
+    /** Property name of the compression level of the ASiC containers in the archive files **/
+    public static final String ARCHIVE_COMPRESSION_LEVEL = PREFIX + "archive-compression-level";
+
+    /** Property name of the compression level of the entries inside the archived ASiC containers **/
+    public static final String ARCHIVE_CONTAINER_COMPRESSION_LEVEL = PREFIX + "archive-container-compression-level";
+
     public static final String CLEAN_INTERVAL = PREFIX + "clean-interval";
 
     private static final String CLEAN_TRANSACTION_BATCH = "clean-transaction-batch";
 
     public static final String HASH_ALGO_ID = PREFIX + "hash-algo-id";
 
+    /** Property name for toggling group commit of message records on/off **/
+    public static final String GROUP_COMMIT_ENABLED = PREFIX + "group-commit";
+
+    /** Property name of the maximum number of message records committed in one transaction **/
+    public static final String GROUP_COMMIT_MAX_BATCH_SIZE = PREFIX + "group-commit-max-batch-size";
+
+    /** Property name of the maximum time (milliseconds) a message record waits for its group commit **/
+    public static final String GROUP_COMMIT_MAX_DELAY = PREFIX + "group-commit-max-delay";
+
+    /** Property name of the number of actors saving message records in parallel **/
+    public static final String LOG_WRITER_SHARDS = PREFIX + "log-writer-shards";
+
+    /** Property name of the number of actors finding message records by query id **/
+    public static final String LOG_READERS = PREFIX + "log-readers";
+
     public static final String ARCHIVE_TRANSFER_COMMAND = PREFIX + "archive-transfer-command";
 
     /**
@@ -148,6 +190,26 @@ public final class MessageLogProperties {
                 DEFAULT_TIMESTAMPER_CLIENT_READ_TIMEOUT);
     }
 
+    /**
+     * @return the percentile (1-99) of the recent response times of a timestamping service after which the
+     * time-stamp request is also sent to the next timestamping service, the first valid time-stamp being used.
+     * '0' by default, meaning that the next timestamping service is tried only after a failure.
+     */
+    public static int getTimestamperHedgingPercentile() {
+        int percentile = getInt(System.getProperty(TIMESTAMPER_HEDGING_PERCENTILE), 0);
+
+        return percentile > 0 && percentile < MAX_PERCENTILE ? percentile : 0;
+    }
+
+    /**
+     * @return the number of message records over which a time-stamping batch is split into parts that are
+     * time-stamped in parallel, each part by a different timestamping service. '0' by default, meaning that
+     * batches are not split.
+     */
+    public static int getTimestamperSplitBatchSize() {
+        return Math.max(0, getInt(System.getProperty(TIMESTAMPER_SPLIT_BATCH_SIZE), 0));
+    }
+
     /**
      * @return the timestamp retry delay in seconds. A retry delay of zero is
      * interpreted as retry delay is disabled. '60' by default.
@@ -165,6 +227,46 @@ public final class MessageLogProperties {
         return "true".equalsIgnoreCase(System.getProperty(TIMESTAMP_IMMEDIATELY, "false"));
     }
 
+    /**
+     * @return true if concurrently logged message records are gathered and saved to the database in a shared
+     * transaction. Not used when messages are time-stamped immediately. 'false' by default.
+     */
+    public static boolean isGroupCommitEnabled() {
+        return "true".equalsIgnoreCase(System.getProperty(GROUP_COMMIT_ENABLED, "false"));
+    }
+
+    /**
+     * @return the maximum number of message records saved in one group commit. '100' by default.
+     */
+    public static int getGroupCommitMaxBatchSize() {
+        return Math.max(1, getInt(System.getProperty(GROUP_COMMIT_MAX_BATCH_SIZE),
+                DEFAULT_GROUP_COMMIT_MAX_BATCH_SIZE));
+    }
+
+    /**
+     * @return the maximum time in milliseconds a message record waits before the group commit is forced.
+     * '10' by default.
+     */
+    public static int getGroupCommitMaxDelay() {
+        return Math.max(0, getInt(System.getProperty(GROUP_COMMIT_MAX_DELAY), DEFAULT_GROUP_COMMIT_MAX_DELAY));
+    }
+
+    /**
+     * @return the number of actors saving message records in parallel, '0' by default. The logged messages are
+     * routed to the actors by query id. If 0, the message records are saved by the log manager itself.
+     */
+    public static int getLogWriterShards() {
+        return Math.max(0, getInt(System.getProperty(LOG_WRITER_SHARDS), DEFAULT_LOG_WRITER_SHARDS));
+    }
+
+    /**
+     * @return the number of actors finding message records by query id, '0' by default. If 0, the message
+     * records are found by the log manager itself.
+     */
+    public static int getLogReaders() {
+        return Math.max(0, getInt(System.getProperty(LOG_READERS), DEFAULT_LOG_READERS));
+    }
+
     /**
      * @return the maximum number of records to time-stamp in one batch.
      */
@@ -195,6 +297,32 @@ public final class MessageLogProperties {
         return getInt(System.getProperty(ARCHIVE_TRANSACTION_BATCH), DEFAULT_ARCHIVE_TRANSACTION_BATCH_SIZE);
     }
 
+    /**
+     * @return the number of workers archiving log records in parallel, each with its own archive files
+     * and linking information chain. '1' by default.
+     */
+    public static int getArchiveWorkers() {
+        return Math.max(1, getInt(System.getProperty(ARCHIVE_WORKERS), DEFAULT_ARCHIVE_WORKERS));
+    }
+
+    /**
+     * @return the compression level (0-9) of the ASiC containers written into the archive files. '0' (no
+     * compression) by default, the containers being compressed themselves.
+     */
+    public static int getArchiveCompressionLevel() {
+        return getCompressionLevel(System.getProperty(ARCHIVE_COMPRESSION_LEVEL), DEFAULT_ARCHIVE_COMPRESSION_LEVEL);
+    }
+
+    /**
+     * @return the compression level (0-9) of the message and attachment entries inside the archived ASiC
+     * containers. '-1' (the default level of the compression library) by default. Level '0' avoids compressing
+     * large message bodies that are already compressed.
+     */
+    public static int getArchiveContainerCompressionLevel() {
+        return getCompressionLevel(System.getProperty(ARCHIVE_CONTAINER_COMPRESSION_LEVEL),
+                DEFAULT_ARCHIVE_CONTAINER_COMPRESSION_LEVEL);
+    }
+
     /**
      * @return the time interval as Cron expression for cleaning archived records from online database.
      */
@@ -237,6 +365,12 @@ public final class MessageLogProperties {
         return System.getProperty(ARCHIVE_TRANSFER_COMMAND, null);
     }
 
+    private static int getCompressionLevel(String value, int defaultValue) {
+        int level = getInt(value, defaultValue);
+
+        return level >= Deflater.DEFAULT_COMPRESSION && level <= Deflater.BEST_COMPRESSION ? level : defaultValue;
+    }
+
     private static int getInt(String value, int defaultValue) {
         try {
             return Integer.parseInt(value);
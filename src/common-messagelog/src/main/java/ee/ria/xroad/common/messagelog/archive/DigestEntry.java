@@ -36,6 +36,7 @@ public class DigestEntry {
     private Long id;
     private String digest;
     private String fileName;
+    private int chain;
 
     protected DigestEntry() { }
 
@@ -44,6 +45,18 @@ public class DigestEntry {
         this.fileName = fileName;
     }
 
+    /**
+     * Creates digest entry of the last archive in the given linking information chain.
+     *
+     * @param digest - digest of the last archive.
+     * @param fileName - file name of the last archive.
+     * @param chain - number of the chain, 0 for the chain used when archiving sequentially.
+     */
+    public DigestEntry(String digest, String fileName, int chain) {
+        this(digest, fileName);
+        this.chain = chain;
+    }
+
     String toLinkingInfoEntry() {
         return String.format("%s %s", digest, fileName);
     }
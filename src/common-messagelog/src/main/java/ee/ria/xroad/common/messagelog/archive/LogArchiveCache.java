@@ -29,18 +29,15 @@ import ee.ria.xroad.common.asic.AsicContainerNameGenerator;
 import ee.ria.xroad.common.messagelog.MessageLogProperties;
 import ee.ria.xroad.common.messagelog.MessageRecord;
 
-import com.google.common.io.CountingOutputStream;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.FileUtils;
 
 import java.io.BufferedOutputStream;
 import java.io.Closeable;
-import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.security.DigestOutputStream;
 import java.security.MessageDigest;
 import java.util.Date;
 import java.util.function.Supplier;
@@ -57,6 +54,8 @@ import static ee.ria.xroad.common.messagelog.archive.LogArchiveWriter.MAX_RANDOM
 @Slf4j
 class LogArchiveCache implements Closeable {
 
+    private static final int BUFFER_SIZE = 64 * 1024;
+
     private enum State {
         NEW,
         ADDING,
@@ -195,14 +194,11 @@ class LogArchiveCache implements Closeable {
 
         final MessageDigest digest = MessageDigest.getInstance(MessageLogProperties.getHashAlg());
         archiveTmp.putNextEntry(new ZipEntry(archiveFilename));
-        try (CountingOutputStream cos = new CountingOutputStream(
-                new DigestOutputStream(new EntryStream(archiveTmp), digest));
-             OutputStream bos = new BufferedOutputStream(cos)) {
-            // ZipOutputStream writing directly to a DigestOutputStream is extremely inefficient, hence the additional
-            // buffering. Digesting a stream instead of an in-memory buffer because the archive can be
+        try (EntryStream entry = new EntryStream(archiveTmp, digest)) {
+            // Digesting a stream instead of an in-memory buffer because the container can be
             // large (over 1GiB)
-            record.toAsicContainer().write(bos);
-            archivesTotalSize += cos.getCount();
+            record.toAsicContainer().write(entry, MessageLogProperties.getArchiveContainerCompressionLevel());
+            archivesTotalSize += entry.getCount();
         }
         archiveTmp.closeEntry();
         linkingInfoBuilder.addNextFile(archiveFilename, digest.digest());
@@ -222,8 +218,9 @@ class LogArchiveCache implements Closeable {
     private void resetArchive() throws IOException {
         deleteArchiveArtifacts();
         archiveTmpFile = Files.createTempFile(workingDir, "tmp-mlog-", ".tmp");
-        archiveTmp = new ZipOutputStream(Files.newOutputStream(archiveTmpFile));
-        archiveTmp.setLevel(0);
+        archiveTmp = new ZipOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(archiveTmpFile), BUFFER_SIZE));
+        archiveTmp.setLevel(MessageLogProperties.getArchiveCompressionLevel());
     }
 
     private void deleteArchiveArtifacts() {
@@ -247,20 +244,75 @@ class LogArchiveCache implements Closeable {
         nameGenerator = new AsicContainerNameGenerator(randomGenerator, MAX_RANDOM_GEN_ATTEMPTS);
     }
 
-    static class EntryStream extends FilterOutputStream {
+    /**
+     * Buffers the container written into an archive entry, digesting and counting the bytes
+     * in the same pass as they are written into the archive. Small writes of the container
+     * ZIP stream are not passed to the digest and the archive one by one, which would be
+     * extremely inefficient. Closing the stream does not close the archive.
+     */
+    static class EntryStream extends OutputStream {
+
+        private final OutputStream out;
+        private final MessageDigest digest;
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+
+        private int position;
+        private long count;
 
-        EntryStream(OutputStream out) {
-            super(out);
+        EntryStream(OutputStream out, MessageDigest digest) {
+            this.out = out;
+            this.digest = digest;
+        }
+
+        long getCount() {
+            return count + position;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (position == buffer.length) {
+                flushBuffer();
+            }
+
+            buffer[position++] = (byte) b;
         }
 
         @Override
         public void write(byte[] b, int off, int len) throws IOException {
-            out.write(b, off, len);
+            if (len >= buffer.length) {
+                flushBuffer();
+                writeThrough(b, off, len);
+            } else {
+                if (len > buffer.length - position) {
+                    flushBuffer();
+                }
+
+                System.arraycopy(b, off, buffer, position, len);
+                position += len;
+            }
         }
 
         @Override
-        public void close() {
-            //NOP
+        public void flush() throws IOException {
+            flushBuffer();
+        }
+
+        @Override
+        public void close() throws IOException {
+            flushBuffer();
+        }
+
+        private void flushBuffer() throws IOException {
+            if (position > 0) {
+                writeThrough(buffer, 0, position);
+                position = 0;
+            }
+        }
+
+        private void writeThrough(byte[] b, int off, int len) throws IOException {
+            digest.update(b, off, len);
+            out.write(b, off, len);
+            count += len;
         }
     }
 }
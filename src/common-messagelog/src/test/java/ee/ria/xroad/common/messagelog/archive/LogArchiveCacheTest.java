@@ -49,6 +49,7 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.security.MessageDigest;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
@@ -56,6 +57,7 @@ import java.util.function.Supplier;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
@@ -64,6 +66,7 @@ import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -212,6 +215,35 @@ public class LogArchiveCacheTest {
         assertZip(expectedConflictingEntryNames(), getArchiveBytes());
     }
 
+    /**
+     * Test to ensure the archive entry stream digests and counts all the bytes written, regardless of
+     * the sizes of the writes.
+     *
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test
+    public void entryStreamDigestsAndCountsWrittenBytes() throws Exception {
+        byte[] content = containerTooLarge();
+        byte[] large = new byte[100 * 1024];
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        MessageDigest digest = MessageDigest.getInstance(MessageLogProperties.getHashAlg());
+        MessageDigest expectedDigest = MessageDigest.getInstance(MessageLogProperties.getHashAlg());
+
+        try (LogArchiveCache.EntryStream entry = new LogArchiveCache.EntryStream(archive, digest)) {
+            entry.write(content[0]);
+            entry.write(content, 1, content.length - 1);
+            entry.write(large);
+
+            assertEquals(content.length + large.length, entry.getCount());
+        }
+
+        expectedDigest.update(content);
+        expectedDigest.update(large);
+
+        assertEquals(content.length + large.length, archive.size());
+        assertArrayEquals(expectedDigest.digest(), digest.digest());
+    }
+
     private byte[] getArchiveBytes() throws IOException {
         ByteArrayOutputStream bos = new ByteArrayOutputStream();
         final Path archive = cache.getArchiveFile();
@@ -277,7 +309,7 @@ public class LogArchiveCacheTest {
             OutputStream os = (OutputStream) invocation.getArguments()[0];
             os.write(params.getBytes());
             return null;
-        }).when(container).write(any(OutputStream.class));
+        }).when(container).write(any(OutputStream.class), anyInt());
 
         when(record.toAsicContainer()).thenReturn(container);
 
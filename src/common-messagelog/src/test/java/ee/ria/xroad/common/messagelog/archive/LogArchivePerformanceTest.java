@@ -0,0 +1,164 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.messagelog.archive;
+
+import ee.ria.xroad.common.identifier.ClientId;
+import ee.ria.xroad.common.messagelog.LogRecord;
+import ee.ria.xroad.common.messagelog.MessageLogProperties;
+import ee.ria.xroad.common.messagelog.MessageRecord;
+import ee.ria.xroad.common.messagelog.TimestampRecord;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FileUtils;
+
+import javax.sql.rowset.serial.SerialBlob;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Blob;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Log archive writer throughput test program. Archives message records with large REST bodies
+ * using different compression levels. Incompressible bodies stand for already compressed payloads.
+ */
+@Slf4j
+public final class LogArchivePerformanceTest {
+
+    // number of records archived per run
+    private static final int NUM_RECORDS = 50;
+
+    // size of the REST body of each record
+    private static final int BODY_SIZE = 8 * 1024 * 1024;
+
+    // {archive compression level, container compression level}
+    private static final int[][] COMPRESSION_LEVELS = {{0, -1}, {0, 0}, {1, 0}, {0, 1}};
+
+    private static final Path ARCHIVE_PATH = Paths.get("build/slog-performance");
+
+    private static final double MEGABYTE = 1024 * 1024;
+
+    private LogArchivePerformanceTest() {
+    }
+
+    /**
+     * Main program access point.
+     * @param args command-line arguments
+     * @throws Exception in case of any errors
+     */
+    public static void main(String[] args) throws Exception {
+        log.info("Starting log archive performance test...");
+
+        System.setProperty(MessageLogProperties.ARCHIVE_MAX_FILESIZE, Integer.toString(Integer.MAX_VALUE));
+
+        byte[] randomBody = new byte[BODY_SIZE];
+        new Random(0).nextBytes(randomBody);
+
+        byte[] textBody = new byte[BODY_SIZE];
+        byte[] text = "{\"field\": \"value of the field\", \"number\": 1234567890}\n".getBytes(StandardCharsets.UTF_8);
+
+        for (int i = 0; i < BODY_SIZE; i++) {
+            textBody[i] = text[i % text.length];
+        }
+
+        try {
+            // warm-up
+            run(randomBody, COMPRESSION_LEVELS[0]);
+
+            for (int[] levels : COMPRESSION_LEVELS) {
+                run(randomBody, levels);
+                run(textBody, levels);
+            }
+        } finally {
+            FileUtils.deleteQuietly(ARCHIVE_PATH.toFile());
+        }
+    }
+
+    private static void run(byte[] body, int[] levels) throws Exception {
+        System.setProperty(MessageLogProperties.ARCHIVE_COMPRESSION_LEVEL, Integer.toString(levels[0]));
+        System.setProperty(MessageLogProperties.ARCHIVE_CONTAINER_COMPRESSION_LEVEL, Integer.toString(levels[1]));
+
+        FileUtils.deleteQuietly(ARCHIVE_PATH.toFile());
+        Files.createDirectories(ARCHIVE_PATH);
+
+        TimestampRecord timestamp = new TimestampRecord();
+        timestamp.setId(0L);
+        timestamp.setTime(System.currentTimeMillis());
+        timestamp.setTimestamp("ts");
+        timestamp.setHashChainResult("hcr");
+
+        // The blob hands out a new stream over the same body for each record
+        Blob attachment = new SerialBlob(body);
+
+        long start = System.nanoTime();
+
+        try (LogArchiveWriter writer = new LogArchiveWriter(ARCHIVE_PATH, new NoOpLogArchiveBase())) {
+            for (int i = 0; i < NUM_RECORDS; i++) {
+                writer.write(createRecord(i, attachment, timestamp));
+            }
+        }
+
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        long archiveSize = FileUtils.sizeOfDirectory(ARCHIVE_PATH.toFile());
+
+        log.info("Levels {}/{}, body {}: {} MiB in {} ms, {} MiB/s, archive size {} MiB", levels[0], levels[1],
+                body[0] == '{' ? "text" : "random", NUM_RECORDS * (BODY_SIZE / MEGABYTE), elapsedMillis,
+                String.format("%.1f", NUM_RECORDS * (BODY_SIZE / MEGABYTE) * 1000 / Math.max(1, elapsedMillis)),
+                String.format("%.1f", archiveSize / MEGABYTE));
+    }
+
+    private static MessageRecord createRecord(int number, Blob attachment, TimestampRecord timestamp)
+            throws Exception {
+        MessageRecord record = new MessageRecord("qid" + number, "msg" + number, "sig" + number, false,
+                ClientId.create("memberClass", "memberCode", "subsystemCode"), null);
+        record.setId((long) number);
+        record.setTime(System.currentTimeMillis());
+        record.setTimestampRecord(timestamp);
+        record.setTimestampHashChain("foo");
+        record.setAttachment(attachment);
+
+        return record;
+    }
+
+    private static class NoOpLogArchiveBase implements LogArchiveBase {
+        @Override
+        public void markArchiveCreated(DigestEntry lastArchive) {
+            // Do nothing.
+        }
+
+        @Override
+        public void markRecordArchived(LogRecord logRecord) {
+            // Do nothing.
+        }
+
+        @Override
+        public DigestEntry loadLastArchive() {
+            return DigestEntry.empty();
+        }
+    }
+}
@@ -54,6 +54,20 @@ public final class OpMonitoringSystemProperties {
     private static final String OP_MONITOR_BUFFER_MAX_RECORDS_IN_MESSAGE =
             PREFIX + "op-monitor-buffer.max-records-in-message";
 
+    /**
+     * Property name of the maximum number of record batches sent concurrently by the operational
+     * monitoring buffer to the operational monitoring daemon.
+     */
+    private static final String OP_MONITOR_BUFFER_MAX_CONCURRENT_BATCHES =
+            PREFIX + "op-monitor-buffer.max-concurrent-batches";
+
+    /**
+     * Property name of the flag that enables compressing the requests sent by the operational monitoring
+     * buffer to the operational monitoring daemon.
+     */
+    private static final String OP_MONITOR_BUFFER_COMPRESS_REQUESTS =
+            PREFIX + "op-monitor-buffer.compress-requests";
+
     /**
      * Property name of the operational monitoring buffer sending interval seconds.
      */
@@ -170,6 +184,21 @@ public final class OpMonitoringSystemProperties {
         return Integer.parseInt(System.getProperty(OP_MONITOR_BUFFER_MAX_RECORDS_IN_MESSAGE, "100"));
     }
 
+    /**
+     * @return max number of record batches sent concurrently to the operational monitoring daemon, '1' by default.
+     */
+    public static int getOpMonitorBufferMaxConcurrentBatches() {
+        return Integer.parseInt(System.getProperty(OP_MONITOR_BUFFER_MAX_CONCURRENT_BATCHES, "1"));
+    }
+
+    /**
+     * @return whether the requests sent to the operational monitoring daemon are compressed with gzip,
+     * 'false' by default.
+     */
+    public static boolean isOpMonitorBufferCompressRequests() {
+        return Boolean.parseBoolean(System.getProperty(OP_MONITOR_BUFFER_COMPRESS_REQUESTS, "false"));
+    }
+
     /**
      * @return the interval in seconds at which operational monitoring buffer additionally tries to send records to the
      * operational monitoring daemon, '5' by default.
@@ -47,6 +47,10 @@ public final class SystemProperties {
     public static final String TEMP_FILES_PATH =
             PREFIX + "common.temp-files-path";
 
+    /** Property name of the maximum size (bytes) of content cached in memory before spilling to a temporary file. */
+    public static final String TEMP_FILES_MEMORY_THRESHOLD =
+            PREFIX + "common.temp-files-memory-threshold";
+
     /** Property name of the downloaded global configuration directory. */
     public static final String CONFIGURATION_PATH =
             PREFIX + "common.configuration-path";
@@ -180,6 +184,14 @@ public final class SystemProperties {
 
     public static final String SERVER_CONF_ACL_CACHE_SIZE = PREFIX + "proxy.server-conf-acl-cache-size";
 
+    public static final String SERVER_CONF_SNAPSHOT_ENABLED = PREFIX + "proxy.server-conf-snapshot-enabled";
+
+    public static final String SERVER_CONF_SNAPSHOT_CHECK_INTERVAL =
+            PREFIX + "proxy.server-conf-snapshot-check-interval";
+
+    /** Property name of the maximum number of successfully verified certificate paths kept in memory */
+    public static final String CERT_PATH_CACHE_SIZE = PREFIX + "proxy.cert-path-cache-size";
+
 
     /** Property name of the idle time that connections to the ServerProxy Connector are allowed, in milliseconds */
     private static final String SERVERPROXY_CONNECTOR_MAX_IDLE_TIME =
@@ -252,6 +264,29 @@ public final class SystemProperties {
     private static final String CLIENTPROXY_POOL_REUSE_CONNECTIONS =
             PREFIX + "proxy.pool-enable-connection-reuse";
 
+    /**
+     * Property name of the number of threads handling incoming SOAP requests in client proxy,
+     * value 0 means an unbounded thread pool
+     */
+    private static final String CLIENTPROXY_SOAP_HANDLER_POOL_SIZE =
+            PREFIX + "proxy.client-soap-handler-pool-size";
+
+    /**
+     * Property name of the on/off switch for spreading the requests across the service provider's security servers
+     * by their observed latency and error rate, instead of connecting to the fastest one to accept a connection
+     */
+    private static final String CLIENTPROXY_LOAD_BALANCING_ENABLED =
+            PREFIX + "proxy.client-load-balancing-enabled";
+
+    /** Property name of the number of concurrent signing requests to the signer per signing key */
+    private static final String PROXY_BATCH_SIGNER_LANES = PREFIX + "proxy.batch-signer-lanes";
+
+    /**
+     * Property name of the signing latency (milliseconds) the batch size is adapted to, value 0 means that
+     * the batch size is not limited
+     */
+    private static final String PROXY_BATCH_SIGNER_TARGET_LATENCY = PREFIX + "proxy.batch-signer-target-latency";
+
     private static final String PROXY_HEALTH_CHECK_INTERFACE = PREFIX + "proxy.health-check-interface";
 
     private static final String PROXY_HEALTH_CHECK_PORT = PREFIX + "proxy.health-check-port";
@@ -310,6 +345,14 @@ public final class SystemProperties {
      **/
     private static final String DEFAULT_CLIENTPROXY_POOL_REUSE_CONNECTIONS = "false";
 
+    private static final String DEFAULT_CLIENTPROXY_SOAP_HANDLER_POOL_SIZE = "0";
+
+    private static final String DEFAULT_CLIENTPROXY_LOAD_BALANCING_ENABLED = "false";
+
+    private static final String DEFAULT_PROXY_BATCH_SIGNER_LANES = "1";
+
+    private static final String DEFAULT_PROXY_BATCH_SIGNER_TARGET_LATENCY = "0";
+
     private static final String DEFAULT_PROXY_HEALTH_CHECK_INTERFACE = "0.0.0.0";
 
     private static final String DEFAULT_PROXY_HEALTH_CHECK_PORT = "0";
@@ -370,6 +413,12 @@ public final class SystemProperties {
 
     private static final String DEFAULT_SIGNER_OCSP_RETRY_DELAY = "60";
 
+    /** Property name of the number of OCSP responses fetched concurrently by the signer */
+    public static final String SIGNER_OCSP_FETCH_CONCURRENCY =
+            PREFIX + "signer.ocsp-fetch-concurrency";
+
+    private static final String DEFAULT_SIGNER_OCSP_FETCH_CONCURRENCY = "1";
+
     public static final String SIGNER_MODULE_MANAGER_UPDATE_INTERVAL =
             PREFIX + "signer.module-manager-update-interval";
 
@@ -397,6 +446,14 @@ public final class SystemProperties {
     public static final String ANTIDOS_MAX_HEAP_USAGE =
             PREFIX + "anti-dos.max-heap-usage";
 
+    /** Property name of the interval (milliseconds) at which the system resources are sampled */
+    public static final String ANTIDOS_RESOURCE_SAMPLING_INTERVAL =
+            PREFIX + "anti-dos.resource-sampling-interval";
+
+    /** Property name of the interval (milliseconds) at which the known member addresses are checked */
+    public static final String ANTIDOS_KNOWN_ADDRESSES_CHECK_INTERVAL =
+            PREFIX + "anti-dos.known-addresses-check-interval";
+
     // Configuration client ---------------------------------------------------
 
     public static final String CONFIGURATION_CLIENT_PORT =
@@ -768,6 +825,14 @@ public final class SystemProperties {
         return System.getProperty(TEMP_FILES_PATH, DefaultFilepaths.TEMP_FILES_PATH);
     }
 
+    /**
+     * @return the maximum number of bytes a caching stream keeps in memory before spilling the content into a
+     * temporary file, '0' (always use a temporary file) by default.
+     */
+    public static int getTempFilesMemoryThreshold() {
+        return Math.max(0, Integer.getInteger(TEMP_FILES_MEMORY_THRESHOLD, 0));
+    }
+
     /**
      * @return path to the directory where OCSP responses are stored, '/var/cache/xroad/' by default.
      */
@@ -885,6 +950,15 @@ public final class SystemProperties {
                 DEFAULT_SIGNER_OCSP_RETRY_DELAY));
     }
 
+    /**
+     * @return the number of OCSP responses the signer fetches concurrently during an OCSP-response refresh,
+     * 1 by default
+     */
+    public static int getOcspFetchConcurrency() {
+        return Math.max(1, Integer.parseInt(System.getProperty(SIGNER_OCSP_FETCH_CONCURRENCY,
+                DEFAULT_SIGNER_OCSP_FETCH_CONCURRENCY)));
+    }
+
     /**
      * @return the module manager update interval in seconds that should be set for signer, 60 by default
      */
@@ -1215,6 +1289,24 @@ public final class SystemProperties {
         return Double.parseDouble(System.getProperty(ANTIDOS_MAX_HEAP_USAGE, "1.1"));
     }
 
+    /**
+     * @return the interval in milliseconds at which Anti-Dos samples the
+     * system resources (free file handles, CPU load and heap usage),
+     * '100' by default.
+     */
+    public static long getAntiDosResourceSamplingInterval() {
+        return Math.max(0, Long.parseLong(System.getProperty(ANTIDOS_RESOURCE_SAMPLING_INTERVAL, "100")));
+    }
+
+    /**
+     * @return the interval in milliseconds at which Anti-Dos checks the
+     * global configuration for changes in the known member addresses,
+     * '1000' by default.
+     */
+    public static long getAntiDosKnownAddressesCheckInterval() {
+        return Math.max(0, Long.parseLong(System.getProperty(ANTIDOS_KNOWN_ADDRESSES_CHECK_INTERVAL, "1000")));
+    }
+
     /**
      * @return whether Anti-Dos should be used, 'true' by default.
      */
@@ -1428,6 +1520,44 @@ public final class SystemProperties {
                 DEFAULT_CLIENTPROXY_FASTEST_CONNECTING_SSL_URI_CACHE_PERIOD));
     }
 
+    /**
+     * @return the number of threads handling incoming SOAP requests in client proxy. If positive, the threads
+     * hand the request over to the server proxy connection through bounded buffers. Value 0 means an unbounded
+     * thread pool and piped streams. '0' by default.
+     */
+    public static int getClientProxySoapHandlerPoolSize() {
+        return Math.max(0, Integer.parseInt(System.getProperty(CLIENTPROXY_SOAP_HANDLER_POOL_SIZE,
+                DEFAULT_CLIENTPROXY_SOAP_HANDLER_POOL_SIZE)));
+    }
+
+    /**
+     * @return whether the client proxy spreads the requests across the service provider's security servers by their
+     * observed request latency and error rate. If false, the security server that is the fastest to accept a
+     * connection is used. 'false' by default.
+     */
+    public static boolean isClientProxyLoadBalancingEnabled() {
+        return Boolean.parseBoolean(System.getProperty(CLIENTPROXY_LOAD_BALANCING_ENABLED,
+                DEFAULT_CLIENTPROXY_LOAD_BALANCING_ENABLED));
+    }
+
+    /**
+     * @return the number of signing requests sent to the signer concurrently per signing key. '1' by default.
+     */
+    public static int getBatchSignerLanes() {
+        return Math.max(1, Integer.parseInt(System.getProperty(PROXY_BATCH_SIGNER_LANES,
+                DEFAULT_PROXY_BATCH_SIGNER_LANES)));
+    }
+
+    /**
+     * @return the signing latency in milliseconds the batch signing batch size is adapted to. The batch size
+     * grows while the signing is faster than this and shrinks when it is slower. Value 0 means that the batch
+     * size is not limited. '0' by default.
+     */
+    public static int getBatchSignerTargetLatency() {
+        return Math.max(0, Integer.parseInt(System.getProperty(PROXY_BATCH_SIGNER_TARGET_LATENCY,
+                DEFAULT_PROXY_BATCH_SIGNER_TARGET_LATENCY)));
+    }
+
     /**
      * @return the time in milliseconds, after which connections in a pool should be check for validity, ie.
      * after this time, check if pooled connections are still alive, don't just assume they are.
@@ -1516,6 +1646,32 @@ public final class SystemProperties {
         return Long.getLong(SERVER_CONF_ACL_CACHE_SIZE, 100_000);
     }
 
+    /**
+     * @return whether serverconf is served from an in-memory snapshot that is reloaded when the
+     * serverconf database changes, 'false' by default
+     */
+    public static boolean isServerConfSnapshotEnabled() {
+        return Boolean.parseBoolean(System.getProperty(SERVER_CONF_SNAPSHOT_ENABLED, "false"));
+    }
+
+    /**
+     * @return the interval in milliseconds at which the serverconf database is checked for changes
+     * when the serverconf snapshot is enabled, '1000' by default
+     */
+    @SuppressWarnings("checkstyle:MagicNumber")
+    public static long getServerConfSnapshotCheckInterval() {
+        return Math.max(1, Long.getLong(SERVER_CONF_SNAPSHOT_CHECK_INTERVAL, 1000));
+    }
+
+    /**
+     * @return the maximum number of successfully verified certificate paths that are kept in memory, '1000' by
+     * default. 0 disables the cache.
+     */
+    @SuppressWarnings("checkstyle:MagicNumber")
+    public static int getCertPathCacheSize() {
+        return Math.max(0, Integer.getInteger(CERT_PATH_CACHE_SIZE, 1000));
+    }
+
 
     /**
      * @return whether GET request can be used for getWsdl metaservice, 'false' by default.
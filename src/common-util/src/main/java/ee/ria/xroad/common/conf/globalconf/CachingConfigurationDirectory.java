@@ -28,20 +28,32 @@ import ee.ria.xroad.common.SystemProperties;
 
 import lombok.extern.slf4j.Slf4j;
 
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static ee.ria.xroad.common.conf.globalconf.ConfigurationUtils.unescapeInstanceIdentifier;
+
 /**
- * Caching configuration directory
+ * Caching configuration directory. The parameters are read from an immutable snapshot that is published through a
+ * volatile reference, so the readers take no locks. A new snapshot is built when the directory is reloaded after the
+ * cache period, and the old snapshot is replaced atomically. If automatic reload is enabled, a reader that finds
+ * the snapshot expired builds the next one, while concurrent readers keep using the previous snapshot.
  */
 @Slf4j
 public class CachingConfigurationDirectory extends ConfigurationDirectoryV2 {
 
-    public static final String INSTANCE_IDENTIFIER = "instanceIdentifier";
-    public static final String PRIVATE_PARAMS = "privateParams";
-    public static final String SHARED_PARAMS = "sharedParams";
-    public static final String VERIFY_UP_TO_DATE = "verifyUpToDate";
-    public static final String RELOAD_CONF_DIR = "reload";
+    private final long expireMillis;
+    private final boolean reloadIfChanged;
+    private final ReentrantLock reloadLock = new ReentrantLock();
 
-    private final int expireSeconds;
-    private final TimeBasedObjectCache cache;
+    private volatile Snapshot snapshot;
+    private volatile long upToDateVerifiedAt;
 
     /**
      * Constructs new caching directory from the given path.
@@ -50,10 +62,7 @@ public class CachingConfigurationDirectory extends ConfigurationDirectoryV2 {
      * @throws Exception if loading configuration fails
      */
     public CachingConfigurationDirectory(String directoryPath) throws Exception {
-        super(directoryPath, false);
-        expireSeconds = SystemProperties.getConfigurationClientUpdateIntervalSeconds();
-        cache = new TimeBasedObjectCache(expireSeconds);
-        reload();
+        this(directoryPath, false);
     }
 
     /**
@@ -67,20 +76,19 @@ public class CachingConfigurationDirectory extends ConfigurationDirectoryV2 {
     public CachingConfigurationDirectory(String directoryPath,
                                          boolean reloadIfChanged) throws Exception {
         super(directoryPath, reloadIfChanged);
-        expireSeconds = SystemProperties.getConfigurationClientUpdateIntervalSeconds();
-        cache = new TimeBasedObjectCache(expireSeconds);
+        this.reloadIfChanged = reloadIfChanged;
+        expireMillis = TimeUnit.SECONDS.toMillis(SystemProperties.getConfigurationClientUpdateIntervalSeconds());
         reload();
     }
 
     /**
-     *
+     * @return the instance identifier of this configuration
      */
     @Override
-    public synchronized String getInstanceIdentifier() {
-        if (!cache.isValid(INSTANCE_IDENTIFIER)) {
-            cache.setValue(INSTANCE_IDENTIFIER, super.getInstanceIdentifier());
-        }
-        return (String) cache.getValue(INSTANCE_IDENTIFIER);
+    public String getInstanceIdentifier() {
+        String instanceIdentifier = currentSnapshot().instanceIdentifier;
+
+        return instanceIdentifier != null ? instanceIdentifier : super.getInstanceIdentifier();
     }
 
     /**
@@ -92,13 +100,11 @@ public class CachingConfigurationDirectory extends ConfigurationDirectoryV2 {
      * @throws Exception if an error occurs while reading parameters
      */
     @Override
-    public synchronized PrivateParametersV2 getPrivate(String instanceId)
+    public PrivateParametersV2 getPrivate(String instanceId)
             throws Exception {
-        final String key = String.format("%s-%s", PRIVATE_PARAMS, instanceId);
-        if (!cache.isValid(key)) {
-            cache.setValue(key, super.getPrivate(instanceId));
-        }
-        return (PrivateParametersV2) cache.getValue(key);
+        PrivateParametersV2 parameters = currentSnapshot().privateParameters.get(instanceId);
+
+        return parameters != null ? parameters : super.getPrivate(instanceId);
     }
 
     /**
@@ -110,13 +116,19 @@ public class CachingConfigurationDirectory extends ConfigurationDirectoryV2 {
      * @throws Exception if an error occurs while reading parameters
      */
     @Override
-    public synchronized SharedParametersV2 getShared(String instanceId)
+    public SharedParametersV2 getShared(String instanceId)
             throws Exception {
-        final String key = String.format("%s-%s", SHARED_PARAMS, instanceId);
-        if (!cache.isValid(key)) {
-            cache.setValue(key, super.getShared(instanceId));
-        }
-        return (SharedParametersV2) cache.getValue(key);
+        SharedParametersV2 parameters = currentSnapshot().sharedParameters.get(instanceId);
+
+        return parameters != null ? parameters : super.getShared(instanceId);
+    }
+
+    /**
+     * @return all known shared parameters as an unmodifiable list
+     */
+    @Override
+    public List<SharedParametersV2> getShared() {
+        return currentSnapshot().allSharedParameters;
     }
 
     /**
@@ -124,26 +136,93 @@ public class CachingConfigurationDirectory extends ConfigurationDirectoryV2 {
      * configuration files is too old.
      */
     @Override
-    public synchronized void verifyUpToDate() throws Exception {
-        if (!cache.isValid(VERIFY_UP_TO_DATE)) {
+    public void verifyUpToDate() throws Exception {
+        if (isExpired(upToDateVerifiedAt)) {
             super.verifyUpToDate();
-            cache.setValue(VERIFY_UP_TO_DATE, 1);
+            upToDateVerifiedAt = System.currentTimeMillis();
         }
     }
 
     /**
-     * Reloads the configuration directory. Only files that are new or have
-     * changed, are actually loaded.
+     * Reloads the configuration directory and publishes a new snapshot, if
+     * the current snapshot is older than the cache period. Only files that
+     * are new or have changed, are actually loaded.
      *
      * @throws Exception if an error occurs during reload
      */
     @Override
-    public synchronized void reload() throws Exception {
-        // cache validity indicates whether reloading should be done at this time
-        // cache value is meaningless in this case
-        if (cache != null && !cache.isValid(RELOAD_CONF_DIR)) {
-            cache.setValue(RELOAD_CONF_DIR, 1);
+    public void reload() throws Exception {
+        // the superclass constructor calls reload() before this class is initialized
+        if (reloadLock == null) {
+            return;
+        }
+
+        reloadLock.lock();
+        try {
+            reloadIfExpired();
+        } finally {
+            reloadLock.unlock();
+        }
+    }
+
+    private Snapshot currentSnapshot() {
+        Snapshot current = snapshot;
+
+        if (reloadIfChanged && isExpired(current.createdAt) && reloadLock.tryLock()) {
+            try {
+                reloadIfExpired();
+            } catch (Exception e) {
+                log.error("Failed to reload configuration directory {}", getPath(), e);
+            } finally {
+                reloadLock.unlock();
+            }
+
+            current = snapshot;
+        }
+
+        return current;
+    }
+
+    private void reloadIfExpired() throws Exception {
+        if (snapshot == null || isExpired(snapshot.createdAt)) {
             super.reload();
+            snapshot = createSnapshot();
+        }
+    }
+
+    private boolean isExpired(long createdAt) {
+        return System.currentTimeMillis() - createdAt >= expireMillis;
+    }
+
+    private Snapshot createSnapshot() {
+        // if the instance identifier is missing, reading it is left to the callers, as it fails
+        String instanceIdentifier = Files.exists(getPath().resolve(INSTANCE_IDENTIFIER_FILE))
+                ? super.getInstanceIdentifier() : null;
+
+        return new Snapshot(instanceIdentifier, byInstanceIdentifier(getPrivateByDirectory()),
+                byInstanceIdentifier(getSharedByDirectory()));
+    }
+
+    private static <T> Map<String, T> byInstanceIdentifier(Map<String, T> parametersByDirectory) {
+        Map<String, T> parameters = new HashMap<>();
+        parametersByDirectory.forEach((directory, p) -> parameters.put(unescapeInstanceIdentifier(directory), p));
+
+        return parameters;
+    }
+
+    private static final class Snapshot {
+        private final long createdAt = System.currentTimeMillis();
+        private final String instanceIdentifier;
+        private final Map<String, PrivateParametersV2> privateParameters;
+        private final Map<String, SharedParametersV2> sharedParameters;
+        private final List<SharedParametersV2> allSharedParameters;
+
+        Snapshot(String instanceIdentifier, Map<String, PrivateParametersV2> privateParameters,
+                Map<String, SharedParametersV2> sharedParameters) {
+            this.instanceIdentifier = instanceIdentifier;
+            this.privateParameters = privateParameters;
+            this.sharedParameters = sharedParameters;
+            this.allSharedParameters = Collections.unmodifiableList(new ArrayList<>(sharedParameters.values()));
         }
     }
 }
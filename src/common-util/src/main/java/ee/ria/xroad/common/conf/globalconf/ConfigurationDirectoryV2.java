@@ -210,6 +210,20 @@ public class ConfigurationDirectoryV2 implements ConfigurationDirectory {
         return new ArrayList<>(sharedParameters.values());
     }
 
+    /**
+     * @return all loaded private parameters keyed by instance directory name
+     */
+    protected synchronized Map<String, PrivateParametersV2> getPrivateByDirectory() {
+        return new HashMap<>(privateParameters);
+    }
+
+    /**
+     * @return all loaded shared parameters keyed by instance directory name
+     */
+    protected synchronized Map<String, SharedParametersV2> getSharedByDirectory() {
+        return new HashMap<>(sharedParameters);
+    }
+
     /**
      * Applies the given function to all files belonging to the configuration directory.
      *
@@ -373,17 +387,18 @@ public class ConfigurationDirectoryV2 implements ConfigurationDirectory {
         }
     }
 
-    // Loads the parameters from file if the file has changed.
-    // Returns the parameters or null if the file does not exist.
+    // Loads the parameters from file if the file has changed. A changed file is loaded into a new instance,
+    // so that the existing instance is not modified while it is being read by other threads.
     private static <T extends ConfProvider> T loadParameters(Path path, Class<T> clazz, T existingInstance)
             throws Exception {
-        T params = existingInstance != null ? existingInstance : (T) clazz.newInstance();
+        if (existingInstance != null && !existingInstance.hasChanged()) {
+            return existingInstance;
+        }
 
-        if (params.hasChanged()) {
-            log.trace("Loading {} from {}", clazz.getSimpleName(), path);
+        log.trace("Loading {} from {}", clazz.getSimpleName(), path);
 
-            params.load(path.toString());
-        }
+        T params = clazz.newInstance();
+        params.load(path.toString());
 
         return params;
     }
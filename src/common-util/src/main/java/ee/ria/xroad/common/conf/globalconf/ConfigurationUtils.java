@@ -28,6 +28,7 @@ import org.joda.time.DateTime;
 import org.joda.time.format.ISODateTimeFormat;
 
 import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
 import java.net.URLEncoder;
 
 /**
@@ -60,6 +61,20 @@ public final class ConfigurationUtils {
         }
     }
 
+    /**
+     * Returns the instance identifier corresponding to the given directory name.
+     * @param directoryName the escaped instance identifier
+     * @return unescaped instance identifier
+     */
+    public static String unescapeInstanceIdentifier(String directoryName) {
+        try {
+            return URLDecoder.decode(directoryName, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            //IGNORE, UTF-8 is always available
+            return null;
+        }
+    }
+
     /**
      * Generates configuration location with version number
      */
@@ -45,7 +45,6 @@ import lombok.AccessLevel;
 import lombok.Getter;
 import org.apache.commons.lang3.StringUtils;
 import org.bouncycastle.asn1.x500.X500Name;
-import org.bouncycastle.cert.X509CertificateHolder;
 
 import javax.xml.bind.JAXBElement;
 
@@ -80,7 +79,7 @@ public class SharedParametersV2 extends AbstractXmlConf<SharedParametersTypeV2>
     private final Map<X509Certificate, List<OcspInfoType>> caCertsAndOcspData =
             new HashMap<>();
     private final Map<ClientId, Set<String>> memberAddresses = new HashMap<>();
-    private final Map<ClientId, Set<byte[]>> memberAuthCerts = new HashMap<>();
+    private final Map<ClientId, Set<String>> memberAuthCerts = new HashMap<>();
     private final Map<String, SecurityServerType> serverByAuthCert =
             new HashMap<>();
     private final Map<SecurityServerId, Set<ClientId>> securityServerClients =
@@ -88,6 +87,8 @@ public class SharedParametersV2 extends AbstractXmlConf<SharedParametersTypeV2>
     private final List<X509Certificate> verificationCaCerts = new ArrayList<>();
     private final Set<String> knownAddresses = new HashSet<>();
     private final Map<SecurityServerId, SecurityServerType> securityServersById = new HashMap<>();
+    private final Map<GlobalGroupId, GlobalGroupType> globalGroupsById = new HashMap<>();
+    private final Map<GlobalGroupId, Set<ClientId>> globalGroupMembers = new HashMap<>();
 
     SharedParametersV2() {
         super(ObjectFactory.class, SharedParametersSchemaValidatorV2.class);
@@ -142,25 +143,33 @@ public class SharedParametersV2 extends AbstractXmlConf<SharedParametersTypeV2>
     }
 
     GlobalGroupType findGlobalGroup(GlobalGroupId groupId) {
-        if (!groupId.getXRoadInstance().equals(
-                confType.getInstanceIdentifier())) {
-            return null;
-        }
+        return globalGroupsById.get(groupId);
+    }
 
-        return confType.getGlobalGroup().stream()
-                .filter(g -> g.getGroupCode().equals(groupId.getGroupCode()))
-                .findFirst().orElse(null);
+    boolean isSubjectInGlobalGroup(ClientId subjectId, GlobalGroupId groupId) {
+        Set<ClientId> members = globalGroupMembers.get(groupId);
+
+        return members != null && members.contains(subjectId);
     }
 
-    X509Certificate getCaCertForSubject(X509Certificate subject)
-            throws Exception {
-        X509CertificateHolder certHolder =
-                new X509CertificateHolder(subject.getEncoded());
-        if (certHolder.getSubject().equals(certHolder.getIssuer())) {
+    boolean isMemberAuthCert(ClientId memberId, byte[] authCertHash) {
+        Set<String> authCerts = memberAuthCerts.get(memberId);
+
+        return authCerts != null
+                && authCerts.contains(encodeBase64(authCertHash));
+    }
+
+    X509Certificate getCaCertForSubject(X509Certificate subject) {
+        X500Name issuer = getIssuer(subject);
+        if (issuer.equals(getSubject(subject))) {
             return null;
         }
 
-        return subjectsAndCaCerts.get(certHolder.getIssuer());
+        return subjectsAndCaCerts.get(issuer);
+    }
+
+    X509Certificate getCaCertForIssuer(X509Certificate subject) {
+        return subjectsAndCaCerts.get(getIssuer(subject));
     }
 
     @Override
@@ -176,6 +185,7 @@ public class SharedParametersV2 extends AbstractXmlConf<SharedParametersTypeV2>
             cacheCaCerts();
             cacheKnownAddresses();
             cacheSecurityServers();
+            cacheGlobalGroups();
         } catch (Exception e) {
             throw translateException(e);
         }
@@ -202,6 +212,8 @@ public class SharedParametersV2 extends AbstractXmlConf<SharedParametersTypeV2>
         verificationCaCerts.clear();
         knownAddresses.clear();
         securityServersById.clear();
+        globalGroupsById.clear();
+        globalGroupMembers.clear();
     }
 
     private void cacheCaCerts() throws CertificateException, IOException {
@@ -232,9 +244,7 @@ public class SharedParametersV2 extends AbstractXmlConf<SharedParametersTypeV2>
         }
 
         for (X509Certificate cert : allCaCerts) {
-            X509CertificateHolder certHolder =
-                    new X509CertificateHolder(cert.getEncoded());
-            subjectsAndCaCerts.put(certHolder.getSubject(), cert);
+            subjectsAndCaCerts.put(getSubject(cert), cert);
         }
     }
 
@@ -282,6 +292,19 @@ public class SharedParametersV2 extends AbstractXmlConf<SharedParametersTypeV2>
         }
     }
 
+    private void cacheGlobalGroups() {
+        for (GlobalGroupType globalGroup : confType.getGlobalGroup()) {
+            GlobalGroupId groupId = createGlobalGroupId(globalGroup);
+
+            // Group codes are unique, but should they repeat, the first
+            // group wins as it did when the groups were searched linearly.
+            if (globalGroupsById.putIfAbsent(groupId, globalGroup) == null) {
+                globalGroupMembers.put(groupId,
+                        new HashSet<>(globalGroup.getGroupMember()));
+            }
+        }
+    }
+
     private void addServerClient(ClientId client, SecurityServerType server) {
         // Add the mapping from client to security server address.
         if (isNotBlank(server.getAddress())) {
@@ -290,7 +313,7 @@ public class SharedParametersV2 extends AbstractXmlConf<SharedParametersTypeV2>
 
         // Add the mapping from client to authentication certificate.
         for (byte[] authCert : server.getAuthCertHash()) {
-            addToMap(memberAuthCerts, client, authCert);
+            addToMap(memberAuthCerts, client, encodeBase64(authCert));
         }
 
         MemberType owner = getOwner(server);
@@ -335,6 +358,18 @@ public class SharedParametersV2 extends AbstractXmlConf<SharedParametersTypeV2>
         coll.add(value);
     }
 
+    // Certificates parse their names already, there is no need to decode
+    // the whole certificate again to get them as X500Name.
+    private static X500Name getSubject(X509Certificate cert) {
+        return X500Name.getInstance(
+                cert.getSubjectX500Principal().getEncoded());
+    }
+
+    private static X500Name getIssuer(X509Certificate cert) {
+        return X500Name.getInstance(
+                cert.getIssuerX500Principal().getEncoded());
+    }
+
     private static List<X509Certificate> getTopOrIntermediateCaCerts(
             List<CaInfoType> typesUnderCA) {
         return typesUnderCA.stream()
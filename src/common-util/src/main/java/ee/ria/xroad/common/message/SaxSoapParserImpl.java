@@ -40,8 +40,10 @@ import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.input.BOMInputStream;
 import org.apache.commons.io.input.TeeInputStream;
+import org.apache.commons.io.output.ByteArrayOutputStream;
 import org.apache.commons.lang3.StringEscapeUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.bouncycastle.operator.DigestCalculator;
 import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
 import org.xml.sax.SAXParseException;
@@ -54,8 +56,8 @@ import javax.xml.parsers.SAXParserFactory;
 import javax.xml.soap.SOAPException;
 
 import java.io.BufferedWriter;
-import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.util.Arrays;
@@ -75,6 +77,7 @@ import static ee.ria.xroad.common.ErrorCodes.X_MISSING_HEADER;
 import static ee.ria.xroad.common.ErrorCodes.X_MISSING_HEADER_FIELD;
 import static ee.ria.xroad.common.ErrorCodes.translateException;
 import static ee.ria.xroad.common.message.SoapUtils.validateMimeType;
+import static ee.ria.xroad.common.util.CryptoUtils.createDigestCalculator;
 import static ee.ria.xroad.common.util.MimeUtils.UTF8;
 import static ee.ria.xroad.common.util.MimeUtils.hasUtf8Charset;
 
@@ -170,6 +173,12 @@ public class SaxSoapParserImpl implements SoapParser {
 
     private static final SAXParserFactory PARSER_FACTORY = createSaxParserFactory();
 
+    // Buffers of at most this size are kept for parsing the next message on the same thread, larger
+    // messages get a new buffer so that idle threads do not hold on to the memory of large messages
+    private static final int MAX_RETAINED_BUFFER_SIZE = 64 * 1024;
+
+    private static final ThreadLocal<ByteArrayOutputStream> RAW_XML_BUFFER = new ThreadLocal<>();
+
     @Override
     public Soap parse(String contentType, InputStream is) {
         String mimeType = MimeUtils.getBaseContentType(contentType);
@@ -193,21 +202,55 @@ public class SaxSoapParserImpl implements SoapParser {
     private Soap parseMessage(InputStream is, String mimeType, String contentType, String charset) throws Exception {
         log.trace("parseMessage({}, {})", mimeType, charset);
 
-        ByteArrayOutputStream rawXml = new ByteArrayOutputStream();
+        // The raw XML is copied only once, into the message bytes. The buffer grows in chunks
+        // without copying and small buffers are reused by the next message parsed on this thread.
+        // The hash of the raw XML is calculated from the buffer only when the raw XML is used.
+        ByteArrayOutputStream rawXml = takeRawXmlBuffer();
         ByteArrayOutputStream processedXml = new ByteArrayOutputStream();
 
-        InputStream proxyStream = excludeUtf8Bom(contentType, new TeeInputStream(is, rawXml));
-        Writer outputWriter = new OutputStreamWriter(processedXml, charset);
-        XRoadSoapHandler handler = handleSoap(outputWriter, proxyStream);
+        try {
+            InputStream proxyStream = excludeUtf8Bom(contentType, new TeeInputStream(is, rawXml));
+            Writer outputWriter = new OutputStreamWriter(processedXml, charset);
+            XRoadSoapHandler handler = handleSoap(outputWriter, proxyStream);
+
+            CodedException fault = handler.getFault();
+            if (fault != null) {
+                return createSoapFault(charset, rawXml, fault);
+            }
+
+            if (isProcessedXmlRequired()) {
+                return createSoapMessage(contentType, charset, handler, processedXml.toByteArray(), null);
+            }
+
+            DigestCalculator rawXmlDigest = createDigestCalculator(SoapUtils.getHashAlgoId());
 
-        CodedException fault = handler.getFault();
-        if (fault != null) {
-            return createSoapFault(charset, rawXml, fault);
+            try (OutputStream digestOut = rawXmlDigest.getOutputStream()) {
+                rawXml.writeTo(digestOut);
+            }
+
+            return createSoapMessage(contentType, charset, handler, rawXml.toByteArray(), rawXmlDigest.getDigest());
+        } finally {
+            releaseRawXmlBuffer(rawXml);
         }
+    }
 
-        byte[] xmlBytes = isProcessedXmlRequired() ? processedXml.toByteArray() : rawXml.toByteArray();
+    private static ByteArrayOutputStream takeRawXmlBuffer() {
+        ByteArrayOutputStream buffer = RAW_XML_BUFFER.get();
+
+        if (buffer == null) {
+            return new ByteArrayOutputStream();
+        }
 
-        return createSoapMessage(contentType, charset, handler, xmlBytes);
+        RAW_XML_BUFFER.remove();
+
+        return buffer;
+    }
+
+    private static void releaseRawXmlBuffer(ByteArrayOutputStream buffer) {
+        if (buffer.size() <= MAX_RETAINED_BUFFER_SIZE) {
+            buffer.reset();
+            RAW_XML_BUFFER.set(buffer);
+        }
     }
 
     private XRoadSoapHandler handleSoap(Writer writer, InputStream inputStream)
@@ -229,9 +272,9 @@ public class SaxSoapParserImpl implements SoapParser {
     }
 
     private static Soap createSoapMessage(String contentType, String charset,
-            XRoadSoapHandler handler, byte[] xmlBytes) throws Exception {
+            XRoadSoapHandler handler, byte[] xmlBytes, byte[] hash) throws Exception {
         return new SoapMessageImpl(xmlBytes, charset, handler.getHeader(),
-                null, handler.getServiceName(), handler.isRpc(), contentType);
+                null, handler.getServiceName(), handler.isRpc(), contentType, hash);
     }
 
     private static Soap createSoapFault(String charset,
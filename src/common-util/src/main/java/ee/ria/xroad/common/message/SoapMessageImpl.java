@@ -46,8 +46,17 @@ public class SoapMessageImpl extends AbstractSoapMessage<SoapHeader> {
     SoapMessageImpl(byte[] rawXml, String charset, SoapHeader header,
             SOAPMessage soap, String serviceName, boolean isRpcEncoded,
             String originalContentType) throws Exception {
+        this(rawXml, charset, header, soap, serviceName, isRpcEncoded,
+                originalContentType, null);
+    }
+
+    SoapMessageImpl(byte[] rawXml, String charset, SoapHeader header,
+            SOAPMessage soap, String serviceName, boolean isRpcEncoded,
+            String originalContentType, byte[] hash) throws Exception {
         super(rawXml, charset, header, soap, isResponseMessage(serviceName),
                 isRpcEncoded, originalContentType);
+
+        this.hash = hash;
     }
 
     /**
@@ -0,0 +1,186 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.util;
+
+import lombok.Value;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Bounded buffer with a preallocated ring of slots. Any number of threads may add elements
+ * concurrently without locking, but only one thread at a time may drain the buffer.
+ * Elements that do not fit in the buffer are discarded and counted.
+ *
+ * @param <E> the type of the elements
+ */
+public class BoundedRingBuffer<E> {
+
+    private final int capacity;
+    private final AtomicReferenceArray<E> elements;
+
+    // Slot i is free for the producer at position p when its sequence is p, and holds
+    // an element for the consumer at position p when its sequence is p + 1.
+    private final AtomicLongArray sequences;
+
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+
+    private final LongAdder overflowCount = new LongAdder();
+
+    /**
+     * Creates a buffer.
+     * @param capacity the maximum number of elements in the buffer
+     */
+    public BoundedRingBuffer(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+
+        this.capacity = capacity;
+        this.elements = new AtomicReferenceArray<>(capacity);
+        this.sequences = new AtomicLongArray(capacity);
+
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Adds the element to the buffer, if there is room for it. May be called from any thread.
+     * @param element the element
+     * @return true if the element was added, false if the buffer was full
+     */
+    public boolean offer(E element) {
+        long position = tail.get();
+
+        while (true) {
+            int slot = slot(position);
+            long difference = sequences.get(slot) - position;
+
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    elements.lazySet(slot, element);
+                    sequences.set(slot, position + 1);
+
+                    return true;
+                }
+
+                position = tail.get();
+            } else if (difference < 0) {
+                overflowCount.increment();
+
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Removes up to the given number of elements from the buffer in the order they were added.
+     * Must only be called from one thread at a time. If the consumer throws an exception, the elements
+     * given to it so far are removed and the rest are left in the buffer.
+     * @param consumer receives the removed elements
+     * @param maxElements the maximum number of elements to remove
+     * @return the number of removed elements
+     */
+    public int drain(Consumer<? super E> consumer, int maxElements) {
+        long position = head;
+        int count = 0;
+
+        try {
+            while (count < maxElements) {
+                int slot = slot(position);
+
+                if (sequences.get(slot) != position + 1) {
+                    break;
+                }
+
+                E element = elements.get(slot);
+                elements.lazySet(slot, null);
+                sequences.set(slot, position + capacity);
+
+                position++;
+                count++;
+
+                consumer.accept(element);
+            }
+        } finally {
+            // The slots up to the position have been freed even if the consumer failed
+            head = position;
+        }
+
+        return count;
+    }
+
+    /**
+     * @return the approximate number of elements in the buffer
+     */
+    public int size() {
+        long size = tail.get() - head;
+
+        return (int) Math.max(0, Math.min(capacity, size));
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return the number of elements discarded because the buffer was full
+     */
+    public long getOverflowCount() {
+        return overflowCount.sum();
+    }
+
+    /**
+     * @return the current statistics of the buffer
+     */
+    public Statistics getStatistics() {
+        return new Statistics(capacity, size(), getOverflowCount());
+    }
+
+    private int slot(long position) {
+        return (int) (position % capacity);
+    }
+
+    /**
+     * Ring buffer statistics.
+     */
+    @Value
+    public static class Statistics {
+        private final int capacity;
+        private final int size;
+        private final long overflowCount;
+    }
+}
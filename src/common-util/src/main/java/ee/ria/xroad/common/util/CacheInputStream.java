@@ -26,11 +26,12 @@ package ee.ria.xroad.common.util;
 
 import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.channels.Channels;
 import java.nio.channels.SeekableByteChannel;
 
 /**
- * Cache contents as an input stream
+ * Cache contents as an input stream. The contents are read either from a temporary file or from memory.
  */
 public final class CacheInputStream extends FilterInputStream {
     private final long size;
@@ -40,6 +41,11 @@ public final class CacheInputStream extends FilterInputStream {
         size = ch.size();
     }
 
+    CacheInputStream(InputStream in, long size) {
+        super(in);
+        this.size = size;
+    }
+
     public long size() {
         return size;
     }
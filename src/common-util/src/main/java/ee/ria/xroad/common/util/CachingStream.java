@@ -26,42 +26,81 @@ package ee.ria.xroad.common.util;
 
 import ee.ria.xroad.common.DefaultFilepaths;
 import ee.ria.xroad.common.ErrorCodes;
+import ee.ria.xroad.common.SystemProperties;
 
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
 import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
 import java.nio.channels.Channels;
 import java.nio.channels.SeekableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * Caches stuff in a temporary file.
+ * Caches stuff in memory up to a configured threshold and in a temporary file after that.
+ * The memory is allocated in chunks that are taken from (and returned to) a shared pool.
+ *
+ * The chunks are returned to the pool once the stream has been consumed and every stream returned by
+ * {@link #getCachedContents()} has been read to the end. The chunks of a stream that is not read to the
+ * end are left to the garbage collector, so that the bytes are never reused while they may still be read.
  */
 @Slf4j
 public class CachingStream extends FilterOutputStream {
+    static final int CHUNK_SIZE = 8192;
+    private static final int MAX_POOLED_CHUNKS = 1024;
+
+    private static final Queue<byte[]> CHUNK_POOL = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger POOLED_CHUNK_COUNT = new AtomicInteger();
+
+    private final int memoryThreshold;
+    private final List<byte[]> chunks = new ArrayList<>();
+    private long size;
+
     private SeekableByteChannel channel;
     private Path tempFile;
 
+    // The number of streams reading the chunks that have not been read to the end
+    private int activeReaders;
+    private boolean consumed;
+
     /**
-     * Constructs a new caching stream that caches data in a temporary file.
+     * Constructs a new caching stream that caches data in memory up to
+     * {@link SystemProperties#getTempFilesMemoryThreshold()} bytes and in a temporary file after that.
      *
      * @throws IOException if I/O errors occurred
      */
     public CachingStream() throws IOException {
+        this(SystemProperties.getTempFilesMemoryThreshold());
+    }
+
+    /**
+     * Constructs a new caching stream that caches data in memory up to the given number of bytes and
+     * in a temporary file after that.
+     *
+     * @param memoryThreshold maximum number of bytes kept in memory, 0 to always use a temporary file
+     * @throws IOException if I/O errors occurred
+     */
+    public CachingStream(int memoryThreshold) throws IOException {
         // Construct the parent class with null stream and replace it later.
         super(null);
 
-        tempFile = DefaultFilepaths.createTempFile("tmpattach", null);
-        channel = Files.newByteChannel(tempFile, StandardOpenOption.CREATE,
-                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING,
-                StandardOpenOption.READ, StandardOpenOption.DELETE_ON_CLOSE);
+        this.memoryThreshold = memoryThreshold;
 
-        // Now that we are set up, we can set the output stream in the
-        // parent class.
-        out = Channels.newOutputStream(channel);
+        if (memoryThreshold <= 0) {
+            spillToFile();
+        }
     }
 
     @Override
@@ -70,10 +109,37 @@ public class CachingStream extends FilterOutputStream {
         flush();
     }
 
+    @Override
+    public void flush() throws IOException {
+        if (out != null) {
+            out.flush();
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] {(byte) b}, 0, 1);
+    }
+
     @Override
     public void write(byte[] b, int off, int len) throws IOException {
-        // prevent FilterOutputStream from writing inefficiently
-        out.write(b, off, len);
+        if (out == null && size + len > memoryThreshold) {
+            spillToFile();
+        }
+
+        if (out != null) {
+            // prevent FilterOutputStream from writing inefficiently
+            out.write(b, off, len);
+        } else {
+            writeToChunks(b, off, len);
+        }
+    }
+
+    /**
+     * @return true if the cached contents are kept in memory.
+     */
+    public boolean isInMemory() {
+        return channel == null;
     }
 
     /**
@@ -82,6 +148,14 @@ public class CachingStream extends FilterOutputStream {
      * @see #consume() to free resources used by the cache.
      */
     public CacheInputStream getCachedContents() {
+        if (channel == null) {
+            synchronized (this) {
+                activeReaders++;
+            }
+
+            return new CacheInputStream(new ChunkInputStream(chunksAsStream()), size);
+        }
+
         try {
             return new CacheInputStream(channel);
         } catch (IOException ex) { // the position shouldn't really throw
@@ -90,9 +164,22 @@ public class CachingStream extends FilterOutputStream {
     }
 
     /**
-     * Finalize caching stream. Use to avoid file handle leaks.
+     * Finalize caching stream. Use to avoid file handle leaks. The cached contents must not be read
+     * after calling this method.
      */
     public void consume() {
+        synchronized (this) {
+            consumed = true;
+
+            if (activeReaders == 0) {
+                releaseChunks();
+            }
+        }
+
+        if (channel == null) {
+            return;
+        }
+
         try {
             channel.close();
         } catch (IOException e) {
@@ -100,4 +187,125 @@ public class CachingStream extends FilterOutputStream {
         }
     }
 
+    private void writeToChunks(byte[] b, int off, int len) {
+        int remaining = len;
+        int offset = off;
+
+        while (remaining > 0) {
+            int chunkOffset = (int) (size % CHUNK_SIZE);
+
+            if (chunkOffset == 0) {
+                chunks.add(takeChunk());
+            }
+
+            int count = Math.min(remaining, CHUNK_SIZE - chunkOffset);
+            System.arraycopy(b, offset, chunks.get(chunks.size() - 1), chunkOffset, count);
+
+            offset += count;
+            remaining -= count;
+            size += count;
+        }
+    }
+
+    private void spillToFile() throws IOException {
+        tempFile = DefaultFilepaths.createTempFile("tmpattach", null);
+        channel = Files.newByteChannel(tempFile, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.DELETE_ON_CLOSE);
+
+        // Now that we are set up, we can set the output stream in the
+        // parent class.
+        out = Channels.newOutputStream(channel);
+
+        long remaining = size;
+
+        for (byte[] chunk : chunks) {
+            int count = (int) Math.min(remaining, CHUNK_SIZE);
+            out.write(chunk, 0, count);
+            remaining -= count;
+        }
+
+        synchronized (this) {
+            if (activeReaders == 0) {
+                releaseChunks();
+            } else {
+                chunks.clear();
+            }
+        }
+    }
+
+    private InputStream chunksAsStream() {
+        List<InputStream> streams = new ArrayList<>(chunks.size());
+        long remaining = size;
+
+        for (byte[] chunk : chunks) {
+            int count = (int) Math.min(remaining, CHUNK_SIZE);
+            streams.add(new ByteArrayInputStream(chunk, 0, count));
+            remaining -= count;
+        }
+
+        return new SequenceInputStream(Collections.enumeration(streams));
+    }
+
+    private void releaseChunks() {
+        for (byte[] chunk : chunks) {
+            if (POOLED_CHUNK_COUNT.incrementAndGet() <= MAX_POOLED_CHUNKS) {
+                CHUNK_POOL.offer(chunk);
+            } else {
+                POOLED_CHUNK_COUNT.decrementAndGet();
+            }
+        }
+
+        chunks.clear();
+    }
+
+    private synchronized void readerFinished() {
+        activeReaders--;
+
+        if (activeReaders == 0 && consumed) {
+            releaseChunks();
+        }
+    }
+
+    private static byte[] takeChunk() {
+        byte[] chunk = CHUNK_POOL.poll();
+
+        if (chunk != null) {
+            POOLED_CHUNK_COUNT.decrementAndGet();
+            return chunk;
+        }
+
+        return new byte[CHUNK_SIZE];
+    }
+
+    /**
+     * Reads the chunks and tells the caching stream when the end has been reached, after which the
+     * chunks are no longer referenced by the stream.
+     */
+    private final class ChunkInputStream extends FilterInputStream {
+        private boolean finished;
+
+        ChunkInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            return checkEnd(super.read());
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return checkEnd(super.read(b, off, len));
+        }
+
+        private int checkEnd(int result) {
+            if (result < 0 && !finished) {
+                finished = true;
+                readerFinished();
+            }
+
+            return result;
+        }
+    }
 }
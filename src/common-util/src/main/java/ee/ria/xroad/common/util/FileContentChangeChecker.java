@@ -24,24 +24,39 @@
  */
 package ee.ria.xroad.common.util;
 
+import lombok.extern.slf4j.Slf4j;
+
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Objects;
 
 import static ee.ria.xroad.common.util.CryptoUtils.MD5_ID;
 import static ee.ria.xroad.common.util.CryptoUtils.hexDigest;
 import static org.apache.commons.io.IOUtils.toByteArray;
 
 /**
- * A checksum based file modification checker.
+ * A checksum based file modification checker. The checksum is only recalculated if the modification time, size or
+ * identity of the file has changed since the previous check, or if the file was modified too recently for its
+ * modification time to be trusted.
  */
+@Slf4j
 public class FileContentChangeChecker {
 
+    // Files modified less than this long before their attributes were read are always checksummed, since a
+    // subsequent modification within the file system timestamp granularity would not change the attributes
+    private static final long RACY_INTERVAL_MILLIS = 2000;
+
     private final String fileName;
 
     private String checksum;
     private String previousChecksum;
 
+    private FileState fileState;
+
     /**
      * Calculates hash of the input file.
      * @param fileName the input file
@@ -51,6 +66,7 @@ public class FileContentChangeChecker {
         this.fileName = fileName;
 
         File file = getFile();
+        this.fileState = readFileState(file);
         this.checksum = calculateConfFileChecksum(file);
     }
 
@@ -60,9 +76,15 @@ public class FileContentChangeChecker {
      */
     public boolean hasChanged() throws Exception {
         File file = getFile();
+        FileState currentFileState = readFileState(file);
+
+        if (currentFileState != null && currentFileState.isUnchangedSince(fileState)) {
+            return false;
+        }
 
         previousChecksum = checksum;
         checksum = calculateConfFileChecksum(file);
+        fileState = currentFileState;
         return !checksum.equals(previousChecksum);
     }
 
@@ -70,6 +92,21 @@ public class FileContentChangeChecker {
         return new File(fileName);
     }
 
+    /**
+     * @param file the input file
+     * @return the attributes of the file or null, if the attributes are not available and the checksum has to be
+     * calculated on every check
+     */
+    protected BasicFileAttributes readAttributes(File file) {
+        try {
+            return Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+        } catch (IOException | UnsupportedOperationException e) {
+            log.trace("Cannot read attributes of file {}: {}", file, e.getMessage());
+
+            return null;
+        }
+    }
+
     protected InputStream getInputStream(File file) throws Exception {
         return new FileInputStream(file);
     }
@@ -79,4 +116,32 @@ public class FileContentChangeChecker {
             return hexDigest(MD5_ID, toByteArray(in));
         }
     }
+
+    private FileState readFileState(File file) {
+        long readAt = System.currentTimeMillis();
+        BasicFileAttributes attributes = readAttributes(file);
+
+        return attributes != null ? new FileState(attributes, readAt) : null;
+    }
+
+    private static final class FileState {
+        private final long lastModified;
+        private final long size;
+        private final Object fileKey;
+        private final boolean racy;
+
+        FileState(BasicFileAttributes attributes, long readAt) {
+            this.lastModified = attributes.lastModifiedTime().toMillis();
+            this.size = attributes.size();
+            this.fileKey = attributes.fileKey();
+            this.racy = readAt - lastModified < RACY_INTERVAL_MILLIS;
+        }
+
+        boolean isUnchangedSince(FileState previous) {
+            return previous != null && !previous.racy
+                    && lastModified == previous.lastModified
+                    && size == previous.size
+                    && Objects.equals(fileKey, previous.fileKey);
+        }
+    }
 }
@@ -36,13 +36,19 @@ import javax.xml.validation.SchemaFactory;
 import javax.xml.validation.Validator;
 
 import java.net.URL;
+import java.util.IdentityHashMap;
+import java.util.Map;
 
 /**
- * Base class for schema-based validators.
+ * Base class for schema-based validators. The validators created from a schema are reused by the subsequent
+ * validations on the same thread.
  */
 @Slf4j
 public abstract class SchemaValidator {
 
+    private static final ThreadLocal<Map<Schema, Validator>> VALIDATORS =
+            ThreadLocal.withInitial(IdentityHashMap::new);
+
     protected static Schema createSchema(String fileName) {
         SchemaFactory factory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI,
                 "com.sun.org.apache.xerces.internal.jaxp.validation.XMLSchemaFactory", null);
@@ -62,13 +68,23 @@ public abstract class SchemaValidator {
             throw new IllegalStateException("Schema is not initialized");
         }
 
-        try {
-            Validator validator = schema.newValidator();
+        Map<Schema, Validator> validators = VALIDATORS.get();
+        Validator validator = validators.get(schema);
+
+        if (validator == null) {
+            validator = schema.newValidator();
             validator.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+        }
 
+        // The validator is not shared with other validations until this one has completed successfully
+        validators.remove(schema);
+
+        try {
             validator.validate(source);
         } catch (SAXException e) {
             throw new CodedException(errorCode, e);
         }
+
+        validators.put(schema, validator);
     }
 }
@@ -71,6 +71,8 @@ public final class XmlUtils {
 
     private static final String ELEMENT_NOT_FOUND_WARNING = "Element not found with getElementXPathNS {}";
 
+    private static final String ID_ATTRIBUTE = "Id";
+
     private XmlUtils() {
     }
 
@@ -191,26 +193,48 @@ public final class XmlUtils {
 
     /**
      * Returns the element that has an ID attribute matching the input.
-     * The search is performed using XPath evaluation.
+     * The search walks the document tree in document order, which gives the same result as the XPath expression
+     * <code>//*[@Id = 'id']</code> without creating an XPath evaluator for every lookup.
      * @param doc the document
      * @param id the id
      * @return the element or null, if the element cannot be found
      */
     public static Element getElementById(Document doc, String id) {
-        if (id.startsWith("#")) {
-            id = id.substring(1);
+        String elementId = id.startsWith("#") ? id.substring(1) : id;
+
+        Node node = doc.getDocumentElement();
+
+        while (node != null) {
+            if (node.getNodeType() == Node.ELEMENT_NODE) {
+                Element element = (Element) node;
+
+                if (element.hasAttribute(ID_ATTRIBUTE) && elementId.equals(element.getAttribute(ID_ATTRIBUTE))) {
+                    return element;
+                }
+            }
+
+            node = nextInDocumentOrder(node);
         }
 
-        try {
-            XPathFactory factory = XPathFactory.newInstance();
-            XPath xpath = factory.newXPath();
+        return null;
+    }
 
-            return (Element) xpath.evaluate("//*[@Id = '" + id + "']", doc, XPathConstants.NODE);
-        } catch (XPathExpressionException e) {
-            log.warn(ELEMENT_NOT_FOUND_WARNING, e);
+    private static Node nextInDocumentOrder(Node node) {
+        if (node.getFirstChild() != null) {
+            return node.getFirstChild();
+        }
 
-            return null;
+        Node current = node;
+
+        while (current != null) {
+            if (current.getNextSibling() != null) {
+                return current.getNextSibling();
+            }
+
+            current = current.getParentNode();
         }
+
+        return null;
     }
 
     /**
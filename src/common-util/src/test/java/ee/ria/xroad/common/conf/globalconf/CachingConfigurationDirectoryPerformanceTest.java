@@ -0,0 +1,111 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.conf.globalconf;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Compares the throughput of the lookups that global configuration does on every request, when the parameters are
+ * read from the synchronized {@link ConfigurationDirectoryV2} and from the snapshot of
+ * {@link CachingConfigurationDirectory}, with different numbers of concurrent threads.
+ */
+@Slf4j
+public final class CachingConfigurationDirectoryPerformanceTest {
+
+    private static final int WARMUP_ITERATIONS = 100_000;
+    private static final int ITERATIONS = 1_000_000;
+
+    private static final int[] THREAD_COUNTS = {1, 4, 16, 64};
+
+    private static final String CONF_PATH = "src/test/resources/globalconf_good_v2";
+
+    private CachingConfigurationDirectoryPerformanceTest() {
+    }
+
+    /**
+     * Main program entry point.
+     * @param args command-line arguments, not used
+     * @throws Exception in case of any errors
+     */
+    public static void main(String[] args) throws Exception {
+        ConfigurationDirectoryV2 synchronizedDir = new ConfigurationDirectoryV2(CONF_PATH, false);
+        ConfigurationDirectoryV2 snapshotDir = new CachingConfigurationDirectory(CONF_PATH, true);
+
+        for (int threads : THREAD_COUNTS) {
+            measure("synchronized", synchronizedDir, threads);
+            measure("snapshot", snapshotDir, threads);
+        }
+    }
+
+    private static void measure(String name, ConfigurationDirectoryV2 dir, int threads) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        try {
+            run(executor, dir, threads, WARMUP_ITERATIONS);
+
+            long start = System.nanoTime();
+            run(executor, dir, threads, ITERATIONS);
+            long nanos = System.nanoTime() - start;
+
+            log.info("{} threads, {}: {} lookups per second", threads, name,
+                    (long) ITERATIONS * threads * 1_000_000_000L / nanos);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static void run(ExecutorService executor, ConfigurationDirectoryV2 dir, int threads, int iterations)
+            throws Exception {
+        List<Future<Integer>> results = new ArrayList<>();
+
+        for (int i = 0; i < threads; i++) {
+            results.add(executor.submit(() -> lookup(dir, iterations)));
+        }
+
+        for (Future<Integer> result : results) {
+            result.get();
+        }
+    }
+
+    private static int lookup(ConfigurationDirectoryV2 dir, int iterations) throws Exception {
+        int found = 0;
+
+        for (int i = 0; i < iterations; i++) {
+            String instanceIdentifier = dir.getInstanceIdentifier();
+
+            if (dir.getShared(instanceIdentifier) != null && dir.getPrivate(instanceIdentifier) != null) {
+                found++;
+            }
+        }
+
+        return found;
+    }
+}
@@ -35,6 +35,7 @@ import static ee.ria.xroad.common.ErrorCodes.X_OUTDATED_GLOBALCONF;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
 /**
  * Tests to verify configuration directories are read correctly.
@@ -72,6 +73,27 @@ public class ConfigurationDirectoryTest {
         assertNull(dir.getShared("xxx"));
     }
 
+    /**
+     * Test to ensure a correct configuration directory is read properly from the snapshot of a caching directory.
+     *
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test
+    public void readCachingDirectoryV2() throws Exception {
+        CachingConfigurationDirectory dir =
+                new CachingConfigurationDirectory("src/test/resources/globalconf_good_v2", true);
+
+        assertEquals("EE", dir.getInstanceIdentifier());
+        assertEquals("foo", dir.getPrivate("foo").getInstanceIdentifier());
+        assertEquals("foo", dir.getShared("foo").getInstanceIdentifier());
+        assertSame(dir.getShared("foo"), dir.getShared("foo"));
+        assertEquals(3, dir.getShared().size());
+
+        assertNull(dir.getPrivate("bar"));
+        assertNotNull(dir.getShared("bar"));
+        assertNull(dir.getShared("xxx"));
+    }
+
     /**
      * Test to ensure an empty configuration directory is read properly.
      *
@@ -0,0 +1,153 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.conf.globalconf;
+
+import ee.ria.xroad.common.conf.globalconf.sharedparameters.v2.GlobalGroupType;
+import ee.ria.xroad.common.identifier.ClientId;
+import ee.ria.xroad.common.identifier.GlobalGroupId;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Compares the global group membership check of {@link SharedParametersV2} with searching the members of the group
+ * one by one, for groups of different sizes.
+ */
+@Slf4j
+public final class SharedParametersV2PerformanceTest {
+
+    private static final int WARMUP_ITERATIONS = 10_000;
+    private static final int ITERATIONS = 100_000;
+
+    private static final int[] GROUP_SIZES = {10, 100, 1000, 10_000};
+
+    private static final String INSTANCE = "EE";
+    private static final String GROUP_CODE = "group";
+
+    private SharedParametersV2PerformanceTest() {
+    }
+
+    /**
+     * Main program entry point.
+     * @param args command-line arguments, not used
+     * @throws Exception in case of any errors
+     */
+    public static void main(String[] args) throws Exception {
+        Random random = new Random(1);
+        GlobalGroupId groupId = GlobalGroupId.create(INSTANCE, GROUP_CODE);
+
+        for (int groupSize : GROUP_SIZES) {
+            SharedParametersV2 parameters = load(groupSize);
+
+            measure("one by one", groupSize, random, subjectId -> {
+                GlobalGroupType group = parameters.getGlobalGroups().stream()
+                        .filter(g -> g.getGroupCode().equals(groupId.getGroupCode()))
+                        .findFirst().orElse(null);
+
+                return group != null && group.getGroupMember().stream().anyMatch(m -> m.equals(subjectId));
+            });
+
+            measure("index", groupSize, random, subjectId -> parameters.isSubjectInGlobalGroup(subjectId, groupId));
+        }
+    }
+
+    private static void measure(String name, int groupSize, Random random, MembershipCheck check) {
+        run(groupSize, random, check, WARMUP_ITERATIONS);
+
+        long start = System.nanoTime();
+        int members = run(groupSize, random, check, ITERATIONS);
+        long nanos = System.nanoTime() - start;
+
+        log.info("{} members, {}: {} ns per isSubjectInGlobalGroup, {} of {} in group", groupSize, name,
+                nanos / ITERATIONS, members, ITERATIONS);
+    }
+
+    private static int run(int groupSize, Random random, MembershipCheck check, int iterations) {
+        int members = 0;
+
+        for (int i = 0; i < iterations; i++) {
+            // Half of the subjects are not in the group and have to be compared with every member.
+            if (check.isMember(subjectId(random.nextInt(2 * groupSize)))) {
+                members++;
+            }
+        }
+
+        return members;
+    }
+
+    private static SharedParametersV2 load(int groupSize) throws Exception {
+        StringBuilder xml = new StringBuilder()
+                .append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+                .append("<tns:conf xmlns:id=\"http://x-road.eu/xsd/identifiers\"")
+                .append(" xmlns:tns=\"http://x-road.eu/xsd/xroad.xsd\">\n")
+                .append("<instanceIdentifier>").append(INSTANCE).append("</instanceIdentifier>\n")
+                .append("<globalGroup>\n")
+                .append("<groupCode>").append(GROUP_CODE).append("</groupCode>\n")
+                .append("<description>Performance test group</description>\n");
+
+        for (int i = 0; i < groupSize; i++) {
+            ClientId member = subjectId(i);
+
+            xml.append("<groupMember id:objectType=\"SUBSYSTEM\">")
+                    .append("<id:xRoadInstance>").append(member.getXRoadInstance()).append("</id:xRoadInstance>")
+                    .append("<id:memberClass>").append(member.getMemberClass()).append("</id:memberClass>")
+                    .append("<id:memberCode>").append(member.getMemberCode()).append("</id:memberCode>")
+                    .append("<id:subsystemCode>").append(member.getSubsystemCode()).append("</id:subsystemCode>")
+                    .append("</groupMember>\n");
+        }
+
+        xml.append("</globalGroup>\n")
+                .append("<globalSettings>\n")
+                .append("<memberClass><code>GOV</code><description>Government</description></memberClass>\n")
+                .append("<ocspFreshnessSeconds>600</ocspFreshnessSeconds>\n")
+                .append("</globalSettings>\n")
+                .append("</tns:conf>\n");
+
+        Path file = Files.createTempFile("shared-params", ".xml");
+
+        try {
+            Files.write(file, xml.toString().getBytes(StandardCharsets.UTF_8));
+
+            SharedParametersV2 parameters = new SharedParametersV2();
+            parameters.load(file.toString());
+
+            return parameters;
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static ClientId subjectId(int i) {
+        return ClientId.create(INSTANCE, "GOV", "member" + i, "subsystem");
+    }
+
+    private interface MembershipCheck {
+        boolean isMember(ClientId subjectId);
+    }
+}
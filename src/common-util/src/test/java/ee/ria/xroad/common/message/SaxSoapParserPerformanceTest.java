@@ -0,0 +1,97 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.message;
+
+import ee.ria.xroad.common.util.MimeTypes;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayInputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Measures the time and the bytes allocated per parse of {@link SaxSoapParserImpl} for messages of different sizes.
+ */
+@Slf4j
+public final class SaxSoapParserPerformanceTest {
+
+    private static final int WARMUP_ITERATIONS = 20;
+    private static final int ITERATIONS = 50;
+
+    private static final int[] BODY_SIZES = {10 * 1024, 1024 * 1024, 10 * 1024 * 1024};
+
+    private SaxSoapParserPerformanceTest() {
+    }
+
+    /**
+     * Main program entry point.
+     * @param args command-line arguments, not used
+     * @throws Exception in case of any errors
+     */
+    public static void main(String[] args) throws Exception {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        for (int bodySize : BODY_SIZES) {
+            byte[] message = createMessage(bodySize);
+
+            run(message, WARMUP_ITERATIONS);
+
+            long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+            long start = System.nanoTime();
+            run(message, ITERATIONS);
+            long nanos = System.nanoTime() - start;
+            long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+            log.info("{} byte message: {} us and {} bytes allocated per parse ({} bytes per message byte)",
+                    message.length, nanos / ITERATIONS / 1000, allocated / ITERATIONS,
+                    String.format("%.2f", (double) allocated / ITERATIONS / message.length));
+        }
+    }
+
+    private static void run(byte[] message, int iterations) throws Exception {
+        SaxSoapParserImpl parser = new SaxSoapParserImpl();
+
+        for (int i = 0; i < iterations; i++) {
+            SoapMessageImpl soap = (SoapMessageImpl) parser.parse(MimeTypes.TEXT_XML_UTF8,
+                    new ByteArrayInputStream(message));
+            soap.getHash();
+        }
+    }
+
+    private static byte[] createMessage(int bodySize) throws Exception {
+        String query = new String(SoapMessageTestUtil.fileToBytes("simple.query"), StandardCharsets.UTF_8);
+
+        StringBuilder payload = new StringBuilder(bodySize + 64);
+        while (payload.length() < bodySize) {
+            payload.append("<item>lorem ipsum dolor sit amet</item>\n");
+        }
+
+        return query.replace("<name>foo</name>", "<name>foo</name>\n" + payload)
+                .getBytes(StandardCharsets.UTF_8);
+    }
+}
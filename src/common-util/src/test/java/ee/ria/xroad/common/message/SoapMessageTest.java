@@ -59,6 +59,7 @@ import static ee.ria.xroad.common.message.SoapMessageTestUtil.createSoapMessage;
 import static ee.ria.xroad.common.message.SoapMessageTestUtil.fileToBytes;
 import static ee.ria.xroad.common.message.SoapMessageTestUtil.messageToBytes;
 import static ee.ria.xroad.common.message.SoapUtils.getChildElements;
+import static ee.ria.xroad.common.util.CryptoUtils.calculateDigest;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
@@ -294,6 +295,21 @@ public class SoapMessageTest {
         assertEquals("testQueryResponse", responseChild.getLocalPart());
     }
 
+    /**
+     * Test that the hash calculated while parsing equals the hash of the message bytes.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test
+    public void hashCalculatedWhileParsing() throws Exception {
+        byte[] data = fileToBytes("simple.query");
+
+        SoapMessageImpl message = (SoapMessageImpl) new SaxSoapParserImpl().parse(MimeTypes.TEXT_XML_UTF8,
+                new ByteArrayInputStream(data));
+
+        assertTrue(Arrays.areEqual(data, message.getBytes()));
+        assertTrue(Arrays.areEqual(calculateDigest(SoapUtils.getHashAlgoId(), data), message.getHash()));
+    }
+
     private QName getResponseChild(SoapMessageImpl response) throws SOAPException {
         List<SOAPElement> bodyChildren = getChildElements(response.getSoap().getSOAPBody());
         return bodyChildren.get(0).getElementQName();
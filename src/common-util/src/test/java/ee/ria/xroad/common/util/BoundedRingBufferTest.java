@@ -0,0 +1,172 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests {@link BoundedRingBuffer}.
+ */
+public class BoundedRingBufferTest {
+
+    /**
+     * Adds more elements than fit in the buffer, expects the extra ones to be discarded and counted.
+     */
+    @Test
+    public void overflowIsCounted() {
+        BoundedRingBuffer<Integer> buffer = new BoundedRingBuffer<>(2);
+
+        assertTrue(buffer.offer(1));
+        assertTrue(buffer.offer(2));
+        assertFalse(buffer.offer(3));
+
+        assertEquals(2, buffer.size());
+        assertEquals(1, buffer.getOverflowCount());
+
+        List<Integer> drained = new ArrayList<>();
+        assertEquals(2, buffer.drain(drained::add, 10));
+        assertEquals(2, drained.size());
+        assertEquals(1, (int) drained.get(0));
+        assertEquals(2, (int) drained.get(1));
+        assertTrue(buffer.isEmpty());
+    }
+
+    /**
+     * Drains in batches while wrapping around the ring, expects the elements in order.
+     */
+    @Test
+    public void drainsInBatchesInOrder() {
+        BoundedRingBuffer<Integer> buffer = new BoundedRingBuffer<>(3);
+        List<Integer> drained = new ArrayList<>();
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(buffer.offer(i));
+            assertTrue(buffer.offer(-i));
+
+            assertEquals(1, buffer.drain(drained::add, 1));
+            assertEquals(1, buffer.drain(drained::add, 1));
+        }
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i, (int) drained.get(2 * i));
+            assertEquals(-i, (int) drained.get(2 * i + 1));
+        }
+    }
+
+    /**
+     * Fails to consume an element, expects the elements given to the consumer to be removed and the rest
+     * to be drained next.
+     */
+    @Test
+    public void failingConsumerKeepsPosition() {
+        BoundedRingBuffer<Integer> buffer = new BoundedRingBuffer<>(3);
+
+        assertTrue(buffer.offer(1));
+        assertTrue(buffer.offer(2));
+        assertTrue(buffer.offer(3));
+
+        try {
+            buffer.drain(element -> {
+                if (element == 2) {
+                    throw new IllegalStateException("Expected");
+                }
+            }, 10);
+
+            fail("Should fail to drain");
+        } catch (IllegalStateException expected) {
+            // expected
+        }
+
+        assertEquals(1, buffer.size());
+        assertTrue(buffer.offer(4));
+        assertTrue(buffer.offer(5));
+
+        List<Integer> drained = new ArrayList<>();
+        assertEquals(3, buffer.drain(drained::add, 10));
+        assertEquals(3, (int) drained.get(0));
+        assertEquals(4, (int) drained.get(1));
+        assertEquals(5, (int) drained.get(2));
+    }
+
+    /**
+     * Adds elements from several threads while draining, expects every element to be drained exactly once.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test
+    public void concurrentProducers() throws Exception {
+        final int producers = 4;
+        final int perProducer = 100000;
+
+        BoundedRingBuffer<Integer> buffer = new BoundedRingBuffer<>(64);
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+
+        try {
+            List<Future<?>> results = new ArrayList<>();
+
+            for (int p = 0; p < producers; p++) {
+                final int producer = p;
+
+                results.add(executor.submit(() -> {
+                    for (int i = 0; i < perProducer; i++) {
+                        while (!buffer.offer(producer * perProducer + i)) {
+                            Thread.yield();
+                        }
+                    }
+                }));
+            }
+
+            boolean[] seen = new boolean[producers * perProducer];
+            int[] count = new int[1];
+
+            while (count[0] < seen.length) {
+                buffer.drain(element -> {
+                    assertFalse(seen[element]);
+                    seen[element] = true;
+                    count[0]++;
+                }, 16);
+            }
+
+            for (Future<?> result : results) {
+                result.get(10, TimeUnit.SECONDS);
+            }
+
+            assertTrue(buffer.isEmpty());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.util;
+
+import ee.ria.xroad.common.SystemProperties;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link ee.ria.xroad.common.util.CachingStream}
+ */
+public class CachingStreamTest {
+    private static final int THRESHOLD = 3 * CachingStream.CHUNK_SIZE;
+
+    /**
+     * Use a temporary files path that exists in the build environment.
+     */
+    @Before
+    public void setUp() throws IOException {
+        Files.createDirectories(Paths.get("build/tmp"));
+        System.setProperty(SystemProperties.TEMP_FILES_PATH, "build/tmp");
+    }
+
+    /**
+     * Content smaller than the threshold is kept in memory.
+     */
+    @Test
+    public void smallContentIsKeptInMemory() throws Exception {
+        byte[] content = randomBytes(CachingStream.CHUNK_SIZE + 1);
+
+        CachingStream cache = new CachingStream(THRESHOLD);
+        cache.write(content);
+        cache.close();
+
+        assertTrue(cache.isInMemory());
+        assertContents(content, cache);
+
+        cache.consume();
+    }
+
+    /**
+     * Content larger than the threshold is spilled into a temporary file, including the part
+     * that was already cached in memory.
+     */
+    @Test
+    public void largeContentIsSpilledToFile() throws Exception {
+        byte[] content = randomBytes(THRESHOLD + 1);
+
+        CachingStream cache = new CachingStream(THRESHOLD);
+        cache.write(content, 0, THRESHOLD);
+        assertTrue(cache.isInMemory());
+
+        cache.write(content[THRESHOLD]);
+        cache.close();
+
+        assertFalse(cache.isInMemory());
+        assertContents(content, cache);
+
+        cache.consume();
+    }
+
+    /**
+     * Zero threshold always uses a temporary file.
+     */
+    @Test
+    public void zeroThresholdUsesFile() throws Exception {
+        byte[] content = randomBytes(1);
+
+        CachingStream cache = new CachingStream(0);
+        cache.write(content);
+        cache.close();
+
+        assertFalse(cache.isInMemory());
+        assertContents(content, cache);
+
+        cache.consume();
+    }
+
+    /**
+     * The chunks of a consumed stream are not reused while a reader may still read them.
+     */
+    @Test
+    public void consumedChunksAreNotReusedWhileRead() throws Exception {
+        byte[] content = randomBytes(2 * CachingStream.CHUNK_SIZE);
+
+        CachingStream cache = new CachingStream(THRESHOLD);
+        cache.write(content);
+        cache.close();
+
+        CacheInputStream in = cache.getCachedContents();
+        cache.consume();
+
+        CachingStream other = new CachingStream(THRESHOLD);
+        other.write(new byte[content.length]);
+        other.close();
+
+        assertArrayEquals(content, IOUtils.toByteArray(in));
+
+        other.consume();
+    }
+
+    private static void assertContents(byte[] expected, CachingStream cache) throws IOException {
+        CacheInputStream in = cache.getCachedContents();
+
+        assertEquals(expected.length, in.size());
+        assertArrayEquals(expected, IOUtils.toByteArray(in));
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+
+        return bytes;
+    }
+}
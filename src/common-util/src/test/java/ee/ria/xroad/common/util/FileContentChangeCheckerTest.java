@@ -24,14 +24,21 @@
  */
 package ee.ria.xroad.common.util;
 
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.mockito.Mockito;
 
 import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -39,6 +46,11 @@ import static org.mockito.Mockito.when;
  */
 public class FileContentChangeCheckerTest {
 
+    private static final long ONE_MINUTE_MILLIS = 60_000;
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
     /**
      * Tests whether the file content changes are detected
      * @throws Exception if error occurs
@@ -66,4 +78,29 @@ public class FileContentChangeCheckerTest {
 
         assertTrue("Should have changed", spy.hasChanged());
     }
+
+    /**
+     * Tests that the checksum is not recalculated while the file attributes stay the same
+     * @throws Exception if error occurs
+     */
+    @Test
+    public void skipChecksumOfUnmodifiedFile() throws Exception {
+        File file = tempFolder.newFile("conf.xml");
+        Files.write(file.toPath(), "foo".getBytes(StandardCharsets.UTF_8));
+        long lastModified = System.currentTimeMillis() - ONE_MINUTE_MILLIS;
+        assertTrue(file.setLastModified(lastModified));
+
+        FileContentChangeChecker checker = spy(new FileContentChangeChecker(file.getPath()));
+
+        assertFalse("Should not have changed yet", checker.hasChanged());
+        assertFalse("Should not have changed yet", checker.hasChanged());
+        verify(checker, never()).calculateConfFileChecksum(Mockito.any());
+
+        Files.write(file.toPath(), "bar".getBytes(StandardCharsets.UTF_8));
+        assertTrue(file.setLastModified(lastModified + ONE_MINUTE_MILLIS / 2));
+
+        assertTrue("Should have changed", checker.hasChanged());
+        assertFalse("Should not have changed", checker.hasChanged());
+        verify(checker, times(1)).calculateConfFileChecksum(Mockito.any());
+    }
 }
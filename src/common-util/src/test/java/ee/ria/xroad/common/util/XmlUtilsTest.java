@@ -45,7 +45,9 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.PrintWriter;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
 
 /**
  * Unit tests for {@link XmlUtils}
@@ -104,6 +106,18 @@ public class XmlUtilsTest {
         reader.parse(new InputSource(getXXEFileInjectionDocument()));
     }
 
+    @Test
+    public void getElementById() throws Exception {
+        Document document = XmlUtils.createDocumentBuilderFactory().newDocumentBuilder().parse(
+                new ByteArrayInputStream(("<a Id=\"first\"><b><c Id=\"nested\"/></b><d Id=\"last\"/>"
+                        + "<e Id=\"last\"/></a>").getBytes()));
+
+        assertEquals("a", XmlUtils.getElementById(document, "first").getTagName());
+        assertEquals("c", XmlUtils.getElementById(document, "#nested").getTagName());
+        assertEquals("d", XmlUtils.getElementById(document, "last").getTagName());
+        assertNull(XmlUtils.getElementById(document, "missing"));
+    }
+
     private InputStream getXXEFileInjectionDocument() {
         return new ByteArrayInputStream(String.format("<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?>"
                         + "<!DOCTYPE test ["
@@ -25,25 +25,28 @@
 package ee.ria.xroad.common.cert;
 
 import ee.ria.xroad.common.CodedException;
+import ee.ria.xroad.common.SystemProperties;
 import ee.ria.xroad.common.conf.globalconf.GlobalConf;
 import ee.ria.xroad.common.conf.globalconfextension.GlobalConfExtensions;
 import ee.ria.xroad.common.ocsp.OcspVerifier;
 import ee.ria.xroad.common.ocsp.OcspVerifierOptions;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import lombok.Value;
 import org.bouncycastle.cert.ocsp.OCSPResp;
 
 import java.security.cert.CertPath;
 import java.security.cert.CertPathBuilder;
 import java.security.cert.CertPathBuilderException;
 import java.security.cert.CertPathValidator;
-import java.security.cert.CertPathValidatorResult;
 import java.security.cert.CertStore;
 import java.security.cert.CollectionCertStoreParameters;
 import java.security.cert.PKIXBuilderParameters;
-import java.security.cert.PKIXCertPathValidatorResult;
 import java.security.cert.TrustAnchor;
 import java.security.cert.X509CertSelector;
 import java.security.cert.X509Certificate;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.HashSet;
@@ -55,17 +58,25 @@ import static ee.ria.xroad.common.ErrorCodes.X_CERT_VALIDATION;
 import static ee.ria.xroad.common.ErrorCodes.X_INVALID_CERT_PATH_X;
 import static ee.ria.xroad.common.ErrorCodes.translateWithPrefix;
 import static ee.ria.xroad.common.cert.CertHelper.getOcspResponseForCert;
+import static ee.ria.xroad.common.util.CryptoUtils.calculateCertHexHash;
 
 /**
  * Certificate chain verifier.
+ *
+ * Successfully verified certificate paths are cached by the hashes of the
+ * certificates in the chain. A cached path is reused while the verification
+ * date is within the validity period of every certificate in the path; the
+ * OCSP responses are verified every time.
  */
 public class CertChainVerifier {
 
     /** Default validation algorithm type is PKIX. */
     private static final String VALIDATION_ALGORITHM = "PKIX";
 
-    /** Holds the PKIX algorithm parameters. */
-    private final PKIXBuilderParameters pkixParams;
+    /** Holds the successfully verified certificate paths. */
+    private static final Cache<List<String>, VerifiedCertPath> VERIFIED_CERT_PATHS = CacheBuilder.newBuilder()
+            .maximumSize(SystemProperties.getCertPathCacheSize())
+            .build();
 
     /** Holds the constructed certificate path. */
     private CertPath certPath;
@@ -74,13 +85,19 @@ public class CertChainVerifier {
     private CertChain certChain;
 
     /**
-     * Builds the certificate path for the target certificate using a list
-     * of trust anchors and a list of intermediate certificates.
+     * Creates a verifier for the given certificate chain.
      * @param certChain the certificate chain object
      */
     public CertChainVerifier(CertChain certChain) {
         this.certChain = certChain;
+    }
 
+    /**
+     * Creates the PKIX parameters for building the certificate path for the
+     * target certificate using the trusted root certificate and a list of
+     * intermediate certificates.
+     */
+    private PKIXBuilderParameters createPkixParams() {
         Set<TrustAnchor> trustAnchors =
                 createTrustAnchorSet(
                         Arrays.asList(certChain.getTrustedRootCert()));
@@ -89,7 +106,7 @@ public class CertChainVerifier {
         certSelector.setCertificate(certChain.getEndEntityCert());
 
         try {
-            pkixParams = new PKIXBuilderParameters(trustAnchors, certSelector);
+            PKIXBuilderParameters pkixParams = new PKIXBuilderParameters(trustAnchors, certSelector);
             pkixParams.setRevocationEnabled(false);
 
             if (!certChain.getAdditionalCerts().isEmpty()) {
@@ -99,6 +116,8 @@ public class CertChainVerifier {
                                         certChain.getAdditionalCerts()), "BC");
                 pkixParams.addCertStore(intermediateCertStore);
             }
+
+            return pkixParams;
         } catch (Exception e) {
             throw translateWithPrefix(X_CANNOT_CREATE_CERT_PATH, e);
         }
@@ -145,16 +164,25 @@ public class CertChainVerifier {
     }
 
     private void verifyImpl(List<OCSPResp> ocspResponses, Date atDate) {
-        pkixParams.setDate(atDate);
+        List<String> cacheKey = getCacheKey();
+        VerifiedCertPath verified = VERIFIED_CERT_PATHS.getIfPresent(cacheKey);
+        boolean cached = verified != null && verified.isValidAt(atDate != null ? atDate : new Date());
+
+        PKIXBuilderParameters pkixParams = cached ? null : createPkixParams();
+
         try {
-            certPath = buildCertPath(pkixParams);
+            if (cached) {
+                certPath = verified.getCertPath();
+            } else {
+                pkixParams.setDate(atDate);
+                certPath = buildCertPath(pkixParams);
+                verifyCertPath(certPath, pkixParams);
 
-            PKIXCertPathValidatorResult pkixResult =
-                    verifyCertPath(certPath, pkixParams);
+                VERIFIED_CERT_PATHS.put(cacheKey, new VerifiedCertPath(certPath, getCerts()));
+            }
 
             if (ocspResponses != null) {
-                verifyOcspResponses(
-                        getCerts(), ocspResponses, pkixResult, atDate);
+                verifyOcspResponses(getCerts(), ocspResponses, atDate);
             }
         } catch (CertPathBuilderException ex) {
             throw translateWithPrefix(X_CANNOT_CREATE_CERT_PATH, ex);
@@ -163,9 +191,32 @@ public class CertChainVerifier {
         }
     }
 
+    /**
+     * Removes all verified certificate paths from the cache.
+     */
+    static void invalidateCache() {
+        VERIFIED_CERT_PATHS.invalidateAll();
+    }
+
+    private List<String> getCacheKey() {
+        List<String> certHashes = new ArrayList<>(certChain.getAdditionalCerts().size() + 2);
+
+        try {
+            certHashes.add(calculateCertHexHash(certChain.getEndEntityCert()));
+            certHashes.add(calculateCertHexHash(certChain.getTrustedRootCert()));
+
+            for (X509Certificate cert : certChain.getAdditionalCerts()) {
+                certHashes.add(calculateCertHexHash(cert));
+            }
+        } catch (Exception ex) {
+            throw translateWithPrefix(X_INVALID_CERT_PATH_X, ex);
+        }
+
+        return certHashes;
+    }
+
     private void verifyOcspResponses(List<X509Certificate> certs,
-            List<OCSPResp> ocspResponses, PKIXCertPathValidatorResult result,
-            Date atDate) throws Exception {
+            List<OCSPResp> ocspResponses, Date atDate) throws Exception {
         for (X509Certificate subject : certs) {
             X509Certificate issuer =
                     GlobalConf.getCaCert(certChain.getInstanceIdentifier(),
@@ -195,15 +246,12 @@ public class CertChainVerifier {
         return certPathBuilder.build(pkixParams).getCertPath();
     }
 
-    private static PKIXCertPathValidatorResult verifyCertPath(CertPath certPath,
+    private static void verifyCertPath(CertPath certPath,
             PKIXBuilderParameters pkixParams) throws Exception {
         CertPathValidator certPathValidator =
                 CertPathValidator.getInstance(VALIDATION_ALGORITHM);
 
-        CertPathValidatorResult result =
-                certPathValidator.validate(certPath, pkixParams);
-
-        return (PKIXCertPathValidatorResult) result;
+        certPathValidator.validate(certPath, pkixParams);
     }
 
     private static Set<TrustAnchor> createTrustAnchorSet(
@@ -217,4 +265,24 @@ public class CertChainVerifier {
         return trustAnchors;
     }
 
+    /**
+     * Certificate path that has been verified, together with the period
+     * during which all of its certificates are valid.
+     */
+    @Value
+    private static class VerifiedCertPath {
+        private CertPath certPath;
+        private Date notBefore;
+        private Date notAfter;
+
+        VerifiedCertPath(CertPath certPath, List<X509Certificate> certs) {
+            this.certPath = certPath;
+            this.notBefore = certs.stream().map(X509Certificate::getNotBefore).max(Date::compareTo).orElse(null);
+            this.notAfter = certs.stream().map(X509Certificate::getNotAfter).min(Date::compareTo).orElse(null);
+        }
+
+        boolean isValidAt(Date atDate) {
+            return notBefore != null && !atDate.before(notBefore) && !atDate.after(notAfter);
+        }
+    }
 }
@@ -50,7 +50,6 @@ import ee.ria.xroad.common.util.CryptoUtils;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
-import org.bouncycastle.cert.X509CertificateHolder;
 
 import java.io.OutputStream;
 import java.math.BigInteger;
@@ -235,11 +234,10 @@ public class GlobalConfImpl implements GlobalConfProvider {
             throw new CodedException(X_INTERNAL_ERROR, e);
         }
 
-        return p == null ? null : p.getGlobalGroups().stream()
-                .filter(g -> g.getGroupCode().equals(
-                        globalGroupId.getGroupCode()))
-                .map(GlobalGroupType::getDescription)
-                .findFirst().orElse(null);
+        GlobalGroupType globalGroup =
+                p == null ? null : p.findGlobalGroup(globalGroupId);
+
+        return globalGroup == null ? null : globalGroup.getDescription();
     }
 
     @Override
@@ -349,15 +347,12 @@ public class GlobalConfImpl implements GlobalConfProvider {
                     "Member certificate must be present to find CA cert!");
         }
 
-        X509CertificateHolder ch = new X509CertificateHolder(
-                memberCert.getEncoded());
-
         String[] instances = instanceIdentifier != null
                 ? new String[] {instanceIdentifier} : new String[] {};
 
         return getSharedParameters(instances)
                 .stream()
-                .map(p -> p.getSubjectsAndCaCerts().get(ch.getIssuer()))
+                .map(p -> p.getCaCertForIssuer(memberCert))
                 .filter(Objects::nonNull)
                 .findFirst()
                 .orElseThrow(
@@ -464,10 +459,7 @@ public class GlobalConfImpl implements GlobalConfProvider {
             ClientId memberId) throws Exception {
         byte[] inputCertHash = certHash(cert);
         return getSharedParameters().stream()
-                .map(p -> p.getMemberAuthCerts().get(memberId))
-                .filter(Objects::nonNull).flatMap(h -> h.stream())
-                .filter(h -> Arrays.equals(inputCertHash, h)).findFirst()
-                .isPresent();
+                .anyMatch(p -> p.isMemberAuthCert(memberId, inputCertHash));
     }
 
     @Override
@@ -568,13 +560,7 @@ public class GlobalConfImpl implements GlobalConfProvider {
             return false;
         }
 
-        GlobalGroupType group = p.findGlobalGroup(groupId);
-        if (group == null) {
-            return false;
-        }
-
-        return group.getGroupMember().stream().filter(m -> m.equals(subjectId))
-                .findFirst().isPresent();
+        return p.isSubjectInGlobalGroup(subjectId, groupId);
     }
 
     @Override
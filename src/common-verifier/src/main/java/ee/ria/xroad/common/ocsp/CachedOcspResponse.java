@@ -0,0 +1,92 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.ocsp;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.bouncycastle.cert.ocsp.BasicOCSPResp;
+import org.bouncycastle.cert.ocsp.OCSPResp;
+import org.bouncycastle.cert.ocsp.SingleResp;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * OCSP response held in {@link OcspCache}. The response is parsed and
+ * encoded once when it is cached, so that looking up the response only
+ * needs a comparison of timestamps.
+ */
+@Getter
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public final class CachedOcspResponse {
+
+    private final OCSPResp response;
+
+    @Getter(AccessLevel.NONE)
+    private final byte[] encoded;
+
+    private final Date thisUpdate;
+
+    private final Date nextUpdate;
+
+    /** The time in milliseconds after which the response is expired. */
+    private final long expiresAt;
+
+    /**
+     * Parses the validity times of the response.
+     * @param response the OCSP response
+     * @param ocspFreshnessSeconds the OCSP freshness in seconds
+     * @return the cached response
+     * @throws Exception if the response cannot be parsed
+     */
+    public static CachedOcspResponse create(OCSPResp response, int ocspFreshnessSeconds) throws Exception {
+        BasicOCSPResp basicResp = (BasicOCSPResp) response.getResponseObject();
+        SingleResp singleResp = basicResp.getResponses()[0];
+
+        Date thisUpdate = singleResp.getThisUpdate();
+
+        return new CachedOcspResponse(response, response.getEncoded(), thisUpdate, singleResp.getNextUpdate(),
+                thisUpdate.getTime() + TimeUnit.SECONDS.toMillis(ocspFreshnessSeconds));
+    }
+
+    /**
+     * @return the DER encoding of the response
+     */
+    public byte[] getEncoded() {
+        return encoded.clone();
+    }
+
+    /**
+     * Returns true if the response is expired at the given date, that is
+     * the thisUpdate of the response is older than the OCSP freshness allows.
+     * Same as {@link OcspVerifier#isExpired(SingleResp, Date)}.
+     * @param atDate the date
+     * @return true, if the response is expired
+     */
+    public boolean isExpired(Date atDate) {
+        return expiresAt < atDate.getTime();
+    }
+}
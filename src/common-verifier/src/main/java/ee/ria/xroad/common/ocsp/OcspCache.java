@@ -25,26 +25,32 @@
 package ee.ria.xroad.common.ocsp;
 
 import ee.ria.xroad.common.conf.globalconf.GlobalConf;
-import ee.ria.xroad.common.conf.globalconfextension.GlobalConfExtensions;
 
 import lombok.extern.slf4j.Slf4j;
 import org.bouncycastle.cert.ocsp.OCSPResp;
 
+import java.util.AbstractMap.SimpleImmutableEntry;
 import java.util.Date;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
+import static java.util.stream.Collectors.toSet;
+
 /**
  * Holds OCSP response per key. When getting the response, it is checked
  * if the response is expired at the specified date, and if it is, the
  * response is removed from the cache and null is returned.
+ *
+ * The validity times of the response are parsed once when the response is
+ * put to the cache, using the OCSP freshness of the global configuration
+ * at that time.
  */
 @Slf4j
 public class OcspCache {
 
-    protected final Map<String, OCSPResp> cache = new ConcurrentHashMap<>();
+    protected final Map<String, CachedOcspResponse> cache = new ConcurrentHashMap<>();
 
     /**
      * @param key the key
@@ -66,14 +72,39 @@ public class OcspCache {
     }
 
     /**
-     * Associates a key with the OCSP response.
+     * @param key the key
+     * @return the DER encoding of the OCSP response or null if the response
+     * is not found or is expired at the current date
+     */
+    public byte[] getEncoded(Object key) {
+        CachedOcspResponse cachedResponse = getCachedResponse(key, new Date());
+
+        return cachedResponse != null ? cachedResponse.getEncoded() : null;
+    }
+
+    /**
+     * Associates a key with the OCSP response. If the response cannot be
+     * parsed, the response previously associated with the key is kept.
      * @param key the key
      * @param value the OCSP response
-     * @return the OCSP response
+     * @return the previous OCSP response
      */
     public OCSPResp put(String key, OCSPResp value) {
         log.trace("Setting OCSP response for '{}'", key);
-        return cache.put(key, value);
+
+        CachedOcspResponse cachedResponse;
+
+        try {
+            cachedResponse = createCachedResponse(value);
+        } catch (Exception e) {
+            log.error("Failed to parse OCSP response for '{}'", key, e);
+
+            CachedOcspResponse previous = cache.get(key);
+
+            return previous != null ? previous.getResponse() : null;
+        }
+
+        return put(key, cachedResponse);
     }
 
     /**
@@ -84,37 +115,47 @@ public class OcspCache {
     }
 
     /**
-     * @return a Set view of the mappings contained in this map.
+     * @return a Set of the mappings contained in this cache.
      */
     public Set<Entry<String, OCSPResp>> entrySet() {
-        return cache.entrySet();
+        return cache.entrySet().stream()
+                .map(e -> new SimpleImmutableEntry<>(e.getKey(), e.getValue().getResponse()))
+                .collect(toSet());
+    }
+
+    protected OCSPResp put(String key, CachedOcspResponse value) {
+        CachedOcspResponse previous = cache.put(key, value);
+
+        return previous != null ? previous.getResponse() : null;
     }
 
     protected OCSPResp getResponse(Object key, Date atDate) {
+        CachedOcspResponse cachedResponse = getCachedResponse(key, atDate);
+
+        return cachedResponse != null ? cachedResponse.getResponse() : null;
+    }
+
+    protected CachedOcspResponse getCachedResponse(Object key, Date atDate) {
         log.trace("Retrieving OCSP response for certificate '{}' at {}", key,
                 atDate);
 
-        OCSPResp cachedResponse = cache.get(key);
-        try {
-            if (cachedResponse != null && isExpired(cachedResponse, atDate)) {
-                log.trace("Cached OCSP response for certificate "
-                        + "'{}' has expired", key);
-                cache.remove(key);
-                return null;
-            }
-        } catch (Exception e) {
-            log.error("Failed to check if OCSP response is expired", e);
-            cache.remove(key);
+        CachedOcspResponse cachedResponse = cache.get(key);
+
+        if (cachedResponse == null) {
+            return null;
+        }
+
+        if (cachedResponse.isExpired(atDate)) {
+            log.trace("Cached OCSP response for certificate "
+                    + "'{}' has expired", key);
+            cache.remove(key, cachedResponse);
             return null;
         }
 
         return cachedResponse;
     }
 
-    protected static boolean isExpired(OCSPResp response, Date atDate)
-            throws Exception {
-        OcspVerifier verifier = new OcspVerifier(GlobalConf.getOcspFreshnessSeconds(true),
-                new OcspVerifierOptions(GlobalConfExtensions.getInstance().shouldVerifyOcspNextUpdate()));
-        return verifier.isExpired(response, atDate);
+    protected static CachedOcspResponse createCachedResponse(OCSPResp response) throws Exception {
+        return CachedOcspResponse.create(response, GlobalConf.getOcspFreshnessSeconds(true));
     }
 }
@@ -248,8 +248,11 @@ public class SignatureVerifier {
         X509Certificate signingCert = getSigningCertificate();
         verifySignerName(signer, signingCert);
 
-        verifySignatureValue(signingCert);
-        verifyTimestampManifests();
+        // the signature and the timestamp manifests reference elements of the same document
+        IdResolver idResolver = new IdResolver(signature.getDocument());
+
+        verifySignatureValue(signingCert, idResolver);
+        verifyTimestampManifests(idResolver);
         verifyCertificateChain(atDate, signer, signingCert);
     }
 
@@ -287,11 +290,11 @@ public class SignatureVerifier {
         }
     }
 
-    private void verifySignatureValue(X509Certificate signingCert)
-            throws Exception {
+    private void verifySignatureValue(X509Certificate signingCert,
+            IdResolver idResolver) throws Exception {
         XMLSignature s = signature.getXmlSignature();
 
-        s.addResourceResolver(new IdResolver(signature.getDocument()));
+        s.addResourceResolver(idResolver);
 
         if (resourceResolver == null) {
             s.addResourceResolver(new SignatureResourceResolverImpl());
@@ -305,13 +308,13 @@ public class SignatureVerifier {
         }
     }
 
-    private void verifyTimestampManifests() throws Exception {
+    private void verifyTimestampManifests(IdResolver idResolver)
+            throws Exception {
         // Get the ts-root-manifest, and then iterate over its references
         // to find any existing ts-manifests and verify their digests.
         List<Manifest> tsManifests = signature.getTimestampManifests();
         for (Manifest manifest : tsManifests) {
-            manifest.addResourceResolver(
-                    new IdResolver(signature.getDocument()));
+            manifest.addResourceResolver(idResolver);
             try {
                 if (!manifest.verifyReferences()) {
                     throw new CodedException(X_INVALID_REFERENCE,
@@ -232,6 +232,54 @@ public class CertChainTest {
         }
     }
 
+    /**
+     * Tests that the OCSP responses are verified for a chain whose path has already been verified.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void revokedCertWithVerifiedPath() throws Exception {
+        X509Certificate rootCa = TestCertUtil.getCertChainCert("root_ca.p12");
+        X509Certificate interCa1 = TestCertUtil.getCertChainCert("ca_1.p12");
+        X509Certificate userCert = TestCertUtil.getCertChainCert("user_1.p12");
+
+        CertChain chain = new CertChain("EE", userCert, rootCa, Arrays.asList(interCa1));
+        Date atDate = makeDate(rootCa.getNotBefore(), 1);
+
+        verify(chain, getAllOcspResponses(), atDate);
+
+        List<OCSPResp> revoked = generateOcspResponses(Arrays.asList(interCa1, userCert),
+                new RevokedStatus(new Date(), 0));
+        try {
+            verify(chain, revoked, atDate);
+            fail("OCSP verification should fail");
+        } catch (CodedException e) {
+            assertTrue(e.getFaultCode().startsWith(
+                    ErrorCodes.X_INVALID_CERT_PATH_X));
+        }
+    }
+
+    /**
+     * Tests that a verified path is verified again at a date when one of its certificates has expired.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void expiredCertWithVerifiedPath() throws Exception {
+        X509Certificate rootCa = TestCertUtil.getCertChainCert("root_ca.p12");
+        X509Certificate userCert = TestCertUtil.getCertChainCert("user_0.p12");
+
+        CertChain chain = new CertChain("EE", userCert, rootCa,
+                new ArrayList<X509Certificate>());
+
+        verifyChainOnly(chain, makeDate(userCert.getNotBefore(), 1));
+
+        try {
+            verifyChainOnly(chain, makeDate(userCert.getNotAfter(), 1));
+            fail("Path validation should fail");
+        } catch (CodedException expected) {
+            // expected
+        }
+    }
+
     // -- Utility methods
 
     private static void  verify(CertChain chain, List<OCSPResp> ocspResponses,
@@ -0,0 +1,91 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.cert;
+
+import ee.ria.xroad.common.TestCertUtil;
+import ee.ria.xroad.common.TestSecurityUtil;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * Measures the verification of a certificate chain with three intermediate CA certificates, when every
+ * verification builds and validates the certificate path and when the verified path is taken from the cache.
+ */
+@Slf4j
+public final class CertChainVerifierPerformanceTest {
+
+    private static final int WARMUP_ITERATIONS = 1_000;
+    private static final int ITERATIONS = 10_000;
+
+    private static final long ONE_DAY_MILLIS = 24L * 60 * 60 * 1000;
+
+    private CertChainVerifierPerformanceTest() {
+    }
+
+    /**
+     * Main program entry point.
+     * @param args command-line arguments, not used
+     * @throws Exception in case of any errors
+     */
+    public static void main(String[] args) throws Exception {
+        TestSecurityUtil.initSecurity();
+
+        X509Certificate rootCa = TestCertUtil.getCertChainCert("root_ca.p12");
+        CertChain chain = new CertChain("EE",
+                TestCertUtil.getCertChainCert("user_3.p12"),
+                rootCa,
+                Arrays.asList(TestCertUtil.getCertChainCert("ca_1.p12"),
+                        TestCertUtil.getCertChainCert("ca_2.p12"),
+                        TestCertUtil.getCertChainCert("ca_3.p12")));
+        Date atDate = new Date(rootCa.getNotBefore().getTime() + ONE_DAY_MILLIS);
+
+        measure("build and validate", chain, atDate, true);
+        measure("cached path", chain, atDate, false);
+    }
+
+    private static void measure(String name, CertChain chain, Date atDate, boolean invalidateCache) {
+        run(chain, atDate, invalidateCache, WARMUP_ITERATIONS);
+
+        long start = System.nanoTime();
+        run(chain, atDate, invalidateCache, ITERATIONS);
+        long nanos = System.nanoTime() - start;
+
+        log.info("{}: {} us per verification", name, nanos / ITERATIONS / 1000);
+    }
+
+    private static void run(CertChain chain, Date atDate, boolean invalidateCache, int iterations) {
+        for (int i = 0; i < iterations; i++) {
+            if (invalidateCache) {
+                CertChainVerifier.invalidateCache();
+            }
+
+            new CertChainVerifier(chain).verifyChainOnly(atDate);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.signature;
+
+import ee.ria.xroad.common.SystemProperties;
+import ee.ria.xroad.common.TestCertUtil;
+import ee.ria.xroad.common.TestSecurityUtil;
+import ee.ria.xroad.common.conf.globalconf.GlobalConf;
+import ee.ria.xroad.common.conf.globalconf.TestGlobalConfImpl;
+import ee.ria.xroad.common.identifier.ClientId;
+import ee.ria.xroad.common.util.MessageFileNames;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static ee.ria.xroad.common.util.CryptoUtils.SHA512_ID;
+import static ee.ria.xroad.common.util.CryptoUtils.calculateDigest;
+
+/**
+ * Measures the throughput of {@link SignatureVerifier} in signatures verified per second per core, with one thread
+ * and with one thread per available processor. Every verification parses the signature XML, as is done for every
+ * message.
+ */
+@Slf4j
+public final class SignatureVerifierPerformanceTest {
+
+    private static final int WARMUP_ITERATIONS = 2_000;
+    private static final int ITERATIONS = 10_000;
+
+    private static final String SIGNATURE_FILE = "../common-test/src/test/signatures/sign-0.xml";
+    private static final String MESSAGE_FILE = "../common-test/src/test/signatures/message-0.xml";
+
+    private static final ClientId SIGNER = ClientId.create("EE", "BUSINESS", "consumer");
+
+    private SignatureVerifierPerformanceTest() {
+    }
+
+    /**
+     * Main program entry point.
+     * @param args command-line arguments, not used
+     * @throws Exception in case of any errors
+     */
+    public static void main(String[] args) throws Exception {
+        TestSecurityUtil.initSecurity();
+
+        System.setProperty(SystemProperties.CONFIGURATION_PATH, "../common-util/src/test/resources/globalconf_good_v2");
+        System.setProperty(SystemProperties.CONFIGURATION_ANCHOR_FILE,
+                "../common-util/src/test/resources/configuration-anchor1.xml");
+
+        GlobalConf.reload(new TestGlobalConfImpl(false) {
+            @Override
+            public X509Certificate getCaCert(String instanceIdentifier, X509Certificate memberCert) throws Exception {
+                return TestCertUtil.getCaCert();
+            }
+        });
+
+        byte[] signatureXml = Files.readAllBytes(Paths.get(SIGNATURE_FILE));
+        byte[] message = Files.readAllBytes(Paths.get(MESSAGE_FILE));
+        MessagePart messagePart = new MessagePart(MessageFileNames.MESSAGE, SHA512_ID,
+                calculateDigest(SHA512_ID, message), message);
+
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(2014, 9, 30);
+        Date atDate = calendar.getTime();
+
+        int processors = Runtime.getRuntime().availableProcessors();
+
+        for (int threads : new int[] {1, processors}) {
+            measure(threads, signatureXml, messagePart, atDate);
+        }
+    }
+
+    private static void measure(int threads, byte[] signatureXml, MessagePart messagePart, Date atDate)
+            throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        try {
+            run(executor, threads, signatureXml, messagePart, atDate, WARMUP_ITERATIONS);
+
+            long start = System.nanoTime();
+            run(executor, threads, signatureXml, messagePart, atDate, ITERATIONS);
+            long nanos = System.nanoTime() - start;
+
+            long perSecond = (long) ITERATIONS * threads * 1_000_000_000L / nanos;
+
+            log.info("{} threads: {} signatures verified per second, {} per second per thread", threads, perSecond,
+                    perSecond / threads);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static void run(ExecutorService executor, int threads, byte[] signatureXml, MessagePart messagePart,
+            Date atDate, int iterations) throws Exception {
+        List<Future<?>> results = new ArrayList<>();
+
+        for (int i = 0; i < threads; i++) {
+            results.add(executor.submit(() -> {
+                for (int j = 0; j < iterations; j++) {
+                    SignatureVerifier verifier =
+                            new SignatureVerifier(new Signature(new ByteArrayInputStream(signatureXml)));
+                    verifier.addParts(Collections.singletonList(messagePart));
+                    verifier.verify(SIGNER, atDate);
+                }
+
+                return null;
+            }));
+        }
+
+        for (Future<?> result : results) {
+            result.get();
+        }
+    }
+}
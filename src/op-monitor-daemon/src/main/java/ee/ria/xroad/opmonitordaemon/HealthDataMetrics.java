@@ -31,13 +31,14 @@ import ee.ria.xroad.common.opmonitoring.OpMonitoringSystemProperties;
 import com.codahale.metrics.Counter;
 import com.codahale.metrics.Gauge;
 import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Metric;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.SlidingTimeWindowReservoir;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
 
@@ -67,7 +68,14 @@ final class HealthDataMetrics {
     // The timestamps of last successful and unsuccessful requests are stored
     // for each service that is handled for, and are provided when the
     // respective gauge is queried.
-    private static Map<String, Long> requestTimestamps = new HashMap<>();
+    private static final Map<String, Long> requestTimestamps =
+            new ConcurrentHashMap<>();
+
+    // The metric names and the resolved metric handles of each service, so
+    // that recording the health data of a record needs neither formatting
+    // the metric names nor looking up the metrics in the registry.
+    private static final Map<ServiceId, ServiceMetrics> serviceMetrics =
+            new ConcurrentHashMap<>();
 
     private HealthDataMetrics() {
     }
@@ -109,78 +117,83 @@ final class HealthDataMetrics {
                 continue;
             }
 
-            registerOrUpdateGauges(registry, serviceId, rec);
-            registerOrUpdateCounters(registry, serviceId, rec);
+            ServiceMetrics metrics = getServiceMetrics(registry, serviceId);
+
+            registerOrUpdateGauges(metrics, rec);
+            registerOrUpdateCounters(metrics, rec);
 
             if (rec.getSucceeded()) {
                 // Statistics of request duration and the sizes of the request
                 // and response are computed over the successful requests only.
-                registerOrUpdateHistograms(registry, serviceId, rec);
+                registerOrUpdateHistograms(metrics, rec);
             }
         }
     }
 
-    private static void registerOrUpdateGauges(MetricRegistry registry,
-            ServiceId serviceId, OperationalDataRecord rec) {
-
-        String expectedGaugeName = getLastRequestTimestampGaugeName(serviceId,
-                rec.getSucceeded());
-        requestTimestamps.put(expectedGaugeName, rec.getResponseOutTs());
+    private static ServiceMetrics getServiceMetrics(MetricRegistry registry,
+            ServiceId serviceId) {
+        ServiceMetrics metrics = serviceMetrics.get(serviceId);
 
-        // Try and find a gauge corresponding strictly to the given gauge name.
-        Gauge gauge = HealthDataMetricsUtil.findGauge(registry,
-                expectedGaugeName);
-
-        if (gauge == null) {
-            // Add a new gauge corresponding to the expected gauge name.
-            registry.register(expectedGaugeName,
-                    (Gauge<Long>) () -> requestTimestamps.get(
-                            expectedGaugeName));
+        if (metrics == null || metrics.registry != registry) {
+            // The handles are only valid for the registry they were
+            // resolved from.
+            metrics = new ServiceMetrics(registry, serviceId);
+            serviceMetrics.put(serviceId, metrics);
         }
 
-        // No need to update the gauge -- it will be queried on demand.
+        return metrics;
     }
 
-    private static void registerOrUpdateCounters(MetricRegistry registry,
-            ServiceId serviceId, OperationalDataRecord rec) {
-        String expectedCounterName = getRequestCounterName(serviceId,
-                rec.getSucceeded());
-        Counter counter = HealthDataMetricsUtil.findCounter(registry,
-                expectedCounterName);
+    private static void registerOrUpdateGauges(ServiceMetrics metrics,
+            OperationalDataRecord rec) {
+        MetricHandle<Gauge> gauge = rec.getSucceeded()
+                ? metrics.lastSuccessfulRequestTimestamp
+                : metrics.lastUnsuccessfulRequestTimestamp;
 
-        if (counter == null) {
-            // Register and increment a new counter.
-            counter = new SlidingTimeWindowCounter(
-                    OP_MONITOR_HEALTH_STATS_PERIOD_SECONDS, TimeUnit.SECONDS);
-            registry.register(expectedCounterName, counter);
-        }
+        requestTimestamps.put(gauge.name, rec.getResponseOutTs());
 
-        counter.inc();
+        // Make sure the gauge is registered. No need to update the gauge --
+        // it will be queried on demand.
+        gauge.get(metrics.registry);
     }
 
-    private static void registerOrUpdateHistograms(MetricRegistry registry,
-            ServiceId serviceId, OperationalDataRecord rec) {
-        registerOrUpdateHistogram(registry, getRequestDurationName(serviceId), getRequestDuration(rec));
+    private static void registerOrUpdateCounters(ServiceMetrics metrics,
+            OperationalDataRecord rec) {
+        MetricHandle<Counter> counter = rec.getSucceeded()
+                ? metrics.successfulRequestCount
+                : metrics.unsuccessfulRequestCount;
 
-        registerOrUpdateHistogram(registry, getRequestSoapSizeName(serviceId), rec.getRequestSoapSize());
-        registerOrUpdateHistogram(registry, getResponseSoapSizeName(serviceId), rec.getResponseSoapSize());
+        counter.get(metrics.registry).inc();
     }
 
-    private static void registerOrUpdateHistogram(MetricRegistry registry, String histogramName, Long newValue) {
+    private static void registerOrUpdateHistograms(ServiceMetrics metrics,
+            OperationalDataRecord rec) {
+        registerOrUpdateHistogram(metrics, metrics.requestDuration, getRequestDuration(rec));
+
+        registerOrUpdateHistogram(metrics, metrics.requestSoapSize, rec.getRequestSoapSize());
+        registerOrUpdateHistogram(metrics, metrics.responseSoapSize, rec.getResponseSoapSize());
+    }
+
+    private static void registerOrUpdateHistogram(ServiceMetrics metrics,
+            MetricHandle<Histogram> histogram, Long newValue) {
 
         if (newValue == null) return;
 
-        Histogram histogram = HealthDataMetricsUtil.findHistogram(registry, histogramName);
+        histogram.get(metrics.registry).update(newValue);
+    }
+
+    private static Counter createRequestCounter() {
+        return new SlidingTimeWindowCounter(
+                OP_MONITOR_HEALTH_STATS_PERIOD_SECONDS, TimeUnit.SECONDS);
+    }
 
-        if (histogram == null) {
-            // Add a histogram corresponding to the service and update it.
-            histogram = registry.register(histogramName,
-                    new Histogram(new SlidingTimeWindowReservoir(
-                            OP_MONITOR_HEALTH_STATS_PERIOD_SECONDS,
-                            TimeUnit.SECONDS)));
-        }
+    private static Histogram createHistogram() {
+        return new Histogram(new SlidingTimeWindowReservoir(
+                OP_MONITOR_HEALTH_STATS_PERIOD_SECONDS, TimeUnit.SECONDS));
+    }
 
-        histogram.update(newValue);
+    private static Gauge createLastRequestTimestampGauge(String gaugeName) {
+        return (Gauge<Long>) () -> requestTimestamps.get(gaugeName);
     }
 
     /**
@@ -215,4 +228,99 @@ final class HealthDataMetrics {
                 (Gauge<Long>) startupTimestampProvider::get);
     }
 
+    /**
+     * Metric names and lazily resolved metric handles of a single service.
+     */
+    private static final class ServiceMetrics {
+        private final MetricRegistry registry;
+
+        private final MetricHandle<Gauge> lastSuccessfulRequestTimestamp;
+        private final MetricHandle<Gauge> lastUnsuccessfulRequestTimestamp;
+        private final MetricHandle<Counter> successfulRequestCount;
+        private final MetricHandle<Counter> unsuccessfulRequestCount;
+        private final MetricHandle<Histogram> requestDuration;
+        private final MetricHandle<Histogram> requestSoapSize;
+        private final MetricHandle<Histogram> responseSoapSize;
+
+        ServiceMetrics(MetricRegistry registry, ServiceId serviceId) {
+            this.registry = registry;
+
+            String successfulGaugeName =
+                    getLastRequestTimestampGaugeName(serviceId, true);
+            String unsuccessfulGaugeName =
+                    getLastRequestTimestampGaugeName(serviceId, false);
+
+            lastSuccessfulRequestTimestamp = new MetricHandle<>(
+                    successfulGaugeName, Gauge.class,
+                    () -> createLastRequestTimestampGauge(successfulGaugeName));
+            lastUnsuccessfulRequestTimestamp = new MetricHandle<>(
+                    unsuccessfulGaugeName, Gauge.class,
+                    () -> createLastRequestTimestampGauge(unsuccessfulGaugeName));
+            successfulRequestCount = new MetricHandle<>(
+                    getRequestCounterName(serviceId, true), Counter.class,
+                    HealthDataMetrics::createRequestCounter);
+            unsuccessfulRequestCount = new MetricHandle<>(
+                    getRequestCounterName(serviceId, false), Counter.class,
+                    HealthDataMetrics::createRequestCounter);
+            requestDuration = new MetricHandle<>(
+                    getRequestDurationName(serviceId), Histogram.class,
+                    HealthDataMetrics::createHistogram);
+            requestSoapSize = new MetricHandle<>(
+                    getRequestSoapSizeName(serviceId), Histogram.class,
+                    HealthDataMetrics::createHistogram);
+            responseSoapSize = new MetricHandle<>(
+                    getResponseSoapSizeName(serviceId), Histogram.class,
+                    HealthDataMetrics::createHistogram);
+        }
+    }
+
+    /**
+     * A metric that is registered the first time it is needed. Metrics are
+     * registered lazily so that the health data only contains the metrics of
+     * the request statuses that have actually been encountered.
+     * @param <T> the type of the metric
+     */
+    private static final class MetricHandle<T extends Metric> {
+        private final String name;
+        private final Class<T> type;
+        private final Supplier<T> factory;
+
+        private volatile T metric;
+
+        MetricHandle(String name, Class<T> type, Supplier<T> factory) {
+            this.name = name;
+            this.type = type;
+            this.factory = factory;
+        }
+
+        T get(MetricRegistry registry) {
+            T result = metric;
+
+            if (result == null) {
+                result = findOrRegister(registry);
+                metric = result;
+            }
+
+            return result;
+        }
+
+        private T findOrRegister(MetricRegistry registry) {
+            T result = HealthDataMetricsUtil.findMetric(registry, name, type);
+
+            if (result == null) {
+                // Records of the same service may be stored concurrently,
+                // only one of them may register the metric.
+                synchronized (registry) {
+                    result = HealthDataMetricsUtil.findMetric(registry, name,
+                            type);
+
+                    if (result == null) {
+                        result = registry.register(name, factory.get());
+                    }
+                }
+            }
+
+            return result;
+        }
+    }
 }
@@ -31,11 +31,15 @@ import com.google.gson.Gson;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.http.HttpHeaders;
 
 import javax.servlet.http.HttpServletRequest;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.zip.GZIPInputStream;
 
 import static ee.ria.xroad.common.util.TimeUtils.getEpochSecond;
 
@@ -45,6 +49,8 @@ import static ee.ria.xroad.common.util.TimeUtils.getEpochSecond;
 @Slf4j
 class StoreRequestProcessor {
 
+    static final String GZIP = "gzip";
+
     private static final Gson GSON = JsonUtils.getSerializer();
 
     /** The servlet request. */
@@ -65,7 +71,7 @@ class StoreRequestProcessor {
      * @throws Exception in case of any errors
      */
     void process() throws Exception {
-        String rawJson = IOUtils.toString(servletRequest.getInputStream(),
+        String rawJson = IOUtils.toString(getRequestInputStream(),
                 StandardCharsets.UTF_8);
 
         log.trace("Incoming JSON: {}", rawJson);
@@ -80,6 +86,19 @@ class StoreRequestProcessor {
         HealthDataMetrics.processRecords(healthMetricRegistry, records);
     }
 
+    // The operational monitoring buffer compresses the request body if
+    // op-monitor-buffer.compress-requests is enabled.
+    private InputStream getRequestInputStream() throws IOException {
+        InputStream in = servletRequest.getInputStream();
+
+        if (GZIP.equalsIgnoreCase(servletRequest.getHeader(
+                HttpHeaders.CONTENT_ENCODING))) {
+            return new GZIPInputStream(in);
+        }
+
+        return in;
+    }
+
     // Get usable operational data to be stored. If no such data is found,
     // send an error message right away.
     private static List<OperationalDataRecord> prepareRawStoreData(
@@ -0,0 +1,115 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.opmonitordaemon;
+
+import ee.ria.xroad.common.opmonitoring.OpMonitoringData;
+
+import com.codahale.metrics.MetricRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Measures {@link HealthDataMetrics#processRecords(MetricRegistry, List)} with a growing number of services whose
+ * health metrics are already registered. The time per record should not depend on the number of services.
+ */
+@Slf4j
+public final class HealthDataMetricsPerformanceTest {
+
+    private static final int WARMUP_ITERATIONS = 10;
+    private static final int ITERATIONS = 50;
+
+    private static final int[] SERVICE_COUNTS = {100, 1000, 5000};
+    private static final int RECORDS_PER_BATCH = 10_000;
+
+    // Every tenth request fails, so both the successful and unsuccessful
+    // metrics of the services get registered.
+    private static final int UNSUCCESSFUL_EVERY = 10;
+
+    private HealthDataMetricsPerformanceTest() {
+    }
+
+    /**
+     * Main program entry point.
+     * @param args command-line arguments, not used
+     * @throws Exception in case of any errors
+     */
+    public static void main(String[] args) throws Exception {
+        for (int serviceCount : SERVICE_COUNTS) {
+            measure(serviceCount);
+        }
+    }
+
+    private static void measure(int serviceCount) {
+        MetricRegistry registry = new MetricRegistry();
+        List<OperationalDataRecord> records = createRecords(serviceCount);
+
+        // The first batch registers the metrics of all the services.
+        run(registry, records, WARMUP_ITERATIONS);
+
+        long start = System.nanoTime();
+        run(registry, records, ITERATIONS);
+        long nanos = System.nanoTime() - start;
+
+        log.info("{} services, {} metrics: {} ns per record", serviceCount, registry.getMetrics().size(),
+                nanos / ((long) ITERATIONS * records.size()));
+    }
+
+    private static void run(MetricRegistry registry, List<OperationalDataRecord> records, int iterations) {
+        for (int i = 0; i < iterations; i++) {
+            HealthDataMetrics.processRecords(registry, records);
+        }
+    }
+
+    private static List<OperationalDataRecord> createRecords(int serviceCount) {
+        List<OperationalDataRecord> records = new ArrayList<>(RECORDS_PER_BATCH);
+        long now = System.currentTimeMillis();
+
+        for (int i = 0; i < RECORDS_PER_BATCH; i++) {
+            OperationalDataRecord record = new OperationalDataRecord();
+            record.setServiceXRoadInstance("EE");
+            record.setServiceMemberClass("GOV");
+            record.setServiceMemberCode("member" + (i % serviceCount) / 10);
+            record.setServiceSubsystemCode("subsystem");
+            record.setServiceCode("service" + i % serviceCount);
+            record.setServiceVersion("v1");
+            record.setSecurityServerType(OpMonitoringData.SecurityServerType.PRODUCER.getTypeString());
+            record.setSucceeded(i % UNSUCCESSFUL_EVERY != 0);
+            record.setRequestInTs(now);
+            record.setResponseOutTs(now + i % 100);
+            record.setRequestSoapSize(1000L + i % 500);
+            record.setResponseSoapSize(2000L + i % 700);
+
+            records.add(record);
+        }
+
+        // Records of different services arrive interleaved.
+        Collections.shuffle(records);
+
+        return records;
+    }
+}
@@ -33,6 +33,7 @@ import ee.ria.xroad.signer.protocol.message.SignResponse;
 
 import akka.actor.ActorRef;
 import akka.actor.ActorSystem;
+import akka.actor.Cancellable;
 import akka.actor.Props;
 import akka.actor.UntypedAbstractActor;
 import akka.actor.UntypedActorWithStash;
@@ -40,19 +41,29 @@ import akka.pattern.Patterns;
 import akka.util.Timeout;
 import lombok.Data;
 import lombok.Getter;
+import lombok.Setter;
+import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
 import org.bouncycastle.operator.OperatorCreationException;
 import scala.concurrent.Await;
+import scala.concurrent.duration.FiniteDuration;
 
 import java.io.IOException;
 import java.security.NoSuchAlgorithmException;
 import java.security.cert.X509Certificate;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 import static ee.ria.xroad.common.ErrorCodes.SIGNER_X;
-import static ee.ria.xroad.common.ErrorCodes.X_INTERNAL_ERROR;
 import static ee.ria.xroad.common.ErrorCodes.translateException;
 import static ee.ria.xroad.common.util.CryptoUtils.calculateCertHexHash;
 import static ee.ria.xroad.common.util.CryptoUtils.calculateDigest;
@@ -69,7 +80,9 @@ import static ee.ria.xroad.common.util.CryptoUtils.getDigestAlgorithmId;
  *
  * The batch signer is an Akka actor, it creates child actors per
  * signing certificate, which means there is essentially one batch signer
- * per signing certificate.
+ * per signing certificate. Each of them sends signing requests to Signer
+ * through a configured number of lanes. If batch size adapting is enabled,
+ * a batch is limited to the size that is signed within the target latency.
  */
 @Slf4j
 public class BatchSigner extends UntypedAbstractActor {
@@ -77,6 +90,14 @@ public class BatchSigner extends UntypedAbstractActor {
     private static final int TIMEOUT_MILLIS = SystemProperties.getSignerClientTimeout();
     private static final Timeout DEFAULT_TIMEOUT = new Timeout(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
 
+    private static final int LANES = SystemProperties.getBatchSignerLanes();
+    private static final int TARGET_LATENCY_MILLIS = SystemProperties.getBatchSignerTargetLatency();
+    private static final int MAX_BATCH_SIZE_LIMIT = 1024;
+    private static final int HISTOGRAM_BUCKETS = 11;
+
+    // Signing statistics per signing certificate hash, registered by the worker of the certificate while it runs.
+    private static final Map<String, KeyStatistics> STATISTICS = new ConcurrentHashMap<>();
+
     // Holds the actor instance, which sends and receives messages.
     private static ActorRef instance;
 
@@ -112,6 +133,16 @@ public class BatchSigner extends UntypedAbstractActor {
                 DEFAULT_TIMEOUT.duration()));
     }
 
+    /**
+     * @return the signing statistics per signing certificate hash
+     */
+    public static Map<String, Statistics> getStatistics() {
+        Map<String, Statistics> statistics = new TreeMap<>();
+        STATISTICS.forEach((certHash, keyStatistics) -> statistics.put(certHash, keyStatistics.toStatistics()));
+
+        return statistics;
+    }
+
     @Override
     public void onReceive(Object message) throws Exception {
         try {
@@ -139,6 +170,10 @@ public class BatchSigner extends UntypedAbstractActor {
         }
     }
 
+    protected Class<? extends LaneImpl> getLaneImpl() {
+        return LaneImpl.class;
+    }
+
     private ActorRef getWorker(SigningRequestWrapper signRequest) throws Exception {
         // Signing worker based on cert hash.
         String name = calculateCertHexHash(signRequest.getSigningCert());
@@ -148,46 +183,106 @@ public class BatchSigner extends UntypedAbstractActor {
         if (worker == null) {
             log.trace("Creating new worker for cert '{}'", name);
 
-            worker = getContext().actorOf(Props.create(WorkerImpl.class), name);
+            worker = getContext().actorOf(Props.create(WorkerImpl.class, new KeyStatistics(), getLaneImpl()), name);
         }
 
         return worker;
     }
 
     /**
-     * This is the worker that does the heavy lifting.
+     * This is the worker that does the heavy lifting. It sends the signing requests of one signing key to the
+     * signer through a configured number of lanes, each of which has one signing request in flight at a time.
      */
     private static class WorkerImpl extends UntypedActorWithStash {
 
-        // The currently active signing ctx.
-        private BatchSignatureCtx workingSigningCtx;
+        private static final String REPLACE_TIMED_OUT_LANES = "ReplaceTimedOutLanes";
 
-        // The next signing ctx, if batch signing.
-        private BatchSignatureCtx nextSigningCtx;
+        private final KeyStatistics statistics;
+        private final Class<? extends LaneImpl> laneImpl;
 
-        private long signStartTime;
-        private boolean workerBusy;
+        private final Deque<ActorRef> idleLanes = new ArrayDeque<>();
+
+        // Busy lanes and the start times of their signing requests.
+        private final Map<ActorRef, Long> busyLanes = new HashMap<>();
+
+        // The batches waiting for a free lane, if batch signing.
+        private final Deque<BatchSignatureCtx> nextSigningCtxs = new ArrayDeque<>();
+
+        private int batchSizeLimit = TARGET_LATENCY_MILLIS > 0 ? 1 : Integer.MAX_VALUE;
+        private int queueDepth;
+        private int laneNumber;
+
+        // The number of stashed requests and the number of unstashed requests that are not yet handled again.
+        private int stashedRequests;
+        private int unstashedRequests;
 
         private Boolean batchSigningEnabled;
 
+        private Cancellable replaceTimedOutLanesTick;
+
+        WorkerImpl(KeyStatistics statistics, Class<? extends LaneImpl> laneImpl) {
+            this.statistics = statistics;
+            this.laneImpl = laneImpl;
+        }
+
+        @Override
+        public void preStart() throws Exception {
+            for (int i = 0; i < LANES; i++) {
+                idleLanes.add(createLane());
+            }
+
+            statistics.update(busyLanes.size(), queueDepth, batchSizeLimit);
+            STATISTICS.put(getSelf().path().name(), statistics);
+
+            // Lanes that time out are also replaced when no new requests arrive
+            FiniteDuration interval = FiniteDuration.create(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+
+            replaceTimedOutLanesTick = getContext().system().scheduler().schedule(interval, interval, getSelf(),
+                    REPLACE_TIMED_OUT_LANES, getContext().dispatcher(), ActorRef.noSender());
+        }
+
+        @Override
+        public void postStop() throws Exception {
+            if (replaceTimedOutLanesTick != null) {
+                replaceTimedOutLanesTick.cancel();
+            }
+
+            STATISTICS.remove(getSelf().path().name(), statistics);
+        }
+
         @Override
         public void onReceive(Object message) throws Exception {
             log.trace("onReceive({})", message);
 
             if (message instanceof SigningRequestWrapper) {
                 handleSignRequest((SigningRequestWrapper) message);
-            } else if (message instanceof SignResponse) {
-                handleSignResponse((SignResponse) message);
-            } else if (message instanceof Exception) {
-                handleException((Exception) message);
+            } else if (message instanceof LaneDone) {
+                handleLaneDone((LaneDone) message);
+            } else if (REPLACE_TIMED_OUT_LANES.equals(message)) {
+                replaceTimedOutLanes();
             } else {
                 unhandled(message);
             }
+
+            statistics.update(busyLanes.size(), queueDepth, batchSizeLimit);
+        }
+
+        private ActorRef createLane() {
+            return getContext().actorOf(Props.create(laneImpl), "lane-" + laneNumber++);
         }
 
         private void handleSignRequest(SigningRequestWrapper signRequest) throws Exception {
             log.trace("handleSignRequest()");
 
+            boolean unstashed = unstashedRequests > 0;
+
+            if (unstashed) {
+                // The unstashed requests are handled before any new requests,
+                // they are counted again if they need to wait for a lane.
+                unstashedRequests--;
+                queueDepth--;
+            }
+
             // If we do not know whether batch signing is enabled for the token,
             // we ask from Signer. This call will block until response is
             // received or error occurs.
@@ -195,22 +290,32 @@ public class BatchSigner extends UntypedAbstractActor {
                 queryBatchSigningEnabled(signRequest.getKeyId());
             }
 
-            // Handle incoming sign request. If the token worker is currently
+            // Handle incoming sign request. If every lane is currently
             // busy (signing, generating key, etc...) and batch signing is
             // enabled then create signing context and collect all following
             // sign requests to be signed in batch. Otherwise just sign the
             // data straight away.
-            if (isWorkerBusy()) {
-                if (batchSigningEnabled) {
+            if (idleLanes.isEmpty()) {
+                replaceTimedOutLanes();
+            }
+
+            // The requests that have waited for a lane longer are signed first.
+            ActorRef lane = isRequestWaiting(unstashed) ? null : idleLanes.poll();
+
+            if (lane == null) {
+                if (Boolean.TRUE.equals(batchSigningEnabled)) {
                     doBatchSign(signRequest);
                 } else {
                     log.trace("Batch signing not enabled, stashing request");
                     // Batch signing not enabled, but currently busy,
                     // so stash this message for future.
                     stash();
+                    stashedRequests++;
                 }
+
+                queueDepth++;
             } else {
-                doSign(signRequest);
+                doSign(lane, signRequest);
             }
         }
 
@@ -222,90 +327,173 @@ public class BatchSigner extends UntypedAbstractActor {
             }
         }
 
+        private boolean isRequestWaiting(boolean unstashed) {
+            return !nextSigningCtxs.isEmpty() || stashedRequests > 0 || (!unstashed && unstashedRequests > 0);
+        }
+
+        /**
+         * Replaces the lanes whose signing request has timed out and starts signing the waiting requests with
+         * the new lanes.
+         */
+        private void replaceTimedOutLanes() {
+            long now = System.currentTimeMillis();
+
+            busyLanes.entrySet().removeIf(lane -> {
+                if (now - lane.getValue() < DEFAULT_TIMEOUT.duration().length()) {
+                    return false;
+                }
+
+                log.warn("Signature creation timed out in {}", lane.getKey().path().name());
+
+                getContext().stop(lane.getKey());
+                idleLanes.add(createLane());
+
+                return true;
+            });
+
+            startWaitingRequests();
+        }
+
         private void doBatchSign(SigningRequestWrapper wrapper) {
             log.trace("doBatchSign()");
 
-            if (nextSigningCtx == null) {
+            BatchSignatureCtx nextSigningCtx = nextSigningCtxs.peekLast();
+
+            if (nextSigningCtx == null || nextSigningCtx.getClients().size() >= batchSizeLimit) {
                 nextSigningCtx = new BatchSignatureCtx(wrapper.getKeyId(), wrapper.getSignatureAlgorithmId());
+                nextSigningCtxs.add(nextSigningCtx);
             }
 
             nextSigningCtx.add(getSender(), wrapper.getRequest());
         }
 
-        private void doSign(SigningRequestWrapper wrapper) throws Exception {
+        private void doSign(ActorRef lane, SigningRequestWrapper wrapper) {
             log.trace("doSign()");
 
             BatchSignatureCtx ctx = new BatchSignatureCtx(wrapper.getKeyId(), wrapper.getSignatureAlgorithmId());
             ctx.add(getSender(), wrapper.getRequest());
 
-            workingSigningCtx = ctx;
+            startSigning(lane, ctx);
+        }
 
-            doCalculateSignature(ctx.getKeyId(), ctx.getSignatureAlgorithmId(), ctx.getDataToBeSigned());
+        private void startSigning(ActorRef lane, BatchSignatureCtx ctx) {
+            busyLanes.put(lane, System.currentTimeMillis());
+            statistics.addBatch(ctx.getClients().size());
+
+            lane.tell(ctx, getSelf());
         }
 
-        private void handleSignResponse(SignResponse signResponse) {
-            log.trace("handleSignResponse()");
+        private void handleLaneDone(LaneDone laneDone) {
+            log.trace("handleLaneDone()");
 
-            workerBusy = false;
+            if (busyLanes.remove(getSender()) == null) {
+                // The lane has been replaced after a time out.
+                return;
+            }
 
-            // Handle the (successful) signature calculation result that came
-            // from Signer -- send the signature to the clients.
-            sendResponse(signResponse);
+            idleLanes.add(getSender());
+            adaptBatchSizeLimit(laneDone.getLatencyMillis());
+
+            startWaitingRequests();
+        }
+
+        private void startWaitingRequests() {
+            if (idleLanes.isEmpty()) {
+                return;
+            }
 
             // If batch signing is not enabled, then start signing the next
             // stashed messages.
-            if (!batchSigningEnabled) {
-                unstashAll();
-            } else if (nextSigningCtx != null) {
-                // Start the next batch signing (if any).
-                startNextBatchSigning();
+            if (!Boolean.TRUE.equals(batchSigningEnabled)) {
+                if (stashedRequests > 0) {
+                    unstashAll();
+
+                    unstashedRequests += stashedRequests;
+                    stashedRequests = 0;
+                }
+            } else {
+                // Start the next batch signings (if any).
+                while (!idleLanes.isEmpty() && !nextSigningCtxs.isEmpty()) {
+                    BatchSignatureCtx nextSigningCtx = nextSigningCtxs.poll();
+
+                    queueDepth -= nextSigningCtx.getClients().size();
+
+                    startSigning(idleLanes.poll(), nextSigningCtx);
+                }
             }
         }
 
-        private void handleException(Exception exception) {
-            log.trace("handleException()");
+        /**
+         * Doubles the batch size limit while the signing is faster than the target latency and halves it
+         * when the signing is slower.
+         */
+        private void adaptBatchSizeLimit(long latencyMillis) {
+            statistics.setLastLatencyMillis(latencyMillis);
 
-            workerBusy = false;
+            if (TARGET_LATENCY_MILLIS <= 0) {
+                return;
+            }
 
-            sendResponse(exception);
+            if (latencyMillis <= TARGET_LATENCY_MILLIS) {
+                batchSizeLimit = Math.min(MAX_BATCH_SIZE_LIMIT, batchSizeLimit * 2);
+            } else {
+                batchSizeLimit = Math.max(1, batchSizeLimit / 2);
+            }
         }
+    }
 
-        private void startNextBatchSigning() {
-            log.trace("startNextBatchSigning()");
+    /**
+     * Sends one signing request at a time to the signer and responds to the clients of the request.
+     */
+    static class LaneImpl extends UntypedAbstractActor {
 
-            workingSigningCtx = nextSigningCtx;
-            nextSigningCtx = null;
+        // The currently active signing ctx.
+        private BatchSignatureCtx workingSigningCtx;
 
-            try {
-                doCalculateSignature(workingSigningCtx.getKeyId(), workingSigningCtx.getSignatureAlgorithmId(),
-                        workingSigningCtx.getDataToBeSigned());
-            } catch (Exception e) {
-                sendResponse(workingSigningCtx, translateException(e));
+        private long signStartTime;
 
-                workerBusy = true;
-                workingSigningCtx = null;
+        @Override
+        public void onReceive(Object message) throws Exception {
+            log.trace("onReceive({})", message);
+
+            if (message instanceof BatchSignatureCtx) {
+                handleSigningCtx((BatchSignatureCtx) message);
+            } else if (message instanceof SignResponse) {
+                handleSignResponse((SignResponse) message);
+            } else if (message instanceof Exception) {
+                handleException((Exception) message);
+            } else {
+                unhandled(message);
             }
         }
 
-        private boolean isWorkerBusy() {
-            if (isSignatureCreationTimedOut()) {
-                workerBusy = false;
+        private void handleSigningCtx(BatchSignatureCtx ctx) {
+            workingSigningCtx = ctx;
+            signStartTime = System.currentTimeMillis();
 
-                throw new CodedException(X_INTERNAL_ERROR, "Signature creation timed out");
+            try {
+                doCalculateSignature(ctx.getKeyId(), ctx.getSignatureAlgorithmId(), ctx.getDataToBeSigned());
+            } catch (Exception e) {
+                sendResponse(translateException(e));
             }
+        }
 
-            return workerBusy;
+        private void handleSignResponse(SignResponse signResponse) {
+            log.trace("handleSignResponse()");
+
+            // Handle the (successful) signature calculation result that came
+            // from Signer -- send the signature to the clients.
+            sendResponse(signResponse);
         }
 
-        private boolean isSignatureCreationTimedOut() {
-            return workerBusy && System.currentTimeMillis() - signStartTime >= DEFAULT_TIMEOUT.duration().length();
+        private void handleException(Exception exception) {
+            log.trace("handleException()");
+
+            sendResponse(exception);
         }
 
-        private void doCalculateSignature(String keyId, String signatureAlgorithmId, byte[] data)
+        protected void doCalculateSignature(String keyId, String signatureAlgorithmId, byte[] data)
                 throws NoSuchAlgorithmException, IOException, OperatorCreationException {
-            workerBusy = true;
-            signStartTime = System.currentTimeMillis();
-
             byte[] digest = calculateDigest(getDigestAlgorithmId(signatureAlgorithmId), data);
 
             // Proxy this request to the Signer.
@@ -327,6 +515,8 @@ public class BatchSigner extends UntypedAbstractActor {
                 }
 
                 workingSigningCtx = null;
+
+                getContext().parent().tell(new LaneDone(System.currentTimeMillis() - signStartTime), getSelf());
             } else {
                 throw new RuntimeException("No signing context");
             }
@@ -360,12 +550,80 @@ public class BatchSigner extends UntypedAbstractActor {
         }
     }
 
+    /**
+     * Sent by a lane to the worker when the signing request of the lane is completed.
+     */
+    @Data
+    private static class LaneDone {
+        private final long latencyMillis;
+    }
+
+    /**
+     * Signing statistics of one signing key, updated by the worker of the key.
+     */
+    private static final class KeyStatistics {
+
+        private final AtomicLongArray batchSizes = new AtomicLongArray(HISTOGRAM_BUCKETS);
+
+        private volatile int busyLanes;
+        private volatile int queueDepth;
+        private volatile int batchSizeLimit;
+        @Setter
+        private volatile long lastLatencyMillis;
+
+        void update(int currentBusyLanes, int currentQueueDepth, int currentBatchSizeLimit) {
+            busyLanes = currentBusyLanes;
+            queueDepth = currentQueueDepth;
+            batchSizeLimit = currentBatchSizeLimit;
+        }
+
+        void addBatch(int batchSize) {
+            int bucket = Integer.SIZE - 1 - Integer.numberOfLeadingZeros(batchSize);
+
+            batchSizes.incrementAndGet(Math.min(HISTOGRAM_BUCKETS - 1, bucket));
+        }
+
+        Statistics toStatistics() {
+            Map<String, Long> histogram = new LinkedHashMap<>();
+
+            for (int i = 0; i < HISTOGRAM_BUCKETS; i++) {
+                histogram.put(getBucketName(i), batchSizes.get(i));
+            }
+
+            return new Statistics(LANES, busyLanes, queueDepth,
+                    batchSizeLimit == Integer.MAX_VALUE ? 0 : batchSizeLimit, lastLatencyMillis, histogram);
+        }
+    }
+
+    private static String getBucketName(int bucket) {
+        if (bucket == 0) {
+            return "1";
+        } else if (bucket == HISTOGRAM_BUCKETS - 1) {
+            return (1 << bucket) + "+";
+        } else {
+            return (1 << bucket) + "-" + ((1 << (bucket + 1)) - 1);
+        }
+    }
+
+    /**
+     * Batch signer statistics of one signing key.
+     */
+    @Value
+    public static class Statistics {
+        private final int lanes;
+        private final int busyLanes;
+        private final int queueDepth;
+        private final int batchSizeLimit;
+        private final long lastLatencyMillis;
+        private final Map<String, Long> batchSizeHistogram;
+    }
+
     /**
      * Convenience class that wraps the request along with the keyId
      * and algorithm id.
      */
     @Data
-    private static class SigningRequestWrapper {
+    static class SigningRequestWrapper {
         private final String keyId;
         private final String signatureAlgorithmId;
         private final SigningRequest request;
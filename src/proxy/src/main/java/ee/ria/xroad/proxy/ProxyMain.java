@@ -35,6 +35,7 @@ import ee.ria.xroad.common.Version;
 import ee.ria.xroad.common.conf.globalconf.GlobalConf;
 import ee.ria.xroad.common.conf.serverconf.CachingServerConfImpl;
 import ee.ria.xroad.common.conf.serverconf.ServerConf;
+import ee.ria.xroad.common.conf.serverconf.SnapshotServerConfImpl;
 import ee.ria.xroad.common.monitoring.MonitorAgent;
 import ee.ria.xroad.common.signature.BatchSigner;
 import ee.ria.xroad.common.util.AdminPort;
@@ -44,6 +45,8 @@ import ee.ria.xroad.common.util.StartStop;
 import ee.ria.xroad.common.util.healthcheck.HealthCheckPort;
 import ee.ria.xroad.proxy.addon.AddOn;
 import ee.ria.xroad.proxy.clientproxy.ClientProxy;
+import ee.ria.xroad.proxy.clientproxy.ServerProxyLoadBalancer;
+import ee.ria.xroad.proxy.clientproxy.SoapHandlerExecutor;
 import ee.ria.xroad.proxy.messagelog.MessageLog;
 import ee.ria.xroad.proxy.opmonitoring.OpMonitoring;
 import ee.ria.xroad.proxy.serverproxy.ServerProxy;
@@ -71,6 +74,7 @@ import java.net.URL;
 import java.time.LocalTime;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.ServiceLoader;
@@ -105,6 +109,8 @@ public final class ProxyMain {
 
     private static ActorSystem actorSystem;
 
+    private static SnapshotServerConfImpl serverConfSnapshot;
+
     private static ServiceLoader<AddOn> addOns = ServiceLoader.load(AddOn.class);
 
     private static final int GLOBAL_CONF_UPDATE_REPEAT_INTERVAL = 60;
@@ -174,6 +180,11 @@ public final class ProxyMain {
     private static void shutdown() throws Exception {
         log.trace("shutdown()");
         stopServices();
+
+        if (serverConfSnapshot != null) {
+            serverConfSnapshot.close();
+        }
+
         Await.ready(actorSystem.terminate(), Duration.Inf());
     }
 
@@ -210,7 +221,10 @@ public final class ProxyMain {
         log.trace("loadConfigurations()");
 
         try {
-            if (SystemProperties.getServerConfCachePeriod() > 0) {
+            if (SystemProperties.isServerConfSnapshotEnabled()) {
+                serverConfSnapshot = new SnapshotServerConfImpl();
+                ServerConf.reload(serverConfSnapshot);
+            } else if (SystemProperties.getServerConfCachePeriod() > 0) {
                 ServerConf.reload(new CachingServerConfImpl());
             }
             GlobalConf.reload();
@@ -228,6 +242,8 @@ public final class ProxyMain {
 
         addMaintenanceHandler(adminPort);
 
+        addStatisticsHandler(adminPort);
+
         return adminPort;
     }
 
@@ -253,6 +269,31 @@ public final class ProxyMain {
         });
     }
 
+    /**
+     * Runtime statistics of the proxy components, for tuning thread pools and buffers.
+     */
+    private static void addStatisticsHandler(AdminPort adminPort) {
+        adminPort.addHandler("/statistics", new AdminPort.SynchronousCallback() {
+            @Override
+            public void handle(HttpServletRequest request, HttpServletResponse response) {
+                Map<String, Object> result = new LinkedHashMap<>();
+                result.put("soapHandler", SoapHandlerExecutor.getStatistics());
+                result.put("opMonitoringBuffer", OpMonitoring.getBufferStatistics());
+                result.put("batchSigner", BatchSigner.getStatistics());
+                result.put("messageLog", MessageLog.getStatistics());
+                result.put("serverProxyLoadBalancer", ServerProxyLoadBalancer.getStatistics());
+
+                try {
+                    response.setCharacterEncoding("UTF8");
+                    JsonUtils.getSerializer().toJson(result, response.getWriter());
+                } catch (IOException e) {
+                    log.error("Unable to write to provided response, delegated request handling failed, response may"
+                            + " be malformed", e);
+                }
+            }
+        });
+    }
+
     /**
      * Diganostics for timestamping.
      * First check the connection to timestamp server. If OK, check the status of the previous timestamp request.
@@ -58,4 +58,20 @@ class AntiDosConfiguration {
     double getMaxHeapUsage() {
         return SystemProperties.getAntiDosMaxHeapUsage();
     }
+
+    /**
+     * @return the interval in milliseconds at which the system resources
+     * are sampled. Value 0 means that they are sampled for every connection.
+     */
+    long getResourceSamplingInterval() {
+        return SystemProperties.getAntiDosResourceSamplingInterval();
+    }
+
+    /**
+     * @return the interval in milliseconds at which the known addresses of
+     * the members are checked from the global configuration
+     */
+    long getKnownAddressesCheckInterval() {
+        return SystemProperties.getAntiDosKnownAddressesCheckInterval();
+    }
 }
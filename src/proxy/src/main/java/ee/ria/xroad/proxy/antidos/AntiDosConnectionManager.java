@@ -30,23 +30,58 @@ import ee.ria.xroad.common.util.SystemMetrics;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Collections;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.LinkedBlockingDeque;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Manages the incoming connections and prevents system resource exhaustion.
+ *
+ * The connections are queued per partner (IP address of a known member, or
+ * a shared queue for unknown addresses) and the partners with waiting
+ * connections take turns, so that a partner making lots of connections only
+ * delays its own connections.
+ *
+ * The known addresses are checked from the global configuration at most once
+ * per {@link AntiDosConfiguration#getKnownAddressesCheckInterval()}, and
+ * the partner database is rebuilt only when they have changed. The system
+ * resources are sampled at most once per
+ * {@link AntiDosConfiguration#getResourceSamplingInterval()} instead of for
+ * every connection.
  */
 @Slf4j
 class AntiDosConnectionManager<T extends SocketChannelWrapper> {
 
-    // Tiny wrapper class for active connections of a partner
+    // Tiny wrapper class for active connections of a partner,
+    // guarded by the queue lock
     private class HostData {
-        final Deque<T> connections = new LinkedBlockingDeque<>();
+        final Deque<T> connections = new ArrayDeque<>();
+        boolean active;
+    }
+
+    // Resource usage at the time of sampling
+    private static final class ResourceSample {
+        final long sampledAt;
+        final long freeFileDescriptorCount;
+        final double cpuLoad;
+        final double heapUsage;
+
+        ResourceSample(long sampledAt, long freeFileDescriptorCount,
+                double cpuLoad, double heapUsage) {
+            this.sampledAt = sampledAt;
+            this.freeFileDescriptorCount = freeFileDescriptorCount;
+            this.cpuLoad = cpuLoad;
+            this.heapUsage = heapUsage;
+        }
     }
 
     // The IP used for unknown members
@@ -55,17 +90,30 @@ class AntiDosConnectionManager<T extends SocketChannelWrapper> {
     // Holds the configuration
     protected final AntiDosConfiguration configuration;
 
-    // IP to HostData mapping
-    protected Map<String, HostData> database = new HashMap<>();
+    // IP to HostData mapping, replaced as a whole when the known
+    // addresses change
+    protected volatile Map<String, HostData> database;
+
+    // Buffer of partners with waiting connections, guarded by the queue lock
+    protected final Deque<HostData> activePartners = new ArrayDeque<>();
 
-    // Buffer of partners with waiting connections
-    protected LinkedBlockingQueue<HostData> activePartners =
-            new LinkedBlockingQueue<>();
+    private final ReentrantLock queueLock = new ReentrantLock();
+    private final Condition partnerAvailable = queueLock.newCondition();
 
     // Holds a cache of previously known member IPs.
     // Used to determine if should sync the database when conf changed.
     private Set<String> previousKnownOrganizations = new HashSet<>();
 
+    private final ReentrantLock syncLock = new ReentrantLock();
+    private final AtomicLong nextSyncTime = new AtomicLong();
+
+    private volatile ResourceSample resources;
+    private final ReentrantLock samplingLock = new ReentrantLock();
+
+    // Connections accepted since the resources were sampled, each of them
+    // takes a file handle
+    private final AtomicInteger acceptedSinceSample = new AtomicInteger();
+
     AntiDosConnectionManager(AntiDosConfiguration configuration) {
         if (configuration == null) {
             throw new IllegalArgumentException("configuration cannot be null");
@@ -73,7 +121,7 @@ class AntiDosConnectionManager<T extends SocketChannelWrapper> {
 
         this.configuration = configuration;
         this.previousKnownOrganizations.add(UNKNOWN_ORG_IP);
-        this.database.put(UNKNOWN_ORG_IP, new HostData());
+        this.database = Collections.singletonMap(UNKNOWN_ORG_IP, new HostData());
     }
 
     void init() throws Exception {
@@ -86,7 +134,7 @@ class AntiDosConnectionManager<T extends SocketChannelWrapper> {
      * we have at least one free file handle.
      */
     boolean canAccept() {
-        long freeFileHandles = getFreeFileDescriptorCount();
+        long freeFileHandles = getEstimatedFreeFileDescriptorCount(sampleResources());
         log.trace("canAccept({})", freeFileHandles);
         return freeFileHandles > 0;
     }
@@ -94,19 +142,29 @@ class AntiDosConnectionManager<T extends SocketChannelWrapper> {
     /**
      * Adds the connection into the partner's connection queue.
      */
-    synchronized void accept(T connection) {
+    void accept(T connection) {
         // We need to synchronize the database with the existing members.
-        syncDatabase();
+        syncDatabaseIfDue();
+
+        acceptedSinceSample.incrementAndGet();
 
         // Find the host data for the incoming connection and register
         // the new connection to this host data
         HostData currentPartner = getHostData(connection.getHostAddress());
-        currentPartner.connections.addFirst(connection);
 
-        // If the host data is not for an active partner,
-        // add it to the connection buffer as the newest partner.
-        if (!activePartners.contains(currentPartner)) {
-            activePartners.add(currentPartner);
+        queueLock.lock();
+        try {
+            currentPartner.connections.addFirst(connection);
+
+            // If the host data is not for an active partner,
+            // add it to the connection buffer as the newest partner.
+            if (!currentPartner.active) {
+                currentPartner.active = true;
+                activePartners.addLast(currentPartner);
+                partnerAvailable.signal();
+            }
+        } finally {
+            queueLock.unlock();
         }
     }
 
@@ -132,19 +190,33 @@ class AntiDosConnectionManager<T extends SocketChannelWrapper> {
      * If not, then the connection is closed thus freeing some resources.
      */
     protected T getNextConnection() throws InterruptedException {
-        // Take the oldest partner from the buffer (blocks until available).
-        HostData oldestPartner = activePartners.take();
+        T sock;
 
-        // Take the oldest connection.
-        T sock = oldestPartner.connections.pollLast();
-        if (sock == null) {
-            return null;
+        queueLock.lockInterruptibly();
+        try {
+            // Take the oldest partner from the buffer (blocks until available).
+            while (activePartners.isEmpty()) {
+                partnerAvailable.await();
+            }
+
+            HostData oldestPartner = activePartners.pollFirst();
+
+            // Take the oldest connection.
+            sock = oldestPartner.connections.pollLast();
+
+            // If there are more connections left for this partner, add the
+            // partner back to the buffer as the newest partner.
+            if (oldestPartner.connections.isEmpty()) {
+                oldestPartner.active = false;
+            } else {
+                activePartners.addLast(oldestPartner);
+            }
+        } finally {
+            queueLock.unlock();
         }
 
-        // If there are more connections left for this partner, add the partner
-        // back to the buffer as the first partner.
-        if (!oldestPartner.connections.isEmpty()) {
-            activePartners.add(oldestPartner);
+        if (sock == null) {
+            return null;
         }
 
         // Processing a connection consumes file handles and other resources
@@ -181,34 +253,56 @@ class AntiDosConnectionManager<T extends SocketChannelWrapper> {
     }
 
     private HostData getHostData(String ip) {
-        return database.containsKey(ip)
-                ? database.get(ip) : database.get(UNKNOWN_ORG_IP);
+        Map<String, HostData> currentDatabase = database;
+        HostData hostData = currentDatabase.get(ip);
+
+        return hostData != null ? hostData : currentDatabase.get(UNKNOWN_ORG_IP);
     }
 
-    private void syncDatabase() {
-        Set<String> knownAddresses = getAllAddresses();
+    private void syncDatabaseIfDue() {
+        long now = System.nanoTime();
+        long syncTime = nextSyncTime.get();
 
-        if (previousKnownOrganizations.equals(knownAddresses)) {
-            // Nothing has changed, do not sync.
+        // Only one of the accepting threads checks the configuration, the
+        // others keep using the current database meanwhile.
+        if (now - syncTime < 0 || !nextSyncTime.compareAndSet(syncTime, now
+                + TimeUnit.MILLISECONDS.toNanos(configuration.getKnownAddressesCheckInterval()))) {
             return;
         }
 
-        Map<String, HostData> newDatabase = new HashMap<>();
+        syncDatabase();
+    }
 
-        // Retain existing members connections
-        database.keySet().stream()
-                .filter(knownAddresses::contains)
-                .forEach(existingAddress -> newDatabase.put(
-                        existingAddress, database.get(existingAddress)));
+    private void syncDatabase() {
+        syncLock.lock();
+        try {
+            Set<String> knownAddresses = getAllAddresses();
 
-        // Add new members
-        knownAddresses.stream()
-                .filter(knownAddress -> !database.containsKey(knownAddress))
-                .forEach(knownAddress ->
-                        registerHostData(newDatabase, knownAddress));
+            if (previousKnownOrganizations.equals(knownAddresses)) {
+                // Nothing has changed, do not sync.
+                return;
+            }
 
-        previousKnownOrganizations = knownAddresses;
-        database = newDatabase;
+            Map<String, HostData> currentDatabase = database;
+            Map<String, HostData> newDatabase = new HashMap<>();
+
+            // Retain existing members connections
+            currentDatabase.keySet().stream()
+                    .filter(knownAddresses::contains)
+                    .forEach(existingAddress -> newDatabase.put(
+                            existingAddress, currentDatabase.get(existingAddress)));
+
+            // Add new members
+            knownAddresses.stream()
+                    .filter(knownAddress -> !currentDatabase.containsKey(knownAddress))
+                    .forEach(knownAddress ->
+                            registerHostData(newDatabase, knownAddress));
+
+            previousKnownOrganizations = knownAddresses;
+            database = newDatabase;
+        } finally {
+            syncLock.unlock();
+        }
     }
 
     private void registerHostData(
@@ -217,12 +311,48 @@ class AntiDosConnectionManager<T extends SocketChannelWrapper> {
         newDatabase.put(knownAddress, new HostData());
     }
 
+    private ResourceSample sampleResources() {
+        ResourceSample sample = resources;
+        long now = System.nanoTime();
+
+        if (sample != null && now - sample.sampledAt
+                < TimeUnit.MILLISECONDS.toNanos(configuration.getResourceSamplingInterval())) {
+            return sample;
+        }
+
+        // Only one thread samples at a time, the others use the previous
+        // sample meanwhile.
+        if (sample != null && !samplingLock.tryLock()) {
+            return sample;
+        }
+
+        if (sample == null) {
+            samplingLock.lock();
+        }
+
+        try {
+            acceptedSinceSample.set(0);
+            resources = new ResourceSample(now, getFreeFileDescriptorCount(),
+                    getCpuLoad(), getHeapUsage());
+
+            return resources;
+        } finally {
+            samplingLock.unlock();
+        }
+    }
+
+    private long getEstimatedFreeFileDescriptorCount(ResourceSample sample) {
+        return sample.freeFileDescriptorCount - acceptedSinceSample.get();
+    }
+
     private boolean hasSufficientResources() {
-        long freeFileDescriptorCount = getFreeFileDescriptorCount();
+        ResourceSample sample = sampleResources();
+
+        long freeFileDescriptorCount = getEstimatedFreeFileDescriptorCount(sample);
         int minFreeFileHandles = configuration.getMinFreeFileHandles();
-        double cpuLoad = getCpuLoad();
+        double cpuLoad = sample.cpuLoad;
         double maxCpuLoad = configuration.getMaxCpuLoad();
-        double heapUsage = getHeapUsage();
+        double heapUsage = sample.heapUsage;
         double maxHeapUsage = configuration.getMaxHeapUsage();
 
         log.trace("Resource usage when considering connection:\n"
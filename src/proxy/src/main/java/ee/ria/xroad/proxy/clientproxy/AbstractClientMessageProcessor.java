@@ -112,7 +112,8 @@ abstract class AbstractClientMessageProcessor extends MessageProcessorBase {
 
         // Start sending the request to server proxies. The underlying
         // SSLConnectionSocketFactory will select the fastest address
-        // (socket that connects first) from the provided addresses.
+        // (socket that connects first) from the provided addresses, or
+        // the address suggested by the load balancer if it is enabled.
         List<URI> tmp = getServiceAddresses(requestServiceId, securityServerId);
         Collections.shuffle(tmp);
         URI[] addresses = tmp.toArray(new URI[0]);
@@ -141,6 +142,24 @@ abstract class AbstractClientMessageProcessor extends MessageProcessorBase {
         return addresses;
     }
 
+    /**
+     * Records the latency of a request to the load balancer, if load balancing is enabled.
+     */
+    static void requestSucceeded(HttpSender httpSender, long latencyNanos) {
+        if (isSslEnabled() && SystemProperties.isClientProxyLoadBalancingEnabled()) {
+            ServerProxyLoadBalancer.getInstance().requestSucceeded(httpSender, latencyNanos);
+        }
+    }
+
+    /**
+     * Records a failed request to the load balancer, if load balancing is enabled.
+     */
+    static void requestFailed(HttpSender httpSender) {
+        if (isSslEnabled() && SystemProperties.isClientProxyLoadBalancingEnabled()) {
+            ServerProxyLoadBalancer.getInstance().requestFailed(httpSender);
+        }
+    }
+
     private void updateOpMonitoringServiceSecurityServerAddress(URI addresses[], HttpSender httpSender) {
         if (addresses.length == 1) {
             opMonitoringData.setServiceSecurityServerAddress(addresses[0].getHost());
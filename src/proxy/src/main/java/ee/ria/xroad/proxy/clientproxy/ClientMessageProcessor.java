@@ -65,6 +65,7 @@ import javax.servlet.http.HttpServletResponse;
 import javax.xml.namespace.QName;
 
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.PipedInputStream;
 import java.io.PipedOutputStream;
 import java.io.Writer;
@@ -73,10 +74,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
-import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 
 import static ee.ria.xroad.common.ErrorCodes.X_INCONSISTENT_RESPONSE;
@@ -127,8 +125,9 @@ class ClientMessageProcessor extends AbstractClientMessageProcessor {
     private volatile CodedException executionException;
 
     /** Holds the proxy message output stream and associated info. */
-    private PipedInputStream reqIns;
-    private volatile PipedOutputStream reqOuts;
+    private InputStream reqIns;
+    private volatile OutputStream reqOuts;
+    private HandoffPipe reqPipe;
     private volatile String outputContentType;
 
     /** Holds the request to the server proxy. */
@@ -138,27 +137,21 @@ class ClientMessageProcessor extends AbstractClientMessageProcessor {
     /** Holds the response from server proxy. */
     private ProxyMessage response;
 
-    private static final ExecutorService SOAP_HANDLER_EXECUTOR =
-            createSoapHandlerExecutor();
-
-    private static ExecutorService createSoapHandlerExecutor() {
-        return Executors.newCachedThreadPool(new ThreadFactory() {
-            @Override
-            public Thread newThread(Runnable r) {
-                Thread handlerThread = new Thread(r);
-                handlerThread.setName(Thread.currentThread().getName() + "-soap");
-
-                return handlerThread;
-            }
-        });
-    }
-
     ClientMessageProcessor(HttpServletRequest servletRequest, HttpServletResponse servletResponse,
             HttpClient httpClient, IsAuthenticationData clientCert, OpMonitoringData opMonitoringData)
             throws Exception {
         super(servletRequest, servletResponse, httpClient, clientCert, opMonitoringData);
-        this.reqIns = new PipedInputStream();
-        this.reqOuts = new PipedOutputStream(reqIns);
+
+        if (SoapHandlerExecutor.isBounded()) {
+            this.reqPipe = SoapHandlerExecutor.createPipe();
+            this.reqIns = reqPipe.getInputStream();
+            this.reqOuts = reqPipe.getOutputStream();
+        } else {
+            PipedInputStream pipedIns = new PipedInputStream();
+            this.reqIns = pipedIns;
+            this.reqOuts = new PipedOutputStream(pipedIns);
+        }
+
         this.xRequestId = UUID.randomUUID().toString();
     }
 
@@ -169,7 +162,7 @@ class ClientMessageProcessor extends AbstractClientMessageProcessor {
         opMonitoringData.setXRequestId(xRequestId);
         updateOpMonitoringClientSecurityServerAddress();
 
-        Future<?> soapHandler = SOAP_HANDLER_EXECUTOR.submit(this::handleSoap);
+        Future<?> soapHandler = SoapHandlerExecutor.submit(this::handleSoap);
 
         try {
             // Wait for the request SOAP message to be parsed before we can start sending stuff.
@@ -251,9 +244,17 @@ class ClientMessageProcessor extends AbstractClientMessageProcessor {
 
             try {
                 opMonitoringData.setRequestOutTs(getEpochMillisecond());
+                long start = System.nanoTime();
                 httpSender.doPost(getServiceAddress(addresses), reqIns, CHUNKED_LENGTH, outputContentType);
+                requestSucceeded(httpSender, System.nanoTime() - start);
                 opMonitoringData.setResponseInTs(getEpochMillisecond());
             } catch (Exception e) {
+                // The handler thread sets the error before it aborts the request pipe, so a failure to read
+                // or process the client request is not counted against the server proxy
+                if (executionException == null) {
+                    requestFailed(httpSender);
+                }
+
                 // Failed to connect to server proxy
                 MonitorAgent.serverProxyFailed(createRequestMessageInfo());
 
@@ -452,11 +453,24 @@ class ClientMessageProcessor extends AbstractClientMessageProcessor {
         } catch (Throwable ex) {
             setError(ex);
         } finally {
+            if (reqPipe != null) {
+                closeRequestPipe();
+            }
+
             continueProcessing();
             continueReadingResponse();
         }
     }
 
+    private void closeRequestPipe() {
+        // Unlike piped streams, the hand-off pipe does not notice if the writing thread goes away,
+        // so the reader has to be released explicitly.
+        if (executionException != null) {
+            reqPipe.abort();
+        } else {
+            IOUtils.closeQuietly(reqOuts);
+        }
+    }
 
     private class SoapMessageHandler implements SoapMessageDecoder.Callback {
 
@@ -176,8 +176,8 @@ public class ClientProxy implements StartStop {
     }
 
     private static SSLConnectionSocketFactory createSSLSocketFactory() throws Exception {
-        return new FastestConnectionSelectingSSLSocketFactory(SSLContextUtil.createXroadSSLContext()
-        );
+        return new FastestConnectionSelectingSSLSocketFactory(SSLContextUtil.createXroadSSLContext(),
+                SystemProperties.isClientProxyLoadBalancingEnabled() ? ServerProxyLoadBalancer.getInstance() : null);
     }
 
     private void createConnectors() throws Exception {
@@ -47,6 +47,7 @@ import ee.ria.xroad.proxy.protocol.ProxyMessageEncoder;
 
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.ProxyOutputStream;
 import org.apache.commons.lang.RandomStringUtils;
 import org.apache.http.Header;
 import org.apache.http.client.HttpClient;
@@ -98,6 +99,9 @@ class ClientRestMessageProcessor extends AbstractClientMessageProcessor {
     private String xRequestId;
     private byte[] restBodyDigest;
 
+    // Whether sending the request failed while reading or processing the client request
+    private volatile boolean requestEntityFailed;
+
     ClientRestMessageProcessor(HttpServletRequest servletRequest, HttpServletResponse servletResponse,
             HttpClient httpClient, IsAuthenticationData clientCert, OpMonitoringData opMonitoringData)
             throws Exception {
@@ -180,9 +184,15 @@ class ClientRestMessageProcessor extends AbstractClientMessageProcessor {
         try {
             final String contentType = MimeUtils.mpMixedContentType("xtop" + RandomStringUtils.randomAlphabetic(30));
             opMonitoringData.setRequestOutTs(getEpochMillisecond());
+            long start = System.nanoTime();
             httpSender.doPost(getServiceAddress(addresses), new ProxyMessageEntity(contentType));
+            requestSucceeded(httpSender, System.nanoTime() - start);
             opMonitoringData.setResponseInTs(getEpochMillisecond());
         } catch (Exception e) {
+            if (!requestEntityFailed) {
+                requestFailed(httpSender);
+            }
+
             MonitorAgent.serverProxyFailed(createRequestMessageInfo());
             throw e;
         }
@@ -319,8 +329,10 @@ class ClientRestMessageProcessor extends AbstractClientMessageProcessor {
 
         @Override
         public void writeTo(OutputStream outstream) {
+            ServerOutputStream serverOut = new ServerOutputStream(outstream);
+
             try {
-                final ProxyMessageEncoder enc = new ProxyMessageEncoder(outstream,
+                final ProxyMessageEncoder enc = new ProxyMessageEncoder(serverOut,
                         CryptoUtils.DEFAULT_DIGEST_ALGORITHM_ID, getBoundary(contentType.getValue()));
 
                 final CertChain chain = KeyConf.getAuthKey().getCertChain();
@@ -361,6 +373,8 @@ class ClientRestMessageProcessor extends AbstractClientMessageProcessor {
                 enc.close();
 
             } catch (Exception e) {
+                requestEntityFailed = !serverOut.failed;
+
                 throw new CodedException(X_IO_ERROR, e);
             }
         }
@@ -371,6 +385,24 @@ class ClientRestMessageProcessor extends AbstractClientMessageProcessor {
         }
     }
 
+    /**
+     * Output stream to the server proxy that records whether writing to the server proxy failed.
+     */
+    private static final class ServerOutputStream extends ProxyOutputStream {
+        private boolean failed;
+
+        ServerOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        protected void handleIOException(IOException e) throws IOException {
+            failed = true;
+
+            throw e;
+        }
+    }
+
     private List<Header> headers(HttpServletRequest req) {
         //Use jetty request to keep the original order
         Request jrq = (Request) req;
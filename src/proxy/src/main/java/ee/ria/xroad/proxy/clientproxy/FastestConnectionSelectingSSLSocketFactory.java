@@ -63,6 +63,9 @@ import static ee.ria.xroad.proxy.clientproxy.AuthTrustVerifier.verify;
  *
  * If an SSL session already exists to one of the provided addresses, then
  * that address is selected immediately without previous selection algorithm.
+ *
+ * If a {@link ServerProxyLoadBalancer} is given, the addresses are instead
+ * tried one at a time in the order it suggests.
  */
 @Slf4j
 class FastestConnectionSelectingSSLSocketFactory
@@ -85,9 +88,15 @@ class FastestConnectionSelectingSSLSocketFactory
 
     private final Cache<CacheKey, URI> selectedHosts;
     private final boolean cachingEnabled;
+    private final ServerProxyLoadBalancer loadBalancer;
 
     FastestConnectionSelectingSSLSocketFactory(SSLContext sslContext) {
+        this(sslContext, null);
+    }
+
+    FastestConnectionSelectingSSLSocketFactory(SSLContext sslContext, ServerProxyLoadBalancer loadBalancer) {
         super(sslContext, null, SystemProperties.getXroadTLSCipherSuites(), (HostnameVerifier)null);
+        this.loadBalancer = loadBalancer;
         this.socketfactory = sslContext.getSocketFactory();
         this.selectedHosts = CacheBuilder.newBuilder()
                 .expireAfterWrite(SystemProperties.getClientProxyFastestConnectingSslUriCachePeriod(), TimeUnit.SECONDS)
@@ -110,6 +119,10 @@ class FastestConnectionSelectingSSLSocketFactory
 
         // Read target addresses from the context.
         final URI[] addressesFromContext = getAddressesFromContext(context);
+
+        if (loadBalancer != null) {
+            return connectBalanced(timeout, addressesFromContext, context);
+        }
         final boolean useCache = cachingEnabled && (addressesFromContext.length > 1);
         final FastestSocketSelector selector = new FastestSocketSelector();
 
@@ -185,6 +198,42 @@ class FastestConnectionSelectingSSLSocketFactory
         throw couldNotConnectException(addressesFromContext, deferredException);
     }
 
+    private Socket connectBalanced(int timeout, URI[] addresses, HttpContext context) throws IOException {
+        Exception deferredException = null;
+        int connectTimeout = timeout;
+
+        for (URI address : loadBalancer.order(addresses)) {
+            final FastestSocketSelector selector = new FastestSocketSelector();
+            selector.add(address);
+
+            SocketInfo selectedSocket = null;
+            SSLSocket sslSocket = null;
+            try {
+                selectedSocket = selector.select(connectTimeout);
+                sslSocket = wrapToSSLSocket(selectedSocket.getSocket(), connectTimeout);
+                prepareAndVerify(sslSocket, address, context);
+                configureSocket(sslSocket);
+                log.trace("Connected to {}", address);
+                updateOpMonitoringData(context, selectedSocket);
+                context.setAttribute(ServerProxyLoadBalancer.ID_SELECTED_TARGET, address);
+                loadBalancer.connected(address, sslSocket.getInetAddress());
+
+                return sslSocket;
+            } catch (IOException | RuntimeException e) {
+                deferredException = e;
+                closeQuietly(sslSocket);
+                if (selectedSocket != null) {
+                    closeQuietly(selectedSocket.getSocket());
+                }
+                log.trace("Failed to connect to {}", address, e);
+                loadBalancer.connectFailed(address);
+                //try the next address using reduced connection timeout.
+                connectTimeout = Math.max(MIN_TIMEOUT, connectTimeout / 2);
+            }
+        }
+        throw couldNotConnectException(addresses, deferredException);
+    }
+
     @Override
     protected void prepareSocket(final SSLSocket socket) throws IOException {
         socket.setEnabledProtocols(new String[] {CryptoUtils.SSL_PROTOCOL});
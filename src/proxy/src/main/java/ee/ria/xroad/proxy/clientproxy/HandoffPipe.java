@@ -0,0 +1,264 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.clientproxy;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+
+/**
+ * Hands the request content over from the SOAP handler thread to the thread that sends the request
+ * to the server proxy. The content is passed in chunks through a bounded queue, so the threads only
+ * wait for each other when the queue is full or empty.
+ */
+class HandoffPipe {
+
+    static final int CHUNK_SIZE = 8192;
+
+    private static final int MAX_CHUNKS = 16;
+    private static final long POLL_INTERVAL_MS = 100;
+    private static final byte[] END = new byte[0];
+
+    private final BlockingQueue<byte[]> chunks = new ArrayBlockingQueue<>(MAX_CHUNKS);
+    private final LongConsumer waitListener;
+
+    private final InputStream inputStream = new PipeInputStream();
+    private final OutputStream outputStream = new PipeOutputStream();
+
+    private volatile boolean writerClosed;
+    private volatile boolean readerClosed;
+    private volatile boolean aborted;
+
+    /**
+     * @param waitListener receives the time in nanoseconds that a thread waited for the other end
+     */
+    HandoffPipe(LongConsumer waitListener) {
+        this.waitListener = waitListener;
+    }
+
+    InputStream getInputStream() {
+        return inputStream;
+    }
+
+    OutputStream getOutputStream() {
+        return outputStream;
+    }
+
+    /**
+     * Marks the content as incomplete, so that the reader fails instead of reaching the end of
+     * the stream. Called by the writer if it could not produce the whole content.
+     */
+    void abort() {
+        aborted = true;
+        writerClosed = true;
+    }
+
+    private void put(byte[] chunk) throws IOException {
+        if (readerClosed) {
+            throw new IOException("Pipe closed by reader");
+        }
+
+        if (chunks.offer(chunk)) {
+            return;
+        }
+
+        long start = System.nanoTime();
+
+        try {
+            while (!chunks.offer(chunk, POLL_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+                if (readerClosed) {
+                    throw new IOException("Pipe closed by reader");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            throw new InterruptedIOException("Interrupted while writing to pipe");
+        } finally {
+            waitListener.accept(System.nanoTime() - start);
+        }
+    }
+
+    private byte[] take() throws IOException {
+        byte[] chunk = chunks.poll();
+
+        if (chunk != null) {
+            return chunk;
+        }
+
+        long start = System.nanoTime();
+
+        try {
+            while ((chunk = chunks.poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS)) == null) {
+                // The writer may have given up without being able to hand over the end marker
+                if (writerClosed && chunks.isEmpty()) {
+                    return END;
+                }
+
+                if (aborted) {
+                    throw new IOException("Write end aborted");
+                }
+            }
+
+            return chunk;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            throw new InterruptedIOException("Interrupted while reading from pipe");
+        } finally {
+            waitListener.accept(System.nanoTime() - start);
+        }
+    }
+
+    private class PipeOutputStream extends OutputStream {
+        private byte[] buffer = new byte[CHUNK_SIZE];
+        private int count;
+
+        @Override
+        public void write(int b) throws IOException {
+            if (count == CHUNK_SIZE) {
+                handOver();
+            }
+
+            buffer[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            int offset = off;
+            int remaining = len;
+
+            while (remaining > 0) {
+                if (count == CHUNK_SIZE) {
+                    handOver();
+                }
+
+                int length = Math.min(remaining, CHUNK_SIZE - count);
+                System.arraycopy(b, offset, buffer, count, length);
+
+                count += length;
+                offset += length;
+                remaining -= length;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (count > 0) {
+                handOver();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (writerClosed) {
+                return;
+            }
+
+            try {
+                flush();
+                put(END);
+            } finally {
+                writerClosed = true;
+            }
+        }
+
+        private void handOver() throws IOException {
+            byte[] chunk = count == CHUNK_SIZE ? buffer : Arrays.copyOf(buffer, count);
+
+            if (chunk == buffer) {
+                buffer = new byte[CHUNK_SIZE];
+            }
+
+            count = 0;
+            put(chunk);
+        }
+    }
+
+    private class PipeInputStream extends InputStream {
+        private byte[] current;
+        private int position;
+
+        @Override
+        public int read() throws IOException {
+            if (!ensureAvailable()) {
+                return -1;
+            }
+
+            return Byte.toUnsignedInt(current[position++]);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+
+            if (!ensureAvailable()) {
+                return -1;
+            }
+
+            int length = Math.min(len, current.length - position);
+            System.arraycopy(current, position, b, off, length);
+            position += length;
+
+            return length;
+        }
+
+        @Override
+        public int available() {
+            return current == null || current == END ? 0 : current.length - position;
+        }
+
+        @Override
+        public void close() {
+            readerClosed = true;
+            chunks.clear();
+        }
+
+        private boolean ensureAvailable() throws IOException {
+            if (readerClosed) {
+                throw new IOException("Pipe closed");
+            }
+
+            while (current != END && (current == null || position == current.length)) {
+                current = take();
+                position = 0;
+            }
+
+            if (current == END && aborted) {
+                throw new IOException("Write end aborted");
+            }
+
+            return current != END;
+        }
+    }
+}
@@ -0,0 +1,280 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.clientproxy;
+
+import ee.ria.xroad.common.util.AbstractHttpSender;
+
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.http.HttpInetConnection;
+import org.apache.http.protocol.HttpCoreContext;
+
+import java.net.InetAddress;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Spreads the requests to a service provider across its security servers by the request latency and error rate
+ * observed for each server.
+ *
+ * The latency and the error rate are tracked per server as exponentially weighted moving averages. For each new
+ * connection, two of the healthy servers are picked at random and the one with the lower latency (penalized by its
+ * error rate) is tried first ("power of two choices"). The rest of the servers follow as fallbacks, the healthy ones
+ * first and best first.
+ *
+ * The server is selected when a connection is opened. Requests sent over a pooled keep-alive connection go to the
+ * server the connection was opened to, so they only affect the selection through the statistics they record.
+ *
+ * A server is unhealthy while its error rate is above {@link #MAX_ERROR_RATE}. It is tried again after
+ * {@link #RETRY_INTERVAL_MILLIS} without errors, or when none of the servers are healthy.
+ *
+ * The statistics are keyed by the host of the server address, and are available from {@link #getStatistics()}.
+ */
+@Slf4j
+public final class ServerProxyLoadBalancer {
+
+    /**
+     * The identifier of the server proxy address the connection was opened to, for the HttpContext attributes map.
+     */
+    static final String ID_SELECTED_TARGET = "ee.ria.xroad.serverproxy.selectedTarget";
+
+    static final double EWMA_WEIGHT = 0.3;
+    static final double MAX_ERROR_RATE = 0.5;
+    static final long RETRY_INTERVAL_MILLIS = 30_000;
+
+    private static final double MAX_ERROR_PENALTY = 0.9;
+
+    private static final ServerProxyLoadBalancer INSTANCE = new ServerProxyLoadBalancer();
+
+    private final ConcurrentMap<String, TargetStats> targets = new ConcurrentHashMap<>();
+
+    // The hosts of the server addresses by the IP address connected to, for finding the host of a pooled connection
+    private final ConcurrentMap<String, String> hostsByAddress = new ConcurrentHashMap<>();
+
+    ServerProxyLoadBalancer() {
+    }
+
+    static ServerProxyLoadBalancer getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return the request statistics per security server host
+     */
+    public static Map<String, Statistics> getStatistics() {
+        return INSTANCE.getTargetStatistics();
+    }
+
+    Map<String, Statistics> getTargetStatistics() {
+        long now = System.currentTimeMillis();
+        Map<String, Statistics> statistics = new TreeMap<>();
+
+        targets.forEach((host, stats) -> statistics.put(host, stats.toStatistics(now)));
+
+        return statistics;
+    }
+
+    /**
+     * Orders the addresses for connecting: the selected address first, followed by the rest best first.
+     * @param addresses the addresses of the service provider's security servers
+     * @return a new array of the addresses in the order they should be tried
+     */
+    URI[] order(URI[] addresses) {
+        if (addresses.length < 2) {
+            return addresses.clone();
+        }
+
+        long now = System.currentTimeMillis();
+
+        List<URI> healthy = Arrays.stream(addresses).filter(a -> stats(a.getHost()).isHealthy(now))
+                .collect(Collectors.toList());
+        URI[] candidates = healthy.isEmpty() ? addresses : healthy.toArray(new URI[0]);
+
+        URI selected = candidates[0];
+
+        if (candidates.length > 1) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+
+            int first = random.nextInt(candidates.length);
+            int second = random.nextInt(candidates.length - 1);
+
+            if (second >= first) {
+                second++;
+            }
+
+            selected = score(candidates[first]) <= score(candidates[second]) ? candidates[first] : candidates[second];
+        }
+
+        URI[] ordered = new URI[addresses.length];
+        ordered[0] = selected;
+
+        final URI first = selected;
+
+        URI[] rest = Arrays.stream(addresses).filter(a -> a != first)
+                .sorted(Comparator.comparing((URI a) -> !healthy.contains(a)).thenComparingDouble(this::score))
+                .toArray(URI[]::new);
+        System.arraycopy(rest, 0, ordered, 1, rest.length);
+
+        return ordered;
+    }
+
+    /**
+     * Records a connection opened to a security server.
+     * @param address the address of the security server
+     * @param remoteAddress the IP address the connection is connected to
+     */
+    void connected(URI address, InetAddress remoteAddress) {
+        if (remoteAddress != null) {
+            hostsByAddress.put(remoteAddress.getHostAddress(), address.getHost());
+        }
+    }
+
+    /**
+     * Records a failed connection attempt to a security server.
+     * @param address the address of the security server
+     */
+    void connectFailed(URI address) {
+        stats(address.getHost()).failure();
+    }
+
+    /**
+     * Records a request that got a response from the security server it was sent to.
+     * @param sender the sender of the request
+     * @param latencyNanos time from sending the request to receiving the response
+     */
+    void requestSucceeded(AbstractHttpSender sender, long latencyNanos) {
+        String host = getTargetHost(sender);
+
+        if (host != null) {
+            stats(host).success(latencyNanos);
+        }
+    }
+
+    /**
+     * Records a request that failed after the connection to the security server had been opened.
+     * @param sender the sender of the request
+     */
+    void requestFailed(AbstractHttpSender sender) {
+        String host = getTargetHost(sender);
+
+        if (host != null) {
+            stats(host).failure();
+        }
+    }
+
+    private double score(URI address) {
+        TargetStats stats = stats(address.getHost());
+
+        return stats.latencyNanos / (1 - Math.min(stats.errorRate, MAX_ERROR_PENALTY));
+    }
+
+    private TargetStats stats(String host) {
+        return targets.computeIfAbsent(host, h -> new TargetStats());
+    }
+
+    /**
+     * Returns the host of the security server address the request was sent to. A new connection records the
+     * address in the context when it is opened. For a pooled connection, the host is looked up by the IP address
+     * the connection is connected to, without a reverse DNS lookup.
+     */
+    private String getTargetHost(AbstractHttpSender sender) {
+        Object target = sender.getAttribute(ID_SELECTED_TARGET);
+
+        if (target instanceof URI) {
+            return ((URI) target).getHost();
+        }
+
+        Object connection = sender.getAttribute(HttpCoreContext.HTTP_CONNECTION);
+
+        if (connection instanceof HttpInetConnection) {
+            try {
+                InetAddress address = ((HttpInetConnection) connection).getRemoteAddress();
+
+                if (address != null) {
+                    return hostsByAddress.get(address.getHostAddress());
+                }
+            } catch (RuntimeException e) {
+                // The connection has already been released or shut down
+                log.trace("Could not get remote address of connection", e);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Request statistics of one security server.
+     */
+    @Value
+    public static class Statistics {
+        private final double latencyMillis;
+        private final double errorRate;
+        private final long requestCount;
+        private final long failureCount;
+        private final boolean healthy;
+    }
+
+    private static final class TargetStats {
+        private volatile double latencyNanos;
+        private volatile double errorRate;
+        private volatile long lastFailure;
+        private volatile long requests;
+        private volatile long failures;
+
+        synchronized void success(long nanos) {
+            latencyNanos = requests == 0 ? nanos : ewma(latencyNanos, nanos);
+            errorRate = ewma(errorRate, 0);
+            requests++;
+        }
+
+        synchronized void failure() {
+            errorRate = ewma(errorRate, 1);
+            lastFailure = System.currentTimeMillis();
+            failures++;
+        }
+
+        boolean isHealthy(long now) {
+            return errorRate <= MAX_ERROR_RATE || now - lastFailure > RETRY_INTERVAL_MILLIS;
+        }
+
+        synchronized Statistics toStatistics(long now) {
+            return new Statistics(latencyNanos / TimeUnit.MILLISECONDS.toNanos(1), errorRate, requests, failures,
+                    isHealthy(now));
+        }
+
+        private static double ewma(double average, double sample) {
+            return average + EWMA_WEIGHT * (sample - average);
+        }
+    }
+}
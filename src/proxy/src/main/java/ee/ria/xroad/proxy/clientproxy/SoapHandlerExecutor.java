@@ -0,0 +1,149 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.clientproxy;
+
+import ee.ria.xroad.common.SystemProperties;
+
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Executes the handlers that read incoming SOAP requests in the client proxy.
+ *
+ * By default the handlers run in an unbounded thread pool and pass the request to the server proxy
+ * connection through piped streams. If {@link SystemProperties#getClientProxySoapHandlerPoolSize()} is
+ * positive, the handlers run in a thread pool of that size and use {@link HandoffPipe}s instead.
+ */
+@Slf4j
+public final class SoapHandlerExecutor {
+
+    private static final long KEEP_ALIVE_SECONDS = 60;
+
+    private static final int POOL_SIZE = SystemProperties.getClientProxySoapHandlerPoolSize();
+
+    private static final AtomicInteger THREAD_NUMBER = new AtomicInteger();
+
+    private static final ThreadPoolExecutor EXECUTOR = createExecutor();
+
+    private static final LongAdder HANDOFF_WAIT_COUNT = new LongAdder();
+    private static final LongAdder HANDOFF_WAIT_NANOS = new LongAdder();
+    private static final AtomicLong HANDOFF_MAX_WAIT_NANOS = new AtomicLong();
+
+    private SoapHandlerExecutor() {
+    }
+
+    private static ThreadPoolExecutor createExecutor() {
+        if (POOL_SIZE == 0) {
+            return new ThreadPoolExecutor(0, Integer.MAX_VALUE, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                    new SynchronousQueue<>(), SoapHandlerExecutor::newCallerNamedThread);
+        }
+
+        log.info("Using {} threads for handling SOAP requests", POOL_SIZE);
+
+        // The queue does not need a limit of its own, since every queued handler has a client proxy
+        // thread waiting for it and the number of those is limited by the client proxy thread pool.
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(POOL_SIZE, POOL_SIZE, KEEP_ALIVE_SECONDS,
+                TimeUnit.SECONDS, new LinkedBlockingQueue<>(), SoapHandlerExecutor::newPooledThread);
+        executor.allowCoreThreadTimeOut(true);
+
+        return executor;
+    }
+
+    private static Thread newCallerNamedThread(Runnable r) {
+        Thread handlerThread = new Thread(r);
+        handlerThread.setName(Thread.currentThread().getName() + "-soap");
+
+        return handlerThread;
+    }
+
+    private static Thread newPooledThread(Runnable r) {
+        Thread handlerThread = new Thread(r);
+        handlerThread.setName("soap-handler-" + THREAD_NUMBER.incrementAndGet());
+
+        return handlerThread;
+    }
+
+    /**
+     * @return true if the handlers run in a bounded thread pool and use hand-off pipes.
+     */
+    static boolean isBounded() {
+        return POOL_SIZE > 0;
+    }
+
+    static Future<?> submit(Runnable handler) {
+        return EXECUTOR.submit(handler);
+    }
+
+    /**
+     * @return a new pipe for handing a request over from the handler to the sending thread.
+     */
+    static HandoffPipe createPipe() {
+        return new HandoffPipe(SoapHandlerExecutor::recordHandoffWait);
+    }
+
+    private static void recordHandoffWait(long nanos) {
+        HANDOFF_WAIT_COUNT.increment();
+        HANDOFF_WAIT_NANOS.add(nanos);
+        HANDOFF_MAX_WAIT_NANOS.accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * @return the current statistics of the SOAP handler thread pool.
+     */
+    public static Statistics getStatistics() {
+        long waitCount = HANDOFF_WAIT_COUNT.sum();
+
+        return new Statistics(POOL_SIZE, EXECUTOR.getPoolSize(), EXECUTOR.getActiveCount(),
+                EXECUTOR.getLargestPoolSize(), EXECUTOR.getQueue().size(), EXECUTOR.getCompletedTaskCount(),
+                waitCount,
+                waitCount > 0 ? TimeUnit.NANOSECONDS.toMicros(HANDOFF_WAIT_NANOS.sum() / waitCount) : 0,
+                TimeUnit.NANOSECONDS.toMicros(HANDOFF_MAX_WAIT_NANOS.get()));
+    }
+
+    /**
+     * SOAP handler thread pool statistics.
+     */
+    @Value
+    public static class Statistics {
+        private final int maxPoolSize;
+        private final int poolSize;
+        private final int activeThreads;
+        private final int largestPoolSize;
+        private final int queueDepth;
+        private final long completedHandlers;
+        private final long handoffWaitCount;
+        private final long averageHandoffWaitMicros;
+        private final long maxHandoffWaitMicros;
+    }
+}
@@ -24,6 +24,7 @@
  */
 package ee.ria.xroad.proxy.messagelog;
 
+import ee.ria.xroad.common.CommonMessages;
 import ee.ria.xroad.common.SystemProperties;
 import ee.ria.xroad.common.message.RestRequest;
 import ee.ria.xroad.common.message.RestResponse;
@@ -48,6 +49,7 @@ import lombok.extern.slf4j.Slf4j;
 import scala.concurrent.Await;
 
 import java.util.Date;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.LogRecord;
 
@@ -63,6 +65,7 @@ import static ee.ria.xroad.common.ErrorCodes.translateWithPrefix;
 public final class MessageLog {
 
     private static final int ASK_TIMEOUT = 120;
+    private static final int STATISTICS_TIMEOUT = 5;
 
     public static final String LOG_MANAGER = "LogManager";
 
@@ -179,6 +182,29 @@ public final class MessageLog {
         }
     }
 
+    /**
+     * Returns the runtime statistics of the message log, such as the queue depths of the log writer shards.
+     *
+     * @return the statistics or null, if the log manager did not respond.
+     */
+    @SuppressWarnings("unchecked")
+    public static Map<String, Object> getStatistics() {
+        if (logManager == null) {
+            return null;
+        }
+
+        Timeout timeout = new Timeout(STATISTICS_TIMEOUT, TimeUnit.SECONDS);
+
+        try {
+            return (Map<String, Object>) Await.result(Patterns.ask(logManager, CommonMessages.MESSAGE_LOG_STATISTICS,
+                    timeout), timeout.duration());
+        } catch (Exception e) {
+            log.warn("Unable to get message log statistics", e);
+
+            return null;
+        }
+    }
+
     @SuppressWarnings("unchecked")
     private static Class<? extends AbstractLogManager> getLogManagerImpl() {
         String logManagerImplClassName = System.getProperty(LOG_MANAGER_IMPL_CLASS, NullLogManager.class.getName());
@@ -27,7 +27,7 @@ package ee.ria.xroad.proxy.messagelog;
 import ee.ria.xroad.common.messagelog.AbstractLogManager;
 import ee.ria.xroad.common.messagelog.LogMessage;
 import ee.ria.xroad.common.messagelog.LogRecord;
-import ee.ria.xroad.common.messagelog.TimestampRecord;
+import ee.ria.xroad.common.messagelog.TimestampMessage;
 import ee.ria.xroad.common.util.JobManager;
 
 import java.util.Date;
@@ -54,8 +54,9 @@ public class NullLogManager extends AbstractLogManager {
     }
 
     @Override
-    protected TimestampRecord timestamp(Long messageRecordId) throws Exception {
-        return null;
+    protected void timestamp(TimestampMessage message) throws Exception {
+        // There are no message records to time-stamp, replied to the sender as an error
+        throw new IllegalStateException("Message log is not enabled");
     }
 
 }
@@ -27,12 +27,15 @@ package ee.ria.xroad.proxy.opmonitoring;
 import ee.ria.xroad.common.SystemProperties;
 import ee.ria.xroad.common.opmonitoring.AbstractOpMonitoringBuffer;
 import ee.ria.xroad.common.opmonitoring.OpMonitoringData;
+import ee.ria.xroad.common.util.BoundedRingBuffer;
 
 import akka.actor.ActorRef;
 import akka.actor.ActorSystem;
 import akka.actor.Props;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.concurrent.atomic.AtomicBoolean;
+
 /**
  * Contains method for storing operational monitoring data.
  */
@@ -46,6 +49,12 @@ public final class OpMonitoring {
 
     private static ActorRef opMonitoringBuffer;
 
+    private static volatile BoundedRingBuffer<OpMonitoringData> ringBuffer;
+    private static volatile int sendThreshold;
+
+    // Set when the buffer actor has been notified and has not drained the ring buffer since
+    private static final AtomicBoolean SEND_SCHEDULED = new AtomicBoolean();
+
     private OpMonitoring() {
     }
 
@@ -71,12 +80,59 @@ public final class OpMonitoring {
         log.trace("store()");
 
         try {
-            tell(data);
+            BoundedRingBuffer<OpMonitoringData> ring = ringBuffer;
+
+            if (ring == null) {
+                tell(data);
+            } else if (ring.offer(data) && ring.size() >= sendThreshold && SEND_SCHEDULED.compareAndSet(false, true)) {
+                tell(AbstractOpMonitoringBuffer.SEND_MONITORING_DATA);
+            }
         } catch (Throwable t) {
             log.error("Storing operational monitoring data failed", t);
         }
     }
 
+    /**
+     * Makes the data to be stored directly into the given ring buffer instead of sending each record
+     * to the buffer actor. The actor is notified once when the ring buffer holds at least the given number
+     * of records, and again after it has started draining the ring buffer.
+     * @param buffer the ring buffer drained by the buffer actor
+     * @param threshold the number of buffered records that triggers sending
+     */
+    public static synchronized void setRingBuffer(BoundedRingBuffer<OpMonitoringData> buffer, int threshold) {
+        sendThreshold = threshold;
+        SEND_SCHEDULED.set(false);
+        ringBuffer = buffer;
+    }
+
+    /**
+     * Lets the next record stored over the send threshold notify the buffer actor again. Must be called by
+     * the buffer actor before it drains the ring buffer.
+     */
+    public static void ringBufferDraining() {
+        SEND_SCHEDULED.set(false);
+    }
+
+    /**
+     * Stops using the given ring buffer, if it is still in use. After that the data is sent to the buffer
+     * actor as messages.
+     * @param buffer the ring buffer
+     */
+    public static synchronized void removeRingBuffer(BoundedRingBuffer<OpMonitoringData> buffer) {
+        if (ringBuffer == buffer) {
+            ringBuffer = null;
+        }
+    }
+
+    /**
+     * @return the statistics of the ring buffer, or null if no ring buffer is used
+     */
+    public static BoundedRingBuffer.Statistics getBufferStatistics() {
+        BoundedRingBuffer<OpMonitoringData> ring = ringBuffer;
+
+        return ring != null ? ring.getStatistics() : null;
+    }
+
     @SuppressWarnings("unchecked")
     private static Class<? extends AbstractOpMonitoringBuffer>
             getOpMonitoringManagerImpl() {
@@ -0,0 +1,260 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.signature;
+
+import ee.ria.xroad.common.OcspTestUtils;
+import ee.ria.xroad.common.SystemProperties;
+import ee.ria.xroad.common.TestCertUtil;
+import ee.ria.xroad.common.TestSecurityUtil;
+import ee.ria.xroad.common.util.CryptoUtils;
+import ee.ria.xroad.common.util.MessageFileNames;
+import ee.ria.xroad.signer.protocol.message.SignResponse;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import akka.pattern.Patterns;
+import akka.testkit.JavaTestKit;
+import lombok.Value;
+import org.bouncycastle.cert.ocsp.CertificateStatus;
+import org.bouncycastle.cert.ocsp.OCSPResp;
+import org.joda.time.DateTime;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import scala.concurrent.Await;
+import scala.concurrent.Future;
+import scala.concurrent.duration.Duration;
+
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static ee.ria.xroad.common.util.CryptoUtils.calculateCertHexHash;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the lane dispatch of the batch signer.
+ */
+public class BatchSignerTest {
+
+    private static final long TIMEOUT_MILLIS = 5000;
+    private static final long POLL_MILLIS = 10;
+
+    private static final int LANES = SystemProperties.getBatchSignerLanes();
+
+    // The signing requests received by the lanes in the order they were received
+    private static final BlockingQueue<LaneRequest> LANE_REQUESTS = new LinkedBlockingQueue<>();
+
+    private static X509Certificate signingCert;
+    private static OCSPResp ocsp;
+    private static String signatureAlgorithmId;
+
+    private ActorSystem actorSystem;
+    private ActorRef batchSigner;
+
+    static {
+        TestSecurityUtil.initSecurity();
+    }
+
+    /**
+     * Set up certificates.
+     * @throws Exception in case of any unexpected error
+     */
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        signingCert = TestCertUtil.getConsumer().certChain[0];
+        ocsp = OcspTestUtils.createOCSPResponse(signingCert, TestCertUtil.getCaCert(),
+                TestCertUtil.getOcspSigner().certChain[0], TestCertUtil.getOcspSigner().key,
+                CertificateStatus.GOOD, new DateTime().plusDays(1).toDate(), null);
+        signatureAlgorithmId = CryptoUtils.getSignatureAlgorithmId(CryptoUtils.SHA512_ID,
+                CryptoUtils.CKM_RSA_PKCS_NAME);
+    }
+
+    /**
+     * Starts the batch signer.
+     */
+    @Before
+    public void setUp() {
+        LANE_REQUESTS.clear();
+
+        actorSystem = ActorSystem.create("BatchSignerTest");
+        batchSigner = actorSystem.actorOf(Props.create(TestBatchSigner.class));
+    }
+
+    /**
+     * Stops the batch signer.
+     */
+    @After
+    public void tearDown() {
+        JavaTestKit.shutdownActorSystem(actorSystem);
+    }
+
+    /**
+     * Test to ensure that the requests are sent to idle lanes and the rest wait for a lane in the order they
+     * were received.
+     * @throws Exception in case of any unexpected error
+     */
+    @Test
+    public void dispatchesRequestsToLanesInOrder() throws Exception {
+        int requestCount = LANES + 2;
+        List<Future<Object>> results = new ArrayList<>();
+
+        for (int i = 0; i < requestCount; i++) {
+            results.add(sign("key-" + i));
+        }
+
+        Set<ActorRef> lanes = new HashSet<>();
+
+        for (int i = 0; i < LANES; i++) {
+            LaneRequest request = nextLaneRequest();
+
+            assertEquals("key-" + i, request.getKeyId());
+            lanes.add(request.getLane());
+        }
+
+        assertEquals(LANES, lanes.size());
+        awaitStatistics(statistics -> statistics.getBusyLanes() == LANES && statistics.getQueueDepth() == 2);
+        assertNull(LANE_REQUESTS.poll(POLL_MILLIS, TimeUnit.MILLISECONDS));
+
+        for (int i = LANES; i < requestCount; i++) {
+            complete(lanes.iterator().next());
+
+            LaneRequest request = nextLaneRequest();
+
+            assertEquals("key-" + i, request.getKeyId());
+            assertTrue(lanes.contains(request.getLane()));
+        }
+
+        awaitStatistics(statistics -> statistics.getBusyLanes() == LANES && statistics.getQueueDepth() == 0);
+
+        for (ActorRef lane : lanes) {
+            complete(lane);
+        }
+
+        for (Future<Object> result : results) {
+            assertTrue(Await.result(result, Duration.create(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS))
+                    instanceof SignatureData);
+        }
+    }
+
+    /**
+     * Test to ensure that the statistics of a signing certificate are removed when its worker stops.
+     * @throws Exception in case of any unexpected error
+     */
+    @Test
+    public void removesStatisticsWhenWorkerStops() throws Exception {
+        sign("key");
+        complete(nextLaneRequest().getLane());
+
+        awaitCondition(() -> BatchSigner.getStatistics().containsKey(calculateCertHexHash(signingCert)));
+
+        actorSystem.stop(batchSigner);
+
+        awaitCondition(() -> !BatchSigner.getStatistics().containsKey(calculateCertHexHash(signingCert)));
+    }
+
+    private Future<Object> sign(String keyId) {
+        MessagePart part = new MessagePart(MessageFileNames.MESSAGE, CryptoUtils.SHA512_ID,
+                new byte[] {1, 2, 3}, null);
+
+        SigningRequest request = new SigningRequest(signingCert, Collections.singletonList(part));
+        request.getOcspResponses().add(ocsp);
+
+        return Patterns.ask(batchSigner, new BatchSigner.SigningRequestWrapper(keyId, signatureAlgorithmId, request),
+                TIMEOUT_MILLIS);
+    }
+
+    private static LaneRequest nextLaneRequest() throws InterruptedException {
+        LaneRequest request = LANE_REQUESTS.poll(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+
+        assertNotNull("No signing request received by a lane", request);
+
+        return request;
+    }
+
+    private static void complete(ActorRef lane) {
+        lane.tell(new SignResponse(new byte[] {1}), ActorRef.noSender());
+    }
+
+    private static void awaitStatistics(StatisticsCondition condition) throws InterruptedException {
+        awaitCondition(() -> {
+            BatchSigner.Statistics statistics = BatchSigner.getStatistics().get(calculateCertHexHash(signingCert));
+
+            return statistics != null && condition.test(statistics);
+        });
+    }
+
+    private static void awaitCondition(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+
+        while (!condition.getAsBoolean()) {
+            assertTrue("Condition not met in time", System.currentTimeMillis() < deadline);
+
+            Thread.sleep(POLL_MILLIS);
+        }
+    }
+
+    private interface StatisticsCondition {
+        boolean test(BatchSigner.Statistics statistics);
+    }
+
+    @Value
+    private static class LaneRequest {
+        private final ActorRef lane;
+        private final String keyId;
+    }
+
+    /**
+     * Batch signer that uses lanes that wait for the test to complete the signing requests.
+     */
+    private static class TestBatchSigner extends BatchSigner {
+        @Override
+        protected Class<? extends LaneImpl> getLaneImpl() {
+            return TestLane.class;
+        }
+    }
+
+    /**
+     * Lane that records the signing requests instead of sending them to the signer.
+     */
+    private static class TestLane extends BatchSigner.LaneImpl {
+        @Override
+        protected void doCalculateSignature(String keyId, String algorithmId, byte[] data) {
+            LANE_REQUESTS.add(new LaneRequest(getSelf(), keyId));
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.antidos;
+
+import ee.ria.xroad.common.conf.globalconf.EmptyGlobalConf;
+import ee.ria.xroad.common.conf.globalconf.GlobalConf;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how many connections per second {@link AntiDosConnectionManager} can queue and hand out, when several
+ * acceptor threads queue connections from known members and unknown addresses and one thread takes them. Compares
+ * the default sampling intervals with checking the configuration and resources for every connection.
+ */
+@Slf4j
+public final class AntiDosConnectionManagerPerformanceTest {
+
+    private static final int ACCEPTOR_THREADS = 4;
+    private static final int CONNECTIONS_PER_THREAD = 250_000;
+    private static final int KNOWN_ADDRESSES = 2000;
+    private static final int UNKNOWN_ADDRESSES = 100;
+
+    private AntiDosConnectionManagerPerformanceTest() {
+    }
+
+    /**
+     * Main program entry point.
+     * @param args command-line arguments, not used
+     * @throws Exception in case of any errors
+     */
+    public static void main(String[] args) throws Exception {
+        Set<String> knownAddresses = new HashSet<>();
+        for (int i = 0; i < KNOWN_ADDRESSES; i++) {
+            knownAddresses.add("10.0." + (i / 256) + "." + (i % 256));
+        }
+
+        GlobalConf.reload(new EmptyGlobalConf() {
+            @Override
+            public Set<String> getKnownAddresses() {
+                return knownAddresses;
+            }
+        });
+
+        AntiDosConfiguration everyConnection = new AntiDosConfiguration() {
+            @Override
+            long getResourceSamplingInterval() {
+                return 0;
+            }
+
+            @Override
+            long getKnownAddressesCheckInterval() {
+                return 0;
+            }
+        };
+
+        for (int round = 0; round < 2; round++) {
+            measure("every connection", everyConnection);
+            measure("sampled", new AntiDosConfiguration());
+        }
+    }
+
+    private static void measure(String name, AntiDosConfiguration configuration) throws Exception {
+        AntiDosConnectionManager<TestSocketChannel> manager = new AntiDosConnectionManager<>(configuration);
+        manager.init();
+
+        int total = ACCEPTOR_THREADS * CONNECTIONS_PER_THREAD;
+        CountDownLatch taken = new CountDownLatch(total);
+
+        ExecutorService executor = Executors.newFixedThreadPool(ACCEPTOR_THREADS + 1);
+
+        try {
+            long start = System.nanoTime();
+
+            executor.execute(() -> {
+                try {
+                    for (int i = 0; i < total; i++) {
+                        manager.getNextConnection();
+                        taken.countDown();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+
+            for (int t = 0; t < ACCEPTOR_THREADS; t++) {
+                executor.execute(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+
+                    for (int i = 0; i < CONNECTIONS_PER_THREAD; i++) {
+                        int partner = random.nextInt(KNOWN_ADDRESSES + UNKNOWN_ADDRESSES);
+
+                        manager.accept(new TestSocketChannel(partner < KNOWN_ADDRESSES
+                                ? "10.0." + (partner / 256) + "." + (partner % 256)
+                                : "192.168.0." + (partner - KNOWN_ADDRESSES)));
+                    }
+                });
+            }
+
+            taken.await(10, TimeUnit.MINUTES);
+
+            long nanos = System.nanoTime() - start;
+
+            log.info("{}: {} connections in {} ms, {} connections per second", name, total - taken.getCount(),
+                    TimeUnit.NANOSECONDS.toMillis(nanos), (total - taken.getCount()) * 1_000_000_000L / nanos);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
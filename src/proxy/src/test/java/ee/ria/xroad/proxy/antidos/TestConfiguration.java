@@ -32,4 +32,10 @@ import lombok.RequiredArgsConstructor;
 class TestConfiguration extends AntiDosConfiguration {
     private final int minFreeFileHandles;
     private final double maxCpuLoad;
+
+    @Override
+    long getResourceSamplingInterval() {
+        // Every connection sees the next load of TestSystemMetrics
+        return 0;
+    }
 }
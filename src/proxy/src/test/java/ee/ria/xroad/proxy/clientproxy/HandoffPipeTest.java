@@ -0,0 +1,127 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.clientproxy;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests handing content over through {@link HandoffPipe}.
+ */
+public class HandoffPipeTest {
+
+    /**
+     * Writes more content than fits in the pipe at once, expects the reader to get all of it intact.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test
+    public void contentIsHandedOverIntact() throws Exception {
+        byte[] content = new byte[HandoffPipe.CHUNK_SIZE * 40 + 123];
+        new Random(1).nextBytes(content);
+
+        HandoffPipe pipe = new HandoffPipe(nanos -> { });
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try {
+            Future<?> writer = executor.submit(() -> {
+                try (OutputStream out = pipe.getOutputStream()) {
+                    // Mix single byte writes with writes that cross chunk boundaries
+                    out.write(content[0]);
+                    out.write(content, 1, content.length - 1);
+                }
+
+                return null;
+            });
+
+            byte[] received = IOUtils.toByteArray(pipe.getInputStream());
+            writer.get(10, TimeUnit.SECONDS);
+
+            assertArrayEquals(content, received);
+            assertEquals(-1, pipe.getInputStream().read());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Closes the reading end while the writer is blocked, expects the writer to fail.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test(expected = IOException.class)
+    public void writerFailsWhenReaderIsClosed() throws Exception {
+        HandoffPipe pipe = new HandoffPipe(nanos -> { });
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try {
+            Future<?> writer = executor.submit(() -> {
+                OutputStream out = pipe.getOutputStream();
+
+                for (int i = 0; i < 1000; i++) {
+                    out.write(new byte[HandoffPipe.CHUNK_SIZE]);
+                }
+
+                return null;
+            });
+
+            pipe.getInputStream().close();
+
+            try {
+                writer.get(10, TimeUnit.SECONDS);
+            } catch (ExecutionException e) {
+                throw (Exception) e.getCause();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Aborts the writing end, expects the reader to fail instead of reaching the end of the stream.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test(expected = IOException.class)
+    public void readerFailsWhenWriterAborts() throws Exception {
+        HandoffPipe pipe = new HandoffPipe(nanos -> { });
+        pipe.getOutputStream().write(new byte[10]);
+        pipe.getOutputStream().flush();
+        pipe.abort();
+
+        InputStream in = pipe.getInputStream();
+        IOUtils.toByteArray(in);
+    }
+}
@@ -0,0 +1,140 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.clientproxy;
+
+import ee.ria.xroad.common.util.HttpSender;
+
+import org.apache.http.HttpInetConnection;
+import org.apache.http.protocol.HttpCoreContext;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+import static ee.ria.xroad.proxy.clientproxy.ServerProxyLoadBalancer.ID_SELECTED_TARGET;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests the ordering of service provider addresses by {@link ServerProxyLoadBalancer}.
+ */
+public class ServerProxyLoadBalancerTest {
+
+    private static final URI FAST = URI.create("https://fast:5500/");
+    private static final URI SLOW = URI.create("https://slow:5500/");
+    private static final URI FAILING = URI.create("https://failing:5500/");
+
+    private ServerProxyLoadBalancer loadBalancer;
+
+    /**
+     * Creates a load balancer with empty statistics.
+     */
+    @Before
+    public void setUp() {
+        loadBalancer = new ServerProxyLoadBalancer();
+    }
+
+    /**
+     * Expects the server with the lower latency to be tried first, as both are always picked out of two servers.
+     */
+    @Test
+    public void prefersLowerLatency() {
+        succeed(FAST, 10);
+        succeed(SLOW, 200);
+
+        for (int i = 0; i < 10; i++) {
+            URI[] ordered = loadBalancer.order(new URI[] {SLOW, FAST});
+
+            assertEquals(FAST, ordered[0]);
+            assertEquals(SLOW, ordered[1]);
+        }
+    }
+
+    /**
+     * Expects a server that keeps failing to be tried last even if it used to be the fastest.
+     */
+    @Test
+    public void avoidsFailingServer() {
+        succeed(FAILING, 1);
+        succeed(SLOW, 200);
+        succeed(FAST, 10);
+
+        loadBalancer.connectFailed(FAILING);
+        loadBalancer.connectFailed(FAILING);
+        loadBalancer.connectFailed(FAILING);
+
+        for (int i = 0; i < 10; i++) {
+            URI[] ordered = loadBalancer.order(new URI[] {FAILING, SLOW, FAST});
+
+            assertEquals(FAILING, ordered[2]);
+        }
+    }
+
+    /**
+     * Expects the statistics of each server to be reported by its host.
+     */
+    @Test
+    public void reportsStatistics() {
+        succeed(FAST, 10);
+        loadBalancer.connectFailed(FAST);
+
+        ServerProxyLoadBalancer.Statistics statistics = loadBalancer.getTargetStatistics().get("fast");
+
+        assertEquals(10d, statistics.getLatencyMillis(), 0);
+        assertEquals(ServerProxyLoadBalancer.EWMA_WEIGHT, statistics.getErrorRate(), 0);
+        assertEquals(1L, statistics.getRequestCount());
+        assertEquals(1L, statistics.getFailureCount());
+    }
+
+    /**
+     * Expects a request sent over a pooled connection to be recorded under the host the connection was opened to.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test
+    public void recordsPooledConnectionByHost() throws Exception {
+        InetAddress address = InetAddress.getByName("127.0.0.2");
+        loadBalancer.connected(FAST, address);
+
+        HttpInetConnection connection = mock(HttpInetConnection.class);
+        when(connection.getRemoteAddress()).thenReturn(address);
+
+        HttpSender sender = new HttpSender(null);
+        sender.setAttribute(HttpCoreContext.HTTP_CONNECTION, connection);
+
+        loadBalancer.requestSucceeded(sender, TimeUnit.MILLISECONDS.toNanos(10));
+
+        assertEquals(1L, loadBalancer.getTargetStatistics().get("fast").getRequestCount());
+    }
+
+    private void succeed(URI target, long latencyMillis) {
+        HttpSender sender = new HttpSender(null);
+        sender.setAttribute(ID_SELECTED_TARGET, target);
+
+        loadBalancer.requestSucceeded(sender, TimeUnit.MILLISECONDS.toNanos(latencyMillis));
+    }
+}
@@ -0,0 +1,130 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.conf;
+
+import ee.ria.xroad.common.SystemProperties;
+import ee.ria.xroad.common.identifier.ClientId;
+import ee.ria.xroad.common.util.FileContentChangeChecker;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Date;
+import java.util.Random;
+
+/**
+ * Measures {@link CachingKeyConfImpl#getSigningCtx(ClientId)} with cached signing info, when every key conf change
+ * check calculates the checksum of the file and when the checksum is skipped for an unmodified file.
+ */
+@Slf4j
+public final class CachingKeyConfImplPerformanceTest {
+
+    private static final int WARMUP_ITERATIONS = 10_000;
+    private static final int ITERATIONS = 100_000;
+
+    private static final int KEY_CONF_SIZE = 64 * 1024;
+    private static final long ONE_MINUTE_MILLIS = 60_000;
+
+    private static final ClientId CLIENT_ID = ClientId.create("EE", "BUSINESS", "consumer");
+
+    private CachingKeyConfImplPerformanceTest() {
+    }
+
+    /**
+     * Main program entry point.
+     * @param args command-line arguments, not used
+     * @throws Exception in case of any errors
+     */
+    public static void main(String[] args) throws Exception {
+        Path keyConf = Files.createTempFile("keyconf", ".xml");
+
+        try {
+            byte[] content = new byte[KEY_CONF_SIZE];
+            new Random(1).nextBytes(content);
+            Files.write(keyConf, content);
+            keyConf.toFile().setLastModified(System.currentTimeMillis() - ONE_MINUTE_MILLIS);
+            System.setProperty(SystemProperties.KEY_CONFIGURATION_FILE, keyConf.toString());
+
+            measure("checksum on every check", new ChecksumKeyConf());
+            measure("attribute pre-check", new BenchmarkKeyConf());
+        } finally {
+            Files.delete(keyConf);
+        }
+    }
+
+    private static void measure(String name, CachingKeyConfImpl keyConf) {
+        CachingKeyConfImpl.invalidateCaches();
+
+        run(keyConf, WARMUP_ITERATIONS);
+
+        long start = System.nanoTime();
+        run(keyConf, ITERATIONS);
+        long nanos = System.nanoTime() - start;
+
+        log.info("{}: {} ns per getSigningCtx", name, nanos / ITERATIONS);
+    }
+
+    private static void run(CachingKeyConfImpl keyConf, int iterations) {
+        for (int i = 0; i < iterations; i++) {
+            keyConf.getSigningCtx(CLIENT_ID);
+        }
+    }
+
+    private static class BenchmarkKeyConf extends CachingKeyConfImpl {
+        BenchmarkKeyConf() throws Exception {
+        }
+
+        @Override
+        protected SigningInfo getSigningInfo(ClientId clientId) {
+            return new SigningInfo("keyid", "signmechanismname", clientId, null, null) {
+                @Override
+                boolean verifyValidity(Date atDate) {
+                    return true;
+                }
+            };
+        }
+    }
+
+    /**
+     * Calculates the checksum of the key conf on every check, as was done before the file attribute pre-check.
+     */
+    private static final class ChecksumKeyConf extends BenchmarkKeyConf {
+        ChecksumKeyConf() throws Exception {
+        }
+
+        @Override
+        protected FileContentChangeChecker getKeyConfChangeChecker() throws Exception {
+            return new FileContentChangeChecker(SystemProperties.getKeyConfFile()) {
+                @Override
+                protected BasicFileAttributes readAttributes(File file) {
+                    return null;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.conf.serverconf;
+
+import ee.ria.xroad.common.conf.globalconf.GlobalConf;
+import ee.ria.xroad.common.conf.serverconf.model.AccessRightType;
+import ee.ria.xroad.common.conf.serverconf.model.EndpointType;
+import ee.ria.xroad.common.identifier.ClientId;
+import ee.ria.xroad.common.identifier.GlobalGroupId;
+import ee.ria.xroad.common.identifier.LocalGroupId;
+import ee.ria.xroad.common.identifier.XRoadId;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Access rights of the services of one service provider, compiled for access checks.
+ *
+ * For each service code, the endpoints are grouped by the client they are granted to, with the members of the
+ * local groups expanded, and compiled to an {@link EndpointMatcher}. The access rights granted to global groups
+ * are kept per group, because the global group members are defined in the global configuration.
+ *
+ * The client and global group identifiers are copied before they are indexed, because the identifiers loaded
+ * by Hibernate can be lazy proxies that do not compare equal to plain identifiers and are owned by the session.
+ */
+public final class AccessRightIndex {
+
+    private final Map<String, ServiceAccessRights> services = new HashMap<>();
+
+    /**
+     * @param acl the access rights of the service provider
+     * @param localGroups the members of the local groups of the service provider, by group code
+     */
+    public AccessRightIndex(Collection<AccessRightType> acl, Map<String, ? extends Collection<ClientId>> localGroups) {
+        Map<String, Map<ClientId, List<EndpointType>>> clientEndpoints = new HashMap<>();
+        Map<String, Map<GlobalGroupId, List<EndpointType>>> globalGroupEndpoints = new HashMap<>();
+
+        for (AccessRightType accessRight : acl) {
+            EndpointType endpoint = accessRight.getEndpoint();
+            XRoadId subject = accessRight.getSubjectId();
+
+            if (subject instanceof GlobalGroupId) {
+                globalGroupEndpoints.computeIfAbsent(endpoint.getServiceCode(), s -> new LinkedHashMap<>())
+                        .computeIfAbsent(copy((GlobalGroupId)subject), g -> new ArrayList<>()).add(endpoint);
+            } else if (subject instanceof LocalGroupId) {
+                Map<ClientId, List<EndpointType>> endpoints =
+                        clientEndpoints.computeIfAbsent(endpoint.getServiceCode(), s -> new HashMap<>());
+
+                for (ClientId member : localGroups.getOrDefault(((LocalGroupId)subject).getGroupCode(),
+                        Collections.emptyList())) {
+                    endpoints.computeIfAbsent(copy(member), m -> new ArrayList<>()).add(endpoint);
+                }
+            } else if (subject instanceof ClientId) {
+                clientEndpoints.computeIfAbsent(endpoint.getServiceCode(), s -> new HashMap<>())
+                        .computeIfAbsent(copy((ClientId)subject), c -> new ArrayList<>()).add(endpoint);
+            }
+        }
+
+        clientEndpoints.forEach((serviceCode, endpoints) -> endpoints.forEach((client, clientEps) ->
+                getServiceAccessRights(serviceCode).clients.put(client, EndpointMatcher.compile(clientEps))));
+
+        globalGroupEndpoints.forEach((serviceCode, endpoints) -> endpoints.forEach((group, groupEps) ->
+                getServiceAccessRights(serviceCode).globalGroups.put(group, EndpointMatcher.compile(groupEps))));
+    }
+
+    /**
+     * @param client the client
+     * @param serviceCode the service code
+     * @param method the request method, may be null
+     * @param normalizedPath the normalized request path, may be null
+     * @return true if the client has access to the service with the method and path
+     */
+    public boolean isAllowed(ClientId client, String serviceCode, String method, String normalizedPath) {
+        ServiceAccessRights accessRights = services.get(serviceCode);
+
+        if (accessRights == null) {
+            return false;
+        }
+
+        EndpointMatcher clientEndpoints = accessRights.clients.get(client);
+
+        if (clientEndpoints != null && clientEndpoints.matches(method, normalizedPath)) {
+            return true;
+        }
+
+        for (Map.Entry<GlobalGroupId, EndpointMatcher> e : accessRights.globalGroups.entrySet()) {
+            if (e.getValue().matches(method, normalizedPath) && GlobalConf.isSubjectInGlobalGroup(client, e.getKey())) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static ClientId copy(ClientId id) {
+        return ClientId.create(id.getXRoadInstance(), id.getMemberClass(), id.getMemberCode(),
+                id.getSubsystemCode());
+    }
+
+    private static GlobalGroupId copy(GlobalGroupId id) {
+        return GlobalGroupId.create(id.getXRoadInstance(), id.getGroupCode());
+    }
+
+    private ServiceAccessRights getServiceAccessRights(String serviceCode) {
+        return services.computeIfAbsent(serviceCode, s -> new ServiceAccessRights());
+    }
+
+    private static final class ServiceAccessRights {
+        private final Map<ClientId, EndpointMatcher> clients = new HashMap<>();
+        private final Map<GlobalGroupId, EndpointMatcher> globalGroups = new LinkedHashMap<>();
+    }
+}
@@ -0,0 +1,184 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.conf.serverconf;
+
+import ee.ria.xroad.common.conf.serverconf.model.EndpointType;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import static ee.ria.xroad.common.conf.serverconf.model.EndpointType.ANY_METHOD;
+import static ee.ria.xroad.common.conf.serverconf.model.EndpointType.ANY_PATH;
+
+/**
+ * Matches a request method and path against a set of endpoints at once. The result is the same as
+ * calling {@link EndpointType#matches(String, String)} for each endpoint, but the path globs of each
+ * method are merged into a trie of path segments, so that a request is compared only with the globs
+ * that share its path prefix.
+ *
+ * <br/>
+ * Literal segments are looked up from a map, segments with '*' are matched with a segment pattern and
+ * the rest of a glob starting from a segment with '**' is matched as a single {@link PathGlob} pattern.
+ */
+public final class EndpointMatcher {
+
+    private static final String SEPARATOR = "/";
+
+    private final Set<String> anyPathMethods = new HashSet<>();
+    private final Map<String, Node> pathTries = new HashMap<>();
+
+    private EndpointMatcher(Collection<EndpointType> endpoints) {
+        for (EndpointType endpoint : endpoints) {
+            String method = endpoint.getMethod().toUpperCase(Locale.ROOT);
+
+            if (ANY_PATH.equals(endpoint.getPath())) {
+                anyPathMethods.add(method);
+            } else {
+                pathTries.computeIfAbsent(method, m -> new Node()).add(endpoint.getPath().split(SEPARATOR, -1), 0);
+            }
+        }
+    }
+
+    /**
+     * @param endpoints the endpoints
+     * @return matcher of the endpoints
+     */
+    public static EndpointMatcher compile(Collection<EndpointType> endpoints) {
+        return new EndpointMatcher(endpoints);
+    }
+
+    /**
+     * @param method the request method, may be null
+     * @param path the normalized request path, may be null
+     * @return true if some of the endpoints matches the method and path
+     */
+    public boolean matches(String method, String path) {
+        String upperMethod = method != null ? method.toUpperCase(Locale.ROOT) : null;
+
+        if (anyPathMethods.contains(ANY_METHOD) || upperMethod != null && anyPathMethods.contains(upperMethod)) {
+            return true;
+        }
+
+        if (path == null) {
+            return false;
+        }
+
+        Node anyMethodTrie = pathTries.get(ANY_METHOD);
+        if (anyMethodTrie != null && anyMethodTrie.matches(path, 0)) {
+            return true;
+        }
+
+        Node methodTrie = upperMethod != null ? pathTries.get(upperMethod) : null;
+
+        return methodTrie != null && methodTrie.matches(path, 0);
+    }
+
+    private static boolean isLiteral(String segment) {
+        return segment.indexOf('*') < 0 && segment.indexOf('\\') < 0;
+    }
+
+    /**
+     * Node of the path trie. The node is reached when the path segments before it have been matched.
+     */
+    private static class Node {
+        private boolean terminal;
+        private final Map<String, Node> literals = new HashMap<>();
+        private final Map<String, WildcardNode> wildcards = new LinkedHashMap<>();
+        private final Map<String, Pattern> remainders = new LinkedHashMap<>();
+
+        void add(String[] segments, int index) {
+            if (index == segments.length) {
+                terminal = true;
+                return;
+            }
+
+            String segment = segments[index];
+
+            if (isLiteral(segment)) {
+                literals.computeIfAbsent(segment, s -> new Node()).add(segments, index + 1);
+            } else if (segment.contains(ANY_PATH)) {
+                String remainder = String.join(SEPARATOR, Arrays.copyOfRange(segments, index, segments.length));
+                remainders.computeIfAbsent(remainder, PathGlob::compile);
+            } else {
+                wildcards.computeIfAbsent(segment, WildcardNode::new).add(segments, index + 1);
+            }
+        }
+
+        /**
+         * @param path the request path
+         * @param start start of the next segment of the path, or -1 if all the segments have been matched
+         */
+        boolean matches(String path, int start) {
+            if (start < 0) {
+                return terminal;
+            }
+
+            if (!remainders.isEmpty()) {
+                String rest = path.substring(start);
+
+                for (Pattern remainder : remainders.values()) {
+                    if (remainder.matcher(rest).matches()) {
+                        return true;
+                    }
+                }
+            }
+
+            int end = path.indexOf('/', start);
+            String segment = end < 0 ? path.substring(start) : path.substring(start, end);
+            int next = end < 0 ? -1 : end + 1;
+
+            Node literal = literals.get(segment);
+            if (literal != null && literal.matches(path, next)) {
+                return true;
+            }
+
+            for (WildcardNode wildcard : wildcards.values()) {
+                if (wildcard.pattern.matcher(segment).matches() && wildcard.matches(path, next)) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+    }
+
+    /**
+     * Node reached by a path segment that matches a segment glob with '*'.
+     */
+    private static final class WildcardNode extends Node {
+        private final Pattern pattern;
+
+        WildcardNode(String segmentGlob) {
+            pattern = PathGlob.compile(segmentGlob);
+        }
+    }
+}
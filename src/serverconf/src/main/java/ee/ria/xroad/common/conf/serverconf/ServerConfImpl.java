@@ -325,15 +325,20 @@ public class ServerConfImpl implements ServerConfProvider {
         return checkAccessRights(session, client, service, method, path);
     }
 
-    @SuppressWarnings("squid:S3776")
     private boolean checkAccessRights(Session session, ClientId client, ServiceId service, String method, String path) {
-        final String normalizedPath;
+        return anyEndpointMatches(getEndpoints(session, client, service), method, path);
+    }
+
+    protected static boolean anyEndpointMatches(List<EndpointType> endpoints, String method, String path) {
+        final String normalizedPath = normalizePath(path);
+        return endpoints.stream().anyMatch(ep -> ep.matches(method, normalizedPath));
+    }
+
+    protected static String normalizePath(String path) {
         if (path == null) {
-            normalizedPath = null;
-        } else {
-            normalizedPath = UriUtils.uriPathPercentDecode(URI.create(path).normalize().getRawPath(), true);
+            return null;
         }
-        return getEndpoints(session, client, service).stream().anyMatch(ep -> ep.matches(method, normalizedPath));
+        return UriUtils.uriPathPercentDecode(URI.create(path).normalize().getRawPath(), true);
     }
 
     protected List<EndpointType> getEndpoints(Session session, ClientId client, ServiceId service) {
@@ -0,0 +1,265 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.conf.serverconf;
+
+import ee.ria.xroad.common.CodedException;
+import ee.ria.xroad.common.conf.serverconf.model.CertificateType;
+import ee.ria.xroad.common.conf.serverconf.model.ClientType;
+import ee.ria.xroad.common.conf.serverconf.model.DescriptionType;
+import ee.ria.xroad.common.conf.serverconf.model.GroupMemberType;
+import ee.ria.xroad.common.conf.serverconf.model.LocalGroupType;
+import ee.ria.xroad.common.conf.serverconf.model.ServerConfType;
+import ee.ria.xroad.common.conf.serverconf.model.ServiceDescriptionType;
+import ee.ria.xroad.common.conf.serverconf.model.ServiceType;
+import ee.ria.xroad.common.conf.serverconf.model.TspType;
+import ee.ria.xroad.common.identifier.ClientId;
+import ee.ria.xroad.common.identifier.SecurityCategoryId;
+import ee.ria.xroad.common.identifier.SecurityServerId;
+import ee.ria.xroad.common.identifier.ServiceId;
+
+import lombok.Getter;
+import org.apache.commons.lang3.ObjectUtils;
+import org.apache.commons.lang3.StringUtils;
+
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static ee.ria.xroad.common.ErrorCodes.X_MALFORMED_SERVERCONF;
+import static ee.ria.xroad.common.ErrorCodes.X_UNKNOWN_SERVICE;
+import static ee.ria.xroad.common.util.CryptoUtils.readCertificate;
+
+/**
+ * Immutable in-memory copy of the server configuration database, used by
+ * {@link SnapshotServerConfImpl}. The snapshot holds no references to
+ * Hibernate entities that need a session.
+ */
+final class ServerConfSnapshot {
+
+    /** Version of the server configuration database the snapshot was loaded at, null if unknown. */
+    @Getter
+    private final Long version;
+
+    private final SecurityServerId identifier;
+    private final List<String> tspUrls;
+    private final List<ClientId> members;
+    private final List<X509Certificate> allIsCerts;
+    private final Map<ClientId, Client> clients;
+    private final Map<ServiceId, Service> services;
+
+    private ServerConfSnapshot(Long version, ServerConfType conf) throws Exception {
+        this.version = version;
+
+        ClientType owner = conf.getOwner();
+        this.identifier = owner != null
+                ? SecurityServerId.create(copy(owner.getIdentifier()), conf.getServerCode()) : null;
+
+        this.tspUrls = Collections.unmodifiableList(conf.getTsp().stream()
+                .map(TspType::getUrl)
+                .filter(StringUtils::isNotBlank)
+                .collect(Collectors.toList()));
+
+        List<ClientId> memberList = new ArrayList<>();
+        List<X509Certificate> isCertList = new ArrayList<>();
+        Map<ClientId, Client> clientMap = new HashMap<>();
+        Map<ServiceId, Service> serviceMap = new HashMap<>();
+
+        for (ClientType clientType : conf.getClient()) {
+            Client client = new Client(clientType);
+
+            memberList.add(client.id);
+            isCertList.addAll(client.isCerts);
+            clientMap.put(client.id, client);
+
+            for (ServiceDescriptionType description : clientType.getServiceDescription()) {
+                for (ServiceType serviceType : description.getService()) {
+                    Service service = new Service(client.id, description, serviceType);
+
+                    client.services.add(service.id);
+                    serviceMap.put(service.id, service);
+                }
+            }
+        }
+
+        this.members = Collections.unmodifiableList(memberList);
+        this.allIsCerts = Collections.unmodifiableList(isCertList);
+        this.clients = clientMap;
+        this.services = serviceMap;
+    }
+
+    /**
+     * Copies the server configuration from the database.
+     * @param version the version of the database, read before loading
+     * @param conf the server configuration, attached to an open session
+     * @return the snapshot
+     * @throws Exception if the configuration cannot be read
+     */
+    static ServerConfSnapshot load(Long version, ServerConfType conf) throws Exception {
+        return new ServerConfSnapshot(version, conf);
+    }
+
+    SecurityServerId getIdentifier() {
+        if (identifier == null) {
+            throw new CodedException(X_MALFORMED_SERVERCONF, "Owner is not set");
+        }
+
+        return identifier;
+    }
+
+    List<String> getTspUrls() {
+        return tspUrls;
+    }
+
+    List<ClientId> getMembers() {
+        return members;
+    }
+
+    List<X509Certificate> getAllIsCerts() {
+        return allIsCerts;
+    }
+
+    Client getClient(ClientId clientId) {
+        return clients.get(clientId);
+    }
+
+    Service getService(ServiceId serviceId) {
+        return services.get(serviceId);
+    }
+
+    List<ServiceId> getServices(ClientId serviceProvider, DescriptionType descriptionType) {
+        Client provider = clients.get(serviceProvider);
+
+        if (provider == null) {
+            return Collections.emptyList();
+        }
+
+        return provider.services.stream()
+                .filter(s -> descriptionType == null || descriptionType == services.get(s).descriptionType)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Returns true if the client has access to the service, the same as
+     * {@link ServerConfImpl#isQueryAllowed} with the access rights of the service owner.
+     */
+    boolean isQueryAllowed(ClientId client, ServiceId service, String method, String normalizedPath) {
+        Client serviceOwner = clients.get(service.getClientId());
+
+        if (serviceOwner == null) {
+            throw new CodedException(X_UNKNOWN_SERVICE, "Service '%s' owner not found", service);
+        }
+
+        return serviceOwner.accessRights.isAllowed(client, service.getServiceCode(), method, normalizedPath);
+    }
+
+    // Identifiers loaded by Hibernate can be lazy proxies that do not compare equal to plain identifiers
+    private static ClientId copy(ClientId id) {
+        return ClientId.create(id.getXRoadInstance(), id.getMemberClass(), id.getMemberCode(),
+                id.getSubsystemCode());
+    }
+
+    /**
+     * Local client of the security server.
+     */
+    static final class Client {
+        private final ClientId id;
+
+        @Getter
+        private final String clientStatus;
+
+        @Getter
+        private final IsAuthentication isAuthentication;
+
+        @Getter
+        private final List<X509Certificate> isCerts;
+
+        private final List<ServiceId> services = new ArrayList<>();
+        private final AccessRightIndex accessRights;
+
+        private Client(ClientType clientType) throws Exception {
+            id = copy(clientType.getIdentifier());
+            clientStatus = clientType.getClientStatus();
+            isAuthentication = clientType.getIsAuthentication() == null
+                    ? IsAuthentication.NOSSL : IsAuthentication.valueOf(clientType.getIsAuthentication());
+
+            List<X509Certificate> certs = new ArrayList<>();
+            for (CertificateType cert : clientType.getIsCert()) {
+                certs.add(readCertificate(cert.getData()));
+            }
+            isCerts = Collections.unmodifiableList(certs);
+
+            Map<String, Set<ClientId>> localGroups = new HashMap<>();
+            for (LocalGroupType group : clientType.getLocalGroup()) {
+                Set<ClientId> groupMembers = localGroups.computeIfAbsent(group.getGroupCode(), g -> new HashSet<>());
+                for (GroupMemberType member : group.getGroupMember()) {
+                    groupMembers.add(copy(member.getGroupMemberId()));
+                }
+            }
+
+            accessRights = new AccessRightIndex(clientType.getAcl(), localGroups);
+        }
+    }
+
+    /**
+     * Service of a local client.
+     */
+    @Getter
+    static final class Service {
+        private final ServiceId id;
+        private final String url;
+        private final int timeout;
+        private final boolean sslAuthentication;
+        private final List<SecurityCategoryId> requiredCategories;
+        private final DescriptionType descriptionType;
+        private final String descriptionUrl;
+        private final String disabledNotice;
+
+        private Service(ClientId provider, ServiceDescriptionType description, ServiceType serviceType) {
+            id = ServiceId.create(provider, serviceType.getServiceCode(), serviceType.getServiceVersion());
+            url = serviceType.getUrl();
+            timeout = serviceType.getTimeout();
+            sslAuthentication = ObjectUtils.defaultIfNull(serviceType.getSslAuthentication(), true);
+            requiredCategories = Collections.unmodifiableList(serviceType.getRequiredSecurityCategory().stream()
+                    .map(c -> SecurityCategoryId.create(c.getXRoadInstance(), c.getCategoryCode()))
+                    .collect(Collectors.toList()));
+            descriptionType = description.getType();
+            descriptionUrl = description.getUrl();
+
+            if (description.isDisabled()) {
+                disabledNotice = Objects.toString(description.getDisabledNotice(),
+                        String.format("Service '%s' is disabled", id));
+            } else {
+                disabledNotice = null;
+            }
+        }
+    }
+}
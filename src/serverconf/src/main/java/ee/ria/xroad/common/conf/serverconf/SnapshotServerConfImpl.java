@@ -0,0 +1,295 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.conf.serverconf;
+
+import ee.ria.xroad.common.CodedException;
+import ee.ria.xroad.common.SystemProperties;
+import ee.ria.xroad.common.conf.serverconf.model.DescriptionType;
+import ee.ria.xroad.common.identifier.ClientId;
+import ee.ria.xroad.common.identifier.SecurityCategoryId;
+import ee.ria.xroad.common.identifier.SecurityServerId;
+import ee.ria.xroad.common.identifier.ServiceId;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.security.cert.X509Certificate;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static ee.ria.xroad.common.ErrorCodes.X_UNKNOWN_SERVICE;
+
+/**
+ * Server conf implementation that answers the queries from an immutable
+ * in-memory snapshot of the server configuration database.
+ *
+ * The snapshot is rebuilt in the background when the version counter in the
+ * serverconf_version table changes, and swapped atomically. The request
+ * threads do not access the database. If the version counter is not
+ * available, the snapshot is rebuilt after every server conf cache period,
+ * but not more often than every {@value #MIN_FALLBACK_REFRESH_SECONDS}
+ * seconds.
+ */
+@Slf4j
+public class SnapshotServerConfImpl extends ServerConfImpl {
+
+    private static final String VERSION_QUERY = "SELECT version FROM serverconf_version";
+
+    // Rebuilding the snapshot reads the whole configuration, so it is not
+    // done on every check even if the server conf cache period is 0.
+    static final int MIN_FALLBACK_REFRESH_SECONDS = 10;
+
+    private final ScheduledExecutorService refresher;
+    private final long fallbackRefreshMillis;
+
+    private volatile ServerConfSnapshot snapshot;
+    private volatile long snapshotLoadedAt;
+    private volatile int refreshCount;
+    private volatile boolean versionAvailable = true;
+
+    /**
+     * Loads the initial snapshot and starts checking for changes in the
+     * database.
+     */
+    public SnapshotServerConfImpl() {
+        super();
+        fallbackRefreshMillis = TimeUnit.SECONDS.toMillis(
+                Math.max(MIN_FALLBACK_REFRESH_SECONDS, SystemProperties.getServerConfCachePeriod()));
+
+        snapshot = loadSnapshot(readVersion());
+        snapshotLoadedAt = System.currentTimeMillis();
+
+        refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread refresherThread = new Thread(r, "serverconf-snapshot-refresher");
+            refresherThread.setDaemon(true);
+
+            return refresherThread;
+        });
+
+        long interval = SystemProperties.getServerConfSnapshotCheckInterval();
+        refresher.scheduleWithFixedDelay(this::refresh, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops checking for changes in the database. The checking thread is a
+     * daemon thread, so it does not keep the process running if this method
+     * is not called.
+     */
+    public void close() {
+        refresher.shutdownNow();
+    }
+
+    @Override
+    public SecurityServerId getIdentifier() {
+        return snapshot.getIdentifier();
+    }
+
+    @Override
+    public boolean serviceExists(ServiceId service) {
+        return snapshot.getService(service) != null;
+    }
+
+    @Override
+    public String getServiceAddress(ServiceId service) {
+        return fromService(service, ServerConfSnapshot.Service::getUrl, null);
+    }
+
+    @Override
+    public int getServiceTimeout(ServiceId service) {
+        return fromService(service, ServerConfSnapshot.Service::getTimeout, DEFAULT_SERVICE_TIMEOUT);
+    }
+
+    @Override
+    public List<ServiceId> getAllServices(ClientId serviceProvider) {
+        return snapshot.getServices(serviceProvider, null);
+    }
+
+    @Override
+    public List<ServiceId> getServicesByDescriptionType(ClientId serviceProvider, DescriptionType descriptionType) {
+        return snapshot.getServices(serviceProvider, descriptionType);
+    }
+
+    @Override
+    public List<ServiceId> getAllowedServices(ClientId serviceProvider, ClientId client) {
+        return getAllowedServicesByDescriptionType(serviceProvider, client, null);
+    }
+
+    @Override
+    public List<ServiceId> getAllowedServicesByDescriptionType(ClientId serviceProvider, ClientId client,
+            DescriptionType descriptionType) {
+        ServerConfSnapshot current = snapshot;
+
+        return current.getServices(serviceProvider, descriptionType).stream()
+                .filter(s -> isQueryAllowed(current, client, s, null, null))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public boolean isSslAuthentication(ServiceId service) {
+        ServerConfSnapshot.Service serviceInfo = snapshot.getService(service);
+
+        if (serviceInfo == null) {
+            throw new CodedException(X_UNKNOWN_SERVICE, "Service '%s' not found", service);
+        }
+
+        return serviceInfo.isSslAuthentication();
+    }
+
+    @Override
+    public List<ClientId> getMembers() {
+        return snapshot.getMembers();
+    }
+
+    @Override
+    public String getMemberStatus(ClientId memberId) {
+        ServerConfSnapshot.Client client = snapshot.getClient(memberId);
+
+        return client != null ? client.getClientStatus() : null;
+    }
+
+    @Override
+    public IsAuthentication getIsAuthentication(ClientId client) {
+        ServerConfSnapshot.Client clientInfo = snapshot.getClient(client);
+
+        return clientInfo != null ? clientInfo.getIsAuthentication() : null;
+    }
+
+    @Override
+    public List<X509Certificate> getIsCerts(ClientId client) {
+        ServerConfSnapshot.Client clientInfo = snapshot.getClient(client);
+
+        return clientInfo != null ? clientInfo.getIsCerts() : Collections.emptyList();
+    }
+
+    @Override
+    public List<X509Certificate> getAllIsCerts() {
+        return snapshot.getAllIsCerts();
+    }
+
+    @Override
+    public String getDisabledNotice(ServiceId service) {
+        return fromService(service, ServerConfSnapshot.Service::getDisabledNotice, null);
+    }
+
+    @Override
+    public boolean isQueryAllowed(ClientId client, ServiceId service, String method, String path) {
+        return isQueryAllowed(snapshot, client, service, method, path);
+    }
+
+    @Override
+    public List<SecurityCategoryId> getRequiredCategories(ServiceId service) {
+        return fromService(service, ServerConfSnapshot.Service::getRequiredCategories, Collections.emptyList());
+    }
+
+    @Override
+    public List<String> getTspUrl() {
+        return snapshot.getTspUrls();
+    }
+
+    @Override
+    public DescriptionType getDescriptionType(ServiceId service) {
+        return fromService(service, ServerConfSnapshot.Service::getDescriptionType, null);
+    }
+
+    @Override
+    public String getServiceDescriptionURL(ServiceId service) {
+        return fromService(service, ServerConfSnapshot.Service::getDescriptionUrl, null);
+    }
+
+    @Override
+    public void logStatistics() {
+        if (log.isTraceEnabled()) {
+            ServerConfSnapshot current = snapshot;
+
+            log.trace("ServerConf.snapshot: version: {}, clients: {}, refreshes: {}", current.getVersion(),
+                    current.getMembers().size(), refreshCount);
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    void refresh() {
+        try {
+            Long version = readVersion();
+            ServerConfSnapshot current = snapshot;
+
+            boolean changed = version != null
+                    ? !version.equals(current.getVersion())
+                    : System.currentTimeMillis() - snapshotLoadedAt >= fallbackRefreshMillis;
+
+            if (changed) {
+                log.debug("Reloading server conf snapshot, version {} -> {}", current.getVersion(), version);
+
+                snapshot = loadSnapshot(version);
+                snapshotLoadedAt = System.currentTimeMillis();
+                refreshCount++;
+            }
+        } catch (Exception e) {
+            log.error("Failed to reload server conf snapshot", e);
+        }
+    }
+
+    private ServerConfSnapshot loadSnapshot(Long version) {
+        return tx(session -> ServerConfSnapshot.load(version, getConf(session)));
+    }
+
+    private Long readVersion() {
+        try {
+            Long version = tx(session -> ((Number)session.createNativeQuery(VERSION_QUERY).uniqueResult())
+                    .longValue());
+            versionAvailable = true;
+
+            return version;
+        } catch (Exception e) {
+            if (versionAvailable) {
+                log.warn("Server conf version is not available, reloading the snapshot every {} ms",
+                        fallbackRefreshMillis);
+                log.debug("Failed to read server conf version", e);
+            }
+            versionAvailable = false;
+
+            return null;
+        }
+    }
+
+    private static boolean isQueryAllowed(ServerConfSnapshot current, ClientId client, ServiceId service,
+            String method, String path) {
+        if (client == null) {
+            return false;
+        }
+
+        return current.isQueryAllowed(client, service, method, normalizePath(path));
+    }
+
+    private <T> T fromService(ServiceId service, Function<ServerConfSnapshot.Service, T> property, T defaultValue) {
+        ServerConfSnapshot.Service serviceInfo = snapshot.getService(service);
+
+        return serviceInfo != null ? property.apply(serviceInfo) : defaultValue;
+    }
+}
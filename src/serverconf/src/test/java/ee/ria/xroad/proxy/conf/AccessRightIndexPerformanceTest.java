@@ -0,0 +1,185 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.conf;
+
+import ee.ria.xroad.common.conf.globalconf.EmptyGlobalConf;
+import ee.ria.xroad.common.conf.globalconf.GlobalConf;
+import ee.ria.xroad.common.conf.serverconf.AccessRightIndex;
+import ee.ria.xroad.common.conf.serverconf.model.AccessRightType;
+import ee.ria.xroad.common.conf.serverconf.model.EndpointType;
+import ee.ria.xroad.common.identifier.ClientId;
+import ee.ria.xroad.common.identifier.GlobalGroupId;
+import ee.ria.xroad.common.identifier.LocalGroupId;
+import ee.ria.xroad.common.identifier.XRoadId;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Compares the access checks of {@link AccessRightIndex} with matching the access rights one by one, the way
+ * ServerConfImpl does after loading them from the database. The service provider has thousands of endpoints,
+ * local groups and global group access rights.
+ */
+@Slf4j
+public final class AccessRightIndexPerformanceTest {
+
+    private static final int WARMUP_ITERATIONS = 20_000;
+    private static final int ITERATIONS = 100_000;
+
+    private static final int SERVICES = 50;
+    private static final int ENDPOINTS_PER_SERVICE = 100;
+    private static final int CLIENTS = 2000;
+    private static final int LOCAL_GROUPS = 500;
+    private static final int LOCAL_GROUP_SIZE = 50;
+    private static final int GLOBAL_GROUPS = 100;
+    private static final int ACCESS_RIGHTS_PER_ENDPOINT = 5;
+
+    private static final String[] METHODS = {"GET", "POST", "PUT", "DELETE", "*"};
+
+    private AccessRightIndexPerformanceTest() {
+    }
+
+    /**
+     * Main program entry point.
+     * @param args command-line arguments, not used
+     */
+    public static void main(String[] args) {
+        GlobalConf.reload(new EmptyGlobalConf());
+
+        Random random = new Random(1);
+
+        List<ClientId> clients = new ArrayList<>();
+        for (int i = 0; i < CLIENTS; i++) {
+            clients.add(ClientId.create("EE", "GOV", "member" + i, "sub" + i));
+        }
+
+        Map<String, Set<ClientId>> localGroups = new HashMap<>();
+        for (int i = 0; i < LOCAL_GROUPS; i++) {
+            localGroups.put("group" + i, random.ints(LOCAL_GROUP_SIZE, 0, CLIENTS)
+                    .mapToObj(clients::get).collect(Collectors.toSet()));
+        }
+
+        List<AccessRightType> acl = new ArrayList<>();
+        List<String[]> requests = new ArrayList<>();
+
+        for (int s = 0; s < SERVICES; s++) {
+            for (int e = 0; e < ENDPOINTS_PER_SERVICE; e++) {
+                String method = METHODS[random.nextInt(METHODS.length)];
+                String glob = "/api/v" + (e % 3) + "/resource" + e + (e % 2 == 0 ? "/*" : "/**");
+                EndpointType endpoint = new EndpointType("service" + s, method, glob, false);
+
+                for (int a = 0; a < ACCESS_RIGHTS_PER_ENDPOINT; a++) {
+                    acl.add(accessRight(randomSubject(random, clients), endpoint));
+                }
+
+                requests.add(new String[] {"service" + s, "GET",
+                        "/api/v" + (e % 3) + "/resource" + e + "/item" + random.nextInt(100)});
+            }
+        }
+
+        AccessRightIndex index = new AccessRightIndex(acl, localGroups);
+
+        log.info("{} access rights, {} local groups of {} members, {} global groups", acl.size(), LOCAL_GROUPS,
+                LOCAL_GROUP_SIZE, GLOBAL_GROUPS);
+
+        measure("one by one", clients, requests, random, (client, request) ->
+                acl.stream()
+                        .filter(ar -> request[0].equals(ar.getEndpoint().getServiceCode()))
+                        .filter(ar -> subjectMatches(ar.getSubjectId(), client, localGroups))
+                        .anyMatch(ar -> ar.getEndpoint().matches(request[1], request[2])));
+
+        measure("index", clients, requests, random, (client, request) ->
+                index.isAllowed(client, request[0], request[1], request[2]));
+    }
+
+    private static void measure(String name, List<ClientId> clients, List<String[]> requests, Random random,
+            AccessCheck check) {
+        run(clients, requests, random, check, WARMUP_ITERATIONS);
+
+        long start = System.nanoTime();
+        int allowed = run(clients, requests, random, check, ITERATIONS);
+        long nanos = System.nanoTime() - start;
+
+        log.info("{}: {} ns per isQueryAllowed, {} of {} allowed", name, nanos / ITERATIONS, allowed, ITERATIONS);
+    }
+
+    private static int run(List<ClientId> clients, List<String[]> requests, Random random, AccessCheck check,
+            int iterations) {
+        int allowed = 0;
+
+        for (int i = 0; i < iterations; i++) {
+            ClientId client = clients.get(random.nextInt(clients.size()));
+            String[] request = requests.get(random.nextInt(requests.size()));
+
+            if (check.isAllowed(client, request)) {
+                allowed++;
+            }
+        }
+
+        return allowed;
+    }
+
+    private static XRoadId randomSubject(Random random, List<ClientId> clients) {
+        switch (random.nextInt(3)) {
+            case 0:
+                return LocalGroupId.create("group" + random.nextInt(LOCAL_GROUPS));
+            case 1:
+                return GlobalGroupId.create("EE", "global" + random.nextInt(GLOBAL_GROUPS));
+            default:
+                return clients.get(random.nextInt(clients.size()));
+        }
+    }
+
+    private static boolean subjectMatches(XRoadId subject, ClientId client, Map<String, Set<ClientId>> localGroups) {
+        if (subject instanceof GlobalGroupId) {
+            return GlobalConf.isSubjectInGlobalGroup(client, (GlobalGroupId)subject);
+        } else if (subject instanceof LocalGroupId) {
+            return localGroups.get(((LocalGroupId)subject).getGroupCode()).stream()
+                    .anyMatch(m -> Objects.equals(m, client));
+        } else {
+            return client.equals(subject);
+        }
+    }
+
+    private static AccessRightType accessRight(XRoadId subject, EndpointType endpoint) {
+        AccessRightType accessRight = new AccessRightType();
+        accessRight.setSubjectId(subject);
+        accessRight.setEndpoint(endpoint);
+
+        return accessRight;
+    }
+
+    private interface AccessCheck {
+        boolean isAllowed(ClientId client, String[] request);
+    }
+}
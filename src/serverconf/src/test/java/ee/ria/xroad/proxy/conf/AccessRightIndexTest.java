@@ -0,0 +1,114 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.conf;
+
+import ee.ria.xroad.common.conf.globalconf.EmptyGlobalConf;
+import ee.ria.xroad.common.conf.globalconf.GlobalConf;
+import ee.ria.xroad.common.conf.serverconf.AccessRightIndex;
+import ee.ria.xroad.common.conf.serverconf.model.AccessRightType;
+import ee.ria.xroad.common.conf.serverconf.model.EndpointType;
+import ee.ria.xroad.common.identifier.ClientId;
+import ee.ria.xroad.common.identifier.LocalGroupId;
+import ee.ria.xroad.common.identifier.XRoadId;
+
+import org.apache.commons.lang3.reflect.FieldUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that AccessRightIndex does not depend on the identifier instances it was built from.
+ */
+public class AccessRightIndexTest {
+
+    private static final String SERVICE_CODE = "service";
+
+    /**
+     * Initializes the global configuration used for the global group checks.
+     */
+    @Before
+    public void setUp() {
+        GlobalConf.reload(new EmptyGlobalConf());
+    }
+
+    /**
+     * Grants access to a client identifier that is then modified in place, like an identifier owned by
+     * the Hibernate session. The index must keep matching an equal but not identical client identifier.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test
+    public void directClientSubjectIsCopied() throws Exception {
+        ClientId subject = ClientId.create("EE", "GOV", "member", "sub");
+        ClientId client = ClientId.create("EE", "GOV", "member", "sub");
+        assertNotSame(subject, client);
+
+        AccessRightIndex index = new AccessRightIndex(Collections.singletonList(accessRight(subject)),
+                Collections.emptyMap());
+
+        FieldUtils.writeField(subject, "memberCode", "other", true);
+
+        assertTrue(index.isAllowed(client, SERVICE_CODE, "GET", "/api/test"));
+        assertFalse(index.isAllowed(subject, SERVICE_CODE, "GET", "/api/test"));
+    }
+
+    /**
+     * Grants access to a local group whose member identifier is then modified in place. The index must keep
+     * matching an equal but not identical client identifier.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test
+    public void localGroupMemberIsCopied() throws Exception {
+        ClientId member = ClientId.create("EE", "GOV", "member", null);
+        ClientId client = ClientId.create("EE", "GOV", "member", null);
+
+        Map<String, Set<ClientId>> localGroups = new HashMap<>();
+        localGroups.put("group", Collections.singleton(member));
+
+        AccessRightIndex index = new AccessRightIndex(
+                Collections.singletonList(accessRight(LocalGroupId.create("group"))),
+                localGroups);
+
+        FieldUtils.writeField(member, "memberCode", "other", true);
+
+        assertTrue(index.isAllowed(client, SERVICE_CODE, "GET", "/api/test"));
+        assertFalse(index.isAllowed(member, SERVICE_CODE, "GET", "/api/test"));
+    }
+
+    private static AccessRightType accessRight(XRoadId subject) {
+        AccessRightType accessRight = new AccessRightType();
+        accessRight.setSubjectId(subject);
+        accessRight.setEndpoint(new EndpointType(SERVICE_CODE, "*", "**", false));
+
+        return accessRight;
+    }
+}
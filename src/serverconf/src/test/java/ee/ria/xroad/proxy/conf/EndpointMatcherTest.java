@@ -0,0 +1,118 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.conf;
+
+import ee.ria.xroad.common.conf.serverconf.EndpointMatcher;
+import ee.ria.xroad.common.conf.serverconf.model.EndpointType;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that EndpointMatcher gives the same results as matching the endpoints one by one.
+ */
+public class EndpointMatcherTest {
+
+    private static final List<String> GLOBS = Arrays.asList(
+            "**", "***", "/*/", "", ".^$+{[]|()", "**/bar/**", "**\\*", "simple", "**/*/**", "\\A", "\\*",
+            "\\\\", "aa\\", "/api/test/*", "/api/test/foo", "/api/*/foo", "/api/**/foo", "/api/t*t/**",
+            "/api/test/", "/api/\\*/foo", "/api/a\\/b", "/api/**", "/api/*");
+
+    private static final List<String> PATHS = Arrays.asList(
+            "", " ", "/", "//", "simple", "prefix.simple.suffix", ".^$+{[]|()", "a/b/c/bar/e/f", "a/b/c/foo/e/f",
+            "/what/ever*", "/what/ever!", "something/bar/something/else", "/bar/", "something/else", "\\A", "*",
+            "\\*", "\\", "aa\\", "/a/", "/a/b/", "/api", "/api/", "/api/test", "/api/test/", "/api/test/foo",
+            "/api/test/foo/bar", "/api/x/foo", "/api/x/y/foo", "/api/tt", "/api/toast/x", "/api/*/foo",
+            "/api/a\\/b", "/api/a/b");
+
+    private static final List<String> METHODS = Arrays.asList("*", "GET", "POST", "get", null);
+
+    /**
+     * Compares each glob and method on its own with EndpointType.matches.
+     */
+    @Test
+    public void matchesLikeSingleEndpoints() {
+        for (String requestMethod : METHODS) {
+            for (String endpointMethod : METHODS.subList(0, METHODS.size() - 1)) {
+                for (String glob : GLOBS) {
+                    EndpointType endpoint = new EndpointType("test", endpointMethod, glob, false);
+                    EndpointMatcher matcher = EndpointMatcher.compile(Collections.singletonList(endpoint));
+
+                    for (String path : PATHS) {
+                        assertEquals(endpointMethod + " " + glob + " / " + requestMethod + " " + path,
+                                endpoint.matches(requestMethod, path), matcher.matches(requestMethod, path));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Compares all the globs merged into one matcher with EndpointType.matches.
+     */
+    @Test
+    public void matchesLikeAnyEndpoint() {
+        for (int skip = 0; skip < GLOBS.size(); skip++) {
+            List<EndpointType> endpoints = new ArrayList<>();
+
+            for (int i = 0; i < GLOBS.size(); i++) {
+                if (i != skip && GLOBS.get(i).startsWith("/")) {
+                    endpoints.add(new EndpointType("test", i % 2 == 0 ? "GET" : "*", GLOBS.get(i), false));
+                }
+            }
+
+            EndpointMatcher matcher = EndpointMatcher.compile(endpoints);
+
+            for (String method : METHODS.subList(0, METHODS.size() - 1)) {
+                for (String path : PATHS) {
+                    boolean expected = endpoints.stream().anyMatch(ep -> ep.matches(method, path));
+
+                    assertEquals(method + " " + path, expected, matcher.matches(method, path));
+                }
+            }
+        }
+    }
+
+    /**
+     * Tests that a request without method or path only matches endpoints that allow any path.
+     */
+    @Test
+    public void matchesWithoutPath() {
+        assertTrue(EndpointMatcher.compile(Collections.singletonList(
+                new EndpointType("test", "*", "**", false))).matches(null, null));
+        assertFalse(EndpointMatcher.compile(Collections.singletonList(
+                new EndpointType("test", "*", "/api/**", false))).matches(null, null));
+        assertFalse(EndpointMatcher.compile(Collections.singletonList(
+                new EndpointType("test", "GET", "**", false))).matches(null, null));
+    }
+}
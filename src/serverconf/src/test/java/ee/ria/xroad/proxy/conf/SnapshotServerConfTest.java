@@ -0,0 +1,469 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.conf;
+
+import ee.ria.xroad.common.ExpectedCodedException;
+import ee.ria.xroad.common.SystemProperties;
+import ee.ria.xroad.common.conf.globalconf.EmptyGlobalConf;
+import ee.ria.xroad.common.conf.globalconf.GlobalConf;
+import ee.ria.xroad.common.conf.serverconf.IsAuthentication;
+import ee.ria.xroad.common.conf.serverconf.ServerConf;
+import ee.ria.xroad.common.conf.serverconf.ServerConfDatabaseCtx;
+import ee.ria.xroad.common.conf.serverconf.SnapshotServerConfImpl;
+import ee.ria.xroad.common.conf.serverconf.dao.ServiceDAOImpl;
+import ee.ria.xroad.common.conf.serverconf.model.ServiceType;
+import ee.ria.xroad.common.identifier.ClientId;
+import ee.ria.xroad.common.identifier.SecurityCategoryId;
+import ee.ria.xroad.common.identifier.SecurityServerId;
+import ee.ria.xroad.common.identifier.ServiceId;
+
+import org.hibernate.Session;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static ee.ria.xroad.common.ErrorCodes.X_UNKNOWN_SERVICE;
+import static ee.ria.xroad.common.conf.serverconf.ServerConfDatabaseCtx.doInTransaction;
+import static ee.ria.xroad.common.util.CryptoUtils.readCertificate;
+import static ee.ria.xroad.proxy.conf.TestUtil.BASE64_CERT;
+import static ee.ria.xroad.proxy.conf.TestUtil.CLIENT_CODE;
+import static ee.ria.xroad.proxy.conf.TestUtil.MEMBER_CLASS;
+import static ee.ria.xroad.proxy.conf.TestUtil.MEMBER_CODE;
+import static ee.ria.xroad.proxy.conf.TestUtil.NUM_CLIENTS;
+import static ee.ria.xroad.proxy.conf.TestUtil.NUM_SERVICEDESCRIPTIONS;
+import static ee.ria.xroad.proxy.conf.TestUtil.NUM_SERVICES;
+import static ee.ria.xroad.proxy.conf.TestUtil.NUM_TSPS;
+import static ee.ria.xroad.proxy.conf.TestUtil.SECURITY_CATEGORY;
+import static ee.ria.xroad.proxy.conf.TestUtil.SERVER_CODE;
+import static ee.ria.xroad.proxy.conf.TestUtil.SERVICE_CODE;
+import static ee.ria.xroad.proxy.conf.TestUtil.SERVICE_TIMEOUT;
+import static ee.ria.xroad.proxy.conf.TestUtil.SERVICE_URL;
+import static ee.ria.xroad.proxy.conf.TestUtil.SERVICE_VERSION;
+import static ee.ria.xroad.proxy.conf.TestUtil.SUBSYSTEM;
+import static ee.ria.xroad.proxy.conf.TestUtil.XROAD_INSTANCE;
+import static ee.ria.xroad.proxy.conf.TestUtil.client;
+import static ee.ria.xroad.proxy.conf.TestUtil.createTestClientId;
+import static ee.ria.xroad.proxy.conf.TestUtil.createTestServiceId;
+import static ee.ria.xroad.proxy.conf.TestUtil.prepareDB;
+import static ee.ria.xroad.proxy.conf.TestUtil.service;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests server conf API served from a snapshot.
+ */
+public class SnapshotServerConfTest {
+
+    private static final long CHECK_INTERVAL_MILLIS = 100;
+    private static final long RELOAD_TIMEOUT_MILLIS = 5000;
+
+    private static SnapshotServerConfImpl serverConf;
+
+    @Rule
+    public ExpectedCodedException thrown = ExpectedCodedException.none();
+
+    /**
+     * Creates test database.
+     * @throws Exception if an error occurs
+     */
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        prepareDB();
+        createVersionCounter();
+
+        System.setProperty(SystemProperties.SERVER_CONF_SNAPSHOT_CHECK_INTERVAL,
+                String.valueOf(CHECK_INTERVAL_MILLIS));
+
+        GlobalConf.reload(new EmptyGlobalConf() {
+            @Override
+            public boolean isSecurityServerClient(ClientId client, SecurityServerId securityServer) {
+                return true;
+            }
+        });
+        serverConf = new SnapshotServerConfImpl();
+        ServerConf.reload(serverConf);
+    }
+
+    /**
+     * Stops the snapshot refresher.
+     */
+    @AfterClass
+    public static void tearDownAfterClass() throws Exception {
+        serverConf.close();
+
+        System.clearProperty(SystemProperties.SERVER_CONF_SNAPSHOT_CHECK_INTERVAL);
+
+        doInTransaction(session -> {
+            session.createNativeQuery("DROP TRIGGER increment_serverconf_version").executeUpdate();
+            session.createNativeQuery("DROP TABLE serverconf_version").executeUpdate();
+            return null;
+        });
+    }
+
+    /**
+     * Creates the version counter of the server configuration with a trigger on the service table. The
+     * triggers of the PostgreSQL database are created by Liquibase.
+     */
+    private static void createVersionCounter() throws Exception {
+        doInTransaction(session -> {
+            session.createNativeQuery("CREATE TABLE serverconf_version (id BIGINT PRIMARY KEY, "
+                    + "version BIGINT NOT NULL)").executeUpdate();
+            session.createNativeQuery("INSERT INTO serverconf_version VALUES (1, 0)").executeUpdate();
+            session.createNativeQuery("CREATE TRIGGER increment_serverconf_version AFTER UPDATE ON service "
+                    + "FOR EACH STATEMENT UPDATE serverconf_version SET version = version + 1").executeUpdate();
+            return null;
+        });
+    }
+
+    /**
+     * Begins transaction.
+     */
+    @Before
+    public void beforeTest() {
+        ServerConfDatabaseCtx.get().beginTransaction();
+    }
+
+    /**
+     * Commits transaction.
+     */
+    @After
+    public void afterTest() {
+        ServerConfDatabaseCtx.get().commitTransaction();
+    }
+
+    /**
+     * Test getting owner.
+     */
+    @Test
+    public void getOwner() {
+        assertEquals(createTestClientId(),
+                ServerConf.getIdentifier().getOwner());
+    }
+
+    /**
+     * Tests getting security server identififer.
+     */
+    @Test
+    public void getIdentifier() {
+        SecurityServerId expectedIdentifier =
+                SecurityServerId.create(
+                        XROAD_INSTANCE, MEMBER_CLASS, MEMBER_CODE, SERVER_CODE);
+        assertEquals(expectedIdentifier, ServerConf.getIdentifier());
+    }
+
+    /**
+     * Tests getting service address.
+     */
+    @Test
+    public void getExistingServiceAddress() {
+        ServiceId service = ServiceId.create(XROAD_INSTANCE, MEMBER_CLASS,
+                client(1), null, service(1, 1), SERVICE_VERSION);
+        assertTrue(ServerConf.serviceExists(service));
+        assertEquals(SERVICE_URL + 1, ServerConf.getServiceAddress(service));
+        assertEquals(SERVICE_TIMEOUT, ServerConf.getServiceTimeout(service));
+
+        service = ServiceId.create(XROAD_INSTANCE, MEMBER_CLASS,
+                client(1), null, service(1, NUM_SERVICES - 2), null);
+        assertTrue(ServerConf.serviceExists(service));
+    }
+
+    /**
+     * Tests getting all services.
+     */
+    @Test
+    public void getAllServices() {
+        ClientId serviceProvider = createTestClientId(client(1));
+
+        List<ServiceId> expectedServices = new ArrayList<>();
+        for (int i = 0; i < NUM_SERVICEDESCRIPTIONS; i++) {
+            for (int j = 0; j < NUM_SERVICES; j++) {
+                String version = j == NUM_SERVICES - 2 ? null : SERVICE_VERSION;
+                expectedServices.add(createTestServiceId(serviceProvider,
+                        service(i, j), version));
+            }
+        }
+
+        assertEquals(expectedServices,
+                ServerConf.getAllServices(serviceProvider));
+    }
+
+    /**
+     * Tests getting allowed services.
+     */
+    @Test
+    public void getAllowedServices() {
+        ClientId serviceProvider = createTestClientId(client(1));
+        ClientId client1 = createTestClientId(client(1));
+        ClientId client2 = createTestClientId(client(2));
+
+        List<ServiceId> expectedServices = Arrays.asList(
+                createTestServiceId(serviceProvider,
+                        service(1, 1), SERVICE_VERSION));
+
+        assertEquals(expectedServices,
+                ServerConf.getAllowedServices(serviceProvider, client1));
+        assertTrue(ServerConf.getAllowedServices(serviceProvider,
+                client2).isEmpty());
+    }
+
+    /**
+     * Tests getting non-existing service.
+     */
+    @Test
+    public void getNonExistingServiceAddress() {
+        ServiceId service = createTestServiceId("foo", "bar");
+        assertFalse(ServerConf.serviceExists(service));
+        assertNull(ServerConf.getServiceAddress(service));
+        assertNotEquals(SERVICE_TIMEOUT,
+                ServerConf.getServiceTimeout(service));
+    }
+
+    /**
+     * Tests getting service description disabled notice.
+     */
+    @Test
+    public void getDisabledNotice() {
+        ServiceId existingService = createTestServiceId(client(1),
+                service(NUM_SERVICEDESCRIPTIONS - 1, NUM_SERVICES - 1), SERVICE_VERSION);
+        ServiceId nonExistingService = createTestServiceId("foo", "bar");
+
+        assertNotNull(ServerConf.getDisabledNotice(existingService));
+        assertNull(ServerConf.getDisabledNotice(nonExistingService));
+    }
+
+    /**
+     * Tests query allowed.
+     */
+    @Test
+    public void isQueryAllowed() {
+        ClientId client1 = createTestClientId(client(1));
+        ClientId clientX = createTestClientId(CLIENT_CODE + "X");
+        ServiceId service1 = createTestServiceId(client1.getMemberCode(),
+                service(1, 1), SERVICE_VERSION);
+        ServiceId serviceX = createTestServiceId(client1.getMemberCode(),
+                SERVICE_CODE + "X", SERVICE_VERSION + "X");
+        ServiceId serviceRest = createTestServiceId(client1.getMemberCode(), "rest", null);
+
+        assertTrue(ServerConf.isQueryAllowed(client1, service1));
+        assertTrue(ServerConf.isQueryAllowed(client1, service1, "POST", "/"));
+        assertFalse(ServerConf.isQueryAllowed(clientX, service1));
+        assertFalse(ServerConf.isQueryAllowed(clientX, serviceX));
+        assertFalse(ServerConf.isQueryAllowed(client1, serviceX));
+
+        assertTrue(ServerConf.isQueryAllowed(client1, serviceRest, "GET", "/api/foo"));
+
+        assertTrue(ServerConf.isQueryAllowed(client1, serviceRest, "POST", "/api/test/foo"));
+        assertTrue(ServerConf.isQueryAllowed(client1, serviceRest, "POST", "/api/t%65st/foo"));
+        assertTrue(ServerConf.isQueryAllowed(client1, serviceRest, "POST", "/api/t%65st/foo%2dbar"));
+        assertTrue(ServerConf.isQueryAllowed(client1, serviceRest, "POST", "/api/test/foo/../bar"));
+
+        assertFalse(ServerConf.isQueryAllowed(client1, serviceRest, "POST", "/api/test%2Dbar"));
+        assertFalse(ServerConf.isQueryAllowed(client1, serviceRest, "POST", "/api/test/../bar"));
+        assertFalse(ServerConf.isQueryAllowed(client1, serviceRest, "GET", "/api/test/../../../api/test"));
+        assertFalse(ServerConf.isQueryAllowed(client1, serviceRest, "POST", "/api/test/foo/bar"));
+        assertFalse(ServerConf.isQueryAllowed(client1, serviceRest, "DELETE", "/api/test"));
+        assertFalse(ServerConf.isQueryAllowed(client1, serviceRest));
+    }
+
+    /**
+     * Tests getting required categories.
+     */
+    @Test
+    public void getRequiredCategories() {
+        ServiceId service1 = createTestServiceId(client(1),
+                service(1, 1), SERVICE_VERSION);
+        Collection<SecurityCategoryId> securityCategories =
+                ServerConf.getRequiredCategories(service1);
+        assertEquals(1, securityCategories.size());
+        assertEquals(SecurityCategoryId.create(XROAD_INSTANCE,
+                SECURITY_CATEGORY + 1), securityCategories.iterator().next());
+    }
+
+    /**
+     * Tests getting IS authentication.
+     */
+    @Test
+    public void getIsAuthentication() {
+        assertEquals(IsAuthentication.SSLAUTH,
+                ServerConf.getIsAuthentication(createTestClientId(client(1))));
+        assertEquals(IsAuthentication.SSLNOAUTH,
+                ServerConf.getIsAuthentication(createTestClientId(client(2))));
+        assertEquals(IsAuthentication.NOSSL,
+                ServerConf.getIsAuthentication(createTestClientId(client(3))));
+    }
+
+    /**
+     * Tests getting IS certificates,
+     * @throws Exception if an error coccurs
+     */
+    @Test
+    public void getIsCerts() throws Exception {
+        List<X509Certificate> isCerts =
+                ServerConf.getIsCerts(createTestClientId(client(1)));
+        assertEquals(1, isCerts.size());
+        assertEquals(readCertificate(BASE64_CERT), isCerts.get(0));
+    }
+
+    /**
+     * Tests getting SSL authentication.
+     */
+    @Test
+    public void isSslAuthentication() {
+        assertTrue(ServerConf.isSslAuthentication(
+                createTestServiceId(client(1), service(1, 0),
+                        SERVICE_VERSION)));
+        assertFalse(ServerConf.isSslAuthentication(
+                createTestServiceId(client(1), service(1, 1),
+                        SERVICE_VERSION)));
+
+        thrown.expectError(X_UNKNOWN_SERVICE);
+        assertFalse(ServerConf.isSslAuthentication(
+                createTestServiceId(client(1), service(1, NUM_SERVICES),
+                        SERVICE_VERSION)));
+    }
+
+    /**
+     * Tests getting members.
+     * @throws Exception if an error coccurs
+     */
+    @Test
+    public void getMembers() throws Exception {
+        List<ClientId> members = ServerConf.getMembers();
+        assertNotNull(members);
+        assertEquals(NUM_CLIENTS, members.size());
+    }
+
+    /**
+     * Tests getting TSPs.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void getTsps() throws Exception {
+        List<String> tspUrls = ServerConf.getTspUrl();
+        assertEquals(NUM_TSPS, tspUrls.size());
+    }
+
+    /**
+     * Tests getting services.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void getServices() throws Exception {
+        ClientId serviceProvider = createTestClientId(client(1), null);
+
+        List<ServiceId> allServices = getServices(serviceProvider);
+        assertEquals(NUM_SERVICEDESCRIPTIONS * NUM_SERVICES, allServices.size());
+
+        serviceProvider = createTestClientId(client(NUM_CLIENTS - 1), null);
+
+        allServices = getServices(serviceProvider);
+        assertEquals(0, allServices.size());
+
+        serviceProvider = createTestClientId(client(NUM_CLIENTS - 1),
+                SUBSYSTEM);
+
+        allServices = getServices(serviceProvider);
+        assertEquals(NUM_SERVICEDESCRIPTIONS * NUM_SERVICES, allServices.size());
+    }
+
+    /**
+     * Tests that a change in the service table increments the version counter, after which the next lookups see
+     * the changed service while the services returned from the previous snapshot do not change.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void reloadsSnapshotWhenVersionChanges() throws Exception {
+        ServerConfDatabaseCtx.get().commitTransaction();
+
+        ClientId serviceProvider = createTestClientId(client(1));
+        ServiceId service = createTestServiceId(serviceProvider, service(1, 1), SERVICE_VERSION);
+        ServiceId changedService = createTestServiceId(serviceProvider, "changed", SERVICE_VERSION);
+
+        List<ServiceId> servicesBefore = ServerConf.getAllServices(serviceProvider);
+        List<ServiceId> expectedServicesBefore = new ArrayList<>(servicesBefore);
+        long versionBefore = doInTransaction(SnapshotServerConfTest::getVersion);
+
+        setServiceCode(service, changedService.getServiceCode());
+
+        try {
+            assertTrue(doInTransaction(SnapshotServerConfTest::getVersion) > versionBefore);
+
+            awaitReload(() -> ServerConf.serviceExists(changedService));
+
+            assertFalse(ServerConf.serviceExists(service));
+            assertEquals(SERVICE_URL + 1, ServerConf.getServiceAddress(changedService));
+            assertTrue(ServerConf.getAllServices(serviceProvider).contains(changedService));
+
+            assertEquals(expectedServicesBefore, servicesBefore);
+        } finally {
+            setServiceCode(changedService, service.getServiceCode());
+
+            awaitReload(() -> ServerConf.serviceExists(service));
+        }
+    }
+
+    private static void setServiceCode(ServiceId service, String serviceCode) throws Exception {
+        doInTransaction(session -> {
+            ServiceType serviceType = new ServiceDAOImpl().getService(session, service);
+            serviceType.setServiceCode(serviceCode);
+            return null;
+        });
+    }
+
+    private static long getVersion(Session session) {
+        return ((Number)session.createNativeQuery("SELECT version FROM serverconf_version").uniqueResult())
+                .longValue();
+    }
+
+    private static void awaitReload(BooleanSupplier reloaded) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + RELOAD_TIMEOUT_MILLIS;
+
+        while (!reloaded.getAsBoolean()) {
+            assertTrue("Server conf snapshot was not reloaded in time", System.currentTimeMillis() < deadline);
+
+            Thread.sleep(CHECK_INTERVAL_MILLIS);
+        }
+    }
+
+    private static List<ServiceId> getServices(ClientId serviceProvider) {
+        return new ServiceDAOImpl().getServices(
+                ServerConfDatabaseCtx.get().getSession(),
+                serviceProvider);
+    }
+}
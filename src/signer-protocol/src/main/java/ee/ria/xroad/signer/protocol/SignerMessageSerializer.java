@@ -0,0 +1,225 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.signer.protocol;
+
+import ee.ria.xroad.signer.protocol.message.GetKeyIdForCertHash;
+import ee.ria.xroad.signer.protocol.message.GetKeyIdForCertHashResponse;
+import ee.ria.xroad.signer.protocol.message.GetOcspResponses;
+import ee.ria.xroad.signer.protocol.message.GetOcspResponsesResponse;
+import ee.ria.xroad.signer.protocol.message.GetTokenBatchSigningEnabled;
+import ee.ria.xroad.signer.protocol.message.SetOcspResponses;
+import ee.ria.xroad.signer.protocol.message.Sign;
+import ee.ria.xroad.signer.protocol.message.SignResponse;
+
+import akka.serialization.JSerializer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Akka serializer for the signer protocol messages that are exchanged for every signed message. The messages
+ * are written in a compact binary format: a type byte followed by the fields of the message, instead of the
+ * class descriptors and reflection of Java serialization. The serializer is bound to the message classes in
+ * the reference.conf of this module, so every actor system talking to the signer uses it.
+ */
+public class SignerMessageSerializer extends JSerializer {
+
+    // Unique serializer identifier, 0 - 40 are reserved by Akka
+    private static final int IDENTIFIER = 2552;
+
+    private static final int INITIAL_BUFFER_SIZE = 256;
+    private static final int NULL_LENGTH = -1;
+
+    private static final byte SIGN = 1;
+    private static final byte SIGN_RESPONSE = 2;
+    private static final byte GET_OCSP_RESPONSES = 3;
+    private static final byte GET_OCSP_RESPONSES_RESPONSE = 4;
+    private static final byte SET_OCSP_RESPONSES = 5;
+    private static final byte GET_TOKEN_BATCH_SIGNING_ENABLED = 6;
+    private static final byte GET_KEY_ID_FOR_CERT_HASH = 7;
+    private static final byte GET_KEY_ID_FOR_CERT_HASH_RESPONSE = 8;
+
+    @Override
+    public int identifier() {
+        return IDENTIFIER;
+    }
+
+    @Override
+    public boolean includeManifest() {
+        return false;
+    }
+
+    @Override
+    public byte[] toBinary(Object message) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(INITIAL_BUFFER_SIZE);
+
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            write(message, out);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Unable to serialize " + message.getClass().getName(), e);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public Object fromBinaryJava(byte[] bytes, Class<?> manifest) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            return read(in);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Unable to deserialize signer message", e);
+        }
+    }
+
+    private static void write(Object message, DataOutputStream out) throws IOException {
+        if (message instanceof Sign) {
+            Sign sign = (Sign) message;
+
+            out.writeByte(SIGN);
+            writeString(out, sign.getKeyId());
+            writeString(out, sign.getSignatureAlgorithmId());
+            writeBytes(out, sign.getDigest());
+        } else if (message instanceof SignResponse) {
+            out.writeByte(SIGN_RESPONSE);
+            writeBytes(out, ((SignResponse) message).getSignature());
+        } else if (message instanceof GetOcspResponses) {
+            out.writeByte(GET_OCSP_RESPONSES);
+            writeStrings(out, ((GetOcspResponses) message).getCertHash());
+        } else if (message instanceof GetOcspResponsesResponse) {
+            out.writeByte(GET_OCSP_RESPONSES_RESPONSE);
+            writeStrings(out, ((GetOcspResponsesResponse) message).getBase64EncodedResponses());
+        } else if (message instanceof SetOcspResponses) {
+            SetOcspResponses setOcspResponses = (SetOcspResponses) message;
+
+            out.writeByte(SET_OCSP_RESPONSES);
+            writeStrings(out, setOcspResponses.getCertHashes());
+            writeStrings(out, setOcspResponses.getBase64EncodedResponses());
+        } else if (message instanceof GetTokenBatchSigningEnabled) {
+            out.writeByte(GET_TOKEN_BATCH_SIGNING_ENABLED);
+            writeString(out, ((GetTokenBatchSigningEnabled) message).getKeyId());
+        } else if (message instanceof GetKeyIdForCertHash) {
+            out.writeByte(GET_KEY_ID_FOR_CERT_HASH);
+            writeString(out, ((GetKeyIdForCertHash) message).getCertHash());
+        } else if (message instanceof GetKeyIdForCertHashResponse) {
+            GetKeyIdForCertHashResponse response = (GetKeyIdForCertHashResponse) message;
+
+            out.writeByte(GET_KEY_ID_FOR_CERT_HASH_RESPONSE);
+            writeString(out, response.getKeyId());
+            writeString(out, response.getSignMechanismName());
+        } else {
+            throw new IllegalArgumentException("Cannot serialize " + message.getClass().getName());
+        }
+    }
+
+    private static Object read(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+
+        switch (type) {
+            case SIGN:
+                return new Sign(readString(in), readString(in), readBytes(in));
+            case SIGN_RESPONSE:
+                return new SignResponse(readBytes(in));
+            case GET_OCSP_RESPONSES:
+                return new GetOcspResponses(readStrings(in));
+            case GET_OCSP_RESPONSES_RESPONSE:
+                return new GetOcspResponsesResponse(readStrings(in));
+            case SET_OCSP_RESPONSES:
+                return new SetOcspResponses(readStrings(in), readStrings(in));
+            case GET_TOKEN_BATCH_SIGNING_ENABLED:
+                return new GetTokenBatchSigningEnabled(readString(in));
+            case GET_KEY_ID_FOR_CERT_HASH:
+                return new GetKeyIdForCertHash(readString(in));
+            case GET_KEY_ID_FOR_CERT_HASH_RESPONSE:
+                return new GetKeyIdForCertHashResponse(readString(in), readString(in));
+            default:
+                throw new IllegalArgumentException("Unknown signer message type " + type);
+        }
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] value) throws IOException {
+        if (value == null) {
+            out.writeInt(NULL_LENGTH);
+        } else {
+            out.writeInt(value.length);
+            out.write(value);
+        }
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        int length = in.readInt();
+
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+
+        byte[] value = new byte[length];
+        in.readFully(value);
+
+        return value;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        writeBytes(out, value != null ? value.getBytes(UTF_8) : null);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] value = readBytes(in);
+
+        return value != null ? new String(value, UTF_8) : null;
+    }
+
+    private static void writeStrings(DataOutputStream out, String[] values) throws IOException {
+        if (values == null) {
+            out.writeInt(NULL_LENGTH);
+        } else {
+            out.writeInt(values.length);
+
+            for (String value : values) {
+                writeString(out, value);
+            }
+        }
+    }
+
+    private static String[] readStrings(DataInputStream in) throws IOException {
+        int length = in.readInt();
+
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+
+        String[] values = new String[length];
+
+        for (int i = 0; i < length; i++) {
+            values[i] = readString(in);
+        }
+
+        return values;
+    }
+}
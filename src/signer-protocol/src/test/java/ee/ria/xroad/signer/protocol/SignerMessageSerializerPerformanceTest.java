@@ -0,0 +1,119 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.signer.protocol;
+
+import ee.ria.xroad.signer.protocol.message.GetOcspResponsesResponse;
+import ee.ria.xroad.signer.protocol.message.Sign;
+import ee.ria.xroad.signer.protocol.message.SignResponse;
+
+import akka.actor.ActorSystem;
+import akka.actor.ExtendedActorSystem;
+import akka.serialization.JavaSerializer;
+import akka.serialization.Serializer;
+import lombok.extern.slf4j.Slf4j;
+import scala.concurrent.Await;
+import scala.concurrent.duration.Duration;
+
+import java.util.Base64;
+import java.util.Random;
+
+/**
+ * Compares the serialization cost and size of the signer protocol messages with the binary serializer and
+ * with Java serialization.
+ */
+@Slf4j
+public final class SignerMessageSerializerPerformanceTest {
+
+    private static final int WARMUP_ITERATIONS = 100_000;
+    private static final int ITERATIONS = 1_000_000;
+
+    private static final int DIGEST_LENGTH = 32;
+    private static final int SIGNATURE_LENGTH = 256;
+    private static final int OCSP_RESPONSE_LENGTH = 1500;
+
+    private SignerMessageSerializerPerformanceTest() {
+    }
+
+    /**
+     * Main program entry point.
+     * @param args command-line arguments, not used
+     * @throws Exception in case of any errors
+     */
+    public static void main(String[] args) throws Exception {
+        Random random = new Random(1);
+
+        Object[] messages = {
+            new Sign("6B1F4F1B6D9C4BD2A35E2B4F2D7A4B7C29F1E0B8", "http://www.w3.org/2001/04/xmldsig-more#rsa-sha256",
+                    randomBytes(random, DIGEST_LENGTH)),
+            new SignResponse(randomBytes(random, SIGNATURE_LENGTH)),
+            new GetOcspResponsesResponse(new String[] {
+                Base64.getEncoder().encodeToString(randomBytes(random, OCSP_RESPONSE_LENGTH))})
+        };
+
+        ActorSystem actorSystem = ActorSystem.create("SignerMessageSerializerPerformanceTest");
+
+        try {
+            Serializer binary = new SignerMessageSerializer();
+            Serializer java = new JavaSerializer((ExtendedActorSystem) actorSystem);
+
+            for (Object message : messages) {
+                measure(message, java);
+                measure(message, binary);
+            }
+        } finally {
+            Await.ready(actorSystem.terminate(), Duration.Inf());
+        }
+    }
+
+    private static void measure(Object message, Serializer serializer) {
+        byte[] bytes = serializer.toBinary(message);
+
+        run(message, serializer, WARMUP_ITERATIONS);
+
+        long start = System.nanoTime();
+        run(message, serializer, ITERATIONS);
+        long nanos = System.nanoTime() - start;
+
+        log.info("{} with {}: {} bytes, {} ns per serialize and deserialize", message.getClass().getSimpleName(),
+                serializer.getClass().getSimpleName(), bytes.length, nanos / ITERATIONS);
+    }
+
+    private static void run(Object message, Serializer serializer, int iterations) {
+        int hash = 0;
+
+        for (int i = 0; i < iterations; i++) {
+            hash += serializer.fromBinary(serializer.toBinary(message)).hashCode();
+        }
+
+        log.debug("{}", hash);
+    }
+
+    private static byte[] randomBytes(Random random, int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+
+        return bytes;
+    }
+}
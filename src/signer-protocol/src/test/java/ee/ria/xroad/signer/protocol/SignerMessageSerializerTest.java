@@ -0,0 +1,103 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.signer.protocol;
+
+import ee.ria.xroad.signer.protocol.message.GetKeyIdForCertHashResponse;
+import ee.ria.xroad.signer.protocol.message.GetOcspResponses;
+import ee.ria.xroad.signer.protocol.message.GetOcspResponsesResponse;
+import ee.ria.xroad.signer.protocol.message.SetOcspResponses;
+import ee.ria.xroad.signer.protocol.message.Sign;
+import ee.ria.xroad.signer.protocol.message.SignResponse;
+
+import akka.actor.ActorSystem;
+import akka.serialization.Serialization;
+import akka.serialization.SerializationExtension;
+import org.junit.Test;
+import scala.concurrent.Await;
+import scala.concurrent.duration.Duration;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the binary serialization of the signer protocol messages.
+ */
+public class SignerMessageSerializerTest {
+
+    private final SignerMessageSerializer serializer = new SignerMessageSerializer();
+
+    @Test
+    public void signMessagesRoundTrip() {
+        Sign sign = new Sign("key", "http://www.w3.org/2001/04/xmldsig-more#rsa-sha256", new byte[] {1, 2, 3});
+        SignResponse signResponse = new SignResponse(new byte[] {4, 5, 6});
+
+        assertEquals(sign, roundTrip(sign));
+        assertArrayEquals(signResponse.getSignature(), ((SignResponse) roundTrip(signResponse)).getSignature());
+    }
+
+    @Test
+    public void ocspMessagesRoundTrip() {
+        GetOcspResponses getOcspResponses = new GetOcspResponses(new String[] {"hash1", "hash2"});
+        GetOcspResponsesResponse response = new GetOcspResponsesResponse(new String[] {"b2NzcA==", null});
+        SetOcspResponses setOcspResponses = new SetOcspResponses(new String[] {"hash1"}, new String[] {"b2NzcA=="});
+
+        assertArrayEquals(getOcspResponses.getCertHash(),
+                ((GetOcspResponses) roundTrip(getOcspResponses)).getCertHash());
+        assertArrayEquals(response.getBase64EncodedResponses(),
+                ((GetOcspResponsesResponse) roundTrip(response)).getBase64EncodedResponses());
+
+        SetOcspResponses deserialized = (SetOcspResponses) roundTrip(setOcspResponses);
+        assertArrayEquals(setOcspResponses.getCertHashes(), deserialized.getCertHashes());
+        assertArrayEquals(setOcspResponses.getBase64EncodedResponses(), deserialized.getBase64EncodedResponses());
+    }
+
+    @Test
+    public void nullFieldsRoundTrip() {
+        GetKeyIdForCertHashResponse response = new GetKeyIdForCertHashResponse("key\u00e4", null);
+
+        assertEquals(response, roundTrip(response));
+        assertNull(((GetOcspResponses) roundTrip(new GetOcspResponses(null))).getCertHash());
+    }
+
+    @Test
+    public void serializerIsBoundInReferenceConfiguration() throws Exception {
+        ActorSystem actorSystem = ActorSystem.create("SignerMessageSerializerTest");
+
+        try {
+            Serialization serialization = SerializationExtension.get(actorSystem);
+
+            assertTrue(serialization.findSerializerFor(new SignResponse(new byte[0]))
+                    instanceof SignerMessageSerializer);
+        } finally {
+            Await.ready(actorSystem.terminate(), Duration.Inf());
+        }
+    }
+
+    private Object roundTrip(Object message) {
+        return serializer.fromBinary(serializer.toBinary(message));
+    }
+}
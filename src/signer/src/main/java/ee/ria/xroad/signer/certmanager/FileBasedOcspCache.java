@@ -24,6 +24,7 @@
  */
 package ee.ria.xroad.signer.certmanager;
 
+import ee.ria.xroad.common.ocsp.CachedOcspResponse;
 import ee.ria.xroad.common.ocsp.OcspCache;
 
 import lombok.extern.slf4j.Slf4j;
@@ -41,12 +42,22 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Date;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import static ee.ria.xroad.common.ErrorCodes.translateException;
 import static ee.ria.xroad.common.SystemProperties.getOcspCachePath;
 
 /**
  * OCSP cache that holds the OCSP responses on disk.
+ *
+ * The responses are written to disk in the background. After the responses
+ * have been reloaded from disk, the memory cache holds every response that is
+ * on disk and the disk is no longer read.
  */
 @Slf4j
 public class FileBasedOcspCache extends OcspCache {
@@ -54,6 +65,20 @@ public class FileBasedOcspCache extends OcspCache {
     /** The OCSP response file extension. */
     private static final String OCSP_FILE_EXTENSION = ".ocsp";
 
+    private static final int SHUTDOWN_TIMEOUT_SECONDS = 10;
+
+    // Responses waiting to be written, empty value means that the file is to be deleted
+    private final Map<String, Optional<OCSPResp>> pendingWrites = new ConcurrentHashMap<>();
+
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+        Thread writerThread = new Thread(r, "ocsp-cache-writer");
+        writerThread.setDaemon(true);
+
+        return writerThread;
+    });
+
+    private volatile boolean reloadedFromDisk;
+
     /**
      * Returns the OCSP response for the given certificate or null, if the
      * response is not available.
@@ -61,40 +86,52 @@ public class FileBasedOcspCache extends OcspCache {
      * @return the OCSP response object or null, if no response is available
      */
     @Override
-    protected OCSPResp getResponse(Object key, Date atDate) {
-        OCSPResp response = null;
-        if (cache.containsKey(key)) { // is the OCSP response in memory?
-            response = super.getResponse(key, atDate);
-            if (response != null) {
-                return response;
+    protected CachedOcspResponse getCachedResponse(Object key, Date atDate) {
+        boolean inMemory = cache.containsKey(key);
+
+        CachedOcspResponse response = super.getCachedResponse(key, atDate);
+        if (response != null) {
+            return response;
+        }
+
+        if (reloadedFromDisk) {
+            if (inMemory) { // the response expired
+                scheduleWrite(key.toString(), null);
             }
+
+            return null;
         }
 
         File file = getOcspResponseFile(getOcspCachePath(), key);
         try {
-            response = loadResponseFromFileIfNotExpired(file, atDate);
+            return loadResponseFromFileIfNotExpired(file, atDate);
         } catch (Exception e) {
             // Failed to load OCSP response from file
             throw translateException(e);
         }
-
-        return response;
     }
 
     @Override
-    public OCSPResp put(String key, OCSPResp value) {
+    protected OCSPResp put(String key, CachedOcspResponse value) {
         OCSPResp response = super.put(key, value);
-        try {
-            File file = getOcspResponseFile(getOcspCachePath(), key);
-            saveResponseToFile(file, value);
-        } catch (IOException e) {
-            // Failed to save OCSP response to file
-            throw translateException(e);
-        }
+
+        scheduleWrite(key, value.getResponse());
 
         return response;
     }
 
+    /**
+     * Writes the pending responses to disk and stops the writer.
+     * @throws InterruptedException if interrupted while waiting for the writer
+     */
+    void shutdown() throws InterruptedException {
+        writer.shutdown();
+
+        if (!writer.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            log.warn("{} OCSP responses were not written to disk", pendingWrites.size());
+        }
+    }
+
     void reloadFromDisk() throws Exception {
         Path path = Paths.get(getOcspCachePath());
 
@@ -104,6 +141,8 @@ public class FileBasedOcspCache extends OcspCache {
                 loadResponseFromFileIfNotExpired(entry.toFile(), new Date());
             }
         }
+
+        reloadedFromDisk = true;
     }
 
     boolean isOcspFile(Path p) {
@@ -122,24 +161,27 @@ public class FileBasedOcspCache extends OcspCache {
         log.trace("Saved OCSP response to file '{}'", file);
     }
 
-    OCSPResp loadResponseFromFileIfNotExpired(File file, Date atDate)
+    CachedOcspResponse loadResponseFromFileIfNotExpired(File file, Date atDate)
             throws Exception {
         OCSPResp response = loadResponseFromFile(file);
-        if (response != null) {
-            String key = getFileNameWithoutExtension(file);
-            if (!isExpired(response, atDate)) {
-                log.trace("Loaded OCSP response for cert hash {}", key);
-
-                super.put(key, response); // store in memory
-            } else {
-                log.trace("Cached OCSP response for certificate '{}' "
-                        + "has expired, deleting the file '{}'", key, file);
-                delete(file);
-                return null;
-            }
+        if (response == null) {
+            return null;
         }
 
-        return response;
+        String key = getFileNameWithoutExtension(file);
+        CachedOcspResponse cachedResponse = createCachedResponse(response);
+        if (!cachedResponse.isExpired(atDate)) {
+            log.trace("Loaded OCSP response for cert hash {}", key);
+
+            super.put(key, cachedResponse); // store in memory
+
+            return cachedResponse;
+        }
+
+        log.trace("Cached OCSP response for certificate '{}' "
+                + "has expired, deleting the file '{}'", key, file);
+        delete(file);
+        return null;
     }
 
     OCSPResp loadResponseFromFile(File file) throws IOException {
@@ -160,6 +202,31 @@ public class FileBasedOcspCache extends OcspCache {
         }
     }
 
+    /**
+     * Writes the latest response of the key to disk in the background. Only
+     * the latest of several responses set before the write is written.
+     */
+    private void scheduleWrite(String key, OCSPResp value) {
+        if (pendingWrites.put(key, Optional.ofNullable(value)) == null) {
+            writer.execute(() -> writePending(key));
+        }
+    }
+
+    private void writePending(String key) {
+        Optional<OCSPResp> value = pendingWrites.remove(key);
+        File file = getOcspResponseFile(getOcspCachePath(), key);
+
+        try {
+            if (value.isPresent()) {
+                saveResponseToFile(file, value.get());
+            } else if (!cache.containsKey(key)) {
+                delete(file);
+            }
+        } catch (Exception e) {
+            log.error("Failed to save OCSP response to file '{}'", file, e);
+        }
+    }
+
     private static void createIntermediateDirectories(File file)
             throws IOException {
         File path = file.getParentFile();
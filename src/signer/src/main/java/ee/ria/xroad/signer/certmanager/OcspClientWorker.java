@@ -28,6 +28,7 @@ import ee.ria.xroad.common.CertificationServiceDiagnostics;
 import ee.ria.xroad.common.CertificationServiceStatus;
 import ee.ria.xroad.common.DiagnosticsErrorCodes;
 import ee.ria.xroad.common.OcspResponderStatus;
+import ee.ria.xroad.common.SystemProperties;
 import ee.ria.xroad.common.cert.CertChain;
 import ee.ria.xroad.common.conf.globalconf.GlobalConf;
 import ee.ria.xroad.common.conf.globalconfextension.GlobalConfExtensions;
@@ -44,6 +45,7 @@ import ee.ria.xroad.signer.util.AbstractSignerActor;
 import ee.ria.xroad.signer.util.SignerUtil;
 
 import akka.actor.ActorRef;
+import lombok.Data;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.bouncycastle.cert.ocsp.OCSPException;
@@ -54,15 +56,26 @@ import java.net.ConnectException;
 import java.security.PrivateKey;
 import java.security.cert.X509Certificate;
 import java.time.LocalTime;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
-import java.util.HashMap;
+import java.util.Deque;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.LongSummaryStatistics;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static ee.ria.xroad.common.util.CryptoUtils.calculateCertHexHash;
 import static ee.ria.xroad.common.util.CryptoUtils.encodeBase64;
@@ -77,6 +90,8 @@ import static java.util.Collections.emptyList;
  * server and providing the responses to the message signer.
  *
  * The certificate status is queried from the server at a fixed interval.
+ * The statuses are fetched concurrently by a bounded number of threads, each
+ * status is applied as soon as it has been verified.
  */
 @Slf4j
 @RequiredArgsConstructor
@@ -99,6 +114,9 @@ public class OcspClientWorker extends AbstractSignerActor {
 
     private CertificationServiceDiagnostics certServDiagnostics;
 
+    // Response times of the OCSP responders during the current refresh cycle
+    private final Map<String, LongSummaryStatistics> responderLatencies = new ConcurrentHashMap<>();
+
     @Override
     public void preStart() throws Exception {
         super.preStart();
@@ -210,39 +228,159 @@ public class OcspClientWorker extends AbstractSignerActor {
 
         log.info("Fetching OCSP responses for {} certificates", certs.size());
 
-        Boolean failed = false;
-        Map<String, OCSPResp> statuses = new HashMap<>();
+        long cycleStart = System.currentTimeMillis();
+        boolean failed = fetchCertStatuses(certs);
+
+        if (failed) {
+            getSender().tell(FAILED, getSelf());
+        } else {
+            getSender().tell(SUCCESS, getSelf());
+        }
+
+        logCycleStatistics(certs.size(), System.currentTimeMillis() - cycleStart);
+    }
+
+    /**
+     * Fetches the statuses of the certificates concurrently and applies each status as soon as it has been
+     * verified. The certificates are ordered so that the certificates of different issuers alternate, which
+     * keeps a slow responder from occupying every fetching thread. A certificate whose status cannot be fetched
+     * does not affect the fetching of the other statuses.
+     * @return true if the status of some certificate could not be fetched
+     */
+    boolean fetchCertStatuses(List<X509Certificate> certs) {
+        OcspVerifierOptions verifierOptions = new OcspVerifierOptions(
+                GlobalConfExtensions.getInstance().shouldVerifyOcspNextUpdate());
+
+        List<OcspQuery> queries = createQueries(certs);
+
+        if (queries.isEmpty()) {
+            log.warn("Could not query the status of any of the {} certificates", certs.size());
+
+            return true;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.min(SystemProperties.getOcspFetchConcurrency(), queries.size()), this::newFetchThread);
+
+        boolean failed = false;
+
+        try {
+            CompletionService<OcspQuery> completionService = new ExecutorCompletionService<>(executor);
+
+            for (OcspQuery query : queries) {
+                completionService.submit(() -> {
+                    try {
+                        query.setResponse(queryCertStatus(query.getSubject(), query.getIssuer(),
+                                query.getResponderURIs(), verifierOptions));
+                    } catch (Exception e) {
+                        log.error("Error when querying certificate '{}'", query.getSubject().getSerialNumber(), e);
+                    }
+
+                    return query;
+                });
+            }
+
+            for (int i = 0; i < queries.size(); i++) {
+                OcspQuery query = completionService.take().get();
+
+                if (query.getResponse() != null) {
+                    applyCertStatus(query);
+                } else {
+                    failed = true;
+                }
+            }
+        } catch (ExecutionException e) {
+            failed = true;
+
+            log.error("Error when querying certificate status", e.getCause());
+        } catch (InterruptedException e) {
+            failed = true;
+
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        return failed || queries.size() < certs.size();
+    }
+
+    /**
+     * Resolves the issuer and the responders once per issuer and responder URI found in the certificate.
+     */
+    private List<OcspQuery> createQueries(List<X509Certificate> certs) {
+        Map<List<Object>, Deque<OcspQuery>> queriesByIssuer = new LinkedHashMap<>();
 
         for (X509Certificate subject : certs) {
             try {
-                OCSPResp status = queryCertStatus(subject, new OcspVerifierOptions(
-                        GlobalConfExtensions.getInstance().shouldVerifyOcspNextUpdate()));
-                if (status != null) {
-                    String subjectHash = calculateCertHexHash(subject);
-                    statuses.put(subjectHash, status);
+                List<Object> issuerKey = Arrays.asList(subject.getIssuerX500Principal(),
+                        CertUtils.getOcspResponderUriFromCert(subject));
+                Deque<OcspQuery> issuerQueries = queriesByIssuer.get(issuerKey);
+
+                if (issuerQueries == null) {
+                    issuerQueries = new ArrayDeque<>();
+                    queriesByIssuer.put(issuerKey, issuerQueries);
+
+                    issuerQueries.add(new OcspQuery(subject,
+                            GlobalConf.getCaCert(GlobalConf.getInstanceIdentifier(), subject),
+                            GlobalConf.getOcspResponderAddresses(subject)));
                 } else {
-                    failed = true;
+                    OcspQuery first = issuerQueries.getFirst();
+
+                    issuerQueries.add(new OcspQuery(subject, first.getIssuer(), first.getResponderURIs()));
                 }
             } catch (Exception e) {
-                failed = true;
-
                 log.error("Error when querying certificate '{}'", subject.getSerialNumber(), e);
             }
         }
 
-        if (failed) {
-            getSender().tell(FAILED, getSelf());
-        } else {
-            getSender().tell(SUCCESS, getSelf());
+        List<OcspQuery> queries = new ArrayList<>(certs.size());
+
+        while (!queriesByIssuer.isEmpty()) {
+            for (Iterator<Deque<OcspQuery>> it = queriesByIssuer.values().iterator(); it.hasNext();) {
+                Deque<OcspQuery> issuerQueries = it.next();
+
+                queries.add(issuerQueries.poll());
+
+                if (issuerQueries.isEmpty()) {
+                    it.remove();
+                }
+            }
         }
 
+        return queries;
+    }
+
+    private void applyCertStatus(OcspQuery query) {
         try {
-            updateCertStatuses(statuses);
+            updateCertStatuses(Collections.singletonMap(calculateCertHexHash(query.getSubject()),
+                    query.getResponse()));
         } catch (Exception e) {
             log.error("Error updating certificate statuses", e);
         }
     }
 
+    private Thread newFetchThread(Runnable r) {
+        Thread fetchThread = new Thread(r);
+        fetchThread.setName("ocsp-fetch-" + fetchThread.getId());
+        fetchThread.setDaemon(true);
+
+        return fetchThread;
+    }
+
+    private void logCycleStatistics(int certCount, long cycleMillis) {
+        log.info("OCSP-response refresh cycle of {} certificates finished in {} ms", certCount, cycleMillis);
+
+        responderLatencies.forEach((responderURI, latencies) -> {
+            synchronized (latencies) {
+                log.info("OCSP responder {}: {} requests, average latency {} ms, maximum latency {} ms",
+                        responderURI, latencies.getCount(), Math.round(latencies.getAverage()),
+                        latencies.getMax());
+            }
+        });
+
+        responderLatencies.clear();
+    }
+
     List<X509Certificate> getCertsForOcsp() {
         Set<X509Certificate> certs = new HashSet<>();
 
@@ -285,14 +423,16 @@ public class OcspClientWorker extends AbstractSignerActor {
     }
 
     OCSPResp queryCertStatus(X509Certificate subject, OcspVerifierOptions verifierOptions) throws Exception {
-        X509Certificate issuer = GlobalConf.getCaCert(GlobalConf.getInstanceIdentifier(), subject);
+        return queryCertStatus(subject, GlobalConf.getCaCert(GlobalConf.getInstanceIdentifier(), subject),
+                GlobalConf.getOcspResponderAddresses(subject), verifierOptions);
+    }
 
+    OCSPResp queryCertStatus(X509Certificate subject, X509Certificate issuer, List<String> responderURIs,
+            OcspVerifierOptions verifierOptions) throws Exception {
         PrivateKey signerKey = OcspClient.getOcspRequestKey(subject);
         X509Certificate signer = OcspClient.getOcspSignerCert();
         String signAlgoId = OcspClient.getSignAlgorithmId();
 
-        List<String> responderURIs = GlobalConf.getOcspResponderAddresses(subject);
-
         log.debug("responder URIs: {}", responderURIs);
 
         if (responderURIs.isEmpty()) {
@@ -305,8 +445,12 @@ public class OcspClientWorker extends AbstractSignerActor {
             try {
                 log.debug("Fetching response from: {}", responderURI);
 
+                long start = System.currentTimeMillis();
+
                 response = OcspClient.fetchResponse(responderURI, subject, issuer, signerKey, signer, signAlgoId);
 
+                recordLatency(responderURI, System.currentTimeMillis() - start);
+
                 if (response != null) {
                     reportOcspDiagnostics(issuer, responderURI, DiagnosticsErrorCodes.RETURN_SUCCESS, LocalTime.now(),
                             LocalTime.now().plusSeconds(GlobalConfExtensions.getInstance().getOcspFetchInterval()));
@@ -350,7 +494,17 @@ public class OcspClientWorker extends AbstractSignerActor {
         }
     }
 
-    private void reportOcspDiagnostics(X509Certificate issuer, String responderURI, int statusCode,
+    private void recordLatency(String responderURI, long millis) {
+        LongSummaryStatistics latencies = responderLatencies.computeIfAbsent(responderURI,
+                uri -> new LongSummaryStatistics());
+
+        synchronized (latencies) {
+            latencies.accept(millis);
+        }
+    }
+
+    // Called concurrently by the fetching threads
+    private synchronized void reportOcspDiagnostics(X509Certificate issuer, String responderURI, int statusCode,
             LocalTime prevUpdate, LocalTime nextUpdate) {
 
         OcspResponderStatus responderStatus = new OcspResponderStatus(statusCode, responderURI, prevUpdate, nextUpdate);
@@ -461,6 +615,17 @@ public class OcspClientWorker extends AbstractSignerActor {
         return emptyList();
     }
 
+    /**
+     * Status query of one certificate.
+     */
+    @Data
+    private static final class OcspQuery {
+        private final X509Certificate subject;
+        private final X509Certificate issuer;
+        private final List<String> responderURIs;
+        private OCSPResp response;
+    }
+
     private void initializeDiagnostics() {
         for (X509Certificate caCertificate : GlobalConf.getAllCaCerts()) {
             try {
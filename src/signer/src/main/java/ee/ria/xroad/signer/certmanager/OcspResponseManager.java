@@ -55,13 +55,11 @@ import static ee.ria.xroad.common.util.CryptoUtils.encodeBase64;
  * the entire certificate.
  *
  * When an OCSP response is added to the manager, it is first cached in memory
- * (overwriting any existing response) and then attempted to be written to disk
- * (overwriting any existing response file).
+ * (overwriting any existing response) and then written to disk in the
+ * background (overwriting any existing response file).
  *
- * When an OCSP response is queried from the manager, first the cache is checked
- * for the response. If the response exists in the memory cache, it is returned.
- * If the response does not exist in the memory cache, the response will be
- * loaded from disk, if it exists and is cached in memory as well.
+ * The responses on disk are loaded to the memory cache when the manager is
+ * started. After that, OCSP responses are queried from the memory cache only.
  */
 @Slf4j
 public class OcspResponseManager extends AbstractSignerActor {
@@ -133,6 +131,15 @@ public class OcspResponseManager extends AbstractSignerActor {
         }
     }
 
+    @Override
+    public void postStop() throws Exception {
+        try {
+            responseCache.shutdown();
+        } finally {
+            super.postStop();
+        }
+    }
+
     /**
      * Depending on given <code>message</code> parameter, sends back either nothing,
      * data (eg. ocsp responses) or Exception which occurred
@@ -182,8 +189,8 @@ public class OcspResponseManager extends AbstractSignerActor {
         sendResponse(Boolean.FALSE);
     }
 
-    OCSPResp getResponse(String certHash) throws Exception {
-        return responseCache.get(certHash);
+    byte[] getEncodedResponse(String certHash) throws Exception {
+        return responseCache.getEncoded(certHash);
     }
 
     void setResponse(String certHash, OCSPResp response) throws Exception {
@@ -218,13 +225,14 @@ public class OcspResponseManager extends AbstractSignerActor {
         void handleGetOcspResponses(String[] certHashes) throws Exception {
             String[] base64EncodedResponses = new String[certHashes.length];
             for (int i = 0; i < certHashes.length; i++) {
-                OCSPResp ocspResponse = manager.getResponse(certHashes[i]);
+                byte[] ocspResponse = manager.getEncodedResponse(certHashes[i]);
                 if (ocspResponse == null) {
                     log.debug("No cached OCSP response available for cert {}", certHashes[i]);
                     // if the response is not in local cache, download it
-                    ocspResponse = downloadOcspResponse(certHashes[i]);
-                    if (ocspResponse != null) {
-                        manager.setResponse(certHashes[i], ocspResponse);
+                    OCSPResp downloadedResponse = downloadOcspResponse(certHashes[i]);
+                    if (downloadedResponse != null) {
+                        manager.setResponse(certHashes[i], downloadedResponse);
+                        ocspResponse = downloadedResponse.getEncoded();
                     }
                 } else {
                     log.debug("Found a cached OCSP response for cert {}", certHashes[i]);
@@ -233,8 +241,7 @@ public class OcspResponseManager extends AbstractSignerActor {
                 if (ocspResponse != null) {
                     log.debug("Acquired an OCSP response for certificate {}",
                             certHashes[i]);
-                    base64EncodedResponses[i] =
-                            encodeBase64(ocspResponse.getEncoded());
+                    base64EncodedResponses[i] = encodeBase64(ocspResponse);
                 } else {
                     log.warn("Could not acquire an OCSP response for "
                             + "certificate {}", certHashes[i]);
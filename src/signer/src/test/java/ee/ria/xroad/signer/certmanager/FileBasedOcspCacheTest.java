@@ -25,6 +25,7 @@
 package ee.ria.xroad.signer.certmanager;
 
 import ee.ria.xroad.common.OcspTestUtils;
+import ee.ria.xroad.common.SystemProperties;
 import ee.ria.xroad.common.TestCertUtil;
 import ee.ria.xroad.common.conf.globalconf.EmptyGlobalConf;
 import ee.ria.xroad.common.conf.globalconf.GlobalConf;
@@ -37,10 +38,12 @@ import org.junit.Test;
 import org.mockito.Mockito;
 
 import java.io.File;
+import java.nio.file.Files;
 import java.security.PrivateKey;
 import java.security.cert.X509Certificate;
 import java.util.Date;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.mockito.Mockito.mock;
@@ -51,6 +54,8 @@ import static org.mockito.Mockito.when;
  */
 public class FileBasedOcspCacheTest {
 
+    private static final long WRITE_TIMEOUT_MILLIS = 5000;
+
     static X509Certificate subject;
     static X509Certificate issuer;
     static X509Certificate signer;
@@ -74,7 +79,7 @@ public class FileBasedOcspCacheTest {
 
         spy.put("foo", ocsp);
 
-        Mockito.verify(spy).saveResponseToFile(Mockito.any(File.class),
+        Mockito.verify(spy, Mockito.timeout(WRITE_TIMEOUT_MILLIS)).saveResponseToFile(Mockito.any(File.class),
                 Mockito.any(OCSPResp.class));
 
         assertNotNull(cache.get("foo"));
@@ -121,7 +126,7 @@ public class FileBasedOcspCacheTest {
 
         spy.put("foo", ocsp);
 
-        Mockito.verify(spy).saveResponseToFile(Mockito.any(File.class),
+        Mockito.verify(spy, Mockito.timeout(WRITE_TIMEOUT_MILLIS)).saveResponseToFile(Mockito.any(File.class),
                 Mockito.any(OCSPResp.class));
 
         spy.clear();
@@ -132,6 +137,70 @@ public class FileBasedOcspCacheTest {
         assertNotNull(spy.get("foo"));
     }
 
+    /**
+     * Test.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void memoryIsAuthoritativeAfterReload() throws Exception {
+        Date thisUpdate = new DateTime().plusDays(1).toDate();
+        OCSPResp ocsp = OcspTestUtils.createOCSPResponse(subject, issuer,
+                signer, signerKey, CertificateStatus.GOOD, thisUpdate, null);
+
+        FileBasedOcspCache cache = new FileBasedOcspCache();
+        FileBasedOcspCache spy = Mockito.spy(cache);
+
+        Mockito.doNothing().when(spy).saveResponseToFile(
+                Mockito.any(File.class), Mockito.any(OCSPResp.class));
+
+        Mockito.doReturn(ocsp).when(spy).loadResponseFromFile(
+                Mockito.any(File.class));
+
+        File dir = Files.createTempDirectory("ocsp").toFile();
+        System.setProperty(SystemProperties.OCSP_CACHE_PATH, dir.getAbsolutePath());
+
+        try {
+            spy.reloadFromDisk();
+        } finally {
+            System.clearProperty(SystemProperties.OCSP_CACHE_PATH);
+            Files.delete(dir.toPath());
+        }
+
+        assertNull(spy.get("foo"));
+        Mockito.verify(spy, Mockito.never()).loadResponseFromFile(
+                Mockito.any(File.class));
+
+        spy.put("foo", ocsp);
+
+        assertArrayEquals(ocsp.getEncoded(), spy.getEncoded("foo"));
+    }
+
+    /**
+     * Test.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void unparseableResponseKeepsPrevious() throws Exception {
+        Date thisUpdate = new DateTime().plusDays(1).toDate();
+        OCSPResp ocsp = OcspTestUtils.createOCSPResponse(subject, issuer,
+                signer, signerKey, CertificateStatus.GOOD, thisUpdate, null);
+
+        FileBasedOcspCache cache = new FileBasedOcspCache();
+        FileBasedOcspCache spy = Mockito.spy(cache);
+
+        Mockito.doNothing().when(spy).saveResponseToFile(
+                Mockito.any(File.class), Mockito.any(OCSPResp.class));
+
+        spy.put("foo", ocsp);
+        spy.put("foo", OcspTestUtils.createSigRequiredOCSPResponse());
+
+        assertArrayEquals(ocsp.getEncoded(), spy.getEncoded("foo"));
+        Mockito.verify(spy, Mockito.timeout(WRITE_TIMEOUT_MILLIS)).saveResponseToFile(Mockito.any(File.class),
+                Mockito.eq(ocsp));
+        Mockito.verify(spy, Mockito.times(1)).saveResponseToFile(Mockito.any(File.class),
+                Mockito.any(OCSPResp.class));
+    }
+
     /**
      * Test.
      * @throws Exception if an error occurs
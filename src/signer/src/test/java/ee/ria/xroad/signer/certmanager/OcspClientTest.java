@@ -64,11 +64,15 @@ import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
-import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static ee.ria.xroad.common.util.CryptoUtils.calculateCertHexHash;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -89,7 +93,8 @@ public class OcspClientTest {
     private static Server ocspResponder;
     private static byte[] responseData;
 
-    private static final Map<String, OCSPResp> OCSP_RESPONSES = new HashMap<>();
+    private static final Map<String, OCSPResp> OCSP_RESPONSES = new ConcurrentHashMap<>();
+    private static final Set<X509Certificate> FAILING_CERTS = ConcurrentHashMap.newKeySet();
     private static X509Certificate ocspResponderCert;
 
     private TestActorRef<TestOcspClient> testActor;
@@ -244,6 +249,48 @@ public class OcspClientTest {
         OcspClient.fetchResponse(RESPONDER_URI, subject, issuer, null, null, null);
     }
 
+    /**
+     * Test.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void failingCertificateDoesNotAffectOthers() throws Exception {
+        X509Certificate subject = getDefaultClientCert();
+        X509Certificate failingSubject = TestCertUtil.getProducer().certChain[0];
+
+        GlobalConf.reload(getTestGlobalConf());
+
+        Date thisUpdate = new DateTime().plusDays(1).toDate();
+
+        responseData = OcspTestUtils.createOCSPResponse(subject, GlobalConf.getCaCert("EE", subject), ocspResponderCert,
+                getOcspSignerKey(), CertificateStatus.GOOD, thisUpdate, null).getEncoded();
+
+        FAILING_CERTS.add(failingSubject);
+
+        assertTrue(ocspClient.fetchCertStatuses(Arrays.asList(failingSubject, subject)));
+
+        assertNotNull(getOcspResponse(subject));
+        assertNull(getOcspResponse(failingSubject));
+    }
+
+    /**
+     * Test.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void noQueriesWhenIssuersNotFound() throws Exception {
+        X509Certificate subject = getDefaultClientCert();
+
+        GlobalConfProvider conf = getTestGlobalConf();
+        when(conf.getCaCert(Mockito.any(String.class), Mockito.any(X509Certificate.class))).thenThrow(
+                new RuntimeException("CA certificate not found"));
+        GlobalConf.reload(conf);
+
+        assertTrue(ocspClient.fetchCertStatuses(Arrays.asList(subject)));
+
+        assertTrue(OCSP_RESPONSES.isEmpty());
+    }
+
     // ------------------------------------------------------------------------
 
     /**
@@ -264,6 +311,7 @@ public class OcspClientTest {
     @Before
     public void startup() throws Exception {
         OCSP_RESPONSES.clear();
+        FAILING_CERTS.clear();
 
         if (ocspResponderCert == null) {
             ocspResponderCert = TestCertUtil.getOcspSigner().certChain[0];
@@ -342,6 +390,16 @@ public class OcspClientTest {
         void updateCertStatuses(Map<String, OCSPResp> statuses) {
             OCSP_RESPONSES.putAll(statuses);
         }
+
+        @Override
+        OCSPResp queryCertStatus(X509Certificate subject, X509Certificate issuer, List<String> responderURIs,
+                OcspVerifierOptions verifierOptions) throws Exception {
+            if (FAILING_CERTS.contains(subject)) {
+                throw new ConnectException("No OCSP responder URIs available");
+            }
+
+            return super.queryCertStatus(subject, issuer, responderURIs, verifierOptions);
+        }
     }
 
     private static class TestOCSPResponder extends AbstractHandler {